@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+
+/**
+ * Measures fingerprinting real-world jars from the benchmark classpath, with the entries hashed sequentially or in parallel.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class ZipHasherBenchmark {
+
+    @Param({"groovy-all", "guava", "ant-1"})
+    String jarPrefix;
+
+    @Param({"runtime", "abi"})
+    String normalization;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    RegularFileSnapshot jar;
+    DefaultExecutorFactory executorFactory;
+    ParallelZipEntryHasher parallelEntryHasher;
+    ZipHasher zipHasher;
+
+    @Setup
+    public void setup() {
+        jar = snapshot(findJar(jarPrefix));
+        ResourceHasher resourceHasher = normalization.equals("abi") ? new AbiExtractingClasspathResourceHasher() : new RuntimeClasspathResourceHasher();
+        executorFactory = new DefaultExecutorFactory();
+        parallelEntryHasher = parallel ? new ParallelZipEntryHasher(executorFactory, Runtime.getRuntime().availableProcessors()) : null;
+        zipHasher = new ZipHasher(resourceHasher, ResourceFilter.FILTER_NOTHING, parallelEntryHasher);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (parallelEntryHasher != null) {
+            parallelEntryHasher.stop();
+        }
+        executorFactory.stop();
+    }
+
+    @Benchmark
+    public HashCode hashJar() {
+        return zipHasher.hash(jar);
+    }
+
+    private static File findJar(String prefix) {
+        for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            File file = new File(path);
+            if (file.getName().startsWith(prefix) && file.getName().endsWith(".jar")) {
+                return file;
+            }
+        }
+        throw new IllegalArgumentException("Could not find a jar starting with '" + prefix + "' on the benchmark classpath.");
+    }
+
+    private static RegularFileSnapshot snapshot(File file) {
+        return new RegularFileSnapshot(file.getAbsolutePath(), file.getName(), HashCode.fromInt(0), DefaultFileMetadata.file(file.lastModified(), file.length(), AccessType.DIRECT));
+    }
+}
@@ -19,6 +19,9 @@
 import org.gradle.api.internal.tasks.TaskDependencyContainer;
 import org.gradle.api.internal.tasks.properties.PropertyVisitor;
 import org.gradle.api.tasks.TaskInputs;
+import org.gradle.internal.execution.history.BeforeExecutionState;
+
+import javax.annotation.Nullable;
 
 public interface TaskInputsInternal extends TaskInputs, TaskDependencyContainer {
 
@@ -26,4 +29,13 @@ public interface TaskInputsInternal extends TaskInputs, TaskDependencyContainer
      * Calls the corresponding visitor methods for all inputs added via the runtime API.
      */
     void visitRegisteredProperties(PropertyVisitor visitor);
+
+    void setBeforeExecutionState(@Nullable BeforeExecutionState beforeExecutionState);
+
+    /**
+     * Returns the input properties and input file fingerprints taken for the current execution of the task,
+     * or null when the task is not executing or its inputs have not been fingerprinted.
+     */
+    @Nullable
+    BeforeExecutionState getBeforeExecutionState();
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.hash.HashCode;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hashes the entries of a zip file which supports random access using multiple threads.
+ *
+ * The calling thread hashes entries itself, and helper threads from a pool shared by the build session join in when they are available.
+ * This way hashing never waits for a helper thread to become available, even when many zip files are hashed at the same time.
+ * Together with the calling thread, no more than the max worker count of threads hash the entries of a zip file.
+ */
+public class ParallelZipEntryHasher implements Stoppable {
+    /**
+     * Only zip files with at least this many entries to hash are hashed in parallel.
+     */
+    static final int MIN_ENTRIES = 64;
+    private static final int MIN_ENTRIES_PER_THREAD = 32;
+    private static final int MAX_THREADS = 8;
+
+    private final int helperThreads;
+    @Nullable
+    private final ManagedExecutor executor;
+
+    public ParallelZipEntryHasher(ExecutorFactory executorFactory, int maxWorkerCount) {
+        this.helperThreads = Math.min(maxWorkerCount, MAX_THREADS) - 1;
+        this.executor = helperThreads > 0 ? executorFactory.create("Zip entry hasher", helperThreads) : null;
+    }
+
+    /**
+     * Returns the hashes of the given entries, in the same order as the entries.
+     * The hash is {@code null} for the entries the resource hasher ignores.
+     */
+    HashCode[] hash(ResourceHasher resourceHasher, List<ZipEntryContext> entries) throws IOException {
+        Batch batch = new Batch(resourceHasher, entries);
+        int helpers = Math.min(helperThreads, entries.size() / MIN_ENTRIES_PER_THREAD - 1);
+        try {
+            for (int i = 0; i < helpers; i++) {
+                executor.execute(batch);
+            }
+        } catch (RejectedExecutionException e) {
+            // Hash the remaining entries on the calling thread
+        }
+        batch.run();
+        return batch.awaitHashes();
+    }
+
+    private static class Batch implements Runnable {
+        private final ResourceHasher resourceHasher;
+        private final List<ZipEntryContext> entries;
+        private final HashCode[] hashes;
+        private final AtomicInteger nextEntry = new AtomicInteger();
+        private final CountDownLatch completedEntries;
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Batch(ResourceHasher resourceHasher, List<ZipEntryContext> entries) {
+            this.resourceHasher = resourceHasher;
+            this.entries = entries;
+            this.hashes = new HashCode[entries.size()];
+            this.completedEntries = new CountDownLatch(entries.size());
+        }
+
+        @Override
+        public void run() {
+            int index;
+            while ((index = nextEntry.getAndIncrement()) < hashes.length) {
+                try {
+                    if (failure.get() == null) {
+                        hashes[index] = resourceHasher.hash(entries.get(index));
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    completedEntries.countDown();
+                }
+            }
+        }
+
+        HashCode[] awaitHashes() throws IOException {
+            // Wait for the entries being hashed by helper threads, so the zip file is not closed while they are still read
+            try {
+                completedEntries.await();
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+            Throwable failure = this.failure.get();
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure != null) {
+                throw UncheckedException.throwAsUncheckedException(failure);
+            }
+            return hashes;
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+}
@@ -40,6 +40,7 @@
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -59,10 +60,21 @@ public static boolean isZipFile(final String name) {
 
     private final ResourceHasher resourceHasher;
     private final ResourceFilter resourceFilter;
+    @Nullable
+    private final ParallelZipEntryHasher parallelEntryHasher;
 
     public ZipHasher(ResourceHasher resourceHasher, ResourceFilter resourceFilter) {
+        this(resourceHasher, resourceFilter, null);
+    }
+
+    /**
+     * @param parallelEntryHasher hashes the entries of large zip files using multiple threads when the zip file supports random access,
+     * or null to always hash the entries on the calling thread. The hash does not depend on this setting.
+     */
+    public ZipHasher(ResourceHasher resourceHasher, ResourceFilter resourceFilter, @Nullable ParallelZipEntryHasher parallelEntryHasher) {
         this.resourceHasher = resourceHasher;
         this.resourceFilter = resourceFilter;
+        this.parallelEntryHasher = parallelEntryHasher;
     }
 
     @Nullable
@@ -112,6 +124,8 @@ private List<FileSystemLocationFingerprint> fingerprintZipEntries(String zipFile
 
     private void fingerprintZipEntries(String parentName, String rootParentName, List<FileSystemLocationFingerprint> fingerprints, ZipInput input) throws IOException {
         fingerprints.add(newZipMarker(parentName));
+        // The content of the entries of a random access zip file can be read after iterating over the central directory
+        List<ZipEntryContext> deferredEntries = parallelEntryHasher != null && input.isRandomAccess() ? new ArrayList<ZipEntryContext>() : null;
         for (ZipEntry zipEntry : input) {
             ZipEntryRelativePath relativePath = new ZipEntryRelativePath(zipEntry);
             if (zipEntry.isDirectory() || resourceFilter.shouldBeIgnored(relativePath)) {
@@ -121,10 +135,30 @@ private void fingerprintZipEntries(String parentName, String rootParentName, Lis
             ZipEntryContext zipEntryContext = new ZipEntryContext(zipEntry, fullName, rootParentName);
             if (isZipFile(zipEntry.getName())) {
                 fingerprintZipEntries(fullName, rootParentName, fingerprints, new StreamZipInput(zipEntry.getInputStream()));
+            } else if (deferredEntries != null) {
+                deferredEntries.add(zipEntryContext);
             } else {
                 fingerprintZipEntry(zipEntryContext, fingerprints);
             }
         }
+        if (deferredEntries != null) {
+            fingerprintZipEntries(deferredEntries, fingerprints);
+        }
+    }
+
+    private void fingerprintZipEntries(List<ZipEntryContext> zipEntryContexts, List<FileSystemLocationFingerprint> fingerprints) throws IOException {
+        if (parallelEntryHasher == null || zipEntryContexts.size() < ParallelZipEntryHasher.MIN_ENTRIES) {
+            for (ZipEntryContext zipEntryContext : zipEntryContexts) {
+                fingerprintZipEntry(zipEntryContext, fingerprints);
+            }
+            return;
+        }
+        HashCode[] hashes = parallelEntryHasher.hash(resourceHasher, zipEntryContexts);
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != null) {
+                fingerprints.add(new DefaultFileSystemLocationFingerprint(zipEntryContexts.get(i).getFullName(), FileType.RegularFile, hashes[i]));
+            }
+        }
     }
 
     private void fingerprintZipEntry(ZipEntryContext zipEntryContext, List<FileSystemLocationFingerprint> fingerprints) throws IOException {
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.file.archive;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Futures;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.gradle.api.Action;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.work.WorkerLeaseRegistry.WorkerLease;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes the entries of a zip file, compressing the content of the entries on several threads.
+ *
+ * <p>The content of each entry is read on the calling thread into memory and then compressed by the given executor into a buffer of its own.
+ * The compressed entries are written to the zip file as-is, in the order they were added, so the content of the zip file does not
+ * depend on the scheduling of the threads. Each entry compressed by the executor takes a worker lease reserved by the calling thread
+ * until the entry is written, and entries are compressed on the calling thread when no worker lease is available. Large entries are compressed and written directly on the calling thread instead,
+ * to bound the memory used for the buffers. The first few files are compressed on the calling thread as well, so zip files with
+ * only a few entries do not wait for threads used by other zip files.</p>
+ *
+ * <p>Files copied unmodified from other zip files can be added with their compressed content, which is then written as-is.</p>
+ */
+class ParallelZipArchiveWriter {
+    private static final int MAX_BUFFERED_ENTRY_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_PENDING_BYTES = 32 * 1024 * 1024;
+    /**
+     * Files are only compressed by the executor once at least this many files have been added.
+     */
+    static final int MIN_FILES_FOR_PARALLELISM = 16;
+
+    private final ZipArchiveOutputStream outputStream;
+    private final int method;
+    private final ZipEntryCompressionExecutor executor;
+    private final int maxPendingEntries;
+    @Nullable
+    private ZipEntryCompressionExecutor.CompressionLeases leases;
+    private final Deque<PendingEntry> pendingEntries = new ArrayDeque<PendingEntry>();
+    private long pendingBytes;
+    private int fileCount;
+
+    ParallelZipArchiveWriter(ZipArchiveOutputStream outputStream, int method, ZipEntryCompressionExecutor executor) {
+        this.outputStream = outputStream;
+        this.method = method;
+        this.executor = executor;
+        this.maxPendingEntries = 4 * executor.getMaxParallelism();
+    }
+
+    public void addDirectory(ZipArchiveEntry entry) throws IOException {
+        addPending(new PendingEntry(entry, null, 0, null));
+    }
+
+    public void addFile(ZipArchiveEntry entry, Action<? super OutputStream> content) throws IOException {
+        EntryContent entryContent = new EntryContent(entry);
+        content.execute(entryContent);
+        if (entryContent.streaming) {
+            outputStream.closeArchiveEntry();
+            return;
+        }
+        final byte[] buffer = entryContent.getBuffer();
+        final int length = entryContent.size();
+        WorkerLease lease = reserveLease();
+        if (lease == null) {
+            addPending(new PendingEntry(entry, Futures.immediateFuture(compress(buffer, length)), length, null));
+            return;
+        }
+        Future<CompressedContent> compressedContent;
+        try {
+            compressedContent = executor.getExecutor().submit(new Callable<CompressedContent>() {
+                @Override
+                public CompressedContent call() throws Exception {
+                    return compress(buffer, length);
+                }
+            });
+        } catch (RuntimeException e) {
+            leases.release(lease);
+            throw e;
+        }
+        addPending(new PendingEntry(entry, compressedContent, length, lease));
+    }
+
+    @Nullable
+    private WorkerLease reserveLease() {
+        if (++fileCount < MIN_FILES_FOR_PARALLELISM) {
+            return null;
+        }
+        if (leases == null) {
+            leases = executor.startCompression();
+        }
+        return leases.tryReserve();
+    }
+
+    /**
+     * Adds a file whose content is copied as-is from another zip file, without decompressing and compressing it again.
+     * Returns false when the content cannot be copied this way, e.g. because it is compressed using a different method.
+     */
+    public boolean addRawFile(ZipArchiveEntry entry, RawZipEntryContent content) throws IOException {
+        if (content.getMethod() != method) {
+            return false;
+        }
+        InputStream rawStream = content.openRaw();
+        if (rawStream == null) {
+            return false;
+        }
+        try {
+            if (content.getCompressedSize() > MAX_BUFFERED_ENTRY_SIZE) {
+                finish();
+                setContentProperties(entry, content.getCrc(), content.getSize(), content.getCompressedSize());
+                outputStream.addRawArchiveEntry(entry, rawStream);
+            } else {
+                byte[] data = ByteStreams.toByteArray(rawStream);
+                CompressedContent compressedContent = new CompressedContent(data, data.length, content.getCrc(), content.getSize());
+                addPending(new PendingEntry(entry, Futures.immediateFuture(compressedContent), data.length, null));
+            }
+        } finally {
+            rawStream.close();
+        }
+        return true;
+    }
+
+    /**
+     * Writes all pending entries to the zip file. Does not close the zip file.
+     */
+    public void finish() throws IOException {
+        while (!pendingEntries.isEmpty()) {
+            writeNextPendingEntry();
+        }
+    }
+
+    /**
+     * Releases the worker leases reserved by this writer, without writing the pending entries. Must be called by the thread which added the entries,
+     * also when writing the zip file fails.
+     */
+    public void stop() {
+        try {
+            while (!pendingEntries.isEmpty()) {
+                PendingEntry pendingEntry = pendingEntries.remove();
+                if (pendingEntry.lease != null) {
+                    waitForCompression(pendingEntry.compressedContent);
+                    leases.release(pendingEntry.lease);
+                }
+            }
+        } finally {
+            if (leases != null) {
+                leases.stop();
+            }
+        }
+    }
+
+    private static void waitForCompression(Future<?> compressedContent) {
+        try {
+            compressedContent.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            // Ignore, the zip file is not written anyway
+        }
+    }
+
+    private void addPending(PendingEntry entry) throws IOException {
+        pendingEntries.add(entry);
+        pendingBytes += entry.size;
+        while (pendingEntries.size() > maxPendingEntries || pendingBytes > MAX_PENDING_BYTES) {
+            writeNextPendingEntry();
+        }
+    }
+
+    private void writeNextPendingEntry() throws IOException {
+        PendingEntry pendingEntry = pendingEntries.remove();
+        pendingBytes -= pendingEntry.size;
+        ZipArchiveEntry entry = pendingEntry.entry;
+        if (pendingEntry.compressedContent == null) {
+            outputStream.putArchiveEntry(entry);
+            outputStream.closeArchiveEntry();
+            return;
+        }
+        CompressedContent content;
+        try {
+            content = pendingEntry.compressedContent.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        } finally {
+            if (pendingEntry.lease != null) {
+                leases.release(pendingEntry.lease);
+            }
+        }
+        setContentProperties(entry, content.crc, content.size, content.length);
+        outputStream.addRawArchiveEntry(entry, new ByteArrayInputStream(content.data, 0, content.length));
+    }
+
+    private void setContentProperties(ZipArchiveEntry entry, long crc, long size, long compressedSize) {
+        entry.setMethod(method);
+        entry.setCrc(crc);
+        entry.setSize(size);
+        entry.setCompressedSize(compressedSize);
+    }
+
+    private CompressedContent compress(byte[] buffer, int length) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(buffer, 0, length);
+        if (method == ZipEntry.STORED) {
+            return new CompressedContent(buffer, length, crc.getValue(), length);
+        }
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            UnsafeByteArrayOutputStream compressed = new UnsafeByteArrayOutputStream(Math.max(64, length / 2));
+            DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(compressed, deflater);
+            deflaterOutputStream.write(buffer, 0, length);
+            deflaterOutputStream.finish();
+            return new CompressedContent(compressed.getBuffer(), compressed.size(), crc.getValue(), length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Buffers the content of an entry, until it gets too large to be buffered. From then on, the content is written directly to the zip file.
+     */
+    private class EntryContent extends UnsafeByteArrayOutputStream {
+        private final ZipArchiveEntry entry;
+        private boolean streaming;
+
+        EntryContent(ZipArchiveEntry entry) {
+            super(8192);
+            this.entry = entry;
+        }
+
+        @Override
+        public void write(int b) {
+            if (!streaming && count < MAX_BUFFERED_ENTRY_SIZE) {
+                super.write(b);
+            } else {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            try {
+                if (!streaming && count + len > MAX_BUFFERED_ENTRY_SIZE) {
+                    startStreaming();
+                }
+                if (streaming) {
+                    outputStream.write(b, off, len);
+                } else {
+                    super.write(b, off, len);
+                }
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        private void startStreaming() throws IOException {
+            finish();
+            entry.setMethod(method);
+            outputStream.putArchiveEntry(entry);
+            outputStream.write(buf, 0, count);
+            streaming = true;
+            buf = new byte[0];
+            count = 0;
+        }
+    }
+
+    private static class UnsafeByteArrayOutputStream extends ByteArrayOutputStream {
+        UnsafeByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
+
+    private static class PendingEntry {
+        private final ZipArchiveEntry entry;
+        @Nullable
+        private final Future<CompressedContent> compressedContent;
+        private final int size;
+        @Nullable
+        private final WorkerLease lease;
+
+        PendingEntry(ZipArchiveEntry entry, @Nullable Future<CompressedContent> compressedContent, int size, @Nullable WorkerLease lease) {
+            this.entry = entry;
+            this.compressedContent = compressedContent;
+            this.size = size;
+            this.lease = lease;
+        }
+    }
+
+    private static class CompressedContent {
+        private final byte[] data;
+        private final int length;
+        private final long crc;
+        private final long size;
+
+        CompressedContent(byte[] data, int length, long crc, long size) {
+            this.data = data;
+            this.length = length;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.file.archive;
+
+import javax.annotation.Nullable;
+import java.io.InputStream;
+
+/**
+ * The content of a zip file entry as it is stored in the zip file. This allows the content to be copied to another zip file without
+ * decompressing and compressing it again.
+ */
+public interface RawZipEntryContent {
+    /**
+     * The compression method of the entry, e.g. {@link java.util.zip.ZipEntry#DEFLATED}.
+     */
+    int getMethod();
+
+    long getCrc();
+
+    long getCompressedSize();
+
+    /**
+     * The size of the uncompressed content.
+     */
+    long getSize();
+
+    /**
+     * Opens the content as stored in the zip file, i.e. without decompressing it. Returns null when the content cannot be read this way.
+     */
+    @Nullable
+    InputStream openRaw();
+}
@@ -15,6 +15,8 @@
  */
 package org.gradle.api.internal.file.archive;
 
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.tools.zip.UnixStat;
 import org.apache.tools.zip.Zip64RequiredException;
 import org.apache.tools.zip.ZipEntry;
@@ -27,6 +29,7 @@
 import org.gradle.api.internal.file.CopyActionProcessingStreamAction;
 import org.gradle.api.internal.file.copy.CopyAction;
 import org.gradle.api.internal.file.copy.CopyActionProcessingStream;
+import org.gradle.api.internal.file.copy.DefaultZipCompressor;
 import org.gradle.api.internal.file.copy.FileCopyDetailsInternal;
 import org.gradle.api.internal.file.copy.ZipCompressor;
 import org.gradle.api.tasks.WorkResult;
@@ -34,7 +37,10 @@
 import org.gradle.api.tasks.bundling.Zip;
 import org.gradle.internal.IoActions;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 
@@ -61,17 +67,33 @@ public class ZipCopyAction implements CopyAction {
     private final DocumentationRegistry documentationRegistry;
     private final String encoding;
     private final boolean preserveFileTimestamps;
+    @Nullable
+    private final ZipEntryCompressionExecutor compressionExecutor;
 
     public ZipCopyAction(File zipFile, ZipCompressor compressor, DocumentationRegistry documentationRegistry, String encoding, boolean preserveFileTimestamps) {
+        this(zipFile, compressor, documentationRegistry, encoding, preserveFileTimestamps, null);
+    }
+
+    /**
+     * Creates an action which compresses the entries of the zip file using the threads of the given executor,
+     * and copies unmodified entries of other zip files without compressing them again, as long as the default compressor is used.
+     */
+    public ZipCopyAction(File zipFile, ZipCompressor compressor, DocumentationRegistry documentationRegistry, String encoding, boolean preserveFileTimestamps, @Nullable ZipEntryCompressionExecutor compressionExecutor) {
         this.zipFile = zipFile;
         this.compressor = compressor;
         this.documentationRegistry = documentationRegistry;
         this.encoding = encoding;
         this.preserveFileTimestamps = preserveFileTimestamps;
+        this.compressionExecutor = compressionExecutor;
     }
 
     @Override
     public WorkResult execute(final CopyActionProcessingStream stream) {
+        // Custom compressors may rely on the entries being written to the output stream they create
+        if (compressionExecutor != null && compressor.getClass() == DefaultZipCompressor.class) {
+            return executeInParallel(stream, (DefaultZipCompressor) compressor, compressionExecutor);
+        }
+
         final ZipOutputStream zipOutStr;
 
         try {
@@ -89,15 +111,55 @@ public void execute(ZipOutputStream outputStream) {
             });
         } catch (UncheckedIOException e) {
             if (e.getCause() instanceof Zip64RequiredException) {
-                throw new org.gradle.api.tasks.bundling.internal.Zip64RequiredException(
-                        String.format("%s\n\nTo build this archive, please enable the zip64 extension.\nSee: %s", e.getCause().getMessage(), documentationRegistry.getDslRefForProperty(Zip.class, "zip64"))
-                );
+                throw zip64Required(e.getCause());
             }
         }
 
         return WorkResults.didWork(true);
     }
 
+    private WorkResult executeInParallel(final CopyActionProcessingStream stream, DefaultZipCompressor compressor, final ZipEntryCompressionExecutor compressionExecutor) {
+        final ZipArchiveOutputStream zipOutStr;
+
+        try {
+            zipOutStr = compressor.createRawEntryArchiveOutputStream(zipFile);
+        } catch (Exception e) {
+            throw new GradleException(String.format("Could not create ZIP '%s'.", zipFile), e);
+        }
+
+        try {
+            IoActions.withResource(zipOutStr, new Action<ZipArchiveOutputStream>() {
+                @Override
+                public void execute(ZipArchiveOutputStream outputStream) {
+                    // Uses the platform's default character set when no encoding is given
+                    outputStream.setEncoding(encoding);
+                    ParallelZipArchiveWriter writer = new ParallelZipArchiveWriter(outputStream, compressor.getEntryCompressionMethod(), compressionExecutor);
+                    try {
+                        stream.process(new ParallelStreamAction(writer));
+                        writer.finish();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        writer.stop();
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof org.apache.commons.compress.archivers.zip.Zip64RequiredException) {
+                throw zip64Required(e.getCause());
+            }
+            throw e;
+        }
+
+        return WorkResults.didWork(true);
+    }
+
+    private RuntimeException zip64Required(Throwable cause) {
+        return new org.gradle.api.tasks.bundling.internal.Zip64RequiredException(
+                String.format("%s\n\nTo build this archive, please enable the zip64 extension.\nSee: %s", cause.getMessage(), documentationRegistry.getDslRefForProperty(Zip.class, "zip64"))
+        );
+    }
+
     private class StreamAction implements CopyActionProcessingStreamAction {
         private final ZipOutputStream zipOutStr;
 
@@ -144,6 +206,55 @@ private void visitDir(FileCopyDetails dirDetails) {
         }
     }
 
+    private class ParallelStreamAction implements CopyActionProcessingStreamAction {
+        private final ParallelZipArchiveWriter writer;
+
+        public ParallelStreamAction(ParallelZipArchiveWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void processFile(FileCopyDetailsInternal details) {
+            if (details.isDirectory()) {
+                visitDir(details);
+            } else {
+                visitFile(details);
+            }
+        }
+
+        private void visitFile(final FileCopyDetailsInternal fileDetails) {
+            try {
+                ZipArchiveEntry archiveEntry = new ZipArchiveEntry(fileDetails.getRelativePath().getPathString());
+                archiveEntry.setTime(getArchiveTimeFor(fileDetails));
+                archiveEntry.setUnixMode(UnixStat.FILE_FLAG | fileDetails.getMode());
+                RawZipEntryContent rawContent = fileDetails.getRawZipEntryContent();
+                if (rawContent != null && writer.addRawFile(archiveEntry, rawContent)) {
+                    return;
+                }
+                writer.addFile(archiveEntry, new Action<OutputStream>() {
+                    @Override
+                    public void execute(OutputStream outputStream) {
+                        fileDetails.copyTo(outputStream);
+                    }
+                });
+            } catch (Exception e) {
+                throw new GradleException(String.format("Could not add %s to ZIP '%s'.", fileDetails, zipFile), e);
+            }
+        }
+
+        private void visitDir(FileCopyDetails dirDetails) {
+            try {
+                // Trailing slash in name indicates that entry is a directory
+                ZipArchiveEntry archiveEntry = new ZipArchiveEntry(dirDetails.getRelativePath().getPathString() + '/');
+                archiveEntry.setTime(getArchiveTimeFor(dirDetails));
+                archiveEntry.setUnixMode(UnixStat.DIR_FLAG | dirDetails.getMode());
+                writer.addDirectory(archiveEntry);
+            } catch (Exception e) {
+                throw new GradleException(String.format("Could not add %s to ZIP '%s'.", dirDetails, zipFile), e);
+            }
+        }
+    }
+
     private long getArchiveTimeFor(FileCopyDetails details) {
         return preserveFileTimestamps ? details.getLastModified() : CONSTANT_TIME_FOR_ZIP_ENTRIES;
     }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive;
+
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.resources.ResourceLockCoordinationService;
+import org.gradle.internal.work.WorkerLeaseRegistry.WorkerLease;
+import org.gradle.internal.work.WorkerLeaseService;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ExecutorService;
+
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.tryLock;
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.unlock;
+
+/**
+ * The threads compressing the entries of zip files, shared by all archive tasks of a build session.
+ *
+ * <p>Each entry compressed by these threads takes a worker lease, which is reserved by the thread creating the zip file.
+ * When no worker lease is available, the entry is compressed by the thread creating the zip file instead, so the number of threads
+ * compressing entries never exceeds the max worker count.</p>
+ */
+public class ZipEntryCompressionExecutor implements Stoppable {
+    private final ManagedExecutor executor;
+    private final WorkerLeaseService workerLeaseService;
+    private final ResourceLockCoordinationService coordinationService;
+
+    public ZipEntryCompressionExecutor(ExecutorFactory executorFactory, WorkerLeaseService workerLeaseService, ResourceLockCoordinationService coordinationService) {
+        this.executor = executorFactory.create("Zip entry compression", workerLeaseService.getMaxWorkerCount());
+        this.workerLeaseService = workerLeaseService;
+        this.coordinationService = coordinationService;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public int getMaxParallelism() {
+        return workerLeaseService.getMaxWorkerCount();
+    }
+
+    /**
+     * Starts reserving worker leases on behalf of the current thread, which must hold a worker lease.
+     * The leases must be reserved and released by the current thread.
+     */
+    public CompressionLeases startCompression() {
+        return new CompressionLeases(workerLeaseService.getCurrentWorkerLease());
+    }
+
+    @Override
+    public void stop() {
+        executor.stop();
+    }
+
+    public class CompressionLeases {
+        private final WorkerLease workerLease;
+        @Nullable
+        private WorkerLease ownLease;
+
+        private CompressionLeases(WorkerLease workerLease) {
+            this.workerLease = workerLease;
+            // The first child lease shares the lease of the current thread, which compresses entries itself, so it is kept by the current thread
+            WorkerLease childLease = workerLease.createChild();
+            if (coordinationService.withStateLock(tryLock(childLease))) {
+                ownLease = childLease;
+            }
+        }
+
+        /**
+         * Reserves a worker lease for compressing an entry on the shared threads, or returns null when no worker lease is available.
+         */
+        @Nullable
+        public WorkerLease tryReserve() {
+            WorkerLease childLease = workerLease.createChild();
+            return coordinationService.withStateLock(tryLock(childLease)) ? childLease : null;
+        }
+
+        public void release(WorkerLease lease) {
+            coordinationService.withStateLock(unlock(lease));
+        }
+
+        /**
+         * Releases the lease kept by the current thread. Any leases reserved by {@link #tryReserve()} must have been released before.
+         */
+        public void stop() {
+            if (ownLease != null) {
+                release(ownLease);
+                ownLease = null;
+            }
+        }
+    }
+}
@@ -15,8 +15,10 @@
  */
 package org.gradle.api.internal.file.archive;
 
-import org.apache.tools.zip.ZipEntry;
-import org.apache.tools.zip.ZipFile;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.gradle.api.GradleException;
 import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.UncheckedIOException;
@@ -26,19 +28,31 @@
 import org.gradle.api.internal.file.AbstractFileTreeElement;
 import org.gradle.api.internal.file.collections.DirectoryFileTree;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.file.Chmod;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+import org.gradle.util.GFileUtils;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * A file tree backed by a zip file. The entries are read directly from the zip file while it is visited. An entry is only extracted to
+ * the expanded directory when its {@link FileVisitDetails#getFile()} is queried, so visitors which only read the content or the metadata
+ * of the entries do not write anything to disk.
+ *
+ * <p>The details passed to the visitor can be used from several threads until the visit returns, which allows visitors
+ * to process the entries in parallel.</p>
+ */
 public class ZipFileTree extends AbstractArchiveFileTree {
     private final File zipFile;
     private final File tmpDir;
@@ -81,20 +95,21 @@ public void visit(FileVisitor visitor) {
         AtomicBoolean stopFlag = new AtomicBoolean();
 
         try {
-            ZipFile zip = new ZipFile(zipFile);
-            File expandedDir = getExpandedDir();
+            // Use the platform's default character set for entry names, unless an entry is flagged as UTF-8
+            ZipFile zip = new ZipFile(zipFile, Charset.defaultCharset().name());
+            // Hashing the zip file can be expensive, so only do it when an entry needs to be extracted
+            Supplier<File> expandedDir = Suppliers.memoize(this::getExpandedDir);
             try {
-                // The iteration order of zip.getEntries() is based on the hash of the zip entry. This isn't much use
-                // to us. So, collect the entries in a map and iterate over them in alphabetical order.
-                Map<String, ZipEntry> entriesByName = new TreeMap<String, ZipEntry>();
-                Enumeration entries = zip.getEntries();
+                // Collect the entries in a map and iterate over them in alphabetical order, regardless of the order in the zip file.
+                Map<String, ZipArchiveEntry> entriesByName = new TreeMap<String, ZipArchiveEntry>();
+                Enumeration<ZipArchiveEntry> entries = zip.getEntries();
                 while (entries.hasMoreElements()) {
-                    ZipEntry entry = (ZipEntry) entries.nextElement();
+                    ZipArchiveEntry entry = entries.nextElement();
                     entriesByName.put(entry.getName(), entry);
                 }
-                Iterator<ZipEntry> sortedEntries = entriesByName.values().iterator();
+                Iterator<ZipArchiveEntry> sortedEntries = entriesByName.values().iterator();
                 while (!stopFlag.get() && sortedEntries.hasNext()) {
-                    ZipEntry entry = sortedEntries.next();
+                    ZipArchiveEntry entry = sortedEntries.next();
                     if (entry.isDirectory()) {
                         visitor.visitDir(new DetailsImpl(zipFile, expandedDir, entry, zip, stopFlag, chmod));
                     } else {
@@ -119,15 +134,16 @@ private File getExpandedDir() {
         return new File(tmpDir, expandedDirName);
     }
 
-    private static class DetailsImpl extends AbstractFileTreeElement implements FileVisitDetails {
+    private static class DetailsImpl extends AbstractFileTreeElement implements FileVisitDetails, RawZipEntryContent {
         private final File originalFile;
-        private final File expandedDir;
-        private final ZipEntry entry;
+        private final Supplier<File> expandedDir;
+        private final ZipArchiveEntry entry;
         private final ZipFile zip;
         private final AtomicBoolean stopFlag;
-        private File file;
+        private RelativePath relativePath;
+        private volatile File file;
 
-        public DetailsImpl(File originalFile, File expandedDir, ZipEntry entry, ZipFile zip, AtomicBoolean stopFlag, Chmod chmod) {
+        public DetailsImpl(File originalFile, Supplier<File> expandedDir, ZipArchiveEntry entry, ZipFile zip, AtomicBoolean stopFlag, Chmod chmod) {
             super(chmod);
             this.originalFile = originalFile;
             this.expandedDir = expandedDir;
@@ -149,14 +165,45 @@ public void stopVisiting() {
         @Override
         public File getFile() {
             if (file == null) {
-                file = new File(expandedDir, entry.getName());
-                if (!file.exists()) {
-                    copyTo(file);
+                synchronized (this) {
+                    if (file == null) {
+                        File expandedFile = new File(expandedDir.get(), entry.getName());
+                        if (!expandedFile.exists()) {
+                            expandTo(expandedFile);
+                        }
+                        file = expandedFile;
+                    }
                 }
             }
             return file;
         }
 
+        /**
+         * Extracts the entry to a temporary file first, so that other visits of the same zip file never see a partially extracted file.
+         */
+        private void expandTo(File expandedFile) {
+            if (entry.isDirectory()) {
+                copyTo(expandedFile);
+                return;
+            }
+            GFileUtils.mkdirs(expandedFile.getParentFile());
+            File tmpFile;
+            try {
+                // The prefix has to be at least three characters long, so the name of the entry cannot be used
+                tmpFile = File.createTempFile("zip-entry", ".tmp", expandedFile.getParentFile());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            copyTo(tmpFile);
+            if (!tmpFile.renameTo(expandedFile)) {
+                // Another visit has extracted the entry in the meantime
+                GFileUtils.deleteQuietly(tmpFile);
+                if (!expandedFile.isFile()) {
+                    throw new UncheckedIOException(String.format("Could not extract %s to '%s'.", getDisplayName(), expandedFile));
+                }
+            }
+        }
+
         @Override
         public long getLastModified() {
             return entry.getTime();
@@ -181,9 +228,41 @@ public InputStream open() {
             }
         }
 
+        @Override
+        public int getMethod() {
+            return entry.getMethod();
+        }
+
+        @Override
+        public long getCrc() {
+            return entry.getCrc();
+        }
+
+        @Override
+        public long getCompressedSize() {
+            return entry.getCompressedSize();
+        }
+
+        @Nullable
+        @Override
+        public InputStream openRaw() {
+            if (entry.getGeneralPurposeBit().usesEncryption() || entry.getCrc() == -1 || entry.getCompressedSize() == -1 || entry.getSize() == -1) {
+                return null;
+            }
+            // Depending on the version of commons-compress, this declares an IOException
+            try {
+                return zip.getRawInputStream(entry);
+            } catch (Exception e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
         @Override
         public RelativePath getRelativePath() {
-            return new RelativePath(!entry.isDirectory(), entry.getName().split("/"));
+            if (relativePath == null) {
+                relativePath = new RelativePath(!entry.isDirectory(), entry.getName().split("/"));
+            }
+            return relativePath;
         }
 
         @Override
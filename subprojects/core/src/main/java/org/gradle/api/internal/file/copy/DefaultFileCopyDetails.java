@@ -23,6 +23,7 @@
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.RelativePath;
 import org.gradle.api.internal.file.AbstractFileTreeElement;
+import org.gradle.api.internal.file.archive.RawZipEntryContent;
 import org.gradle.internal.file.Chmod;
 
 import javax.annotation.Nullable;
@@ -115,6 +116,15 @@ public void copyTo(OutputStream output) {
         }
     }
 
+    @Nullable
+    @Override
+    public RawZipEntryContent getRawZipEntryContent() {
+        if (!filterChain.hasFilters() && fileDetails instanceof RawZipEntryContent) {
+            return (RawZipEntryContent) fileDetails;
+        }
+        return null;
+    }
+
     @Override
     public boolean copyTo(File target) {
         if (filterChain.hasFilters()) {
@@ -15,6 +15,7 @@
  */
 package org.gradle.api.internal.file.copy;
 
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.tools.zip.Zip64Mode;
 import org.apache.tools.zip.ZipOutputStream;
 import org.gradle.api.UncheckedIOException;
@@ -25,13 +26,19 @@
 
 public class DefaultZipCompressor implements ZipCompressor {
     private final int entryCompressionMethod;
+    private final boolean allowZip64Mode;
     private final Zip64Mode zip64Mode;
 
     public DefaultZipCompressor(boolean allowZip64Mode, int entryCompressionMethod) {
         this.entryCompressionMethod = entryCompressionMethod;
+        this.allowZip64Mode = allowZip64Mode;
         zip64Mode = allowZip64Mode ? Zip64Mode.AsNeeded : Zip64Mode.Never;
     }
 
+    public int getEntryCompressionMethod() {
+        return entryCompressionMethod;
+    }
+
     @Override
     public ZipOutputStream createArchiveOutputStream(File destination) throws IOException {
         ZipOutputStream outStream = new ZipOutputStream(destination);
@@ -46,4 +53,20 @@ public ZipOutputStream createArchiveOutputStream(File destination) throws IOExce
         }
     }
 
+    /**
+     * Creates an output stream with the same settings, which can also write entries whose content has been compressed already.
+     */
+    public ZipArchiveOutputStream createRawEntryArchiveOutputStream(File destination) throws IOException {
+        ZipArchiveOutputStream outStream = new ZipArchiveOutputStream(destination);
+        try {
+            outStream.setUseZip64(allowZip64Mode ? org.apache.commons.compress.archivers.zip.Zip64Mode.AsNeeded : org.apache.commons.compress.archivers.zip.Zip64Mode.Never);
+            outStream.setMethod(entryCompressionMethod);
+            return outStream;
+        } catch (Exception e) {
+            IoActions.closeQuietly(outStream);
+            String message = String.format("Unable to create ZIP output stream for file %s.", destination);
+            throw new UncheckedIOException(message, e);
+        }
+    }
+
 }
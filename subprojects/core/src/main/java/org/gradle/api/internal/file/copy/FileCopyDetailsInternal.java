@@ -17,10 +17,19 @@
 package org.gradle.api.internal.file.copy;
 
 import org.gradle.api.file.FileCopyDetails;
+import org.gradle.api.internal.file.archive.RawZipEntryContent;
+
+import javax.annotation.Nullable;
 
 public interface FileCopyDetailsInternal extends FileCopyDetails {
 
     boolean isIncludeEmptyDirs();
 
     boolean isDefaultDuplicatesStrategy();
+
+    /**
+     * Returns the content of this file as stored in a zip file, when the file is copied from a zip file without modifying its content.
+     */
+    @Nullable
+    RawZipEntryContent getRawZipEntryContent();
 }
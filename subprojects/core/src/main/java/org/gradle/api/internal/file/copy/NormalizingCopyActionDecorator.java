@@ -24,6 +24,7 @@
 import org.gradle.api.file.RelativePath;
 import org.gradle.api.internal.file.AbstractFileTreeElement;
 import org.gradle.api.internal.file.CopyActionProcessingStreamAction;
+import org.gradle.api.internal.file.archive.RawZipEntryContent;
 import org.gradle.api.tasks.WorkResult;
 import org.gradle.internal.file.Chmod;
 
@@ -206,6 +207,11 @@ public RelativePath getRelativeSourcePath() {
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        public RawZipEntryContent getRawZipEntryContent() {
+            return null;
+        }
+
         @Override
         public ContentFilterable filter(Map<String, ?> properties, Class<? extends FilterReader> filterType) {
             throw new UnsupportedOperationException();
@@ -35,6 +35,7 @@
 import org.gradle.api.tasks.FileNormalizer;
 import org.gradle.api.tasks.TaskInputPropertyBuilder;
 import org.gradle.api.tasks.TaskInputs;
+import org.gradle.internal.execution.history.BeforeExecutionState;
 
 import javax.annotation.Nullable;
 import java.util.Collections;
@@ -53,6 +54,7 @@ public class DefaultTaskInputs implements TaskInputsInternal {
     private final List<TaskInputPropertyRegistration> registeredProperties = Lists.newArrayList();
     private final FilePropertyContainer<TaskInputFilePropertyRegistration> registeredFileProperties = FilePropertyContainer.create();
     private final TaskInputs deprecatedThis;
+    private BeforeExecutionState beforeExecutionState;
 
     public DefaultTaskInputs(TaskInternal task, TaskMutator taskMutator, PropertyWalker propertyWalker, FileCollectionFactory fileCollectionFactory) {
         this.task = task;
@@ -72,6 +74,17 @@ public boolean getHasInputs() {
         return visitor.hasInputs();
     }
 
+    @Override
+    public void setBeforeExecutionState(@Nullable BeforeExecutionState beforeExecutionState) {
+        this.beforeExecutionState = beforeExecutionState;
+    }
+
+    @Nullable
+    @Override
+    public BeforeExecutionState getBeforeExecutionState() {
+        return beforeExecutionState;
+    }
+
     @Override
     public void visitRegisteredProperties(PropertyVisitor visitor) {
         for (TaskInputFilePropertyRegistration registration : registeredFileProperties) {
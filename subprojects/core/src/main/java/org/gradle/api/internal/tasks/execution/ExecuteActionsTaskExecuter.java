@@ -25,6 +25,7 @@
 import org.gradle.api.execution.TaskExecutionListener;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.internal.GeneratedSubclasses;
+import org.gradle.api.internal.TaskInputsInternal;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.TaskOutputsInternal;
 import org.gradle.api.internal.file.FileCollectionFactory;
@@ -263,10 +264,13 @@ public WorkResult execute(@Nullable InputChangesInternal inputChanges, InputChan
                 .orElseGet(fileCollectionFactory::empty);
             TaskOutputsInternal outputs = task.getOutputs();
             outputs.setPreviousOutputFiles(previousFiles);
+            TaskInputsInternal inputs = task.getInputs();
+            inputs.setBeforeExecutionState(context.getBeforeExecutionState().orElse(null));
             try {
                 return executeWithPreviousOutputFiles(inputChanges);
             } finally {
                 outputs.setPreviousOutputFiles(null);
+                inputs.setBeforeExecutionState(null);
             }
         }
 
@@ -17,6 +17,7 @@
 package org.gradle.internal.fingerprint.classpath.impl;
 
 import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.changedetection.state.ParallelZipEntryHasher;
 import org.gradle.api.internal.changedetection.state.ResourceSnapshotterCacheService;
 import org.gradle.api.internal.changedetection.state.RuntimeClasspathResourceHasher;
 import org.gradle.api.tasks.ClasspathNormalizer;
@@ -26,11 +27,14 @@
 import org.gradle.internal.fingerprint.classpath.ClasspathResourceFilters;
 import org.gradle.internal.fingerprint.impl.AbstractFileCollectionFingerprinter;
 
+import javax.annotation.Nullable;
+
 public class DefaultClasspathFingerprinter extends AbstractFileCollectionFingerprinter implements ClasspathFingerprinter {
     public DefaultClasspathFingerprinter(
         ResourceSnapshotterCacheService cacheService,
         FileCollectionSnapshotter fileCollectionSnapshotter,
         ClasspathResourceFilters classpathResourceFilters,
+        @Nullable ParallelZipEntryHasher parallelEntryHasher,
         StringInterner stringInterner
     ) {
         super(
@@ -38,6 +42,7 @@ public DefaultClasspathFingerprinter(
                 classpathResourceFilters,
                 new RuntimeClasspathResourceHasher(),
                 cacheService,
+                parallelEntryHasher,
                 stringInterner
             ),
             fileCollectionSnapshotter
@@ -27,6 +27,7 @@
 import org.gradle.api.internal.changedetection.state.CrossBuildFileHashCache;
 import org.gradle.api.internal.changedetection.state.DefaultResourceSnapshotterCacheService;
 import org.gradle.api.internal.changedetection.state.GlobalScopeFileTimeStampInspector;
+import org.gradle.api.internal.changedetection.state.ParallelZipEntryHasher;
 import org.gradle.api.internal.changedetection.state.ResourceSnapshotterCacheService;
 import org.gradle.api.internal.changedetection.state.SplitFileHasher;
 import org.gradle.api.internal.changedetection.state.SplitResourceSnapshotterCacheService;
@@ -41,6 +42,7 @@
 import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.initialization.layout.ProjectCacheDir;
 import org.gradle.internal.classloader.ClasspathHasher;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.OutputChangeListener;
 import org.gradle.internal.file.Stat;
@@ -81,10 +83,12 @@
 import org.gradle.internal.watch.vfs.WatchingAwareVirtualFileSystem;
 import org.gradle.internal.watch.vfs.impl.DelegatingDiffCapturingUpdateFunctionDecorator;
 import org.gradle.internal.watch.vfs.impl.NonWatchingVirtualFileSystem;
+import org.gradle.internal.watch.vfs.impl.PersistentVirtualFileSystemState;
 import org.gradle.internal.watch.vfs.impl.WatchingVirtualFileSystem;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -114,6 +118,12 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
      */
     public static final String VFS_DROP_PROPERTY = "org.gradle.unsafe.vfs.drop";
 
+    /**
+     * When watching the file system, this system property can be set on the daemon to persist the VFS
+     * when the daemon stops, so the next daemon starts with a VFS which is validated against the file system.
+     */
+    public static final String VFS_PERSIST_STATE_PROPERTY = "org.gradle.unsafe.vfs.persist-state";
+
     public static boolean isPartialInvalidationEnabled(StartParameterInternal startParameter) {
         return startParameter.isWatchFileSystem()
             || isSystemPropertyEnabled(VFS_PARTIAL_INVALIDATION_ENABLED_PROPERTY, startParameter.getSystemPropertiesArgs());
@@ -166,7 +176,8 @@ WatchingAwareVirtualFileSystem createVirtualFileSystem(
             FileSystem fileSystem,
             Stat stat,
             StringInterner stringInterner,
-            ListenerManager listenerManager
+            ListenerManager listenerManager,
+            CacheScopeMapping cacheScopeMapping
         ) {
             Predicate<String> watchFilter = path -> !additiveCacheLocations.isInsideAdditiveCache(path);
             DelegatingDiffCapturingUpdateFunctionDecorator updateFunctionDecorator = new DelegatingDiffCapturingUpdateFunctionDecorator(watchFilter);
@@ -183,7 +194,8 @@ WatchingAwareVirtualFileSystem createVirtualFileSystem(
                     watcherRegistryFactory,
                     delegate,
                     updateFunctionDecorator,
-                    watchFilter
+                    watchFilter,
+                    createPersistentState(cacheScopeMapping, stat)
                 ))
                 .orElse(new NonWatchingVirtualFileSystem(delegate));
             listenerManager.addListener(new VirtualFileSystemBuildLifecycleListener(
@@ -192,6 +204,14 @@ WatchingAwareVirtualFileSystem createVirtualFileSystem(
             return watchingAwareVirtualFileSystem;
         }
 
+        @Nullable
+        private PersistentVirtualFileSystemState createPersistentState(CacheScopeMapping cacheScopeMapping, Stat stat) {
+            if (!isSystemPropertyEnabled(VFS_PERSIST_STATE_PROPERTY, Collections.emptyMap())) {
+                return null;
+            }
+            return new PersistentVirtualFileSystemState(cacheScopeMapping.getBaseDirectory(null, "vfs", VersionStrategy.CachePerVersion), stat);
+        }
+
         private Optional<FileWatcherRegistryFactory> determineWatcherRegistryFactory(OperatingSystem operatingSystem) {
             if (operatingSystem.isMacOsX()) {
                 return Optional.of(new DarwinFileWatcherRegistryFactory());
@@ -220,7 +240,7 @@ ResourceSnapshotterCacheService createResourceSnapshotterCacheService(CrossBuild
         }
 
         ClasspathFingerprinter createClasspathFingerprinter(ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner) {
-            return new DefaultClasspathFingerprinter(resourceSnapshotterCacheService, fileCollectionSnapshotter, ClasspathResourceFilters.NONE, stringInterner);
+            return new DefaultClasspathFingerprinter(resourceSnapshotterCacheService, fileCollectionSnapshotter, ClasspathResourceFilters.NONE, null, stringInterner);
         }
 
         ClasspathHasher createClasspathHasher(ClasspathFingerprinter fingerprinter, FileCollectionFactory fileCollectionFactory) {
@@ -342,8 +362,17 @@ ResourceSnapshotterCacheService createResourceSnapshotterCacheService(
             return new SplitResourceSnapshotterCacheService(globalCache, localCache, additiveCacheLocations);
         }
 
-        CompileClasspathFingerprinter createCompileClasspathFingerprinter(ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner) {
-            return new DefaultCompileClasspathFingerprinter(resourceSnapshotterCacheService, fileCollectionSnapshotter, stringInterner);
+        CompileClasspathFingerprinter createCompileClasspathFingerprinter(
+            ResourceSnapshotterCacheService resourceSnapshotterCacheService,
+            ParallelZipEntryHasher parallelZipEntryHasher,
+            FileCollectionSnapshotter fileCollectionSnapshotter,
+            StringInterner stringInterner
+        ) {
+            return new DefaultCompileClasspathFingerprinter(resourceSnapshotterCacheService, parallelZipEntryHasher, fileCollectionSnapshotter, stringInterner);
+        }
+
+        ParallelZipEntryHasher createParallelZipEntryHasher(ExecutorFactory executorFactory, StartParameter startParameter) {
+            return new ParallelZipEntryHasher(executorFactory, startParameter.getMaxWorkerCount());
         }
 
     }
@@ -17,6 +17,7 @@
 package org.gradle.api.internal.changedetection.state
 
 import com.google.common.collect.ImmutableSet
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.file.FileMetadata.AccessType
 import org.gradle.internal.file.impl.DefaultFileMetadata
 import org.gradle.internal.hash.HashCode
@@ -40,6 +41,13 @@ class ZipHasherTest extends Specification {
     ResourceEntryFilter propertyResourceFilter = new IgnoringResourceEntryFilter(ImmutableSet.copyOf("created-by", "पशुपतिरपि"))
     ZipHasher zipHasher = new ZipHasher(resourceHasher(ResourceEntryFilter.FILTER_NOTHING, ResourceEntryFilter.FILTER_NOTHING), ResourceFilter.FILTER_NOTHING)
     ZipHasher ignoringZipHasher = new ZipHasher(resourceHasher(manifestResourceFilter, propertyResourceFilter), ResourceFilter.FILTER_NOTHING)
+    def executorFactory = new DefaultExecutorFactory()
+    def parallelEntryHasher = new ParallelZipEntryHasher(executorFactory, 4)
+
+    def cleanup() {
+        parallelEntryHasher.stop()
+        executorFactory.stop()
+    }
 
     static ResourceHasher resourceHasher(ResourceEntryFilter manifestResourceFilter, ResourceEntryFilter propertyResourceFilter) {
         ManifestFileZipEntryHasher manifestZipEntryHasher = new ManifestFileZipEntryHasher(manifestResourceFilter)
@@ -146,6 +154,31 @@ class ZipHasherTest extends Specification {
         hash1 == hash2
     }
 
+    def "hashing the entries of a large jar in parallel produces the same hashcode"() {
+        given:
+        def content = tmpDir.createDir("content")
+        200.times { content.file("org/gradle/Resource${it}.txt") << "Resource ${it}" }
+        def innerContent = tmpDir.createDir("inner")
+        innerContent.file("foo") << "Foo"
+        innerContent.zipTo(content.file("inner.jar"))
+        def jarfile = tmpDir.file("test.jar")
+        content.zipTo(jarfile)
+        def resourceHasher = resourceHasher(ResourceEntryFilter.FILTER_NOTHING, ResourceEntryFilter.FILTER_NOTHING)
+
+        def sequentialHash = new ZipHasher(resourceHasher, ResourceFilter.FILTER_NOTHING).hash(snapshot(jarfile))
+        def parallelHash = new ZipHasher(resourceHasher, ResourceFilter.FILTER_NOTHING, parallelEntryHasher).hash(snapshot(jarfile))
+
+        expect:
+        sequentialHash == parallelHash
+
+        when:
+        content.file("org/gradle/Resource100.txt").text = "Changed"
+        content.zipTo(jarfile)
+
+        then:
+        new ZipHasher(resourceHasher, ResourceFilter.FILTER_NOTHING, parallelEntryHasher).hash(snapshot(jarfile)) != parallelHash
+    }
+
     def createJarWithAttributes(TestFile jarfile, Map<String, String> attributes) {
         def manifest = new Manifest()
         def mainAttributes = manifest.getMainAttributes()
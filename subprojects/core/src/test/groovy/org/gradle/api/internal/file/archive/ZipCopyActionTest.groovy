@@ -24,6 +24,12 @@ import org.gradle.api.internal.file.copy.CopyActionProcessingStream
 import org.gradle.api.internal.file.copy.DefaultZipCompressor
 import org.gradle.api.internal.file.copy.FileCopyDetailsInternal
 import org.gradle.api.tasks.bundling.Zip
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService
+import org.gradle.internal.work.DefaultWorkerLeaseService
 import org.gradle.test.fixtures.archive.ZipTestFixture
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -31,6 +37,10 @@ import org.junit.Rule
 import org.junit.Test
 import spock.lang.Specification
 
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+
 import static org.gradle.api.internal.file.copy.CopyActionExecuterUtil.visit
 import static org.hamcrest.CoreMatchers.equalTo
 
@@ -41,8 +51,17 @@ class ZipCopyActionTest extends Specification {
 
     ZipCopyAction visitor
     TestFile zipFile
+    def executorFactory = new DefaultExecutorFactory()
+    def coordinationService = new DefaultResourceLockCoordinationService()
+    def workerLeaseService = new DefaultWorkerLeaseService(coordinationService, new DefaultParallelismConfiguration(false, 4))
+    def compressionExecutor = new ZipEntryCompressionExecutor(executorFactory, workerLeaseService, coordinationService)
     def encoding = 'UTF-8'
 
+    def cleanup() {
+        executorFactory.stop()
+        workerLeaseService.stop()
+    }
+
     def setup() {
         zipFile = tmpDir.getTestDirectory().file("test.zip")
         visitor = new ZipCopyAction(zipFile, new DefaultZipCompressor(false, ZipOutputStream.STORED), new DocumentationRegistry(), encoding, false)
@@ -74,6 +93,91 @@ class ZipCopyActionTest extends Specification {
         expandDir.file("file2").assertContents(equalTo("contents of file2"))
     }
 
+    void createsZipFileCompressingEntriesInParallel() {
+        given:
+        visitor = new ZipCopyAction(zipFile, new DefaultZipCompressor(false, ZipOutputStream.DEFLATED), new DocumentationRegistry(), encoding, false, compressionExecutor)
+        def largeContent = "large file content" * 500000
+        def files = [dir("dir")] + (1..20).collect { file("dir/file$it") } + [largeFile("dir/large", largeContent), file("file2")]
+        zip(files as FileCopyDetailsInternal[])
+
+        expect:
+        def entries = new java.util.zip.ZipFile(zipFile).withCloseable { zip ->
+            zip.entries().collect { entry -> [entry.name, zip.getInputStream(entry).text] }
+        }
+        entries*.getAt(0) == ["dir/"] + (1..20).collect { "dir/file$it" } + ["dir/large", "file2"]
+        entries.find { it[0] == "dir/file7" }[1] == "contents of dir/file7"
+        entries.find { it[0] == "dir/large" }[1] == largeContent
+        def zipFixture = new ZipTestFixture(zipFile)
+        zipFixture.assertFileMode("dir/", 2)
+        zipFixture.assertFileMode("file2", 1)
+    }
+
+    void compressesEntriesOfSmallZipFileOnCallingThread() {
+        given:
+        def executor = Mock(ManagedExecutor)
+        def executorFactory = Stub(ExecutorFactory) {
+            create(_, _) >> executor
+        }
+        visitor = new ZipCopyAction(zipFile, new DefaultZipCompressor(false, ZipOutputStream.DEFLATED), new DocumentationRegistry(), encoding, false, new ZipEntryCompressionExecutor(executorFactory, workerLeaseService, coordinationService))
+
+        when:
+        zip(dir("dir"), file("dir/file1"), file("file2"))
+
+        then:
+        0 * executor._
+
+        and:
+        def zipFixture = new ZipTestFixture(zipFile)
+        zipFixture.content("dir/file1") == "contents of dir/file1"
+        zipFixture.content("file2") == "contents of file2"
+    }
+
+    void compressesEntriesOnCallingThreadWhenNoWorkerLeaseIsAvailable() {
+        given:
+        def executor = Mock(ManagedExecutor)
+        def executorFactory = Stub(ExecutorFactory) {
+            create(_, _) >> executor
+        }
+        workerLeaseService = new DefaultWorkerLeaseService(coordinationService, new DefaultParallelismConfiguration(false, 1))
+        visitor = new ZipCopyAction(zipFile, new DefaultZipCompressor(false, ZipOutputStream.DEFLATED), new DocumentationRegistry(), encoding, false, new ZipEntryCompressionExecutor(executorFactory, workerLeaseService, coordinationService))
+
+        when:
+        zip((1..20).collect { file("file$it") } as FileCopyDetailsInternal[])
+
+        then:
+        0 * executor._
+
+        and:
+        new ZipTestFixture(zipFile).content("file20") == "contents of file20"
+    }
+
+    void copiesCompressedContentOfUnmodifiedZipEntries() {
+        given:
+        visitor = new ZipCopyAction(zipFile, new DefaultZipCompressor(false, ZipOutputStream.DEFLATED), new DocumentationRegistry(), encoding, false, compressionExecutor)
+        zip(file("file1"), zipEntry("file2", "contents of zip entry"), file("file3"))
+
+        expect:
+        def zipFixture = new ZipTestFixture(zipFile)
+        zipFixture.assertContainsFile("file2")
+        zipFixture.content("file2") == "contents of zip entry"
+        zipFixture.content("file3") == "contents of file3"
+    }
+
+    void recompressesZipEntriesCompressedWithOtherMethod() {
+        given:
+        visitor = new ZipCopyAction(zipFile, new DefaultZipCompressor(false, ZipOutputStream.STORED), new DocumentationRegistry(), encoding, false, compressionExecutor)
+        def entry = zipEntry("file", "contents of zip entry")
+        entry.copyTo(_ as OutputStream) >> { OutputStream out ->
+            out << "contents of zip entry"
+        }
+
+        when:
+        zip(entry)
+
+        then:
+        new ZipTestFixture(zipFile).content("file") == "contents of zip entry"
+    }
+
     void zipFileContainsExpectedPermissions() {
         given:
         zip(dir("dir"), file("file"))
@@ -145,13 +249,16 @@ class ZipCopyActionTest extends Specification {
     }
 
     private void zip(final FileCopyDetailsInternal... files) {
-        visitor.execute(new CopyActionProcessingStream() {
-            void process(CopyActionProcessingStreamAction action) {
-                for (FileCopyDetailsInternal f : files) {
-                    action.processFile(f)
+        // Archive tasks create zip files while holding a worker lease
+        workerLeaseService.withLocks([workerLeaseService.getWorkerLease()], {
+            visitor.execute(new CopyActionProcessingStream() {
+                void process(CopyActionProcessingStreamAction action) {
+                    for (FileCopyDetailsInternal f : files) {
+                        action.processFile(f)
+                    }
                 }
-            }
-        })
+            })
+        } as Runnable)
     }
 
     private FileCopyDetailsInternal file(final String path) {
@@ -166,6 +273,42 @@ class ZipCopyActionTest extends Specification {
         mock
     }
 
+    private FileCopyDetailsInternal largeFile(final String path, final String content) {
+        def mock = Mock(FileCopyDetailsInternal)
+        mock.getRelativePath() >> RelativePath.parse(false, path)
+        mock.getLastModified() >> 1000L
+        mock.isDirectory() >> false
+        mock.getMode() >> 1
+        mock.copyTo(_ as OutputStream) >> { OutputStream out ->
+            out << content
+        }
+        mock
+    }
+
+    private FileCopyDetailsInternal zipEntry(final String path, final String content) {
+        def bytes = content.bytes
+        def compressed = new ByteArrayOutputStream()
+        def deflaterStream = new DeflaterOutputStream(compressed, new Deflater(Deflater.DEFAULT_COMPRESSION, true))
+        deflaterStream.write(bytes)
+        deflaterStream.close()
+        def crc = new CRC32()
+        crc.update(bytes)
+        def rawContent = Stub(RawZipEntryContent) {
+            getMethod() >> java.util.zip.ZipEntry.DEFLATED
+            getCrc() >> crc.value
+            getSize() >> bytes.length
+            getCompressedSize() >> compressed.size()
+            openRaw() >> { new ByteArrayInputStream(compressed.toByteArray()) }
+        }
+        def mock = Mock(FileCopyDetailsInternal)
+        mock.getRelativePath() >> RelativePath.parse(false, path)
+        mock.getLastModified() >> 1000L
+        mock.isDirectory() >> false
+        mock.getMode() >> 1
+        mock.getRawZipEntryContent() >> rawContent
+        mock
+    }
+
     private FileCopyDetailsInternal dir(final String path) {
         def mock = Mock(FileCopyDetailsInternal)
         mock.getRelativePath() >> RelativePath.parse(false, path)
@@ -15,17 +15,33 @@
  */
 package org.gradle.api.internal.file.archive;
 
+import org.apache.commons.io.IOUtils;
 import org.gradle.api.GradleException;
 import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.EmptyFileVisitor;
+import org.gradle.api.file.FileVisitDetails;
 import org.gradle.test.fixtures.file.TestFile;
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider;
 import org.gradle.util.Resources;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
 
 import static org.gradle.api.file.FileVisitorUtil.*;
 import static org.gradle.api.internal.file.TestFiles.*;
@@ -123,6 +139,110 @@ public void expectedDefaultForNoModeZips() {
         assertVisitsPermissions(tree, expected);
     }
 
+    @Test
+    public void doesNotExtractEntriesWhichAreOnlyRead() {
+        rootDir.file("subdir/file1.txt").write("content");
+        rootDir.zipTo(zipFile);
+
+        final List<String> contents = new ArrayList<String>();
+        tree.visit(new EmptyFileVisitor() {
+            @Override
+            public void visitFile(FileVisitDetails fileDetails) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                fileDetails.copyTo(outputStream);
+                contents.add(outputStream.toString());
+            }
+        });
+
+        assertThat(contents, equalTo(toList("content")));
+        expandDir.assertDoesNotExist();
+    }
+
+    @Test
+    public void extractsEntriesWithShortNames() {
+        rootDir.file("a").write("content a");
+        rootDir.file("bin/go").write("content go");
+        rootDir.zipTo(zipFile);
+
+        final Map<String, String> contents = new HashMap<String, String>();
+        tree.visit(new EmptyFileVisitor() {
+            @Override
+            public void visitFile(FileVisitDetails fileDetails) {
+                contents.put(fileDetails.getPath(), new TestFile(fileDetails.getFile()).getText());
+            }
+        });
+
+        Map<String, String> expected = new HashMap<String, String>();
+        expected.put("a", "content a");
+        expected.put("bin/go", "content go");
+        assertThat(contents, equalTo(expected));
+    }
+
+    @Test
+    public void entriesCanBeReadFromSeveralThreads() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            rootDir.file("file" + i + ".txt").write("content " + i);
+        }
+        rootDir.zipTo(zipFile);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> contents = new ArrayList<Future<String>>();
+            tree.visit(new EmptyFileVisitor() {
+                @Override
+                public void visitFile(final FileVisitDetails fileDetails) {
+                    contents.add(executor.submit(new Callable<String>() {
+                        @Override
+                        public String call() {
+                            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                            fileDetails.copyTo(outputStream);
+                            return outputStream.toString();
+                        }
+                    }));
+                    if (contents.size() == 10) {
+                        // The entries can only be read until the visit returns
+                        for (int i = 0; i < 10; i++) {
+                            try {
+                                assertThat(contents.get(i).get(), equalTo("content " + i));
+                            } catch (Exception e) {
+                                throw new RuntimeException(e);
+                            }
+                        }
+                    }
+                }
+            });
+            assertThat(contents.size(), equalTo(10));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void providesCompressedContentOfEntries() {
+        rootDir.file("file1.txt").write("content content content content");
+        rootDir.zipTo(zipFile);
+
+        final List<String> contents = new ArrayList<String>();
+        tree.visit(new EmptyFileVisitor() {
+            @Override
+            public void visitFile(FileVisitDetails fileDetails) {
+                RawZipEntryContent rawContent = (RawZipEntryContent) fileDetails;
+                try {
+                    InputStream rawStream = rawContent.openRaw();
+                    byte[] raw = IOUtils.toByteArray(rawStream);
+                    rawStream.close();
+                    assertThat((long) raw.length, equalTo(rawContent.getCompressedSize()));
+                    InputStream content = rawContent.getMethod() == ZipEntry.DEFLATED ? new InflaterInputStream(new ByteArrayInputStream(raw), new Inflater(true)) : new ByteArrayInputStream(raw);
+                    contents.add(IOUtils.toString(content, "UTF-8"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+
+        assertThat(contents, equalTo(toList("content content content content")));
+    }
+
     @Test
     public void doesNotOverwriteFilesOnSecondVisit() throws InterruptedException {
         rootDir.file("file1.txt").write("content");
@@ -19,6 +19,7 @@ import com.google.common.collect.ImmutableSortedMap
 import com.google.common.collect.ImmutableSortedSet
 import org.gradle.api.execution.TaskActionListener
 import org.gradle.api.file.FileCollection
+import org.gradle.api.internal.TaskInputsInternal
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.TaskOutputsInternal
 import org.gradle.api.internal.changedetection.TaskExecutionMode
@@ -84,6 +85,7 @@ import static org.gradle.internal.work.AsyncWorkTracker.ProjectLockRetention.REL
 
 class ExecuteActionsTaskExecuterTest extends Specification {
     def task = Mock(TaskInternal)
+    def taskInputs = Mock(TaskInputsInternal)
     def taskOutputs = Mock(TaskOutputsInternal)
     def action1 = Mock(InputChangesAwareTaskAction) {
         getActionImplementation(_ as ClassLoaderHierarchyHasher) >> ImplementationSnapshot.of("Action1", HashCode.fromInt(1234))
@@ -188,6 +190,7 @@ class ExecuteActionsTaskExecuterTest extends Specification {
         ProjectInternal project = Mock(ProjectInternal)
         task.getProject() >> project
         task.getState() >> state
+        task.getInputs() >> taskInputs
         task.getOutputs() >> taskOutputs
         task.getPath() >> "task"
         taskOutputs.setPreviousOutputFiles(_ as FileCollection)
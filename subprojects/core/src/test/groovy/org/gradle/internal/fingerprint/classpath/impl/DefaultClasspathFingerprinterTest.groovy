@@ -49,6 +49,7 @@ class DefaultClasspathFingerprinterTest extends Specification {
         cacheService,
         fileCollectionSnapshotter,
         ClasspathResourceFilters.NONE,
+        null,
         stringInterner)
 
     def "directories and missing files are ignored"() {
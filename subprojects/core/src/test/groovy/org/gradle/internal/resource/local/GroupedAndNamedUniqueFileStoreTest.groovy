@@ -19,6 +19,7 @@ package org.gradle.internal.resource.local
 import org.gradle.api.internal.file.DefaultTemporaryFileProvider
 import org.gradle.api.internal.file.TemporaryFileProvider
 import org.gradle.internal.file.FileAccessTimeJournal
+import org.gradle.internal.hash.Hashing
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.TestUtil
@@ -65,6 +66,21 @@ class GroupedAndNamedUniqueFileStoreTest extends Specification {
         1 * fileAccessTimeJournal.setLastAccessTime(baseDir.file('group'), _)
     }
 
+    def "uses given checksum when moving file into the store"() {
+        given:
+        def file = tmpDir.createFile("1.txt")
+        file.text = 'Hello, World!'
+        def sha1 = Hashing.sha1().hashBytes('Hello, World!'.bytes)
+
+        when:
+        def resource = fileStore.move('1', file, sha1)
+
+        then:
+        resource.file == fileStore.whereIs('1', sha1.toString())
+        resource.file.text == 'Hello, World!'
+        !file.exists()
+    }
+
     def "allows to mark files accessed externally"() {
         when:
         fileStore.getFileAccessTracker().markAccessed(baseDir.file('group/1.txt'))
@@ -39,6 +39,7 @@ dependencies {
     implementation(project(":snapshots"))
     implementation(project(":execution"))
     implementation(project(":security"))
+    implementation(project(":processServices"))
 
     implementation(library("slf4j_api"))
     implementation(library("groovy"))
@@ -60,7 +61,6 @@ dependencies {
     runtimeOnly(project(":compositeBuilds"))
     runtimeOnly(project(":versionControl"))
 
-    testImplementation(project(":processServices"))
     testImplementation(project(":diagnostics"))
     testImplementation(project(":buildCachePackaging"))
     testImplementation(library("nekohtml"))
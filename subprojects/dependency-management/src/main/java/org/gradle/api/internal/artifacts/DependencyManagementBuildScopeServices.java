@@ -46,6 +46,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionComparator;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.CrossBuildVerificationResultCache;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.DependencyVerificationOverride;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.AbstractModuleMetadataCache;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.FileStoreAndIndexProvider;
@@ -476,7 +477,7 @@ DependencyVerificationOverride createDependencyVerificationOverride(StartParamet
                                                                         ListenerManager listenerManager,
                                                                         BuildCommencedTimeProvider timeProvider,
                                                                         ServiceRegistry serviceRegistry) {
-        DependencyVerificationOverride override = startParameterResolutionOverride.dependencyVerificationOverride(buildOperationExecutor, checksumService, signatureVerificationServiceFactory, documentationRegistry, timeProvider, () -> serviceRegistry.get(GradleProperties.class));
+        DependencyVerificationOverride override = startParameterResolutionOverride.dependencyVerificationOverride(buildOperationExecutor, checksumService, signatureVerificationServiceFactory, documentationRegistry, timeProvider, () -> serviceRegistry.get(GradleProperties.class), () -> serviceRegistry.get(CrossBuildVerificationResultCache.class));
         registerBuildFinishedHooks(listenerManager, override);
         return override;
     }
@@ -609,6 +610,15 @@ public void buildFinished(GradleInternal build) {
         return new ComponentMetadataSupplierRuleExecutor(cacheRepository, cacheDecoratorFactory, snapshotter, timeProvider, suppliedComponentMetadataSerializer);
     }
 
+    CrossBuildVerificationResultCache createVerificationResultCache(CacheRepository cacheRepository,
+                                                                    CacheScopeMapping scopeCacheMapping,
+                                                                    ProjectCacheDir projectCacheDir,
+                                                                    InMemoryCacheDecoratorFactory decoratorFactory,
+                                                                    BuildCommencedTimeProvider timeProvider,
+                                                                    StartParameter startParameter) {
+        return new CrossBuildVerificationResultCache(cacheRepository, scopeCacheMapping, projectCacheDir, decoratorFactory, timeProvider, startParameter.isRefreshKeys());
+    }
+
     SignatureVerificationServiceFactory createSignatureVerificationServiceFactory(CacheRepository cacheRepository,
                                                                                   InMemoryCacheDecoratorFactory decoratorFactory,
                                                                                   List<ResourceConnectorFactory> resourceConnectorFactories,
@@ -24,6 +24,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.DefaultArtifactCaches;
 import org.gradle.api.internal.artifacts.transform.ImmutableCachingTransformationWorkspaceProvider;
 import org.gradle.api.internal.artifacts.transform.ImmutableTransformationWorkspaceProvider;
+import org.gradle.api.internal.artifacts.transform.TransformationResultCacheStatisticsBuildOperationType;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.DefaultExecutionHistoryCacheAccess;
 import org.gradle.cache.CacheRepository;
@@ -36,7 +37,12 @@
 import org.gradle.internal.execution.history.ExecutionHistoryStore;
 import org.gradle.internal.execution.history.impl.DefaultExecutionHistoryStore;
 import org.gradle.internal.file.FileAccessTimeJournal;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.service.ServiceRegistry;
+import org.gradle.process.internal.health.memory.MemoryManager;
 
 public class DependencyManagementGradleUserHomeScopeServices {
 
@@ -83,19 +89,37 @@ ImmutableTransformationWorkspaceProvider createTransformerWorkspaceProvider(Arti
         return new ImmutableTransformationWorkspaceProvider(artifactCaches.getWritableCacheMetadata().getTransformsStoreDirectory(), cacheRepository, fileAccessTimeJournal, executionHistoryStore);
     }
 
-    ImmutableCachingTransformationWorkspaceProvider createCachingTransformerWorkspaceProvider(ImmutableTransformationWorkspaceProvider immutableTransformationWorkspaceProvider, ListenerManager listenerManager) {
-        ImmutableCachingTransformationWorkspaceProvider cachingWorkspaceProvider = new ImmutableCachingTransformationWorkspaceProvider(immutableTransformationWorkspaceProvider);
+    ImmutableCachingTransformationWorkspaceProvider createCachingTransformerWorkspaceProvider(ImmutableTransformationWorkspaceProvider immutableTransformationWorkspaceProvider, ListenerManager listenerManager, MemoryManager memoryManager) {
+        ImmutableCachingTransformationWorkspaceProvider cachingWorkspaceProvider = new ImmutableCachingTransformationWorkspaceProvider(immutableTransformationWorkspaceProvider, memoryManager);
         listenerManager.addListener(new RootBuildLifecycleListener() {
             @Override
             public void afterStart(GradleInternal gradle) {
+                cachingWorkspaceProvider.resetStatistics();
             }
 
             @Override
             public void beforeComplete(GradleInternal gradle) {
+                reportStatistics(gradle, cachingWorkspaceProvider);
                 cachingWorkspaceProvider.clearInMemoryCache();
             }
         });
         return cachingWorkspaceProvider;
     }
 
+    private static void reportStatistics(GradleInternal gradle, ImmutableCachingTransformationWorkspaceProvider cachingWorkspaceProvider) {
+        BuildOperationExecutor buildOperationExecutor = gradle.getServices().get(BuildOperationExecutor.class);
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                context.setResult(TransformationResultCacheStatisticsBuildOperationType.RESULT);
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Report transformation result cache statistics")
+                    .details(cachingWorkspaceProvider.getStatistics());
+            }
+        });
+    }
+
 }
@@ -18,12 +18,19 @@
 
 import org.gradle.api.internal.artifacts.transform.ArtifactTransformListener;
 import org.gradle.api.internal.artifacts.transform.DefaultTransformationNodeRegistry;
+import org.gradle.api.internal.artifacts.transform.ImmutableCachingTransformationWorkspaceProvider;
+import org.gradle.api.internal.artifacts.transform.SpeculativeTransformationExecutor;
 import org.gradle.api.internal.artifacts.transform.TransformationNodeDependencyResolver;
 import org.gradle.api.internal.artifacts.transform.TransformationNodeRegistry;
+import org.gradle.concurrent.ParallelismConfiguration;
+import org.gradle.execution.ProjectExecutionServiceRegistry;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.service.ServiceRegistration;
+import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.internal.service.scopes.AbstractPluginServiceRegistry;
+import org.gradle.internal.work.WorkerLeaseService;
 
 public class DependencyServices extends AbstractPluginServiceRegistry {
     @Override
@@ -57,8 +64,15 @@ ArtifactTransformListener createArtifactTransformListener(ListenerManager listen
             return listenerManager.getBroadcaster(ArtifactTransformListener.class);
         }
 
-        TransformationNodeRegistry createTransformationNodeRegistry(BuildOperationExecutor buildOperationExecutor, ArtifactTransformListener transformListener) {
-            return new DefaultTransformationNodeRegistry(buildOperationExecutor, transformListener);
+        TransformationNodeRegistry createTransformationNodeRegistry(BuildOperationExecutor buildOperationExecutor, ArtifactTransformListener transformListener, ServiceRegistry services) {
+            SpeculativeTransformationExecutor speculativeTransformationExecutor = SpeculativeTransformationExecutor.isEnabled()
+                ? services.get(SpeculativeTransformationExecutor.class)
+                : null;
+            return new DefaultTransformationNodeRegistry(buildOperationExecutor, transformListener, speculativeTransformationExecutor);
+        }
+
+        SpeculativeTransformationExecutor createSpeculativeTransformationExecutor(ExecutorFactory executorFactory, WorkerLeaseService workerLeaseService, ParallelismConfiguration parallelismConfiguration, ImmutableCachingTransformationWorkspaceProvider workspaceProvider, ServiceRegistry services) {
+            return new SpeculativeTransformationExecutor(executorFactory, workerLeaseService, new ProjectExecutionServiceRegistry(services), workspaceProvider, parallelismConfiguration.getMaxWorkerCount());
         }
 
         TransformationNodeDependencyResolver createTransformationNodeDependencyResolver() {
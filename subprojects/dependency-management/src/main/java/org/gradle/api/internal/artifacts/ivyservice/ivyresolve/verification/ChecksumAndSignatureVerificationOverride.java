@@ -43,6 +43,9 @@
 import org.gradle.internal.component.external.model.ModuleComponentArtifactIdentifier;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.hash.ChecksumService;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.logging.ConsoleRenderer;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
@@ -52,7 +55,9 @@
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.List;
@@ -73,6 +78,8 @@ public class ChecksumAndSignatureVerificationOverride implements DependencyVerif
     private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicBoolean hasFatalFailure = new AtomicBoolean();
     private final DependencyVerificationReportWriter reportWriter;
+    private final CrossBuildVerificationResultCache verificationResultCache;
+    private final HashCode verificationConfigurationHash;
 
     public ChecksumAndSignatureVerificationOverride(BuildOperationExecutor buildOperationExecutor,
                                                     File gradleUserHome,
@@ -83,10 +90,13 @@ public ChecksumAndSignatureVerificationOverride(BuildOperationExecutor buildOper
                                                     DependencyVerificationMode verificationMode,
                                                     DocumentationRegistry documentationRegistry,
                                                     File reportsDirectory,
-                                                    Factory<GradleProperties> gradlePropertiesFactory) {
+                                                    Factory<GradleProperties> gradlePropertiesFactory,
+                                                    CrossBuildVerificationResultCache verificationResultCache) {
         this.buildOperationExecutor = buildOperationExecutor;
         this.checksumService = checksumService;
         this.verificationMode = verificationMode;
+        this.verificationResultCache = verificationResultCache;
+        this.verificationConfigurationHash = hashVerificationConfiguration(verificationsFile, keyRingsFile);
         try {
             this.verifier = DependencyVerificationsXmlReader.readFromXml(
                 new FileInputStream(verificationsFile)
@@ -100,6 +110,21 @@ public ChecksumAndSignatureVerificationOverride(BuildOperationExecutor buildOper
         this.signatureVerificationService = signatureVerificationServiceFactory.create(keyRingsFile, keyServers());
     }
 
+    private static HashCode hashVerificationConfiguration(File verificationsFile, File keyRingsFile) {
+        Hasher hasher = Hashing.newHasher();
+        try {
+            hasher.putBytes(Files.readAllBytes(verificationsFile.toPath()));
+            if (keyRingsFile.exists()) {
+                hasher.putBytes(Files.readAllBytes(keyRingsFile.toPath()));
+            } else {
+                hasher.putNull();
+            }
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        return hasher.hash();
+    }
+
     private List<URI> keyServers() {
         return DefaultKeyServers.getOrDefaults(verifier.getConfiguration().getKeyServers());
     }
@@ -133,7 +158,13 @@ private void verifyConcurrently() {
                     queue.add(new RunnableBuildOperation() {
                         @Override
                         public void run(BuildOperationContext context) {
-                            verifier.verify(checksumService, signatureVerificationService, ve.kind, ve.artifact, ve.mainFile, ve.signatureFile.create(), f -> {
+                            File signatureFile = ve.signatureFile.create();
+                            if (verificationResultCache.isVerified(verificationConfigurationHash, ve.kind, ve.mainFile, signatureFile)) {
+                                return;
+                            }
+                            AtomicBoolean failed = new AtomicBoolean();
+                            verifier.verify(checksumService, signatureVerificationService, ve.kind, ve.artifact, ve.mainFile, signatureFile, f -> {
+                                failed.set(true);
                                 synchronized (failures) {
                                     failures.put(ve.artifact, new RepositoryAwareVerificationFailure(f, ve.repositoryName));
                                 }
@@ -141,6 +172,9 @@ public void run(BuildOperationContext context) {
                                     hasFatalFailure.set(true);
                                 }
                             });
+                            if (!failed.get()) {
+                                verificationResultCache.verified(verificationConfigurationHash, ve.kind, ve.mainFile, signatureFile);
+                            }
                         }
 
                         @Override
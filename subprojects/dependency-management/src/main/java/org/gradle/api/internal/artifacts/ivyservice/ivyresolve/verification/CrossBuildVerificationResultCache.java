@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification;
+
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.FileLockManager;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.cache.internal.CacheScopeMapping;
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
+import org.gradle.cache.internal.VersionStrategy;
+import org.gradle.initialization.layout.ProjectCacheDir;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.HashCodeSerializer;
+import org.gradle.util.BuildCommencedTimeProvider;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Remembers the artifacts which passed dependency verification, so that they are not verified again in later builds.
+ *
+ * An entry is keyed by the hash of the verification configuration (the verification metadata and keyring files),
+ * the kind of artifact, and the path, length and modification time of the artifact and of its signature file.
+ * Only successful verifications are recorded: failures always need to be reported again.
+ *
+ * Keys may be revoked after an artifact has been verified, so a verified signature is only remembered for a day.
+ * When keys are refreshed, the remembered results are ignored and all artifacts are verified again.
+ */
+public class CrossBuildVerificationResultCache implements Stoppable {
+    private static final long VERIFIED_SIGNATURE_TIMEOUT = TimeUnit.HOURS.toMillis(24);
+
+    private final CacheRepository cacheRepository;
+    private final CacheScopeMapping cacheScopeMapping;
+    private final ProjectCacheDir projectCacheDir;
+    private final InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory;
+    private final BuildCommencedTimeProvider timeProvider;
+    private final boolean refreshKeys;
+
+    private PersistentCache store;
+    private PersistentIndexedCache<HashCode, Long> cache;
+
+    public CrossBuildVerificationResultCache(CacheRepository cacheRepository,
+                                             CacheScopeMapping cacheScopeMapping,
+                                             ProjectCacheDir projectCacheDir,
+                                             InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory,
+                                             BuildCommencedTimeProvider timeProvider,
+                                             boolean refreshKeys) {
+        this.cacheRepository = cacheRepository;
+        this.cacheScopeMapping = cacheScopeMapping;
+        this.projectCacheDir = projectCacheDir;
+        this.inMemoryCacheDecoratorFactory = inMemoryCacheDecoratorFactory;
+        this.timeProvider = timeProvider;
+        this.refreshKeys = refreshKeys;
+    }
+
+    public boolean isVerified(HashCode configurationHash, ArtifactVerificationOperation.ArtifactKind kind, File artifactFile, @Nullable File signatureFile) {
+        if (refreshKeys) {
+            return false;
+        }
+        Long verificationTime = getCache().get(cacheKey(configurationHash, kind, artifactFile, signatureFile));
+        if (verificationTime == null) {
+            return false;
+        }
+        return signatureFile == null || timeProvider.getCurrentTime() - verificationTime <= VERIFIED_SIGNATURE_TIMEOUT;
+    }
+
+    public void verified(HashCode configurationHash, ArtifactVerificationOperation.ArtifactKind kind, File artifactFile, @Nullable File signatureFile) {
+        long buildStartTime = timeProvider.getCurrentTime();
+        if (isModifiedSince(artifactFile, buildStartTime) || (signatureFile != null && isModifiedSince(signatureFile, buildStartTime))) {
+            // The file may still change without its timestamp changing, so it needs to be verified again next time
+            return;
+        }
+        getCache().put(cacheKey(configurationHash, kind, artifactFile, signatureFile), buildStartTime);
+    }
+
+    private static boolean isModifiedSince(File file, long timestamp) {
+        return file.lastModified() >= timestamp;
+    }
+
+    private static HashCode cacheKey(HashCode configurationHash, ArtifactVerificationOperation.ArtifactKind kind, File artifactFile, @Nullable File signatureFile) {
+        Hasher hasher = Hashing.newHasher();
+        hasher.putHash(configurationHash);
+        hasher.putString(kind.name());
+        putFile(hasher, artifactFile);
+        if (signatureFile == null) {
+            hasher.putNull();
+        } else {
+            putFile(hasher, signatureFile);
+        }
+        return hasher.hash();
+    }
+
+    private static void putFile(Hasher hasher, File file) {
+        hasher.putString(file.getAbsolutePath());
+        hasher.putLong(file.length());
+        hasher.putLong(file.lastModified());
+    }
+
+    private synchronized PersistentIndexedCache<HashCode, Long> getCache() {
+        if (cache == null) {
+            File cacheDir = cacheScopeMapping.getBaseDirectory(projectCacheDir.getDir(), "dependency-verification", VersionStrategy.CachePerVersion);
+            store = cacheRepository.cache(cacheDir)
+                .withDisplayName("Dependency verification results cache")
+                .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
+                .open();
+            cache = store.createCache(
+                PersistentIndexedCacheParameters.of("verified-artifacts", new HashCodeSerializer(), BaseSerializerFactory.LONG_SERIALIZER)
+                    .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(10000, true))
+            );
+        }
+        return cache;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (store != null) {
+            store.close();
+            store = null;
+            cache = null;
+        }
+    }
+}
@@ -16,14 +16,15 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.modulecache;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.MapMaker;
-import com.google.common.collect.Maps;
 import org.gradle.api.artifacts.component.ComponentArtifactIdentifier;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.BaseModuleComponentRepository;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleComponentRepository;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvableArtifact;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
+import org.gradle.cache.internal.HeapProportionalCacheSizer;
 import org.gradle.internal.concurrent.Stoppable;
 
 import java.util.Map;
@@ -34,7 +35,9 @@
 public class ResolvedArtifactCaches implements Stoppable {
 
     private final static Logger LOG = Logging.getLogger(ResolvedArtifactCaches.class);
+    private final static int DEFAULT_MAX_ARTIFACTS_PER_REPO = 20000;
 
+    private final int maxArtifactsPerRepo = new HeapProportionalCacheSizer().scaleCacheSize(DEFAULT_MAX_ARTIFACTS_PER_REPO);
     private final Map<String, Map<ComponentArtifactIdentifier, ResolvableArtifact>> cachePerRepo = new MapMaker().makeMap();
 
     /**
@@ -50,7 +53,8 @@ private Map<ComponentArtifactIdentifier, ResolvableArtifact> getResolvedArtifact
         Map<ComponentArtifactIdentifier, ResolvableArtifact> resolvedArtifactCache = cachePerRepo.get(input.getId());
         if (resolvedArtifactCache == null) {
             LOG.debug("Creating new in-memory cache for repo '{}' [{}].", input.getName(), input.getId());
-            resolvedArtifactCache = Maps.newConcurrentMap();
+            // Evicted artifacts are simply resolved again, so bound the cache to keep the retained heap proportional to the available heap
+            resolvedArtifactCache = CacheBuilder.newBuilder().maximumSize(maxArtifactsPerRepo).<ComponentArtifactIdentifier, ResolvableArtifact>build().asMap();
             cachePerRepo.put(input.getId(), resolvedArtifactCache);
         } else {
             LOG.debug("Reusing in-memory cache for repo '{}' [{}].", input.getName(), input.getId());
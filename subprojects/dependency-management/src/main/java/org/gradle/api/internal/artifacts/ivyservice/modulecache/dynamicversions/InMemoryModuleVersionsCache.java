@@ -21,7 +21,7 @@
 import java.util.Map;
 
 public class InMemoryModuleVersionsCache extends AbstractModuleVersionsCache {
-    private final Map<ModuleAtRepositoryKey, ModuleVersionsCacheEntry> inMemoryCache = Maps.newConcurrentMap();
+    private final Map<String, RepositoryModuleVersions> repositories = Maps.newConcurrentMap();
     private final AbstractModuleVersionsCache delegate;
 
     public InMemoryModuleVersionsCache(BuildCommencedTimeProvider timeProvider) {
@@ -36,7 +36,7 @@ public InMemoryModuleVersionsCache(BuildCommencedTimeProvider timeProvider, Abst
 
     @Override
     protected void store(ModuleAtRepositoryKey key, ModuleVersionsCacheEntry entry) {
-        inMemoryCache.put(key, entry);
+        repository(key.repositoryId).put(key.moduleId, entry);
         if (delegate != null) {
             delegate.store(key, entry);
         }
@@ -44,14 +44,11 @@ protected void store(ModuleAtRepositoryKey key, ModuleVersionsCacheEntry entry)
 
     @Override
     protected ModuleVersionsCacheEntry get(ModuleAtRepositoryKey key) {
-        ModuleVersionsCacheEntry entry = inMemoryCache.get(key);
-        if (entry == null && delegate != null) {
-            entry = delegate.get(key);
-            if (entry != null) {
-                inMemoryCache.put(key, entry);
-            }
-        }
-        return entry;
+        return repository(key.repositoryId).get(key.moduleId, delegate == null ? null : moduleId -> delegate.get(key));
+    }
+
+    private RepositoryModuleVersions repository(String repositoryId) {
+        return repositories.computeIfAbsent(repositoryId, id -> new RepositoryModuleVersions());
     }
 
 }
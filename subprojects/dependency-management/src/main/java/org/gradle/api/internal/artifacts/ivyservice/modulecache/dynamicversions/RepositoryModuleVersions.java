@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache.dynamicversions;
+
+import com.google.common.collect.ImmutableSet;
+import org.gradle.api.artifacts.ModuleIdentifier;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The version listings of a single repository which have been read or written during this build, keyed by module.
+ *
+ * Modules which the backing store doesn't know about are remembered as well, so that repeated lookups of
+ * a module which is only available from another repository don't hit the backing store again.
+ *
+ * Listings are never refreshed here: whether a listing is still valid is decided by the cache policy, and expired
+ * listings are fetched again from the repository one module at a time.
+ */
+class RepositoryModuleVersions {
+    private static final ModuleVersionsCacheEntry MISSING = new ModuleVersionsCacheEntry(Collections.emptySet(), 0);
+
+    private final Map<ModuleIdentifier, ModuleVersionsCacheEntry> entries = new ConcurrentHashMap<>();
+
+    void put(ModuleIdentifier moduleId, ModuleVersionsCacheEntry entry) {
+        entries.put(moduleId, new ModuleVersionsCacheEntry(ImmutableSet.copyOf(entry.moduleVersionListing), entry.createTimestamp));
+    }
+
+    @Nullable
+    ModuleVersionsCacheEntry get(ModuleIdentifier moduleId, @Nullable Function<ModuleIdentifier, ModuleVersionsCacheEntry> loader) {
+        ModuleVersionsCacheEntry entry = entries.get(moduleId);
+        if (entry == null && loader != null) {
+            entry = entries.computeIfAbsent(moduleId, id -> {
+                ModuleVersionsCacheEntry loaded = loader.apply(id);
+                return loaded == null ? MISSING : new ModuleVersionsCacheEntry(ImmutableSet.copyOf(loaded.moduleVersionListing), loaded.createTimestamp);
+            });
+        }
+        return entry == MISSING ? null : entry;
+    }
+}
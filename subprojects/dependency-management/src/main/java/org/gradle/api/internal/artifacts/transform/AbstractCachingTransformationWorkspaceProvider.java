@@ -18,7 +18,9 @@
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
+import org.gradle.cache.internal.HeapProportionalCacheSizer;
 import org.gradle.internal.Try;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.execution.history.ExecutionHistoryStore;
@@ -26,16 +28,47 @@
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.File;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 @ThreadSafe
 public abstract class AbstractCachingTransformationWorkspaceProvider implements CachingTransformationWorkspaceProvider {
 
+    /**
+     * The maximum weight of the cache for the default heap size, measured in number of cached result files.
+     * It is scaled with the available heap.
+     */
+    private static final int DEFAULT_MAX_WEIGHT = 200_000;
+
     private final TransformationWorkspaceProvider delegate;
-    private final Cache<TransformationWorkspaceIdentity, Try<ImmutableList<File>>> inMemoryResultCache = CacheBuilder.newBuilder().build();
+    private final Cache<TransformationWorkspaceIdentity, Try<ImmutableList<File>>> inMemoryResultCache;
+    private final AtomicLong evictionCount = new AtomicLong();
+    private volatile CacheStats statisticsBaseline = new CacheStats(0, 0, 0, 0, 0, 0);
+    private final ThreadLocal<Boolean> cachingFailures = ThreadLocal.withInitial(() -> Boolean.TRUE);
 
     public AbstractCachingTransformationWorkspaceProvider(TransformationWorkspaceProvider delegate) {
+        this(delegate, new HeapProportionalCacheSizer().scaleCacheSize(DEFAULT_MAX_WEIGHT));
+    }
+
+    AbstractCachingTransformationWorkspaceProvider(TransformationWorkspaceProvider delegate, long maxWeight) {
         this.delegate = delegate;
+        this.inMemoryResultCache = CacheBuilder.newBuilder()
+            .maximumWeight(maxWeight)
+            .weigher(AbstractCachingTransformationWorkspaceProvider::weigh)
+            .removalListener(notification -> {
+                if (notification.wasEvicted()) {
+                    evictionCount.incrementAndGet();
+                }
+            })
+            .recordStats()
+            .build();
+    }
+
+    private static int weigh(TransformationWorkspaceIdentity identity, Try<ImmutableList<File>> result) {
+        return 1 + result.getOrMapFailure(failure -> ImmutableList.of()).size();
     }
 
     @Override
@@ -51,14 +84,98 @@ public Try<ImmutableList<File>> getCachedResult(TransformationWorkspaceIdentity
 
     @Override
     public Try<ImmutableList<File>> withWorkspace(TransformationWorkspaceIdentity identity, TransformationWorkspaceAction workspaceAction) {
+        Try<ImmutableList<File>> result;
         try {
-            return inMemoryResultCache.get(identity, () -> delegate.withWorkspace(identity, workspaceAction));
+            result = inMemoryResultCache.get(identity, () -> delegate.withWorkspace(identity, workspaceAction));
         } catch (ExecutionException e) {
             throw UncheckedException.throwAsUncheckedException(e);
         }
+        if (!result.isSuccessful() && !cachingFailures.get()) {
+            inMemoryResultCache.invalidate(identity);
+        }
+        return result;
+    }
+
+    /**
+     * Runs the given action on the current thread, without keeping failed results of the transformations it executes in memory.
+     * Later executions of those transformations then run them again.
+     */
+    public <T> T withoutCachingFailures(Supplier<T> action) {
+        cachingFailures.set(Boolean.FALSE);
+        try {
+            return action.get();
+        } finally {
+            cachingFailures.remove();
+        }
     }
 
     public void clearInMemoryCache() {
         inMemoryResultCache.invalidateAll();
     }
+
+    /**
+     * Drops cached results until at least the given weight has been dropped, in order to free heap, counting them as evicted.
+     *
+     * @return the weight of the dropped results
+     */
+    protected long evictInMemoryCache(long weightToEvict) {
+        long evictedWeight = 0;
+        Iterator<Map.Entry<TransformationWorkspaceIdentity, Try<ImmutableList<File>>>> iterator = inMemoryResultCache.asMap().entrySet().iterator();
+        while (evictedWeight < weightToEvict && iterator.hasNext()) {
+            Map.Entry<TransformationWorkspaceIdentity, Try<ImmutableList<File>>> entry = iterator.next();
+            iterator.remove();
+            evictedWeight += weigh(entry.getKey(), entry.getValue());
+            evictionCount.incrementAndGet();
+        }
+        return evictedWeight;
+    }
+
+    /**
+     * Returns the total weight of the cached results.
+     */
+    protected long getInMemoryCacheWeight() {
+        long weight = 0;
+        for (Map.Entry<TransformationWorkspaceIdentity, Try<ImmutableList<File>>> entry : inMemoryResultCache.asMap().entrySet()) {
+            weight += weigh(entry.getKey(), entry.getValue());
+        }
+        return weight;
+    }
+
+    /**
+     * Starts counting hits, misses and evictions from zero, e.g. at the start of a build.
+     */
+    public void resetStatistics() {
+        statisticsBaseline = inMemoryResultCache.stats();
+        evictionCount.set(0);
+    }
+
+    public TransformationResultCacheStatisticsBuildOperationType.Details getStatistics() {
+        CacheStats stats = inMemoryResultCache.stats().minus(statisticsBaseline);
+        long hitCount = stats.hitCount();
+        // Every miss of `getCachedResult()` is followed by a lookup via `withWorkspace()`, so only count the loads
+        long missCount = stats.loadCount();
+        long evictions = evictionCount.get();
+        long size = inMemoryResultCache.size();
+        return new TransformationResultCacheStatisticsBuildOperationType.Details() {
+            @Override
+            public long getHitCount() {
+                return hitCount;
+            }
+
+            @Override
+            public long getMissCount() {
+                return missCount;
+            }
+
+            @Override
+            public long getEvictionCount() {
+                return evictions;
+            }
+
+            @Override
+            public long getSize() {
+                return size;
+            }
+        };
+    }
 }
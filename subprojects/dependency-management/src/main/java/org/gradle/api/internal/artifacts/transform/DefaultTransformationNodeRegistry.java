@@ -24,6 +24,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvedArtifactSet;
 import org.gradle.internal.operations.BuildOperationExecutor;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -33,10 +34,12 @@ public class DefaultTransformationNodeRegistry implements TransformationNodeRegi
     private final Map<ArtifactTransformKey, TransformationNode> transformations = Maps.newConcurrentMap();
     private final BuildOperationExecutor buildOperationExecutor;
     private final ArtifactTransformListener transformListener;
+    private final SpeculativeTransformationExecutor speculativeTransformationExecutor;
 
-    public DefaultTransformationNodeRegistry(BuildOperationExecutor buildOperationExecutor, ArtifactTransformListener transformListener) {
+    public DefaultTransformationNodeRegistry(BuildOperationExecutor buildOperationExecutor, ArtifactTransformListener transformListener, @Nullable SpeculativeTransformationExecutor speculativeTransformationExecutor) {
         this.buildOperationExecutor = buildOperationExecutor;
         this.transformListener = transformListener;
+        this.speculativeTransformationExecutor = speculativeTransformationExecutor;
     }
 
     @Override
@@ -45,6 +48,9 @@ public Collection<TransformationNode> getOrCreate(ResolvedArtifactSet artifactSe
         final ImmutableList.Builder<TransformationNode> builder = ImmutableList.builder();
         artifactSet.visitLocalArtifacts(artifact -> {
             TransformationNode transformationNode = getOrCreateInternal(artifact, transformationChain, dependenciesResolver);
+            if (speculativeTransformationExecutor != null) {
+                speculativeTransformationExecutor.maybeSchedule(transformationNode);
+            }
             builder.add(transformationNode);
         });
         return builder.build();
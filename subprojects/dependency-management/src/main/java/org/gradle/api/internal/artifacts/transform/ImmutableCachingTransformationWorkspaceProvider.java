@@ -16,8 +16,52 @@
 
 package org.gradle.api.internal.artifacts.transform;
 
-public class ImmutableCachingTransformationWorkspaceProvider extends AbstractCachingTransformationWorkspaceProvider {
-    public ImmutableCachingTransformationWorkspaceProvider(TransformationWorkspaceProvider delegate) {
+import com.google.common.math.LongMath;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.process.internal.health.memory.MemoryHolder;
+import org.gradle.process.internal.health.memory.MemoryManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.RoundingMode;
+
+/**
+ * Caches the results of immutable transformations in memory for the lifetime of the Gradle user home services.
+ * When memory is requested, some of the cached results are dropped.
+ */
+public class ImmutableCachingTransformationWorkspaceProvider extends AbstractCachingTransformationWorkspaceProvider implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImmutableCachingTransformationWorkspaceProvider.class);
+    /**
+     * Rough estimate of the heap retained per result file, used to translate the requested memory into a number of result files to drop.
+     */
+    private static final long ESTIMATED_BYTES_PER_RESULT_FILE = 1024;
+
+    private final MemoryManager memoryManager;
+    private final MemoryHolder inMemoryResultExpiration = new InMemoryResultExpiration();
+
+    public ImmutableCachingTransformationWorkspaceProvider(TransformationWorkspaceProvider delegate, MemoryManager memoryManager) {
         super(delegate);
+        this.memoryManager = memoryManager;
+        memoryManager.addMemoryHolder(inMemoryResultExpiration);
+    }
+
+    @Override
+    public void stop() {
+        memoryManager.removeMemoryHolder(inMemoryResultExpiration);
+    }
+
+    private class InMemoryResultExpiration implements MemoryHolder {
+        @Override
+        public long attemptToRelease(long memoryAmountBytes) throws IllegalArgumentException {
+            if (memoryAmountBytes < 0) {
+                throw new IllegalArgumentException("Negative memory amount");
+            }
+            // Drop at most half of the cached results per request, so that the cache shrinks gradually while memory stays low
+            long weightToEvict = Math.min(LongMath.divide(memoryAmountBytes, ESTIMATED_BYTES_PER_RESULT_FILE, RoundingMode.CEILING), (getInMemoryCacheWeight() + 1) / 2);
+            long evictedWeight = evictInMemoryCache(weightToEvict);
+            LOGGER.debug("Memory requested, evicted in-memory transformation results referencing {} file(s).", evictedWeight);
+            // Dropping results frees heap of this process, which is not returned to the system right away
+            return 0;
+        }
     }
 }
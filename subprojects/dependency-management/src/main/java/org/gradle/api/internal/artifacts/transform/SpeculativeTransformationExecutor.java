@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.transform;
+
+import com.google.common.collect.Sets;
+import org.gradle.api.Task;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvableArtifact;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.internal.tasks.AbstractTaskDependencyResolveContext;
+import org.gradle.api.internal.tasks.NodeExecutionContext;
+import org.gradle.api.internal.tasks.TaskDependencyContainer;
+import org.gradle.execution.ProjectExecutionServiceRegistry;
+import org.gradle.internal.Try;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.work.WorkerLeaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+
+/**
+ * Executes the transformations of external artifacts as soon as their transformation nodes are scheduled, instead of waiting for the
+ * execution plan to reach them. This way the transformations overlap with configuration and with the execution of unrelated work.
+ *
+ * <p>The results end up in the in-memory cache of the immutable transformation workspace provider, where they are picked up when the
+ * transformation node is executed or when the transformed artifacts are visited. Only transformations whose inputs are all known up-front
+ * are executed speculatively: the input artifact must come from an external module, and no step of the transformation chain may
+ * have task dependencies, require the dependencies of the input artifact or have parameters which still need to be isolated.
+ * Isolating the parameters requires the lock of the owning project, which is not available to background threads.
+ * Each step runs with the execution services of its owning project, like the transformation node does, so that both calculate
+ * the same workspace identity. Failed results are not kept, so the transformation is executed again when it is required.</p>
+ *
+ * <p>Speculative execution is opt-in via the {@value #SPECULATIVE_EXECUTION_PROPERTY} system property.</p>
+ */
+public class SpeculativeTransformationExecutor implements Stoppable {
+    public static final String SPECULATIVE_EXECUTION_PROPERTY = "org.gradle.internal.transform.speculative";
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpeculativeTransformationExecutor.class);
+
+    private final WorkerLeaseService workerLeaseService;
+    private final ProjectExecutionServiceRegistry projectExecutionServices;
+    private final ImmutableCachingTransformationWorkspaceProvider workspaceProvider;
+    private final ManagedExecutor executor;
+    private final Set<TransformationNode> scheduledNodes = Sets.newConcurrentHashSet();
+    private final Queue<Future<?>> pendingExecutions = new ConcurrentLinkedQueue<>();
+
+    public SpeculativeTransformationExecutor(ExecutorFactory executorFactory, WorkerLeaseService workerLeaseService, ProjectExecutionServiceRegistry projectExecutionServices, ImmutableCachingTransformationWorkspaceProvider workspaceProvider, int maxWorkerCount) {
+        this.workerLeaseService = workerLeaseService;
+        this.projectExecutionServices = projectExecutionServices;
+        this.workspaceProvider = workspaceProvider;
+        this.executor = executorFactory.create("Speculative transform execution", maxWorkerCount);
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(SPECULATIVE_EXECUTION_PROPERTY);
+    }
+
+    /**
+     * Starts executing the given transformation node in the background, if all its inputs are known.
+     */
+    public void maybeSchedule(TransformationNode node) {
+        if (!canExecuteSpeculatively(node) || !scheduledNodes.add(node)) {
+            return;
+        }
+        pendingExecutions.add(executor.submit(() ->
+            // Compete with the rest of the build for worker leases, so that the max worker count is honoured
+            workerLeaseService.withLocks(Collections.singleton(workerLeaseService.getWorkerLease()), () -> {
+                Try<TransformationSubject> result = workspaceProvider.withoutCachingFailures(() -> transform(node));
+                result.getFailure().ifPresent(failure -> LOGGER.debug("Speculative execution of {} failed, the failure will be reported when the transformed artifact is required.", node, failure));
+            })
+        ));
+    }
+
+    private Try<TransformationSubject> transform(TransformationNode node) {
+        TransformationStep transformationStep = node.getTransformationStep();
+        Try<TransformationSubject> subjectToTransform;
+        if (node instanceof TransformationNode.ChainedTransformationNode) {
+            subjectToTransform = transform(((TransformationNode.ChainedTransformationNode) node).getPreviousTransformationNode());
+        } else {
+            ResolvableArtifact artifact = node.getInputArtifact();
+            subjectToTransform = Try.ofFailable(artifact::getFile).map(file -> TransformationSubject.initial(artifact.getId(), file));
+        }
+        NodeExecutionContext context = projectExecutionServices.forProject((ProjectInternal) node.getOwningProject());
+        return subjectToTransform.flatMap(subject -> transformationStep.createInvocation(subject, node.getDependenciesResolver(), context).invoke());
+    }
+
+    private static boolean canExecuteSpeculatively(TransformationNode node) {
+        if (!(node.getInputArtifact().getId().getComponentIdentifier() instanceof ModuleComponentIdentifier)) {
+            return false;
+        }
+        TransformationNode current = node;
+        while (true) {
+            Transformer transformer = current.getTransformationStep().getTransformer();
+            if (!transformer.isIsolated() || transformer.requiresDependencies() || hasTaskDependencies(transformer)) {
+                return false;
+            }
+            if (!(current instanceof TransformationNode.ChainedTransformationNode)) {
+                return true;
+            }
+            current = ((TransformationNode.ChainedTransformationNode) current).getPreviousTransformationNode();
+        }
+    }
+
+    private static boolean hasTaskDependencies(Transformer transformer) {
+        DependencyDetectingContext context = new DependencyDetectingContext();
+        transformer.visitDependencies(context);
+        return context.foundDependency;
+    }
+
+    @Override
+    public void stop() {
+        // Drop executions which did not start yet, nothing is waiting for them anymore
+        for (Future<?> pendingExecution : pendingExecutions) {
+            pendingExecution.cancel(false);
+        }
+        pendingExecutions.clear();
+        scheduledNodes.clear();
+        executor.stop();
+        projectExecutionServices.close();
+    }
+
+    private static class DependencyDetectingContext extends AbstractTaskDependencyResolveContext {
+        private boolean foundDependency;
+
+        @Override
+        public void add(Object dependency) {
+            if (dependency instanceof TaskDependencyContainer) {
+                ((TaskDependencyContainer) dependency).visitDependencies(this);
+            } else {
+                foundDependency = true;
+            }
+        }
+
+        @Override
+        public void visitFailure(Throwable failure) {
+            foundDependency = true;
+        }
+
+        @Nullable
+        @Override
+        public Task getTask() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.transform;
+
+import org.gradle.internal.operations.BuildOperationType;
+import org.gradle.internal.scan.NotUsedByScanPlugin;
+
+/**
+ * Reports the usage of the in-memory transformation result cache at the end of a build.
+ * The counts cover the build which just completed.
+ *
+ * @since 6.6
+ */
+@NotUsedByScanPlugin
+public final class TransformationResultCacheStatisticsBuildOperationType implements BuildOperationType<TransformationResultCacheStatisticsBuildOperationType.Details, TransformationResultCacheStatisticsBuildOperationType.Result> {
+
+    public interface Details {
+
+        /**
+         * Number of lookups which were answered from the in-memory cache.
+         */
+        long getHitCount();
+
+        /**
+         * Number of lookups which required the transformation workspace to be used.
+         */
+        long getMissCount();
+
+        /**
+         * Number of results which were dropped because of the size limit or memory pressure.
+         */
+        long getEvictionCount();
+
+        /**
+         * Number of results retained at the time the statistics were taken.
+         */
+        long getSize();
+    }
+
+    public interface Result {
+    }
+
+    public static final Result RESULT = new Result() {
+    };
+
+    private TransformationResultCacheStatisticsBuildOperationType() {
+    }
+}
@@ -26,6 +26,8 @@
 import org.gradle.internal.hash.ChecksumService;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.HashValue;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.HashingOutputStream;
 import org.gradle.internal.resource.ExternalResource;
 import org.gradle.internal.resource.ExternalResourceName;
 import org.gradle.internal.resource.ExternalResourceReadResult;
@@ -185,7 +187,7 @@ private LocallyAvailableExternalResource copyCandidateToCache(ExternalResourceNa
             if (!localChecksum.equals(remoteChecksum)) {
                 return null;
             }
-            return moveIntoCache(source, destination, fileStore, remoteMetaData);
+            return moveIntoCache(source, destination, localChecksum, fileStore, remoteMetaData);
         } finally {
             destination.delete();
         }
@@ -206,15 +208,16 @@ private LocallyAvailableExternalResource copyToCache(final ExternalResourceName
 
         // Move into cache
         try {
-            return moveIntoCache(source, downloadAction.destination, fileStore, downloadAction.metaData);
+            return moveIntoCache(source, downloadAction.destination, downloadAction.sha1, fileStore, downloadAction.metaData);
         } finally {
             downloadAction.destination.delete();
         }
     }
 
-    private LocallyAvailableExternalResource moveIntoCache(final ExternalResourceName source, final File destination, final ResourceFileStore fileStore, final ExternalResourceMetaData metaData) {
+    private LocallyAvailableExternalResource moveIntoCache(final ExternalResourceName source, final File destination, final HashCode sha1, final ResourceFileStore fileStore, final ExternalResourceMetaData metaData) {
+        // Only the move itself happens while holding the cache: the checksum was calculated beforehand
         return artifactCacheLockingManager.useCache(() -> {
-            LocallyAvailableResource cachedResource = fileStore.moveIntoCache(destination);
+            LocallyAvailableResource cachedResource = fileStore.moveIntoCache(destination, sha1);
             File fileInFileStore = cachedResource.getFile();
             cachedExternalResourceIndex.store(source.toString(), fileInFileStore, metaData);
             return fileResourceRepository.resource(fileInFileStore, source.getUri(), metaData);
@@ -229,6 +232,7 @@ private class DownloadAction implements ExternalResource.ContentAction<Object> {
         private final ExternalResourceName source;
         File destination;
         ExternalResourceMetaData metaData;
+        HashCode sha1;
 
         DownloadAction(ExternalResourceName source) {
             this.source = source;
@@ -242,8 +246,9 @@ public Object execute(InputStream inputStream, ExternalResourceMetaData metaData
             if (destination.getParentFile() != null) {
                 GFileUtils.mkdirs(destination.getParentFile());
             }
-            try (FileOutputStream outputStream = new FileOutputStream(destination)) {
+            try (HashingOutputStream outputStream = new HashingOutputStream(Hashing.sha1(), new FileOutputStream(destination))) {
                 IOUtils.copyLarge(inputStream, outputStream);
+                sha1 = outputStream.hash();
             }
             return null;
         }
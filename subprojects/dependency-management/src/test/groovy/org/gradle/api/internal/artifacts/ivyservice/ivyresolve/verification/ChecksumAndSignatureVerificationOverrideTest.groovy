@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification
+
+import org.gradle.api.InvalidUserDataException
+import org.gradle.api.internal.DocumentationRegistry
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.verification.signatures.SignatureVerificationService
+import org.gradle.api.internal.artifacts.verification.signatures.SignatureVerificationServiceFactory
+import org.gradle.api.internal.properties.GradleProperties
+import org.gradle.cache.CacheBuilder
+import org.gradle.cache.CacheDecorator
+import org.gradle.cache.CacheRepository
+import org.gradle.cache.PersistentCache
+import org.gradle.cache.internal.CacheScopeMapping
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory
+import org.gradle.initialization.layout.ProjectCacheDir
+import org.gradle.internal.Factory
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.hash.ChecksumService
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.testfixtures.internal.InMemoryIndexedCache
+import org.gradle.util.BuildCommencedTimeProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.api.artifacts.verification.DependencyVerificationMode.STRICT
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.ArtifactVerificationOperation.ArtifactKind.REGULAR
+
+class ChecksumAndSignatureVerificationOverrideTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def checksumService = Mock(ChecksumService)
+    def signatureVerificationServiceFactory = Stub(SignatureVerificationServiceFactory) {
+        create(_, _) >> Stub(SignatureVerificationService)
+    }
+    def timeProvider = new BuildCommencedTimeProvider()
+    def store = new InMemoryIndexedCache<HashCode, Long>(BaseSerializerFactory.LONG_SERIALIZER)
+    def checksum = HashCode.fromInt(123)
+    def artifactId = new DefaultModuleComponentArtifactIdentifier(DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org", "foo"), "1.0"), "foo", "jar", "jar")
+
+    TestFile verificationsFile
+    TestFile keyringsFile
+    TestFile artifact
+    CrossBuildVerificationResultCache verificationResultCache
+
+    def setup() {
+        def cacheBuilder
+        cacheBuilder = Mock(CacheBuilder) {
+            withDisplayName(_) >> { cacheBuilder }
+            withLockOptions(_) >> { cacheBuilder }
+            open() >> Stub(PersistentCache) {
+                createCache(_) >> store
+            }
+        }
+        def cacheRepository = Stub(CacheRepository) {
+            cache(_) >> cacheBuilder
+        }
+        def cacheScopeMapping = Stub(CacheScopeMapping) {
+            getBaseDirectory(_, _, _) >> temporaryFolder.file("cache")
+        }
+        def decoratorFactory = Stub(InMemoryCacheDecoratorFactory) {
+            decorator(_, _) >> Stub(CacheDecorator)
+        }
+        verificationResultCache = new CrossBuildVerificationResultCache(cacheRepository, cacheScopeMapping, new ProjectCacheDir(temporaryFolder.file("project-cache"), null, null), decoratorFactory, timeProvider, false)
+
+        verificationsFile = temporaryFolder.file("gradle/verification-metadata.xml")
+        verificationsFile.text = verificationMetadata()
+        keyringsFile = temporaryFolder.file("gradle/verification-keyring.gpg")
+        artifact = temporaryFolder.file("foo-1.0.jar")
+        artifact.text = "artifact"
+        artifact.lastModified = timeProvider.currentTime - 10_000
+    }
+
+    def "verifies artifact when it was not verified before"() {
+        when:
+        verify()
+
+        then:
+        1 * checksumService.sha256(artifact) >> checksum
+    }
+
+    def "does not verify artifact again when it was verified by a previous build"() {
+        given:
+        checksumService.sha256(artifact) >> checksum
+        verify()
+
+        when:
+        verify()
+
+        then:
+        0 * checksumService.sha256(_)
+    }
+
+    def "verifies artifact again when the verification metadata changed"() {
+        given:
+        checksumService.sha256(artifact) >> checksum
+        verify()
+        verificationsFile.text = verificationMetadata("<trusted-artifacts><trust group='org.other'/></trusted-artifacts>")
+
+        when:
+        verify()
+
+        then:
+        1 * checksumService.sha256(artifact) >> checksum
+    }
+
+    def "verifies artifact again when the keyring changed"() {
+        given:
+        checksumService.sha256(artifact) >> checksum
+        verify()
+        keyringsFile.text = "keys"
+
+        when:
+        verify()
+
+        then:
+        1 * checksumService.sha256(artifact) >> checksum
+    }
+
+    def "verifies artifact again when its content changed"() {
+        given:
+        checksumService.sha256(artifact) >> checksum
+        verify()
+        artifact.text = "tampered artifact"
+        artifact.lastModified = timeProvider.currentTime - 20_000
+
+        when:
+        verify()
+
+        then:
+        1 * checksumService.sha256(artifact) >> HashCode.fromInt(456)
+        thrown(InvalidUserDataException)
+    }
+
+    def "does not remember failed verifications"() {
+        given:
+        checksumService.sha256(artifact) >> HashCode.fromInt(456)
+
+        when:
+        verify()
+
+        then:
+        thrown(InvalidUserDataException)
+
+        when:
+        verify()
+
+        then:
+        1 * checksumService.sha256(artifact) >> checksum
+    }
+
+    private void verify() {
+        def override = new ChecksumAndSignatureVerificationOverride(
+            new TestBuildOperationExecutor(),
+            temporaryFolder.file("user-home"),
+            verificationsFile,
+            keyringsFile,
+            checksumService,
+            signatureVerificationServiceFactory,
+            STRICT,
+            new DocumentationRegistry(),
+            temporaryFolder.file("reports"),
+            { Stub(GradleProperties) } as Factory<GradleProperties>,
+            verificationResultCache
+        )
+        try {
+            override.onArtifact(REGULAR, artifactId, artifact, { null } as Factory<File>, "repo", "repo-id")
+            override.artifactsAccessed("test")
+        } finally {
+            override.stop()
+        }
+    }
+
+    private String verificationMetadata(String configuration = "") {
+        """<?xml version="1.0" encoding="UTF-8"?>
+<verification-metadata>
+   <configuration>
+      <verify-metadata>true</verify-metadata>
+      <verify-signatures>false</verify-signatures>
+      $configuration
+   </configuration>
+   <components>
+      <component group="org" name="foo" version="1.0">
+         <artifact name="foo-1.0.jar">
+            <sha256 value="$checksum"/>
+         </artifact>
+      </component>
+   </components>
+</verification-metadata>
+"""
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification
+
+import org.gradle.cache.CacheBuilder
+import org.gradle.cache.CacheDecorator
+import org.gradle.cache.CacheRepository
+import org.gradle.cache.PersistentCache
+import org.gradle.cache.internal.CacheScopeMapping
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory
+import org.gradle.initialization.layout.ProjectCacheDir
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.testfixtures.internal.InMemoryIndexedCache
+import org.gradle.util.BuildCommencedTimeProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.ArtifactVerificationOperation.ArtifactKind.METADATA
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.ArtifactVerificationOperation.ArtifactKind.REGULAR
+
+class CrossBuildVerificationResultCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def configurationHash = HashCode.fromInt(1)
+    def buildStartTime = System.currentTimeMillis()
+    def timeProvider = Stub(BuildCommencedTimeProvider) {
+        getCurrentTime() >> { buildStartTime }
+    }
+    def store = new InMemoryIndexedCache<HashCode, Long>(BaseSerializerFactory.LONG_SERIALIZER)
+    File artifact
+    File signature
+    CacheRepository cacheRepository
+    CacheScopeMapping cacheScopeMapping
+    InMemoryCacheDecoratorFactory decoratorFactory
+    CrossBuildVerificationResultCache cache
+
+    def setup() {
+        def cacheBuilder
+        cacheBuilder = Mock(CacheBuilder) {
+            withDisplayName(_) >> { cacheBuilder }
+            withLockOptions(_) >> { cacheBuilder }
+            open() >> Stub(PersistentCache) {
+                createCache(_) >> store
+            }
+        }
+        cacheRepository = Stub(CacheRepository) {
+            cache(_) >> cacheBuilder
+        }
+        cacheScopeMapping = Stub(CacheScopeMapping) {
+            getBaseDirectory(_, _, _) >> temporaryFolder.file("cache")
+        }
+        decoratorFactory = Stub(InMemoryCacheDecoratorFactory) {
+            decorator(_, _) >> Stub(CacheDecorator)
+        }
+        cache = createCache(false)
+
+        artifact = temporaryFolder.file("foo-1.0.jar")
+        signature = temporaryFolder.file("foo-1.0.jar.asc")
+        writeBeforeBuildStarted(artifact, "artifact")
+        writeBeforeBuildStarted(signature, "signature")
+    }
+
+    def "remembers verified artifacts"() {
+        when:
+        cache.verified(configurationHash, REGULAR, artifact, signature)
+
+        then:
+        cache.isVerified(configurationHash, REGULAR, artifact, signature)
+    }
+
+    def "does not know about artifacts which were not verified"() {
+        expect:
+        !cache.isVerified(configurationHash, REGULAR, artifact, signature)
+        !cache.isVerified(configurationHash, REGULAR, artifact, null)
+    }
+
+    def "verification result depends on the verification configuration, the artifact kind and the signature"() {
+        when:
+        cache.verified(configurationHash, REGULAR, artifact, signature)
+
+        then:
+        !cache.isVerified(HashCode.fromInt(2), REGULAR, artifact, signature)
+        !cache.isVerified(configurationHash, METADATA, artifact, signature)
+        !cache.isVerified(configurationHash, REGULAR, artifact, null)
+    }
+
+    def "artifact needs to be verified again when its content changed"() {
+        when:
+        cache.verified(configurationHash, REGULAR, artifact, signature)
+        writeBeforeBuildStarted(artifact, "changed artifact", 20_000)
+
+        then:
+        !cache.isVerified(configurationHash, REGULAR, artifact, signature)
+    }
+
+    def "artifact needs to be verified again when its signature changed"() {
+        when:
+        cache.verified(configurationHash, REGULAR, artifact, signature)
+        writeBeforeBuildStarted(signature, "changed signature", 20_000)
+
+        then:
+        !cache.isVerified(configurationHash, REGULAR, artifact, signature)
+    }
+
+    def "does not remember artifacts modified after the build started"() {
+        artifact.text = "modified during the build"
+        artifact.lastModified = timeProvider.currentTime
+
+        when:
+        cache.verified(configurationHash, REGULAR, artifact, signature)
+
+        then:
+        !cache.isVerified(configurationHash, REGULAR, artifact, signature)
+    }
+
+    def "verified signatures expire after a day"() {
+        when:
+        cache.verified(configurationHash, REGULAR, artifact, signature)
+        cache.verified(configurationHash, REGULAR, artifact, null)
+        buildStartTime += TimeUnit.HOURS.toMillis(23)
+
+        then:
+        cache.isVerified(configurationHash, REGULAR, artifact, signature)
+
+        when:
+        buildStartTime += TimeUnit.HOURS.toMillis(2)
+
+        then:
+        !cache.isVerified(configurationHash, REGULAR, artifact, signature)
+        cache.isVerified(configurationHash, REGULAR, artifact, null)
+    }
+
+    def "verifies all artifacts again when keys are refreshed"() {
+        cache.verified(configurationHash, REGULAR, artifact, signature)
+        cache.verified(configurationHash, REGULAR, artifact, null)
+
+        when:
+        def refreshingCache = createCache(true)
+
+        then:
+        !refreshingCache.isVerified(configurationHash, REGULAR, artifact, signature)
+        !refreshingCache.isVerified(configurationHash, REGULAR, artifact, null)
+
+        when:
+        refreshingCache.verified(configurationHash, METADATA, artifact, signature)
+
+        then:
+        cache.isVerified(configurationHash, METADATA, artifact, signature)
+    }
+
+    private CrossBuildVerificationResultCache createCache(boolean refreshKeys) {
+        new CrossBuildVerificationResultCache(cacheRepository, cacheScopeMapping, new ProjectCacheDir(temporaryFolder.file("project-cache"), null, null), decoratorFactory, timeProvider, refreshKeys)
+    }
+
+    private void writeBeforeBuildStarted(File file, String content, long age = 10_000) {
+        file.text = content
+        file.lastModified = timeProvider.currentTime - age
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache.dynamicversions
+
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.util.BuildCommencedTimeProvider
+import spock.lang.Specification
+import spock.lang.Subject
+
+class InMemoryModuleVersionsCacheTest extends Specification {
+    def timeProvider = Stub(BuildCommencedTimeProvider)
+    def delegate = Mock(AbstractModuleVersionsCache)
+    def module = DefaultModuleIdentifier.newId("org", "foo")
+    def key = new ModuleAtRepositoryKey("repo", module)
+
+    @Subject
+    def cache = new InMemoryModuleVersionsCache(timeProvider, delegate)
+
+    def "serves stored entries from memory and writes through to delegate"() {
+        def entry = new ModuleVersionsCacheEntry(["1.0", "1.1"] as Set, 12L)
+
+        when:
+        cache.store(key, entry)
+        def result = cache.get(key)
+
+        then:
+        1 * delegate.store(key, entry)
+        0 * delegate.get(_)
+        result.moduleVersionListing == ["1.0", "1.1"] as Set
+        result.createTimestamp == 12L
+    }
+
+    def "loads entry from delegate only once"() {
+        def entry = new ModuleVersionsCacheEntry(["1.0"] as Set, 12L)
+
+        when:
+        def first = cache.get(key)
+        def second = cache.get(key)
+
+        then:
+        1 * delegate.get(key) >> entry
+        first.moduleVersionListing == ["1.0"] as Set
+        second.moduleVersionListing == ["1.0"] as Set
+    }
+
+    def "remembers modules unknown to delegate until a listing is stored"() {
+        def entry = new ModuleVersionsCacheEntry(["2.0"] as Set, 12L)
+
+        when:
+        def first = cache.get(key)
+        def second = cache.get(key)
+
+        then:
+        1 * delegate.get(key) >> null
+        first == null
+        second == null
+
+        when:
+        cache.store(key, entry)
+
+        then:
+        cache.get(key).moduleVersionListing == ["2.0"] as Set
+    }
+
+    def "keeps listings per repository"() {
+        def otherKey = new ModuleAtRepositoryKey("other", module)
+
+        when:
+        cache.store(key, new ModuleVersionsCacheEntry(["1.0"] as Set, 12L))
+
+        then:
+        cache.get(otherKey) == null
+        1 * delegate.get(otherKey) >> null
+    }
+}
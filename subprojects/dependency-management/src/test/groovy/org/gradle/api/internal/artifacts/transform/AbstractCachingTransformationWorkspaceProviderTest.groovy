@@ -94,6 +94,107 @@ class AbstractCachingTransformationWorkspaceProviderTest extends ConcurrentSpec
         !workspaceProvider.getCachedResult(new TestWorkspaceIdentity("second"))
     }
 
+    def "does not keep failed results of transformations executed without caching failures"() {
+        def failure = Try.failure(new RuntimeException("broken"))
+        def success = Try.successful(ImmutableList.of())
+
+        when:
+        def result = workspaceProvider.withoutCachingFailures {
+            workspaceProvider.withWorkspace(new TestWorkspaceIdentity("failing")) { id, workspace -> failure }
+        }
+        workspaceProvider.withoutCachingFailures {
+            workspaceProvider.withWorkspace(new TestWorkspaceIdentity("succeeding")) { id, workspace -> success }
+        }
+
+        then:
+        result == failure
+        !workspaceProvider.getCachedResult(new TestWorkspaceIdentity("failing"))
+        workspaceProvider.getCachedResult(new TestWorkspaceIdentity("succeeding")) == success
+
+        when:
+        workspaceProvider.withWorkspace(new TestWorkspaceIdentity("failing")) { id, workspace -> failure }
+
+        then:
+        workspaceProvider.getCachedResult(new TestWorkspaceIdentity("failing")) == failure
+    }
+
+    def "evicts results when the maximum weight is exceeded"() {
+        def provider = new AbstractCachingTransformationWorkspaceProvider(new TestTransformationWorkspaceProvider(tmpDir.file("transforms"), executionHistoryStore), 4) {}
+
+        when:
+        provider.withWorkspace(new TestWorkspaceIdentity("first")) { id, workspace ->
+            return Try.successful(ImmutableList.of(tmpDir.file("a"), tmpDir.file("b")))
+        }
+        provider.withWorkspace(new TestWorkspaceIdentity("second")) { id, workspace ->
+            return Try.successful(ImmutableList.of(tmpDir.file("c"), tmpDir.file("d")))
+        }
+
+        then:
+        !provider.getCachedResult(new TestWorkspaceIdentity("first"))
+        provider.getCachedResult(new TestWorkspaceIdentity("second"))
+        provider.statistics.evictionCount == 1
+        provider.statistics.size == 1
+    }
+
+    def "records hits, misses and evictions"() {
+        when:
+        2.times {
+            workspaceProvider.withWorkspace(new TestWorkspaceIdentity("first")) { id, workspace ->
+                return Try.successful(ImmutableList.of())
+            }
+        }
+        workspaceProvider.withWorkspace(new TestWorkspaceIdentity("second")) { id, workspace ->
+            return Try.successful(ImmutableList.of())
+        }
+        workspaceProvider.evictInMemoryCache(Long.MAX_VALUE)
+        def statistics = workspaceProvider.statistics
+
+        then:
+        statistics.hitCount == 1
+        statistics.missCount == 2
+        statistics.evictionCount == 2
+        statistics.size == 0
+    }
+
+    def "evicts results until the requested weight has been evicted"() {
+        ["first", "second", "third"].each { name ->
+            workspaceProvider.withWorkspace(new TestWorkspaceIdentity(name)) { id, workspace ->
+                return Try.successful(ImmutableList.of(tmpDir.file(name)))
+            }
+        }
+
+        when:
+        def evictedWeight = workspaceProvider.evictInMemoryCache(3)
+
+        then:
+        evictedWeight == 4
+        workspaceProvider.inMemoryCacheWeight == 2
+        workspaceProvider.statistics.evictionCount == 2
+        workspaceProvider.statistics.size == 1
+    }
+
+    def "statistics start from zero after reset"() {
+        2.times {
+            workspaceProvider.withWorkspace(new TestWorkspaceIdentity("first")) { id, workspace ->
+                return Try.successful(ImmutableList.of())
+            }
+        }
+        workspaceProvider.evictInMemoryCache(Long.MAX_VALUE)
+
+        when:
+        workspaceProvider.resetStatistics()
+        workspaceProvider.withWorkspace(new TestWorkspaceIdentity("second")) { id, workspace ->
+            return Try.successful(ImmutableList.of())
+        }
+        def statistics = workspaceProvider.statistics
+
+        then:
+        statistics.hitCount == 0
+        statistics.missCount == 1
+        statistics.evictionCount == 0
+        statistics.size == 1
+    }
+
     private static class TestWorkspaceIdentity implements TransformationWorkspaceIdentity {
         private final String name
 
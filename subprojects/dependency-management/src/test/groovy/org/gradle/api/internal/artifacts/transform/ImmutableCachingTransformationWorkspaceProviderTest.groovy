@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.transform
+
+import com.google.common.collect.ImmutableList
+import org.gradle.internal.Try
+import org.gradle.internal.execution.history.ExecutionHistoryStore
+import org.gradle.process.internal.health.memory.MemoryHolder
+import org.gradle.process.internal.health.memory.MemoryManager
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class ImmutableCachingTransformationWorkspaceProviderTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    MemoryHolder memoryHolder
+    def memoryManager = Mock(MemoryManager) {
+        addMemoryHolder(_) >> { MemoryHolder holder -> memoryHolder = holder }
+    }
+
+    def "registers and unregisters as memory holder"() {
+        when:
+        def provider = createProvider()
+
+        then:
+        memoryHolder != null
+
+        when:
+        provider.stop()
+
+        then:
+        1 * memoryManager.removeMemoryHolder(memoryHolder)
+    }
+
+    def "evicts part of the cached results when memory is requested"() {
+        def provider = createProvider()
+        def identities = (1..4).collect { identity("id$it") }
+        identities.each { identity ->
+            provider.withWorkspace(identity) { id, workspace -> Try.successful(ImmutableList.of(tmpDir.file(identity.identity))) }
+        }
+
+        when:
+        memoryHolder.attemptToRelease(2048)
+
+        then:
+        identities.count { provider.getCachedResult(it) } == 3
+        provider.statistics.evictionCount == 1
+
+        when:
+        memoryHolder.attemptToRelease(Long.MAX_VALUE)
+
+        then:
+        identities.count { provider.getCachedResult(it) } == 1
+        provider.statistics.evictionCount == 3
+    }
+
+    def "rejects negative memory amounts"() {
+        createProvider()
+
+        when:
+        memoryHolder.attemptToRelease(-1)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private ImmutableCachingTransformationWorkspaceProvider createProvider() {
+        new ImmutableCachingTransformationWorkspaceProvider(new TestTransformationWorkspaceProvider(tmpDir.file("transforms"), Mock(ExecutionHistoryStore)), memoryManager)
+    }
+
+    private TransformationWorkspaceIdentity identity(String name) {
+        Stub(TransformationWorkspaceIdentity) {
+            getIdentity() >> name
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.transform
+
+import org.gradle.api.Task
+import org.gradle.api.artifacts.component.ComponentArtifactIdentifier
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier
+import org.gradle.api.artifacts.component.ProjectComponentIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvableArtifact
+import org.gradle.api.internal.tasks.NodeExecutionContext
+import org.gradle.api.internal.tasks.TaskDependencyResolveContext
+import org.gradle.execution.ProjectExecutionServiceRegistry
+import org.gradle.internal.Try
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.work.WorkerLeaseService
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.function.Supplier
+
+class SpeculativeTransformationExecutorTest extends Specification {
+    def workerLeaseService = Stub(WorkerLeaseService) {
+        withLocks(_, _ as Runnable) >> { locks, Runnable action -> action.run() }
+    }
+    def executorFactory = new DefaultExecutorFactory()
+    def projectContext = Stub(NodeExecutionContext)
+    def projectExecutionServices = Mock(ProjectExecutionServiceRegistry) {
+        forProject(null) >> projectContext
+    }
+    def workspaceProvider = Mock(ImmutableCachingTransformationWorkspaceProvider)
+    def executor = new SpeculativeTransformationExecutor(executorFactory, workerLeaseService, projectExecutionServices, workspaceProvider, 2)
+
+    def transformer = Mock(Transformer)
+    def transformationStep = Mock(TransformationStep) {
+        getTransformer() >> transformer
+    }
+    def dependenciesResolver = Stub(ExecutionGraphDependenciesResolver)
+    def file = new File("input.jar")
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "executes transformation of external artifact in the background with the services of the owning project"() {
+        def invocation = Mock(CacheableInvocation)
+        def node = initialNode(ModuleComponentIdentifier)
+        def executed = new CountDownLatch(1)
+        transformer.isIsolated() >> true
+
+        when:
+        executor.maybeSchedule(node)
+        executor.maybeSchedule(node)
+        executed.await(10, TimeUnit.SECONDS)
+        executor.stop()
+
+        then:
+        1 * transformationStep.createInvocation({ it.files == [file] }, dependenciesResolver, projectContext) >> invocation
+        1 * workspaceProvider.withoutCachingFailures(_) >> { Supplier action -> action.get() }
+        1 * invocation.invoke() >> {
+            executed.countDown()
+            Try.successful(Stub(TransformationSubject))
+        }
+        1 * projectExecutionServices.close()
+    }
+
+    def "executes all steps of chained transformation of external artifact"() {
+        def previousTransformer = Mock(Transformer)
+        def previousStep = Mock(TransformationStep) {
+            getTransformer() >> previousTransformer
+        }
+        def previousInvocation = Mock(CacheableInvocation)
+        def invocation = Mock(CacheableInvocation)
+        def intermediateSubject = Stub(TransformationSubject)
+        def node = TransformationNode.chained(transformationStep, initialNode(ModuleComponentIdentifier, previousStep), dependenciesResolver, Stub(BuildOperationExecutor), Stub(ArtifactTransformListener))
+        def executed = new CountDownLatch(1)
+        previousTransformer.isIsolated() >> true
+        transformer.isIsolated() >> true
+
+        when:
+        executor.maybeSchedule(node)
+        executed.await(10, TimeUnit.SECONDS)
+        executor.stop()
+
+        then:
+        1 * workspaceProvider.withoutCachingFailures(_) >> { Supplier action -> action.get() }
+        1 * previousStep.createInvocation({ it.files == [file] }, dependenciesResolver, projectContext) >> previousInvocation
+        1 * previousInvocation.invoke() >> Try.successful(intermediateSubject)
+        1 * transformationStep.createInvocation(intermediateSubject, dependenciesResolver, projectContext) >> invocation
+        1 * invocation.invoke() >> {
+            executed.countDown()
+            Try.successful(Stub(TransformationSubject))
+        }
+    }
+
+    def "does not execute later steps of chained transformation when a previous step fails"() {
+        def previousTransformer = Mock(Transformer)
+        def previousStep = Mock(TransformationStep) {
+            getTransformer() >> previousTransformer
+        }
+        def previousInvocation = Mock(CacheableInvocation)
+        def node = TransformationNode.chained(transformationStep, initialNode(ModuleComponentIdentifier, previousStep), dependenciesResolver, Stub(BuildOperationExecutor), Stub(ArtifactTransformListener))
+        def executed = new CountDownLatch(1)
+        previousTransformer.isIsolated() >> true
+        transformer.isIsolated() >> true
+
+        when:
+        executor.maybeSchedule(node)
+        executed.await(10, TimeUnit.SECONDS)
+        executor.stop()
+
+        then:
+        1 * workspaceProvider.withoutCachingFailures(_) >> { Supplier action -> action.get() }
+        1 * previousStep.createInvocation(_, _, _) >> previousInvocation
+        1 * previousInvocation.invoke() >> {
+            executed.countDown()
+            Try.failure(new RuntimeException("broken"))
+        }
+        0 * transformationStep.createInvocation(_, _, _)
+    }
+
+    def "does not execute chained transformation when #description"() {
+        def previousTransformer = Mock(Transformer)
+        def previousStep = Mock(TransformationStep) {
+            getTransformer() >> previousTransformer
+        }
+        def node = TransformationNode.chained(transformationStep, initialNode(ModuleComponentIdentifier, previousStep), dependenciesResolver, Stub(BuildOperationExecutor), Stub(ArtifactTransformListener))
+        previousTransformer.isIsolated() >> previousIsolated
+        previousTransformer.requiresDependencies() >> previousRequiresDependencies
+        transformer.isIsolated() >> true
+
+        when:
+        executor.maybeSchedule(node)
+        executor.stop()
+
+        then:
+        0 * previousStep.createInvocation(_, _, _)
+        0 * transformationStep.createInvocation(_, _, _)
+
+        where:
+        description                                     | previousIsolated | previousRequiresDependencies
+        "parameters of previous step are not isolated"  | false            | false
+        "previous step requires dependencies"           | true             | true
+    }
+
+    def "does not execute transformation of #description"() {
+        def node = initialNode(componentType)
+        transformer.isIsolated() >> isolated
+        transformer.requiresDependencies() >> requiresDependencies
+        transformer.visitDependencies(_) >> { TaskDependencyResolveContext context ->
+            if (hasTaskDependencies) {
+                context.add(Stub(Task))
+            }
+        }
+
+        when:
+        executor.maybeSchedule(node)
+        executor.stop()
+
+        then:
+        0 * transformationStep.createInvocation(_, _, _)
+
+        where:
+        description                          | componentType              | isolated | requiresDependencies | hasTaskDependencies
+        "project artifact"                   | ProjectComponentIdentifier | true     | false                | false
+        "transform requiring dependencies"   | ModuleComponentIdentifier  | true     | true                 | false
+        "transform with task dependencies"   | ModuleComponentIdentifier  | true     | false                | true
+        "transform with non-isolated params" | ModuleComponentIdentifier  | false    | false                | false
+    }
+
+    private TransformationNode initialNode(Class<?> componentType, TransformationStep step = transformationStep) {
+        def artifactId = Stub(ComponentArtifactIdentifier) {
+            getComponentIdentifier() >> Stub(componentType)
+        }
+        def artifact = Stub(ResolvableArtifact) {
+            getId() >> artifactId
+            getFile() >> file
+        }
+        return TransformationNode.initial(step, artifact, dependenciesResolver, Stub(BuildOperationExecutor), Stub(ArtifactTransformListener))
+    }
+}
@@ -19,23 +19,22 @@
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Optional;
 
 public interface FileWatcherRegistry extends Closeable {
 
     interface ChangeHandler {
-        void handleChange(Type type, Path path);
+        /**
+         * Handles a batch of changed paths.
+         *
+         * None of the paths is a descendant of another path in the batch.
+         */
+        void handleChanges(Collection<Path> paths);
 
         void handleLostState();
     }
 
-    enum Type {
-        CREATED,
-        MODIFIED,
-        REMOVED,
-        INVALIDATED
-    }
-
     FileWatcherUpdater getFileWatcherUpdater();
 
     /**
@@ -53,5 +52,13 @@ interface FileWatchingStatistics {
         Optional<Throwable> getErrorWhileReceivingFileChanges();
         boolean isUnknownEventEncountered();
         int getNumberOfReceivedEvents();
+        int getNumberOfOverflows();
+        int getNumberOfBatches();
+
+        /**
+         * The number of received events which didn't need separate handling, since they were
+         * duplicates or below another changed path in the same batch.
+         */
+        int getNumberOfCoalescedEvents();
     }
 }
@@ -26,20 +26,24 @@
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
-import static org.gradle.internal.watch.registry.FileWatcherRegistry.Type.CREATED;
-import static org.gradle.internal.watch.registry.FileWatcherRegistry.Type.INVALIDATED;
-import static org.gradle.internal.watch.registry.FileWatcherRegistry.Type.MODIFIED;
-import static org.gradle.internal.watch.registry.FileWatcherRegistry.Type.REMOVED;
-
 public class DefaultFileWatcherRegistry implements FileWatcherRegistry {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultFileWatcherRegistry.class);
 
+    /**
+     * How long to wait for more events after receiving an event, so bursts of changes are handled as a single batch.
+     */
+    private static final long BATCH_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int MAX_BATCH_SIZE = 10_000;
+
     private final FileWatcher watcher;
     private final BlockingQueue<FileWatchEvent> fileEvents;
     private final Thread eventConsumerThread;
@@ -59,43 +63,22 @@ public DefaultFileWatcherRegistry(FileWatcher watcher, ChangeHandler handler, Fi
     private Thread createAndStartEventConsumerThread(ChangeHandler handler) {
         Thread thread = new Thread(() -> {
             try {
+                EventBatch batch = new EventBatch(handler);
                 while (consumeEvents) {
                     FileWatchEvent nextEvent = fileEvents.take();
+                    long batchDeadline = System.nanoTime() + BATCH_WINDOW_NANOS;
+                    while (nextEvent != null) {
+                        if (!stopping) {
+                            nextEvent.handleEvent(batch);
+                        }
+                        long remainingNanos = batchDeadline - System.nanoTime();
+                        if (!consumeEvents || batch.isFull() || remainingNanos <= 0) {
+                            break;
+                        }
+                        nextEvent = fileEvents.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    }
                     if (!stopping) {
-                        nextEvent.handleEvent(new FileWatchEvent.Handler() {
-                            @Override
-                            public void handleChangeEvent(FileWatchEvent.ChangeType type, String absolutePath) {
-                                fileWatchingStatistics.updateAndGet(MutableFileWatchingStatistics::eventReceived);
-                                handler.handleChange(convertType(type), Paths.get(absolutePath));
-                            }
-
-                            @Override
-                            public void handleUnknownEvent(String absolutePath) {
-                                fileWatchingStatistics.updateAndGet(MutableFileWatchingStatistics::unknownEventEncountered);
-                                handler.handleLostState();
-                            }
-
-                            @Override
-                            public void handleOverflow(FileWatchEvent.OverflowType type, @Nullable String absolutePath) {
-                                if (absolutePath == null) {
-                                    handler.handleLostState();
-                                } else {
-                                    handler.handleChange(INVALIDATED, Paths.get(absolutePath));
-                                }
-                            }
-
-                            @Override
-                            public void handleFailure(Throwable failure) {
-                                LOGGER.error("Error while receiving file changes", failure);
-                                fileWatchingStatistics.updateAndGet(statistics -> statistics.errorWhileReceivingFileChanges(failure));
-                                handler.handleLostState();
-                            }
-
-                            @Override
-                            public void handleTerminated() {
-                                consumeEvents = false;
-                            }
-                        });
+                        batch.flush();
                     }
                 }
             } catch (InterruptedException e) {
@@ -109,26 +92,90 @@ public void handleTerminated() {
         return thread;
     }
 
+    /**
+     * Collects the changes received during the batch window, so they can be handled together.
+     *
+     * Changed paths below another changed path in the same batch are dropped,
+     * since invalidating the ancestor already invalidates them.
+     */
+    private class EventBatch implements FileWatchEvent.Handler {
+        private final ChangeHandler handler;
+        private final Set<Path> changedPaths = new HashSet<>();
+        private int numberOfEvents;
+
+        public EventBatch(ChangeHandler handler) {
+            this.handler = handler;
+        }
+
+        public boolean isFull() {
+            return changedPaths.size() >= MAX_BATCH_SIZE;
+        }
+
+        @Override
+        public void handleChangeEvent(FileWatchEvent.ChangeType type, String absolutePath) {
+            fileWatchingStatistics.updateAndGet(MutableFileWatchingStatistics::eventReceived);
+            addChange(absolutePath);
+        }
+
+        @Override
+        public void handleUnknownEvent(String absolutePath) {
+            fileWatchingStatistics.updateAndGet(MutableFileWatchingStatistics::unknownEventEncountered);
+            handleLostState();
+        }
+
+        @Override
+        public void handleOverflow(FileWatchEvent.OverflowType type, @Nullable String absolutePath) {
+            fileWatchingStatistics.updateAndGet(MutableFileWatchingStatistics::overflowEncountered);
+            if (absolutePath == null) {
+                handleLostState();
+            } else {
+                LOGGER.debug("Handling VFS overflow for {}", absolutePath);
+                addChange(absolutePath);
+            }
+        }
+
+        @Override
+        public void handleFailure(Throwable failure) {
+            LOGGER.error("Error while receiving file changes", failure);
+            fileWatchingStatistics.updateAndGet(statistics -> statistics.errorWhileReceivingFileChanges(failure));
+            handleLostState();
+        }
+
+        @Override
+        public void handleTerminated() {
+            consumeEvents = false;
+        }
+
+        private void addChange(String absolutePath) {
+            numberOfEvents++;
+            changedPaths.add(Paths.get(absolutePath));
+        }
+
+        private void handleLostState() {
+            // All state is dropped, so there is no need to handle the changes received so far
+            changedPaths.clear();
+            numberOfEvents = 0;
+            handler.handleLostState();
+        }
+
+        public void flush() {
+            if (changedPaths.isEmpty()) {
+                return;
+            }
+            Set<Path> pathsToInvalidate = WatchRootUtil.resolveRootsToWatch(changedPaths);
+            int batchedEvents = numberOfEvents;
+            changedPaths.clear();
+            numberOfEvents = 0;
+            fileWatchingStatistics.updateAndGet(statistics -> statistics.batchHandled(batchedEvents, pathsToInvalidate.size()));
+            handler.handleChanges(pathsToInvalidate);
+        }
+    }
+
     @Override
     public FileWatcherUpdater getFileWatcherUpdater() {
         return fileWatcherUpdater;
     }
 
-    private static Type convertType(FileWatchEvent.ChangeType type) {
-        switch (type) {
-            case CREATED:
-                return CREATED;
-            case MODIFIED:
-                return MODIFIED;
-            case REMOVED:
-                return REMOVED;
-            case INVALIDATED:
-                return INVALIDATED;
-            default:
-                throw new AssertionError();
-        }
-    }
-
     @Override
     public FileWatchingStatistics getAndResetStatistics() {
         return fileWatchingStatistics.getAndSet(new MutableFileWatchingStatistics());
@@ -154,6 +201,9 @@ public void close() throws IOException {
     private static class MutableFileWatchingStatistics implements FileWatchingStatistics {
         private boolean unknownEventEncountered;
         private int numberOfReceivedEvents;
+        private int numberOfOverflows;
+        private int numberOfBatches;
+        private int numberOfCoalescedEvents;
         private Throwable errorWhileReceivingFileChanges;
 
         @Override
@@ -171,6 +221,21 @@ public int getNumberOfReceivedEvents() {
             return numberOfReceivedEvents;
         }
 
+        @Override
+        public int getNumberOfOverflows() {
+            return numberOfOverflows;
+        }
+
+        @Override
+        public int getNumberOfBatches() {
+            return numberOfBatches;
+        }
+
+        @Override
+        public int getNumberOfCoalescedEvents() {
+            return numberOfCoalescedEvents;
+        }
+
         public MutableFileWatchingStatistics eventReceived() {
             numberOfReceivedEvents++;
             return this;
@@ -183,6 +248,17 @@ public MutableFileWatchingStatistics errorWhileReceivingFileChanges(Throwable er
             return this;
         }
 
+        public MutableFileWatchingStatistics overflowEncountered() {
+            numberOfOverflows++;
+            return this;
+        }
+
+        public MutableFileWatchingStatistics batchHandled(int numberOfEvents, int numberOfInvalidatedPaths) {
+            numberOfBatches++;
+            numberOfCoalescedEvents += numberOfEvents - numberOfInvalidatedPaths;
+            return this;
+        }
+
         public MutableFileWatchingStatistics unknownEventEncountered() {
             unknownEventEncountered = true;
             return this;
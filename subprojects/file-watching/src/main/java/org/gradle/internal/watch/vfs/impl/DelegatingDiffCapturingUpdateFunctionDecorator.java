@@ -41,16 +41,17 @@ public void stopListening() {
     }
 
     @Override
-    public AtomicSnapshotHierarchyReference.UpdateFunction decorate(SnapshotHierarchy.DiffCapturingUpdateFunction updateFunction) {
+    public AtomicSnapshotHierarchyReference.OptimisticUpdateFunction decorate(SnapshotHierarchy.DiffCapturingUpdateFunction updateFunction) {
         ErrorHandlingDiffPublisher currentErrorHandlingDiffPublisher = errorHandlingDiffPublisher;
         if (currentErrorHandlingDiffPublisher == null) {
-            return root -> updateFunction.update(root, SnapshotHierarchy.NodeDiffListener.NOOP);
+            return root -> AtomicSnapshotHierarchyReference.PreparedUpdate.of(updateFunction.update(root, SnapshotHierarchy.NodeDiffListener.NOOP));
         }
 
-        SnapshotCollectingDiffListener diffListener = new SnapshotCollectingDiffListener(watchFilter);
         return root -> {
+            // The update may be prepared more than once, so each attempt captures its own diff
+            SnapshotCollectingDiffListener diffListener = new SnapshotCollectingDiffListener(watchFilter);
             SnapshotHierarchy newRoot = updateFunction.update(root, diffListener);
-            return currentErrorHandlingDiffPublisher.publishSnapshotDiff(diffListener, newRoot);
+            return AtomicSnapshotHierarchyReference.PreparedUpdate.of(newRoot, committedRoot -> currentErrorHandlingDiffPublisher.publishSnapshotDiff(diffListener, committedRoot));
         };
     }
 
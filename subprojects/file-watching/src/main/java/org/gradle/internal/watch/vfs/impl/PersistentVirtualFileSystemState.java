@@ -0,0 +1,360 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import org.gradle.internal.file.DefaultFileHierarchySet;
+import org.gradle.internal.file.FileHierarchySet;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.CompleteDirectorySnapshot;
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persists the complete snapshots of the virtual file system when the daemon stops,
+ * so that a new daemon can start with a warm virtual file system.
+ *
+ * The state is kept in a separate file for each root project directory, containing the snapshots below that directory.
+ * Daemons building different projects therefore don't overwrite each other's state.
+ * The state file is kept after reading it, so every daemon building the project can start from it.
+ *
+ * The persisted snapshots are only trusted after validating them against the file system:
+ * regular files need to have the same length and modification time, missing files still need to be missing,
+ * and directories need to have the same directory listing as when the state was written.
+ * Regular files modified shortly before the state was written are not trusted either,
+ * since a later modification could leave the same modification time behind on file systems with a coarse timestamp resolution.
+ * Snapshots failing validation are dropped, keeping the valid parts of the hierarchy below them.
+ * Snapshots accessed via symbolic links are never persisted, since they are not watched.
+ * The state file ends with a checksum of its content, and is ignored when the checksum doesn't match.
+ */
+public class PersistentVirtualFileSystemState {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistentVirtualFileSystemState.class);
+
+    private static final int FORMAT_VERSION = 3;
+    private static final int CHECKSUM_LENGTH = 8;
+    private static final long MODIFICATION_TIME_RESOLUTION_MILLIS = 2000;
+
+    private static final byte REGULAR_FILE = 1;
+    private static final byte DIRECTORY = 2;
+    private static final byte MISSING = 3;
+
+    private final File stateDir;
+    private final Stat stat;
+
+    public PersistentVirtualFileSystemState(File stateDir, Stat stat) {
+        this.stateDir = stateDir;
+        this.stat = stat;
+    }
+
+    /**
+     * Writes the snapshot roots of the given hierarchy below the root project directory to the state file of the project, replacing any previous state.
+     *
+     * The state is written to a unique temporary file first, so daemons stopping at the same time never write to the same file.
+     */
+    public void write(File projectRootDirectory, SnapshotHierarchy root) {
+        FileHierarchySet projectHierarchy = DefaultFileHierarchySet.of(projectRootDirectory);
+        List<CompleteFileSystemLocationSnapshot> roots = new ArrayList<>();
+        root.visitSnapshotRoots(snapshot -> {
+            if (projectHierarchy.contains(snapshot.getAbsolutePath())) {
+                roots.add(snapshot);
+            }
+        });
+        File stateFile = stateFileFor(projectRootDirectory);
+        File tempFile = null;
+        try {
+            Files.createDirectories(stateDir.toPath());
+            tempFile = File.createTempFile("vfs-state", ".tmp", stateDir);
+            int written = 0;
+            try (OutputStream fileOutput = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                CheckedOutputStream checkedOutput = new CheckedOutputStream(fileOutput, new CRC32());
+                DataOutputStream output = new DataOutputStream(checkedOutput);
+                output.writeInt(FORMAT_VERSION);
+                output.writeLong(System.currentTimeMillis());
+                for (CompleteFileSystemLocationSnapshot snapshot : roots) {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    if (writeSnapshot(snapshot, new DataOutputStream(buffer))) {
+                        output.writeBoolean(true);
+                        buffer.writeTo(output);
+                        written++;
+                    }
+                }
+                output.writeBoolean(false);
+                output.flush();
+                new DataOutputStream(fileOutput).writeLong(checkedOutput.getChecksum().getValue());
+            }
+            Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.info("Persisted {} virtual file system roots to {}", written, stateFile);
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't persist virtual file system state to {}", stateFile, e);
+            if (tempFile != null) {
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads the persisted snapshots of the root project directory and returns the ones which are still up-to-date.
+     *
+     * Only corrupt state files are removed.
+     */
+    public List<CompleteFileSystemLocationSnapshot> readValidSnapshots(File projectRootDirectory) {
+        List<CompleteFileSystemLocationSnapshot> validSnapshots = new ArrayList<>();
+        File stateFile = stateFileFor(projectRootDirectory);
+        if (!stateFile.isFile()) {
+            return validSnapshots;
+        }
+        boolean corrupt = false;
+        try (RandomAccessFile file = new RandomAccessFile(stateFile, "r")) {
+            FileChannel channel = file.getChannel();
+            if (!hasValidChecksum(channel)) {
+                LOGGER.warn("Virtual file system state in {} is corrupt, ignoring it", stateFile);
+                corrupt = true;
+                return validSnapshots;
+            }
+            channel.position(0);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            if (input.readInt() != FORMAT_VERSION) {
+                return validSnapshots;
+            }
+            long writeTime = input.readLong();
+            while (input.readBoolean()) {
+                readSnapshot(input, writeTime, validSnapshots);
+            }
+        } catch (EOFException e) {
+            LOGGER.warn("Virtual file system state in {} is truncated, ignoring remaining state", stateFile);
+            corrupt = true;
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't read virtual file system state from {}", stateFile, e);
+        } finally {
+            if (corrupt) {
+                //noinspection ResultOfMethodCallIgnored
+                stateFile.delete();
+            }
+        }
+        return validSnapshots;
+    }
+
+    private File stateFileFor(File projectRootDirectory) {
+        return new File(stateDir, Hashing.hashString(projectRootDirectory.getAbsolutePath()).toString() + ".bin");
+    }
+
+    /**
+     * Verifies the checksum at the end of the state file before reading any snapshot, so corrupt state is never trusted.
+     */
+    private static boolean hasValidChecksum(FileChannel channel) throws IOException {
+        long contentLength = channel.size() - CHECKSUM_LENGTH;
+        if (contentLength < 0) {
+            return false;
+        }
+        InputStream input = new BufferedInputStream(Channels.newInputStream(channel));
+        CRC32 checksum = new CRC32();
+        byte[] buffer = new byte[8192];
+        long remaining = contentLength;
+        while (remaining > 0) {
+            int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                return false;
+            }
+            checksum.update(buffer, 0, read);
+            remaining -= read;
+        }
+        return new DataInputStream(input).readLong() == checksum.getValue();
+    }
+
+    private boolean writeSnapshot(CompleteFileSystemLocationSnapshot snapshot, DataOutputStream output) throws IOException {
+        if (snapshot.getAccessType() != AccessType.DIRECT) {
+            return false;
+        }
+        switch (snapshot.getType()) {
+            case RegularFile:
+                FileMetadata metadata = ((RegularFileSnapshot) snapshot).getMetadata();
+                if (!isUnchangedFile(metadata, statIfPossible(snapshot.getAbsolutePath()))) {
+                    return false;
+                }
+                writeLocation(REGULAR_FILE, snapshot, output);
+                writeHash(snapshot.getHash(), output);
+                output.writeLong(metadata.getLastModified());
+                output.writeLong(metadata.getLength());
+                return true;
+            case Missing:
+                writeLocation(MISSING, snapshot, output);
+                return true;
+            case Directory:
+                HashCode listingHash = hashDirectoryListing(snapshot.getAbsolutePath());
+                if (listingHash == null || !hasType(statIfPossible(snapshot.getAbsolutePath()), FileType.Directory)) {
+                    return false;
+                }
+                List<CompleteFileSystemLocationSnapshot> children = ((CompleteDirectorySnapshot) snapshot).getChildren();
+                writeLocation(DIRECTORY, snapshot, output);
+                writeHash(snapshot.getHash(), output);
+                writeHash(listingHash, output);
+                output.writeInt(children.size());
+                for (CompleteFileSystemLocationSnapshot child : children) {
+                    if (!writeSnapshot(child, output)) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    /**
+     * Reads a snapshot, adding the valid snapshots to {@code validSnapshots} when the snapshot itself is not valid.
+     *
+     * @return the snapshot if it is valid, {@code null} otherwise.
+     */
+    @Nullable
+    private CompleteFileSystemLocationSnapshot readSnapshot(DataInputStream input, long writeTime, List<CompleteFileSystemLocationSnapshot> validSnapshots) throws IOException {
+        List<CompleteFileSystemLocationSnapshot> validDescendants = new ArrayList<>();
+        CompleteFileSystemLocationSnapshot snapshot = readAndValidate(input, writeTime, validDescendants);
+        if (snapshot != null) {
+            validSnapshots.add(snapshot);
+        } else {
+            validSnapshots.addAll(validDescendants);
+        }
+        return snapshot;
+    }
+
+    @Nullable
+    private CompleteFileSystemLocationSnapshot readAndValidate(DataInputStream input, long writeTime, List<CompleteFileSystemLocationSnapshot> validDescendants) throws IOException {
+        byte type = input.readByte();
+        String absolutePath = input.readUTF();
+        String name = input.readUTF();
+        switch (type) {
+            case REGULAR_FILE:
+                HashCode contentHash = readHash(input);
+                FileMetadata metadata = DefaultFileMetadata.file(input.readLong(), input.readLong(), AccessType.DIRECT);
+                return metadata.getLastModified() < writeTime - MODIFICATION_TIME_RESOLUTION_MILLIS && isUnchangedFile(metadata, statIfPossible(absolutePath))
+                    ? new RegularFileSnapshot(absolutePath, name, contentHash, metadata)
+                    : null;
+            case MISSING:
+                return hasType(statIfPossible(absolutePath), FileType.Missing)
+                    ? new MissingFileSnapshot(absolutePath, name, AccessType.DIRECT)
+                    : null;
+            case DIRECTORY:
+                HashCode directoryHash = readHash(input);
+                HashCode listingHash = readHash(input);
+                int childCount = input.readInt();
+                boolean valid = hasType(statIfPossible(absolutePath), FileType.Directory)
+                    && listingHash.equals(hashDirectoryListing(absolutePath));
+                List<CompleteFileSystemLocationSnapshot> children = new ArrayList<>(childCount);
+                for (int i = 0; i < childCount; i++) {
+                    CompleteFileSystemLocationSnapshot child = readSnapshot(input, writeTime, validDescendants);
+                    if (child == null) {
+                        valid = false;
+                    } else {
+                        children.add(child);
+                    }
+                }
+                return valid
+                    ? new CompleteDirectorySnapshot(absolutePath, name, children, directoryHash, AccessType.DIRECT)
+                    : null;
+            default:
+                throw new IOException("Unknown snapshot type " + type);
+        }
+    }
+
+    private static boolean isUnchangedFile(FileMetadata expected, @Nullable FileMetadata actual) {
+        return hasType(actual, FileType.RegularFile)
+            && actual.getLastModified() == expected.getLastModified()
+            && actual.getLength() == expected.getLength();
+    }
+
+    private static boolean hasType(@Nullable FileMetadata metadata, FileType type) {
+        return metadata != null
+            && metadata.getType() == type
+            && metadata.getAccessType() == AccessType.DIRECT;
+    }
+
+    @Nullable
+    private FileMetadata statIfPossible(String absolutePath) {
+        try {
+            return stat.stat(new File(absolutePath));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static HashCode hashDirectoryListing(String absolutePath) {
+        String[] names = new File(absolutePath).list();
+        if (names == null) {
+            return null;
+        }
+        Arrays.sort(names);
+        Hasher hasher = Hashing.newHasher();
+        hasher.putInt(names.length);
+        for (String name : names) {
+            hasher.putString(name);
+        }
+        return hasher.hash();
+    }
+
+    private static void writeLocation(byte type, CompleteFileSystemLocationSnapshot snapshot, DataOutputStream output) throws IOException {
+        output.writeByte(type);
+        output.writeUTF(snapshot.getAbsolutePath());
+        output.writeUTF(snapshot.getName());
+    }
+
+    private static void writeHash(HashCode hash, DataOutputStream output) throws IOException {
+        byte[] bytes = hash.toByteArray();
+        output.writeByte(bytes.length);
+        output.write(bytes);
+    }
+
+    private static HashCode readHash(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readUnsignedByte()];
+        input.readFully(bytes);
+        return HashCode.fromBytes(bytes);
+    }
+}
@@ -22,6 +22,7 @@
 import org.gradle.internal.file.FileHierarchySet;
 import org.gradle.internal.file.FileMetadata.AccessType;
 import org.gradle.internal.file.FileType;
+import org.gradle.internal.snapshot.AtomicSnapshotHierarchyReference;
 import org.gradle.internal.snapshot.CompleteDirectorySnapshot;
 import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshotVisitor;
@@ -35,10 +36,16 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -54,6 +61,8 @@ public class WatchingVirtualFileSystem extends AbstractDelegatingVirtualFileSyst
     private final DelegatingDiffCapturingUpdateFunctionDecorator delegatingUpdateFunctionDecorator;
     private final AtomicReference<FileHierarchySet> producedByCurrentBuild = new AtomicReference<>(DefaultFileHierarchySet.of());
     private final Predicate<String> watchFilter;
+    private final PersistentVirtualFileSystemState persistentState;
+    private final Set<File> projectRootDirectories = ConcurrentHashMap.newKeySet();
 
     private FileWatcherRegistry watchRegistry;
 
@@ -69,12 +78,14 @@ public WatchingVirtualFileSystem(
         FileWatcherRegistryFactory watcherRegistryFactory,
         AbstractVirtualFileSystem delegate,
         DelegatingDiffCapturingUpdateFunctionDecorator delegatingUpdateFunctionDecorator,
-        Predicate<String> watchFilter
+        Predicate<String> watchFilter,
+        @Nullable PersistentVirtualFileSystemState persistentState
     ) {
         super(delegate);
         this.watcherRegistryFactory = watcherRegistryFactory;
         this.delegatingUpdateFunctionDecorator = delegatingUpdateFunctionDecorator;
         this.watchFilter = watchFilter;
+        this.persistentState = persistentState;
     }
 
     @Override
@@ -110,6 +121,9 @@ private void updateWatchRegistry(Consumer<FileWatcherRegistry> updateFunction, R
     @Override
     public void updateProjectRootDirectory(File projectRootDirectory) {
         updateWatchRegistry(watchRegistry -> watchRegistry.getFileWatcherUpdater().updateProjectRootDirectory(projectRootDirectory));
+        if (persistentState != null && projectRootDirectories.add(projectRootDirectory)) {
+            restorePersistentState(projectRootDirectory);
+        }
     }
 
     @Override
@@ -153,18 +167,28 @@ private SnapshotHierarchy startWatching(SnapshotHierarchy currentRoot) {
             long startTime = System.currentTimeMillis();
             watchRegistry = watcherRegistryFactory.createFileWatcherRegistry(new FileWatcherRegistry.ChangeHandler() {
                 @Override
-                public void handleChange(FileWatcherRegistry.Type type, Path path) {
+                public void handleChanges(Collection<Path> paths) {
                     try {
-                        LOGGER.debug("Handling VFS change {} {}", type, path);
-                        String absolutePath = path.toString();
-                        if (!(buildRunning && producedByCurrentBuild.get().contains(absolutePath))) {
-                            getRoot().update(root -> {
+                        LOGGER.debug("Handling VFS changes {}", paths);
+                        List<String> locationsToInvalidate = new ArrayList<>(paths.size());
+                        FileHierarchySet producedLocations = producedByCurrentBuild.get();
+                        for (Path path : paths) {
+                            String absolutePath = path.toString();
+                            if (!(buildRunning && producedLocations.contains(absolutePath))) {
+                                locationsToInvalidate.add(absolutePath);
+                            }
+                        }
+                        if (!locationsToInvalidate.isEmpty()) {
+                            getRoot().updateOptimistically(root -> {
                                 SnapshotCollectingDiffListener diffListener = new SnapshotCollectingDiffListener(watchFilter);
-                                SnapshotHierarchy newRoot = root.invalidate(absolutePath, diffListener);
-                                return handleWatcherChangeErrors(
-                                    newRoot,
+                                SnapshotHierarchy newRoot = root;
+                                for (String location : locationsToInvalidate) {
+                                    newRoot = newRoot.invalidate(location, diffListener);
+                                }
+                                return AtomicSnapshotHierarchyReference.PreparedUpdate.of(newRoot, committedRoot -> handleWatcherChangeErrors(
+                                    committedRoot,
                                     () -> diffListener.publishSnapshotDiff(snapshotDiffListener)
-                                );
+                                ));
                             });
                         }
                     } catch (Exception e) {
@@ -191,6 +215,41 @@ public void handleLostState() {
         }
     }
 
+    /**
+     * Adds the still valid snapshots persisted by a previous daemon for the root project directory to the VFS, registering watches for them.
+     *
+     * The persisted snapshots are validated without holding the lock on the VFS root.
+     * If the build changes any files in the meantime, the persisted snapshots are discarded.
+     * Locations which the VFS already knows about are not replaced.
+     */
+    private void restorePersistentState(File projectRootDirectory) {
+        FileHierarchySet producedBeforeValidation = producedByCurrentBuild.get();
+        List<CompleteFileSystemLocationSnapshot> validSnapshots = persistentState.readValidSnapshots(projectRootDirectory);
+        if (validSnapshots.isEmpty()) {
+            return;
+        }
+        getRoot().update(currentRoot -> {
+            if (watchRegistry == null || !buildRunning || producedByCurrentBuild.get() != producedBeforeValidation) {
+                return currentRoot;
+            }
+            SnapshotHierarchy newRoot = currentRoot;
+            for (CompleteFileSystemLocationSnapshot snapshot : validSnapshots) {
+                if (newRoot.getMetadata(snapshot.getAbsolutePath()).isPresent()) {
+                    continue;
+                }
+                newRoot = delegatingUpdateFunctionDecorator
+                    .decorate((root, diffListener) -> root.store(snapshot.getAbsolutePath(), snapshot, diffListener))
+                    .prepare(newRoot)
+                    .commit();
+                if (watchRegistry == null) {
+                    // Registering the watches failed
+                    return newRoot.empty();
+                }
+            }
+            return newRoot;
+        });
+    }
+
     private SnapshotHierarchy handleWatcherChangeErrors(SnapshotHierarchy currentRoot, Runnable runnable) {
         try {
             runnable.run();
@@ -233,6 +292,13 @@ private SnapshotHierarchy handleWatcherRegistryEvents(SnapshotHierarchy currentR
         }
         FileWatcherRegistry.FileWatchingStatistics statistics = watchRegistry.getAndResetStatistics();
         LOGGER.warn("Received {} file system events {}", statistics.getNumberOfReceivedEvents(), eventsFor);
+        LOGGER.info(
+            "Handled file system events {} in {} batches ({} coalesced, {} overflows)",
+            eventsFor,
+            statistics.getNumberOfBatches(),
+            statistics.getNumberOfCoalescedEvents(),
+            statistics.getNumberOfOverflows()
+        );
         if (statistics.isUnknownEventEncountered()) {
             LOGGER.warn("Dropped VFS state due to lost state");
             return stopWatchingAndInvalidateHierarchy(currentRoot);
@@ -306,6 +372,12 @@ public void update(Iterable<String> locations, Runnable action) {
     @Override
     public void close() {
         getRoot().update(currentRoot -> {
+            if (persistentState != null && watchRegistry != null && !buildRunning) {
+                SnapshotHierarchy rootToPersist = handleWatcherRegistryEvents(currentRoot, "before persisting state");
+                for (File projectRootDirectory : projectRootDirectories) {
+                    persistentState.write(projectRootDirectory, rootToPersist);
+                }
+            }
             closeUnderLock();
             return currentRoot.empty();
         });
@@ -354,7 +426,8 @@ public void postVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
         private void invalidateSymlink(CompleteFileSystemLocationSnapshot snapshot) {
             root = delegatingUpdateFunctionDecorator
                 .decorate((root, diffListener) -> root.invalidate(snapshot.getAbsolutePath(), diffListener))
-                .updateRoot(root);
+                .prepare(root)
+                .commit();
         }
 
         public SnapshotHierarchy getRootWithSymlinksRemoved() {
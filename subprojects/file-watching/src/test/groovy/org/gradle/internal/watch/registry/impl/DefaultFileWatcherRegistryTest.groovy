@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.registry.impl
+
+import net.rubygrapefruit.platform.file.FileWatchEvent
+import net.rubygrapefruit.platform.file.FileWatcher
+import org.gradle.internal.watch.registry.FileWatcherRegistry
+import org.gradle.internal.watch.registry.FileWatcherUpdater
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.CopyOnWriteArrayList
+
+class DefaultFileWatcherRegistryTest extends Specification {
+    def watcher = Mock(FileWatcher)
+    BlockingQueue<FileWatchEvent> fileEvents = new ArrayBlockingQueue<>(100)
+    List<Set<Path>> batches = new CopyOnWriteArrayList<>()
+    int lostStateCount
+    def handler = new FileWatcherRegistry.ChangeHandler() {
+        @Override
+        void handleChanges(Collection<Path> paths) {
+            batches.add(paths as Set)
+        }
+
+        @Override
+        void handleLostState() {
+            lostStateCount++
+        }
+    }
+    def conditions = new PollingConditions(timeout: 5)
+
+    def registry
+
+    def cleanup() {
+        registry?.close()
+    }
+
+    def "coalesces events received in one batch"() {
+        def root = Paths.get("root").toAbsolutePath()
+        [
+            changeEvent(root.resolve("a/file.txt")),
+            changeEvent(root.resolve("a")),
+            changeEvent(root.resolve("a/sub/other.txt")),
+            changeEvent(root.resolve("b/file.txt")),
+            changeEvent(root.resolve("b/file.txt"))
+        ].each { fileEvents.put(it) }
+
+        when:
+        registry = createRegistry()
+
+        then:
+        conditions.eventually {
+            assert batches == [[root.resolve("a"), root.resolve("b/file.txt")] as Set]
+        }
+        with(registry.andResetStatistics) {
+            numberOfReceivedEvents == 5
+            numberOfBatches == 1
+            numberOfCoalescedEvents == 3
+        }
+    }
+
+    def "invalidates subtree on overflow with path"() {
+        def overflowing = Paths.get("root/overflowing").toAbsolutePath()
+        fileEvents.put(overflowEvent(overflowing.toString()))
+
+        when:
+        registry = createRegistry()
+
+        then:
+        conditions.eventually {
+            assert batches == [[overflowing] as Set]
+        }
+        registry.andResetStatistics.numberOfOverflows == 1
+        lostStateCount == 0
+    }
+
+    def "drops pending changes when state is lost"() {
+        fileEvents.put(changeEvent(Paths.get("root/file.txt").toAbsolutePath()))
+        fileEvents.put(overflowEvent(null))
+
+        when:
+        registry = createRegistry()
+
+        then:
+        conditions.eventually {
+            assert lostStateCount == 1
+        }
+        batches.empty
+    }
+
+    private DefaultFileWatcherRegistry createRegistry() {
+        watcher.awaitTermination(_, _) >> true
+        new DefaultFileWatcherRegistry(watcher, handler, Stub(FileWatcherUpdater), fileEvents)
+    }
+
+    private FileWatchEvent changeEvent(Path path) {
+        Stub(FileWatchEvent) {
+            handleEvent(_ as FileWatchEvent.Handler) >> { FileWatchEvent.Handler eventHandler -> eventHandler.handleChangeEvent(FileWatchEvent.ChangeType.MODIFIED, path.toString()) }
+        }
+    }
+
+    private FileWatchEvent overflowEvent(String path) {
+        Stub(FileWatchEvent) {
+            handleEvent(_ as FileWatchEvent.Handler) >> { FileWatchEvent.Handler eventHandler -> eventHandler.handleOverflow(null, path) }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.CompleteDirectorySnapshot
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+import static groovy.io.FileType.FILES
+
+@CleanupTestDirectory
+class PersistentVirtualFileSystemStateTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def directorySnapshotter = new DirectorySnapshotter(TestFiles.fileHasher(), new StringInterner())
+    def stateDir = temporaryFolder.file("state")
+    def projectDir = temporaryFolder.createDir("project")
+    def state = new PersistentVirtualFileSystemState(stateDir, TestFiles.fileSystem())
+    def root = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
+
+    def "restores unchanged snapshots"() {
+        def dir = projectDir.createDir("dir")
+        dir.file("a.txt").text = "a"
+        dir.file("sub/b.txt").text = "b"
+        def missing = projectDir.file("missing")
+        def dirSnapshot = snapshotOldDirectory(dir)
+
+        when:
+        state.write(projectDir, store(dirSnapshot, new MissingFileSnapshot(missing.absolutePath, AccessType.DIRECT)))
+        def restored = state.readValidSnapshots(projectDir)
+
+        then:
+        restored*.absolutePath as Set == [dir.absolutePath, missing.absolutePath] as Set
+        def restoredDir = restored.find { it.absolutePath == dir.absolutePath } as CompleteDirectorySnapshot
+        restoredDir.hash == dirSnapshot.hash
+        flatten(restoredDir).collectEntries { [it.absolutePath, it.hash] } == flatten(dirSnapshot).collectEntries { [it.absolutePath, it.hash] }
+    }
+
+    def "keeps the state after reading it"() {
+        def dir = projectDir.createDir("dir")
+        dir.file("a.txt").text = "a"
+
+        when:
+        state.write(projectDir, store(snapshotOldDirectory(dir)))
+
+        then:
+        state.readValidSnapshots(projectDir)*.absolutePath == [dir.absolutePath]
+        state.readValidSnapshots(projectDir)*.absolutePath == [dir.absolutePath]
+    }
+
+    def "keeps the state of each root project separately"() {
+        def otherProjectDir = temporaryFolder.createDir("other-project")
+        def dir = projectDir.createDir("dir")
+        dir.file("a.txt").text = "a"
+        def otherDir = otherProjectDir.createDir("dir")
+        otherDir.file("b.txt").text = "b"
+        def hierarchy = store(snapshotOldDirectory(dir), snapshotOldDirectory(otherDir))
+
+        when:
+        state.write(projectDir, hierarchy)
+        state.write(otherProjectDir, hierarchy)
+
+        then:
+        state.readValidSnapshots(projectDir)*.absolutePath == [dir.absolutePath]
+        state.readValidSnapshots(otherProjectDir)*.absolutePath == [otherDir.absolutePath]
+    }
+
+    def "does not restore files modified shortly before the state was written"() {
+        def dir = projectDir.createDir("dir")
+        def recent = dir.file("recent.txt")
+        recent.text = "recent"
+        def old = dir.file("old.txt")
+        old.text = "old"
+        old.lastModified = System.currentTimeMillis() - 10000
+        recent.lastModified = System.currentTimeMillis() - 100
+
+        when:
+        state.write(projectDir, store(snapshotDirectory(dir)))
+
+        then:
+        state.readValidSnapshots(projectDir)*.absolutePath == [old.absolutePath]
+    }
+
+    def "drops changed snapshots but keeps valid descendants"() {
+        def dir = projectDir.createDir("dir")
+        def changed = dir.file("changed.txt")
+        changed.text = "changed"
+        dir.file("sub/unchanged.txt").text = "unchanged"
+        def added = dir.file("other/added.txt")
+        dir.file("other/existing.txt").text = "existing"
+
+        when:
+        state.write(projectDir, store(snapshotOldDirectory(dir)))
+        changed.text = "changed content"
+        added.text = "added"
+        def restored = state.readValidSnapshots(projectDir)
+
+        then:
+        restored*.absolutePath as Set == [dir.file("sub").absolutePath, dir.file("other/existing.txt").absolutePath] as Set
+    }
+
+    def "does not restore a missing file which has been created"() {
+        def missing = projectDir.file("missing")
+
+        when:
+        state.write(projectDir, store(new MissingFileSnapshot(missing.absolutePath, AccessType.DIRECT)))
+        missing.text = "created"
+
+        then:
+        state.readValidSnapshots(projectDir).empty
+    }
+
+    def "ignores corrupt state"() {
+        def stateFile = stateFileOf(projectDir)
+        stateFile.text = "corrupt"
+
+        expect:
+        state.readValidSnapshots(projectDir).empty
+        !stateFile.exists()
+    }
+
+    def "ignores state with content not matching its checksum"() {
+        def dir = projectDir.createDir("dir")
+        dir.file("a.txt").text = "a"
+        state.write(projectDir, store(snapshotOldDirectory(dir)))
+        def stateFile = stateFileOf(projectDir)
+        def content = stateFile.bytes
+        content[content.length.intdiv(2)] ^= 0xff
+        stateFile.bytes = content
+
+        expect:
+        state.readValidSnapshots(projectDir).empty
+        !stateFile.exists()
+    }
+
+    def "concurrent writes leave a complete state behind"() {
+        def dir = projectDir.createDir("dir")
+        (1..20).each { dir.file("file${it}.txt").text = "content ${it}" }
+        def hierarchy = store(snapshotOldDirectory(dir))
+
+        when:
+        def threads = (1..4).collect {
+            Thread.start {
+                10.times {
+                    new PersistentVirtualFileSystemState(stateDir, TestFiles.fileSystem()).write(projectDir, hierarchy)
+                }
+            }
+        }
+        threads*.join()
+
+        then:
+        state.readValidSnapshots(projectDir)*.absolutePath == [dir.absolutePath]
+        stateDir.list() as List == [stateFileOf(projectDir).name]
+    }
+
+    private File stateFileOf(File projectRootDirectory) {
+        new File(stateDir, Hashing.hashString(projectRootDirectory.absolutePath).toString() + ".bin")
+    }
+
+    private CompleteDirectorySnapshot snapshotOldDirectory(File directory) {
+        directory.eachFileRecurse(FILES) { it.lastModified = System.currentTimeMillis() - 10000 }
+        snapshotDirectory(directory)
+    }
+
+    private SnapshotHierarchy store(CompleteFileSystemLocationSnapshot... snapshots) {
+        snapshots.inject(root) { SnapshotHierarchy currentRoot, snapshot ->
+            currentRoot.store(snapshot.absolutePath, snapshot, SnapshotHierarchy.NodeDiffListener.NOOP)
+        }
+    }
+
+    private CompleteDirectorySnapshot snapshotDirectory(File directory) {
+        directorySnapshotter.snapshot(directory.absolutePath, null, new AtomicBoolean(false)) as CompleteDirectorySnapshot
+    }
+
+    private static List<CompleteFileSystemLocationSnapshot> flatten(CompleteFileSystemLocationSnapshot snapshot) {
+        def result = [snapshot]
+        if (snapshot instanceof CompleteDirectorySnapshot) {
+            snapshot.children.each { result.addAll(flatten(it)) }
+        }
+        result
+    }
+}
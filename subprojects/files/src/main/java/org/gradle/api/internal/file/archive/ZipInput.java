@@ -20,4 +20,9 @@
 
 public interface ZipInput extends Iterable<ZipEntry>, Closeable {
 
+    /**
+     * Returns true when the content of the entries can be read in any order, and concurrently from multiple threads,
+     * while the input is open. Otherwise, the content of each entry has to be read before moving on to the next entry.
+     */
+    boolean isRandomAccess();
 }
@@ -99,6 +99,11 @@ public InputStream get() {
         };
     }
 
+    @Override
+    public boolean isRandomAccess() {
+        return true;
+    }
+
     @Override
     public void close() throws IOException {
         file.close();
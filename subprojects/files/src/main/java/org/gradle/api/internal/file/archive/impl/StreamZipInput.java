@@ -56,6 +56,11 @@ public InputStream get() {
         };
     }
 
+    @Override
+    public boolean isRandomAccess() {
+        return false;
+    }
+
     @Override
     public void close() throws IOException {
         in.close();
@@ -25,6 +25,7 @@ dependencies {
     implementation(project(":platformBase"))
     implementation(project(":platformJvm"))
     implementation(project(":languageJvm"))
+    implementation(project(":normalizationJava"))
     implementation(project(":buildEvents"))
     implementation(project(":toolingApi"))
 
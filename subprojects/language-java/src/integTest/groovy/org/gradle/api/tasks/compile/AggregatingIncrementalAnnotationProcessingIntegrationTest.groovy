@@ -83,6 +83,42 @@ class AggregatingIncrementalAnnotationProcessingIntegrationTest extends Abstract
         outputs.recompiledFiles("Unrelated", "ServiceRegistry", "ServiceRegistryResource.txt")
     }
 
+    def "annotated files are reprocessed when a classpath change only affects an unrelated file"() {
+        given:
+        settingsFile << """
+            include "upstream"
+        """
+        buildFile << """
+            dependencies {
+                implementation project(":upstream")
+            }
+        """
+        def upstream = file("upstream/src/main/java/Upstream.java")
+        upstream.text = "public class Upstream {}"
+        def a = java "@Service class A {}"
+        java "@Service class B {}"
+        java "class Unrelated { Upstream upstream; }"
+
+        outputs.snapshot { run "compileJava" }
+
+        when:
+        upstream.text = "public class Upstream { public void foo() {} }"
+        run "compileJava"
+
+        then:
+        outputs.recompiledFiles("Unrelated", "ServiceRegistry", "ServiceRegistryResource.txt")
+        serviceRegistryReferences("A", "B")
+
+        when:
+        outputs.snapshot()
+        a.text = "@Service class A { public void foo() {} }"
+        run "compileJava"
+
+        then:
+        outputs.recompiledFiles("A", "ServiceRegistry", "ServiceRegistryResource.txt")
+        serviceRegistryReferences("A", "B")
+    }
+
     def "annotated files are reprocessed when a new file is added"() {
         java "@Service class A {}"
         java "class Unrelated {}"
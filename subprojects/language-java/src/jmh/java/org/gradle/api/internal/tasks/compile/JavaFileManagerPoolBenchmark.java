@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.internal.event.DefaultListenerManager;
+import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.process.internal.health.memory.JvmMemoryStatusListener;
+import org.gradle.process.internal.health.memory.MemoryHolder;
+import org.gradle.process.internal.health.memory.MemoryManager;
+import org.gradle.process.internal.health.memory.OsMemoryStatusListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Measures compiling many small modules against the same real-world jars from the benchmark classpath,
+ * with a new file manager for each module or with file managers reused through a {@link JavaFileManagerPool}.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class JavaFileManagerPoolBenchmark {
+    private static final List<String> CLASSPATH_PREFIXES = ImmutableList.of("guava", "groovy", "asm", "commons-lang", "ant-1");
+
+    @Param({"50"})
+    int modules;
+
+    @Param({"false", "true"})
+    boolean reuse;
+
+    JavaCompiler compiler;
+    JavaFileManagerPool pool;
+    List<File> classpath;
+    List<List<File>> moduleSources;
+    Path tempDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        // The jars from the benchmark classpath stand in for jars from the artifact cache
+        pool = new JavaFileManagerPool(new DefaultFileHasher(new DefaultStreamHasher()), new DefaultListenerManager(Scopes.UserHome), new NoOpMemoryManager(), path -> true);
+        classpath = findJars();
+        tempDir = Files.createTempDirectory("file-manager-pool");
+        moduleSources = new ArrayList<>(modules);
+        for (int module = 0; module < modules; module++) {
+            moduleSources.add(generateModule(tempDir.resolve("module" + module), module));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.stop();
+        try (Stream<Path> paths = Files.walk(tempDir)) {
+            paths.sorted(Collections.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void compileModules() throws IOException {
+        for (List<File> sources : moduleSources) {
+            File classesDir = new File(sources.get(0).getParentFile().getParentFile(), "classes");
+            if (reuse) {
+                JavaFileManagerPool.PooledFileManager pooledFileManager = pool.acquire(compiler, null, classpath);
+                try {
+                    compile(pooledFileManager.getFileManager(), sources, classesDir);
+                } finally {
+                    pool.release(pooledFileManager);
+                }
+            } else {
+                try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+                    compile(fileManager, sources, classesDir);
+                }
+            }
+        }
+    }
+
+    private void compile(StandardJavaFileManager fileManager, List<File> sources, File classesDir) throws IOException {
+        fileManager.setLocation(StandardLocation.CLASS_PATH, classpath);
+        fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(classesDir));
+        Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromFiles(sources);
+        if (!compiler.getTask(null, fileManager, null, null, null, compilationUnits).call()) {
+            throw new IllegalStateException("Compilation failed.");
+        }
+    }
+
+    private static List<File> generateModule(Path moduleDir, int module) throws IOException {
+        Path sourceDir = moduleDir.resolve("src");
+        Files.createDirectories(sourceDir);
+        Files.createDirectories(moduleDir.resolve("classes"));
+        List<File> sources = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String className = "Module" + module + "Class" + i;
+            String source = "import com.google.common.collect.ImmutableList;\n"
+                + "import java.util.List;\n"
+                + "public class " + className + " {\n"
+                + "    public List<String> values() {\n"
+                + "        return ImmutableList.of(\"" + className + "\");\n"
+                + "    }\n"
+                + "}\n";
+            Path sourceFile = sourceDir.resolve(className + ".java");
+            Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+            sources.add(sourceFile.toFile());
+        }
+        return sources;
+    }
+
+    private static List<File> findJars() {
+        List<File> jars = new ArrayList<>();
+        for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            File file = new File(path);
+            for (String prefix : CLASSPATH_PREFIXES) {
+                if (file.getName().startsWith(prefix) && file.getName().endsWith(".jar")) {
+                    jars.add(file);
+                    break;
+                }
+            }
+        }
+        if (jars.isEmpty()) {
+            throw new IllegalArgumentException("Could not find any jars on the benchmark classpath.");
+        }
+        return jars;
+    }
+
+    private static class NoOpMemoryManager implements MemoryManager {
+        @Override
+        public void addListener(JvmMemoryStatusListener listener) {
+        }
+
+        @Override
+        public void addListener(OsMemoryStatusListener listener) {
+        }
+
+        @Override
+        public void removeListener(JvmMemoryStatusListener listener) {
+        }
+
+        @Override
+        public void removeListener(OsMemoryStatusListener listener) {
+        }
+
+        @Override
+        public void addMemoryHolder(MemoryHolder holder) {
+        }
+
+        @Override
+        public void removeMemoryHolder(MemoryHolder holder) {
+        }
+
+        @Override
+        public void requestFreeMemory(long memoryAmountBytes) {
+        }
+    }
+}
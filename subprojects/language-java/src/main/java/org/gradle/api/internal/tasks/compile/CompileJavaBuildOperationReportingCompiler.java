@@ -21,6 +21,7 @@
 import org.gradle.api.internal.tasks.compile.incremental.processing.AnnotationProcessingResult;
 import org.gradle.api.internal.tasks.compile.incremental.processing.AnnotationProcessorResult;
 import org.gradle.api.internal.tasks.compile.incremental.processing.IncrementalAnnotationProcessorType;
+import org.gradle.api.internal.tasks.compile.incremental.recomp.DefaultIncrementalCompileResult;
 import org.gradle.api.tasks.WorkResult;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
@@ -62,8 +63,10 @@ public WorkResult call(BuildOperationContext context) {
             }
 
             private Result toBuildOperationResult(WorkResult result) {
-                if (result instanceof JdkJavaCompilerResult) {
-                    AnnotationProcessingResult annotationProcessingResult = ((JdkJavaCompilerResult) result).getAnnotationProcessingResult();
+                // Report the time spent by the annotation processors during incremental compilations, too
+                WorkResult compilerResult = result instanceof DefaultIncrementalCompileResult ? ((DefaultIncrementalCompileResult) result).getCompilerResult() : result;
+                if (compilerResult instanceof JdkJavaCompilerResult) {
+                    AnnotationProcessingResult annotationProcessingResult = ((JdkJavaCompilerResult) compilerResult).getAnnotationProcessingResult();
                     List<AnnotationProcessorDetails> details = new ArrayList<AnnotationProcessorDetails>();
                     for (AnnotationProcessorResult processorResult : annotationProcessingResult.getAnnotationProcessorResults()) {
                         details.add(toAnnotationProcessorDetails(processorResult));
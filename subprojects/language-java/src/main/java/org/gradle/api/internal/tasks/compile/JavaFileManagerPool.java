@@ -0,0 +1,326 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.JavaVersion;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.initialization.SessionLifecycleListener;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.event.ListenerManager;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.vfs.AdditiveCacheLocations;
+import org.gradle.process.internal.health.memory.MemoryHolder;
+import org.gradle.process.internal.health.memory.MemoryManager;
+
+import javax.annotation.Nullable;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the standard file managers of the Java compiler open between compilations in the same process, so that the jars
+ * on the classpath of a compilation are not opened and indexed again by later compilations using them. Enabled with the
+ * {@value #REUSE_PROPERTY} system property, for compilations on Java 9 and later.
+ *
+ * The standard file manager caches the archives it has opened by path, and keeps them open until it is closed. A file manager
+ * is therefore only kept for reuse when all the archives on its classpath are inside additive caches, like the artifact cache,
+ * which are never modified or deleted by the build. Archives built by the build itself would otherwise stay locked on Windows.
+ * A file manager is only reused by a compilation when all the entries of its classpath which the file manager has seen before
+ * still have the same content. Each file manager is used by a single compilation at a time. Idle file managers are closed when
+ * they have not been used for {@value #MAX_IDLE_BUILD_SESSIONS} builds, or when memory is running low.
+ */
+public class JavaFileManagerPool implements Stoppable {
+    public static final String REUSE_PROPERTY = "org.gradle.internal.java.compile.reuse-file-managers";
+    private static final int MAX_IDLE_BUILD_SESSIONS = 3;
+    private static final int MAX_IDLE_FILE_MANAGERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final double MAX_USED_HEAP_RATIO = 0.75;
+    private static final HashCode DIRECTORY = Hashing.signature(JavaFileManagerPool.class.getName() + " : directory");
+    private static final HashCode MISSING = Hashing.signature(JavaFileManagerPool.class.getName() + " : missing");
+
+    private static final List<StandardLocation> RESET_LOCATIONS = ImmutableList.of(
+        StandardLocation.CLASS_PATH,
+        StandardLocation.SOURCE_PATH,
+        StandardLocation.ANNOTATION_PROCESSOR_PATH,
+        StandardLocation.PLATFORM_CLASS_PATH,
+        StandardLocation.CLASS_OUTPUT,
+        StandardLocation.SOURCE_OUTPUT,
+        StandardLocation.NATIVE_HEADER_OUTPUT
+    );
+
+    private static final Logger LOGGER = Logging.getLogger(JavaFileManagerPool.class);
+
+    private final Object lock = new Object();
+    private final List<PooledFileManager> idleFileManagers = new ArrayList<>();
+    private final FileHasher fileHasher;
+    private final ListenerManager listenerManager;
+    private final MemoryManager memoryManager;
+    private final AdditiveCacheLocations additiveCacheLocations;
+    private final SessionLifecycleListener buildSessionListener = new BuildSessionListener();
+    private final MemoryHolder idleFileManagerExpiration = new IdleFileManagerExpiration();
+    private int createdCount;
+    private int reusedCount;
+    private int notReusableCount;
+
+    public JavaFileManagerPool(FileHasher fileHasher, ListenerManager listenerManager, MemoryManager memoryManager, AdditiveCacheLocations additiveCacheLocations) {
+        this.fileHasher = fileHasher;
+        this.listenerManager = listenerManager;
+        this.memoryManager = memoryManager;
+        this.additiveCacheLocations = additiveCacheLocations;
+        listenerManager.addListener(buildSessionListener);
+        memoryManager.addMemoryHolder(idleFileManagerExpiration);
+    }
+
+    public static boolean isReuseEnabled() {
+        return Boolean.getBoolean(REUSE_PROPERTY) && JavaVersion.current().isJava9Compatible();
+    }
+
+    /**
+     * Returns a file manager for a compilation with the given classpath. The file manager has to be released once the
+     * compilation has finished.
+     */
+    public PooledFileManager acquire(JavaCompiler compiler, @Nullable Charset charset, Iterable<File> classpath) {
+        if (!hasOnlyArchivesInsideAdditiveCaches(classpath)) {
+            synchronized (lock) {
+                notReusableCount++;
+            }
+            return new PooledFileManager(compiler.getStandardFileManager(null, null, charset), charset, false);
+        }
+        Map<File, HashCode> classpathHashes = hashEntries(classpath);
+        synchronized (lock) {
+            PooledFileManager bestMatch = null;
+            int bestOverlap = -1;
+            for (PooledFileManager candidate : idleFileManagers) {
+                if (Objects.equals(candidate.charset, charset)) {
+                    int overlap = candidate.overlap(classpathHashes);
+                    if (overlap > bestOverlap) {
+                        bestMatch = candidate;
+                        bestOverlap = overlap;
+                    }
+                }
+            }
+            if (bestMatch != null) {
+                idleFileManagers.remove(bestMatch);
+                bestMatch.acquire(classpathHashes);
+                reusedCount++;
+                return bestMatch;
+            }
+            createdCount++;
+        }
+        PooledFileManager fileManager = new PooledFileManager(compiler.getStandardFileManager(null, null, charset), charset, true);
+        fileManager.acquire(classpathHashes);
+        return fileManager;
+    }
+
+    /**
+     * Returns a file manager whose compilation has finished, so it can be used by another compilation.
+     */
+    public void release(PooledFileManager fileManager) {
+        if (!fileManager.reusable || !fileManager.resetLocations()) {
+            fileManager.stop();
+            return;
+        }
+        List<PooledFileManager> fileManagersToClose = new ArrayList<>();
+        synchronized (lock) {
+            fileManager.idleBuildSessions = 0;
+            idleFileManagers.add(fileManager);
+            if (isHeapRunningLow()) {
+                fileManagersToClose.addAll(idleFileManagers);
+                idleFileManagers.clear();
+            } else {
+                // Close the least recently used file managers first
+                while (idleFileManagers.size() > MAX_IDLE_FILE_MANAGERS) {
+                    fileManagersToClose.add(idleFileManagers.remove(0));
+                }
+            }
+        }
+        CompositeStoppable.stoppable(fileManagersToClose).stop();
+    }
+
+    private boolean hasOnlyArchivesInsideAdditiveCaches(Iterable<File> classpath) {
+        for (File entry : classpath) {
+            if (entry.isFile() && !additiveCacheLocations.isInsideAdditiveCache(entry.getAbsolutePath())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<File, HashCode> hashEntries(Iterable<File> classpath) {
+        Map<File, HashCode> hashes = new HashMap<>();
+        for (File entry : classpath) {
+            HashCode hash;
+            if (entry.isFile()) {
+                hash = fileHasher.hash(entry);
+            } else if (entry.isDirectory()) {
+                hash = DIRECTORY;
+            } else {
+                hash = MISSING;
+            }
+            hashes.put(entry.getAbsoluteFile(), hash);
+        }
+        return hashes;
+    }
+
+    @VisibleForTesting
+    protected boolean isHeapRunningLow() {
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+        return usedHeap > runtime.maxMemory() * MAX_USED_HEAP_RATIO;
+    }
+
+    @Override
+    public void stop() {
+        List<PooledFileManager> fileManagers;
+        synchronized (lock) {
+            fileManagers = new ArrayList<>(idleFileManagers);
+            idleFileManagers.clear();
+        }
+        try {
+            CompositeStoppable.stoppable(fileManagers).stop();
+        } finally {
+            listenerManager.removeListener(buildSessionListener);
+            memoryManager.removeMemoryHolder(idleFileManagerExpiration);
+        }
+    }
+
+    /**
+     * A standard file manager, together with the content of the classpath entries it has seen.
+     */
+    public static class PooledFileManager implements Stoppable {
+        private final StandardJavaFileManager fileManager;
+        @Nullable
+        private final Charset charset;
+        private final boolean reusable;
+        private final Map<File, HashCode> seenEntries = new HashMap<>();
+        private int idleBuildSessions;
+
+        private PooledFileManager(StandardJavaFileManager fileManager, @Nullable Charset charset, boolean reusable) {
+            this.fileManager = fileManager;
+            this.charset = charset;
+            this.reusable = reusable;
+        }
+
+        public StandardJavaFileManager getFileManager() {
+            return fileManager;
+        }
+
+        /**
+         * Returns the number of the given classpath entries this file manager has seen with the same content,
+         * or -1 when it has seen one of them with different content.
+         */
+        private int overlap(Map<File, HashCode> classpathHashes) {
+            int overlap = 0;
+            for (Map.Entry<File, HashCode> entry : classpathHashes.entrySet()) {
+                HashCode seenHash = seenEntries.get(entry.getKey());
+                if (seenHash != null) {
+                    if (!seenHash.equals(entry.getValue())) {
+                        return -1;
+                    }
+                    overlap++;
+                }
+            }
+            return overlap;
+        }
+
+        private void acquire(Map<File, HashCode> classpathHashes) {
+            seenEntries.putAll(classpathHashes);
+        }
+
+        private boolean resetLocations() {
+            try {
+                fileManager.flush();
+                // The locations which have not been set by the options of the next compilation have to be the defaults
+                for (JavaFileManager.Location location : RESET_LOCATIONS) {
+                    fileManager.setLocation(location, null);
+                }
+                return true;
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("Could not reset Java file manager, discarding it.", e);
+                return false;
+            }
+        }
+
+        @Override
+        public void stop() {
+            try {
+                fileManager.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close Java file manager.", e);
+            }
+        }
+    }
+
+    private class BuildSessionListener implements SessionLifecycleListener {
+        @Override
+        public void afterStart() {
+        }
+
+        @Override
+        public void beforeComplete() {
+            List<PooledFileManager> unusedFileManagers = new ArrayList<>();
+            synchronized (lock) {
+                Iterator<PooledFileManager> iterator = idleFileManagers.iterator();
+                while (iterator.hasNext()) {
+                    PooledFileManager fileManager = iterator.next();
+                    if (++fileManager.idleBuildSessions > MAX_IDLE_BUILD_SESSIONS) {
+                        iterator.remove();
+                        unusedFileManagers.add(fileManager);
+                    }
+                }
+                if (createdCount + reusedCount + notReusableCount > 0) {
+                    LOGGER.info("Java file manager reuse: {} file manager(s) created, {} reused, {} could not be reused, {} idle.", createdCount, reusedCount, notReusableCount, idleFileManagers.size());
+                }
+                createdCount = 0;
+                reusedCount = 0;
+                notReusableCount = 0;
+            }
+            CompositeStoppable.stoppable(unusedFileManagers).stop();
+        }
+    }
+
+    private class IdleFileManagerExpiration implements MemoryHolder {
+        @Override
+        public long attemptToRelease(long memoryAmountBytes) throws IllegalArgumentException {
+            if (memoryAmountBytes < 0) {
+                throw new IllegalArgumentException("Negative memory amount");
+            }
+            List<PooledFileManager> fileManagersToClose;
+            synchronized (lock) {
+                fileManagersToClose = new ArrayList<>(idleFileManagers);
+                idleFileManagers.clear();
+            }
+            CompositeStoppable.stoppable(fileManagersToClose).stop();
+            // Closing file managers frees heap of this process, which is not returned to the system right away
+            return 0;
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.gradle.api.internal.tasks.compile;
 
+import com.google.common.collect.ImmutableSet;
 import org.gradle.api.JavaVersion;
 import org.gradle.api.internal.tasks.compile.processing.AnnotationProcessorDeclaration;
 import org.gradle.api.internal.tasks.compile.reflect.GradleStandardJavaFileManager;
@@ -25,6 +26,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileManager;
@@ -39,11 +41,23 @@
 
 public class JdkJavaCompiler implements Compiler<JavaCompileSpec>, Serializable {
     private static final Logger LOGGER = LoggerFactory.getLogger(JdkJavaCompiler.class);
+    private static final Set<String> OPTIONS_PREVENTING_FILE_MANAGER_REUSE = ImmutableSet.of(
+        "--module-path", "-p", "--module-source-path", "--upgrade-module-path", "--patch-module", "--system",
+        "-bootclasspath", "--boot-class-path", "-extdirs", "--extension-directories", "-endorseddirs", "--endorsed-directories"
+    );
+
     private final Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory;
+    @Nullable
+    private final transient JavaFileManagerPool fileManagerPool;
 
     @Inject
     public JdkJavaCompiler(Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory) {
+        this(javaHomeBasedJavaCompilerFactory, null);
+    }
+
+    public JdkJavaCompiler(Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory, @Nullable JavaFileManagerPool fileManagerPool) {
         this.javaHomeBasedJavaCompilerFactory = javaHomeBasedJavaCompilerFactory;
+        this.fileManagerPool = fileManagerPool;
     }
 
     @Override
@@ -64,7 +78,8 @@ private JavaCompiler.CompilationTask createCompileTask(JavaCompileSpec spec, Jdk
         JavaCompiler compiler = javaHomeBasedJavaCompilerFactory.create();
         MinimalJavaCompileOptions compileOptions = spec.getCompileOptions();
         Charset charset = compileOptions.getEncoding() != null ? Charset.forName(compileOptions.getEncoding()) : null;
-        StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, null, charset);
+        JavaFileManagerPool.PooledFileManager pooledFileManager = canReuseFileManager(options) ? fileManagerPool.acquire(compiler, charset, spec.getCompileClasspath()) : null;
+        StandardJavaFileManager standardFileManager = pooledFileManager != null ? pooledFileManager.getFileManager() : compiler.getStandardFileManager(null, null, charset);
         Iterable<? extends JavaFileObject> compilationUnits = standardFileManager.getJavaFileObjectsFromFiles(spec.getSourceFiles());
         boolean hasEmptySourcepaths = JavaVersion.current().isJava9Compatible() && emptySourcepathIn(options);
         JavaFileManager fileManager = GradleStandardJavaFileManager.wrap(standardFileManager, DefaultClassPath.of(spec.getAnnotationProcessorPath()), hasEmptySourcepaths);
@@ -75,10 +90,28 @@ private JavaCompiler.CompilationTask createCompileTask(JavaCompileSpec spec, Jdk
         }
         Set<AnnotationProcessorDeclaration> annotationProcessors = spec.getEffectiveAnnotationProcessors();
         task = new AnnotationProcessingCompileTask(task, annotationProcessors, spec.getAnnotationProcessorPath(), result.getAnnotationProcessingResult());
-        task = new ResourceCleaningCompilationTask(task, fileManager);
+        if (pooledFileManager != null) {
+            task = new ResourceCleaningCompilationTask(task, () -> fileManagerPool.release(pooledFileManager));
+        } else {
+            task = new ResourceCleaningCompilationTask(task, fileManager);
+        }
         return task;
     }
 
+    private boolean canReuseFileManager(List<String> options) {
+        if (fileManagerPool == null) {
+            return false;
+        }
+        for (String option : options) {
+            int separator = option.indexOf('=');
+            String name = separator > 0 ? option.substring(0, separator) : option;
+            if (OPTIONS_PREVENTING_FILE_MANAGER_REUSE.contains(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static boolean emptySourcepathIn(List<String> options) {
         Iterator<String> optionsIter = options.iterator();
         while (optionsIter.hasNext()) {
@@ -39,4 +39,14 @@ public ClassAnalysis create() {
             }
         });
     }
+
+    @Override
+    public ClassAnalysis getClassAnalysis(final HashCode classFileHash, final byte[] classFileContent) {
+        return cache.get(classFileHash, new Factory<ClassAnalysis>() {
+            @Override
+            public ClassAnalysis create() {
+                return analyzer.getClassAnalysis(classFileHash, classFileContent);
+            }
+        });
+    }
 }
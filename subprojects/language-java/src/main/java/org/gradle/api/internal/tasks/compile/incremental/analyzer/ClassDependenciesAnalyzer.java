@@ -22,4 +22,9 @@
 
 public interface ClassDependenciesAnalyzer {
     ClassAnalysis getClassAnalysis(HashCode classFileHash, FileTreeElement classFile);
+
+    /**
+     * Same as {@link #getClassAnalysis(HashCode, FileTreeElement)}, for a class file which has already been read.
+     */
+    ClassAnalysis getClassAnalysis(HashCode classFileHash, byte[] classFileContent);
 }
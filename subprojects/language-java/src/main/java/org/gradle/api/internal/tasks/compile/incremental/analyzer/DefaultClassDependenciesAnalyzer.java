@@ -36,7 +36,11 @@ public DefaultClassDependenciesAnalyzer(StringInterner interner) {
     }
 
     public ClassAnalysis getClassAnalysis(InputStream input) throws IOException {
-        ClassReader reader = new ClassReader(ByteStreams.toByteArray(input));
+        return analyze(ByteStreams.toByteArray(input));
+    }
+
+    private ClassAnalysis analyze(byte[] classFileContent) {
+        ClassReader reader = new ClassReader(classFileContent);
         String className = reader.getClassName().replace("/", ".");
         return ClassDependenciesVisitor.analyze(className, reader, interner);
     }
@@ -54,4 +58,9 @@ public ClassAnalysis getClassAnalysis(HashCode classFileHash, FileTreeElement cl
             throw new RuntimeException("Problems loading class analysis for " + classFile.toString());
         }
     }
+
+    @Override
+    public ClassAnalysis getClassAnalysis(HashCode classFileHash, byte[] classFileContent) {
+        return analyze(classFileContent);
+    }
 }
@@ -70,18 +70,30 @@ public IntSet getRelevantConstants(ClasspathEntrySnapshot other, Set<String> aff
         return result;
     }
 
+    /**
+     * Returns the classes whose ABI changed since the other snapshot. Changes which do not affect the ABI of a class, like changes to method bodies, are ignored.
+     */
     public ClassChanges getChangedClassesSince(ClasspathEntrySnapshot other) {
-        Set<String> modifiedClasses = modifiedSince(other);
+        Set<String> modifiedClasses = modifiedSince(getHashes(), other.getHashes());
         Set<String> addedClasses = addedSince(other);
         return new ClassChanges(modifiedClasses, addedClasses);
     }
 
-    private Set<String> modifiedSince(ClasspathEntrySnapshot other) {
+    /**
+     * Returns the classes whose content changed in any way since the other snapshot.
+     */
+    public ClassChanges getClassesWithChangedContentSince(ClasspathEntrySnapshot other) {
+        Set<String> modifiedClasses = modifiedSince(data.getContentHashes(), other.getData().getContentHashes());
+        Set<String> addedClasses = addedSince(other);
+        return new ClassChanges(modifiedClasses, addedClasses);
+    }
+
+    private static Set<String> modifiedSince(Map<String, HashCode> hashes, Map<String, HashCode> otherHashes) {
         final Set<String> modified = new HashSet<String>();
-        for (Map.Entry<String, HashCode> otherClass : other.getHashes().entrySet()) {
+        for (Map.Entry<String, HashCode> otherClass : otherHashes.entrySet()) {
             String otherClassName = otherClass.getKey();
             HashCode otherClassBytes = otherClass.getValue();
-            HashCode thisClsBytes = getHashes().get(otherClassName);
+            HashCode thisClsBytes = hashes.get(otherClassName);
             if (thisClsBytes == null || !thisClsBytes.equals(otherClassBytes)) {
                 modified.add(otherClassName);
             }
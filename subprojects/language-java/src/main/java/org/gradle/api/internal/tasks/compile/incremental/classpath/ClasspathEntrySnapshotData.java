@@ -24,21 +24,25 @@
 public class ClasspathEntrySnapshotData {
 
     private final Map<String, HashCode> hashes;
+    private final Map<String, HashCode> contentHashes;
     private final ClassSetAnalysisData classAnalysis;
     private final HashCode hash;
 
     /**
      * @param hash of this entry
-     * @param hashes hashes of all classes from the entry
+     * @param hashes hashes of the ABI of all classes from the entry
+     * @param contentHashes hashes of the content of all classes from the entry
      * @param classAnalysis of classes analysis in this entry
      */
-    public ClasspathEntrySnapshotData(HashCode hash, Map<String, HashCode> hashes, ClassSetAnalysisData classAnalysis) {
+    public ClasspathEntrySnapshotData(HashCode hash, Map<String, HashCode> hashes, Map<String, HashCode> contentHashes, ClassSetAnalysisData classAnalysis) {
         assert hash != null;
         assert hashes != null;
+        assert contentHashes != null;
         assert classAnalysis != null;
 
         this.hash = hash;
         this.hashes = hashes;
+        this.contentHashes = contentHashes;
         this.classAnalysis = classAnalysis;
     }
 
@@ -46,6 +50,10 @@ public Map<String, HashCode> getHashes() {
         return hashes;
     }
 
+    public Map<String, HashCode> getContentHashes() {
+        return contentHashes;
+    }
+
     public ClassSetAnalysisData getClassAnalysis() {
         return classAnalysis;
     }
@@ -24,37 +24,67 @@
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.HashCodeSerializer;
-import org.gradle.internal.serialize.InterningStringSerializer;
-import org.gradle.internal.serialize.MapSerializer;
 import org.gradle.internal.serialize.Serializer;
 
+import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Writes the class analysis before the class hashes, so the class names of the hashes can refer to the class name table of the analysis.
+ */
 public class ClasspathEntrySnapshotDataSerializer extends AbstractSerializer<ClasspathEntrySnapshotData> {
 
-    private final MapSerializer<String, HashCode> mapSerializer;
+    private final StringInterner interner;
     private final Serializer<ClassSetAnalysisData> analysisSerializer;
     private final HashCodeSerializer hashCodeSerializer;
 
     public ClasspathEntrySnapshotDataSerializer(StringInterner interner) {
+        this.interner = interner;
         hashCodeSerializer = new HashCodeSerializer();
-        mapSerializer = new MapSerializer<String, HashCode>(new InterningStringSerializer(interner), hashCodeSerializer);
         analysisSerializer = new ClassSetAnalysisData.Serializer(interner);
     }
 
     @Override
     public ClasspathEntrySnapshotData read(Decoder decoder) throws Exception {
         HashCode hash = hashCodeSerializer.read(decoder);
-        Map<String, HashCode> hashes = mapSerializer.read(decoder);
         ClassSetAnalysisData data = analysisSerializer.read(decoder);
-        return new ClasspathEntrySnapshotData(hash, hashes, data);
+        Map<String, HashCode> hashes = readHashes(decoder, data);
+        Map<String, HashCode> contentHashes = readHashes(decoder, data);
+        return new ClasspathEntrySnapshotData(hash, hashes, contentHashes, data);
+    }
+
+    private Map<String, HashCode> readHashes(Decoder decoder, ClassSetAnalysisData data) throws Exception {
+        int count = decoder.readSmallInt();
+        Map<String, HashCode> hashes = new HashMap<String, HashCode>(count * 2);
+        for (int i = 0; i < count; i++) {
+            int classId = decoder.readSmallInt();
+            String className = classId == 0 ? interner.intern(decoder.readString()) : data.getClassName(classId - 1);
+            hashes.put(className, hashCodeSerializer.read(decoder));
+        }
+        return hashes;
     }
 
     @Override
     public void write(Encoder encoder, ClasspathEntrySnapshotData value) throws Exception {
         hashCodeSerializer.write(encoder, value.getHash());
-        mapSerializer.write(encoder, value.getHashes());
-        analysisSerializer.write(encoder, value.getClassAnalysis());
+        ClassSetAnalysisData data = value.getClassAnalysis();
+        analysisSerializer.write(encoder, data);
+        writeHashes(encoder, value.getHashes(), data);
+        writeHashes(encoder, value.getContentHashes(), data);
+    }
+
+    private void writeHashes(Encoder encoder, Map<String, HashCode> hashes, ClassSetAnalysisData data) throws Exception {
+        encoder.writeSmallInt(hashes.size());
+        for (Map.Entry<String, HashCode> entry : hashes.entrySet()) {
+            int classId = data.getClassId(entry.getKey());
+            if (classId < 0) {
+                encoder.writeSmallInt(0);
+                encoder.writeString(entry.getKey());
+            } else {
+                encoder.writeSmallInt(classId + 1);
+            }
+            hashCodeSerializer.write(encoder, entry.getValue());
+        }
     }
 
     @Override
@@ -64,13 +94,12 @@ public boolean equals(Object obj) {
         }
 
         ClasspathEntrySnapshotDataSerializer rhs = (ClasspathEntrySnapshotDataSerializer) obj;
-        return Objects.equal(mapSerializer, rhs.mapSerializer)
-            && Objects.equal(analysisSerializer, rhs.analysisSerializer)
+        return Objects.equal(analysisSerializer, rhs.analysisSerializer)
             && Objects.equal(hashCodeSerializer, rhs.hashCodeSerializer);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(super.hashCode(), mapSerializer, analysisSerializer, hashCodeSerializer);
+        return Objects.hashCode(super.hashCode(), analysisSerializer, hashCodeSerializer);
     }
 }
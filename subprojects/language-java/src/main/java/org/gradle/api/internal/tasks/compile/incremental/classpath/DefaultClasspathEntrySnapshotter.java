@@ -16,32 +16,50 @@
 package org.gradle.api.internal.tasks.compile.incremental.classpath;
 
 import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
 import org.gradle.api.internal.file.FileOperations;
+import org.gradle.api.internal.file.archive.ZipEntry;
+import org.gradle.api.internal.file.archive.ZipInput;
+import org.gradle.api.internal.file.archive.impl.FileZipInput;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
-import org.gradle.internal.IoActions;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.hash.StreamHasher;
+import org.gradle.internal.normalization.java.ApiClassExtractor;
+import org.objectweb.asm.ClassReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.gradle.internal.FileUtils.hasExtension;
 
+/**
+ * Analyzes the classes of a classpath entry, and records the hash of the ABI of each class. Changes which do not affect
+ * the ABI of a class, like changes to method bodies or private members, thus don't cause its dependents to be recompiled.
+ * The content hash of each class is recorded as well, for consumers which need to see any change to a class.
+ */
 public class DefaultClasspathEntrySnapshotter {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultClasspathEntrySnapshotter.class);
+    private static final HashCode NO_ABI = Hashing.signature(DefaultClasspathEntrySnapshotter.class.getName() + ".NO_ABI");
 
     private final FileHasher fileHasher;
     private final StreamHasher hasher;
     private final ClassDependenciesAnalyzer analyzer;
     private final FileOperations fileOperations;
+    // Includes package private members, since classes of the current compilation may be in the same package
+    private final ApiClassExtractor apiClassExtractor = new ApiClassExtractor(Collections.emptySet());
 
     public DefaultClasspathEntrySnapshotter(FileHasher fileHasher, StreamHasher streamHasher, ClassDependenciesAnalyzer analyzer, FileOperations fileOperations) {
         this.fileHasher = fileHasher;
@@ -51,7 +69,7 @@ public DefaultClasspathEntrySnapshotter(FileHasher fileHasher, StreamHasher stre
     }
 
     public ClasspathEntrySnapshot createSnapshot(HashCode hash, File classpathEntry) {
-        final Map<String, HashCode> hashes = Maps.newHashMap();
+        final ClassHashes hashes = new ClassHashes();
         final ClassDependentsAccumulator accumulator = new ClassDependentsAccumulator();
 
         try {
@@ -63,23 +81,65 @@ public ClasspathEntrySnapshot createSnapshot(HashCode hash, File classpathEntry)
             }
         }
 
-        return new ClasspathEntrySnapshot(new ClasspathEntrySnapshotData(hash, hashes, accumulator.getAnalysis()));
+        return new ClasspathEntrySnapshot(new ClasspathEntrySnapshotData(hash, hashes.abiHashes, hashes.contentHashes, accumulator.getAnalysis()));
     }
 
-    private void visit(File classpathEntry, Map<String, HashCode> hashes, ClassDependentsAccumulator accumulator) {
+    private void visit(File classpathEntry, ClassHashes hashes, ClassDependentsAccumulator accumulator) throws IOException {
         if (hasExtension(classpathEntry, ".jar")) {
-            fileOperations.zipTree(classpathEntry).visit(new JarEntryVisitor(accumulator, hashes));
+            visitJar(classpathEntry, hashes, accumulator);
         }
         if (classpathEntry.isDirectory()) {
             fileOperations.fileTree(classpathEntry).visit(new DirectoryEntryVisitor(accumulator, hashes));
         }
     }
 
-    private abstract class EntryVisitor implements FileVisitor {
+    /**
+     * Reads the classes directly from the jar, without extracting them, and reads each class only once for both hashing and analyzing it.
+     */
+    private void visitJar(File jar, ClassHashes hashes, ClassDependentsAccumulator accumulator) throws IOException {
+        try (ZipInput input = FileZipInput.create(jar)) {
+            for (ZipEntry entry : input) {
+                if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
+                    continue;
+                }
+                byte[] classFileContent = entry.getContent();
+                HashCode classFileHash = hasher.hash(new ByteArrayInputStream(classFileContent));
+                try {
+                    ClassAnalysis analysis = analyzer.getClassAnalysis(classFileHash, classFileContent);
+                    addClass(analysis, classFileHash, hashAbi(classFileContent), hashes, accumulator);
+                } catch (Exception e) {
+                    classCouldNotBeAnalyzed(entry.getName(), accumulator, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Classes without an ABI, like local classes, cannot be referenced by other classes, so a constant hash is used for them.
+     */
+    private HashCode hashAbi(byte[] classFileContent) {
+        Optional<byte[]> apiClass = apiClassExtractor.extractApiClassFrom(new ClassReader(classFileContent));
+        return apiClass.map(Hashing::hashBytes).orElse(NO_ABI);
+    }
+
+    private static void addClass(ClassAnalysis analysis, HashCode classFileHash, HashCode abiHash, ClassHashes hashes, ClassDependentsAccumulator accumulator) {
+        accumulator.addClass(analysis);
+        hashes.abiHashes.put(analysis.getClassName(), abiHash);
+        hashes.contentHashes.put(analysis.getClassName(), classFileHash);
+    }
+
+    private static void classCouldNotBeAnalyzed(String name, ClassDependentsAccumulator accumulator, Exception e) {
+        accumulator.fullRebuildNeeded(name + " could not be analyzed for incremental compilation. See the debug log for more details");
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Could not analyze " + name + " for incremental compilation", e);
+        }
+    }
+
+    private class DirectoryEntryVisitor implements FileVisitor {
         private final ClassDependentsAccumulator accumulator;
-        private final Map<String, HashCode> hashes;
+        private final ClassHashes hashes;
 
-        public EntryVisitor(ClassDependentsAccumulator accumulator, Map<String, HashCode> hashes) {
+        public DirectoryEntryVisitor(ClassDependentsAccumulator accumulator, ClassHashes hashes) {
             this.accumulator = accumulator;
             this.hashes = hashes;
         }
@@ -94,50 +154,26 @@ public void visitFile(FileVisitDetails fileDetails) {
                 return;
             }
 
-            HashCode classFileHash = getHashCode(fileDetails);
+            HashCode classFileHash = fileHasher.hash(fileDetails.getFile(), fileDetails.getSize(), fileDetails.getLastModified());
 
             try {
-                ClassAnalysis analysis = analyzer.getClassAnalysis(classFileHash, fileDetails);
-                accumulator.addClass(analysis);
-                hashes.put(analysis.getClassName(), classFileHash);
+                byte[] classFileContent = readContent(fileDetails);
+                ClassAnalysis analysis = analyzer.getClassAnalysis(classFileHash, classFileContent);
+                addClass(analysis, classFileHash, hashAbi(classFileContent), hashes, accumulator);
             } catch (Exception e) {
-                accumulator.fullRebuildNeeded(fileDetails.getName() + " could not be analyzed for incremental compilation. See the debug log for more details");
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Could not analyze " + fileDetails.getName() + " for incremental compilation", e);
-                }
+                classCouldNotBeAnalyzed(fileDetails.getName(), accumulator, e);
             }
         }
 
-        protected abstract HashCode getHashCode(FileVisitDetails fileDetails);
-    }
-
-    private class JarEntryVisitor extends EntryVisitor {
-
-        public JarEntryVisitor(ClassDependentsAccumulator accumulator, Map<String, HashCode> hashes) {
-            super(accumulator, hashes);
-        }
-
-        @Override
-        protected HashCode getHashCode(FileVisitDetails fileDetails) {
-            InputStream inputStream = fileDetails.open();
-            try {
-                return hasher.hash(inputStream);
-            } finally {
-                IoActions.closeQuietly(inputStream);
+        private byte[] readContent(FileVisitDetails fileDetails) throws IOException {
+            try (InputStream inputStream = fileDetails.open()) {
+                return ByteStreams.toByteArray(inputStream);
             }
         }
     }
 
-    private class DirectoryEntryVisitor extends EntryVisitor {
-
-        public DirectoryEntryVisitor(ClassDependentsAccumulator accumulator, Map<String, HashCode> hashes) {
-            super(accumulator, hashes);
-        }
-
-        @Override
-        protected HashCode getHashCode(FileVisitDetails fileDetails) {
-            return fileHasher.hash(fileDetails.getFile(), fileDetails.getSize(), fileDetails.getLastModified());
-        }
+    private static class ClassHashes {
+        private final Map<String, HashCode> abiHashes = Maps.newHashMap();
+        private final Map<String, HashCode> contentHashes = Maps.newHashMap();
     }
-
 }
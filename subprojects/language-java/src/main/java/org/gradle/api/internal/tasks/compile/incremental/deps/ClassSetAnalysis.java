@@ -23,6 +23,7 @@
 import org.gradle.api.internal.tasks.compile.incremental.processing.AnnotationProcessingData;
 import org.gradle.api.internal.tasks.compile.incremental.processing.GeneratedResource;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
@@ -67,11 +68,54 @@ public ClassSetAnalysis withAnnotationProcessingData(AnnotationProcessingData an
     }
 
     public DependentsSet getRelevantDependents(Iterable<String> classes, IntSet constants) {
+        return getRelevantDependents(classes, constants, true);
+    }
+
+    /**
+     * Returns the dependents of classes which changed on the classpath. The sources of the previous compilation did not change,
+     * so the outputs of aggregating annotation processors only need to be regenerated when some of the dependents
+     * are types those processors aggregate or generated.
+     */
+    public DependentsSet getRelevantDependentsOfClasspathChange(Iterable<String> classes, IntSet constants) {
+        DependentsSet dependents = getRelevantDependents(classes, constants, false);
+        if (dependents.isDependencyToAll() || !isAggregatingProcessingAffected(dependents.getAllDependentClasses(), dependents.getDependentResources())) {
+            return dependents;
+        }
+        Set<String> privateResultClasses = new HashSet<String>(dependents.getPrivateDependentClasses());
+        Set<String> accessibleResultClasses = new HashSet<String>(dependents.getAccessibleDependentClasses());
+        Set<GeneratedResource> resultResources = new HashSet<GeneratedResource>(dependents.getDependentResources());
+        resultResources.addAll(annotationProcessingData.getGeneratedResourcesDependingOnAllOthers());
+        processDependentClasses(new HashSet<String>(), privateResultClasses, accessibleResultClasses, resultResources, Collections.emptySet(), annotationProcessingData.getGeneratedTypesDependingOnAllOthers());
+        return DependentsSet.dependents(privateResultClasses, accessibleResultClasses, resultResources);
+    }
+
+    /**
+     * Returns whether the outputs of aggregating annotation processors may change when the given classes are recompiled and the given resources regenerated,
+     * i.e. whether some of them are types those processors aggregate, or outputs of those processors.
+     */
+    public boolean isAggregatingProcessingAffected(Collection<String> classes, Collection<GeneratedResource> resources) {
+        Set<String> aggregatedTypes = annotationProcessingData.getAggregatedTypes();
+        Set<String> generatedTypesDependingOnAllOthers = annotationProcessingData.getGeneratedTypesDependingOnAllOthers();
+        for (String cls : classes) {
+            if (aggregatedTypes.contains(cls) || generatedTypesDependingOnAllOthers.contains(cls)) {
+                return true;
+            }
+        }
+        Set<GeneratedResource> generatedResourcesDependingOnAllOthers = annotationProcessingData.getGeneratedResourcesDependingOnAllOthers();
+        for (GeneratedResource resource : resources) {
+            if (generatedResourcesDependingOnAllOthers.contains(resource)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private DependentsSet getRelevantDependents(Iterable<String> classes, IntSet constants, boolean includeAggregatingOutputs) {
         final Set<String> accessibleResultClasses = Sets.newLinkedHashSet();
         final Set<String> privateResultClasses = Sets.newLinkedHashSet();
         final Set<GeneratedResource> resultResources = Sets.newLinkedHashSet();
         for (String cls : classes) {
-            DependentsSet d = getRelevantDependents(cls, constants);
+            DependentsSet d = getRelevantDependents(cls, constants, includeAggregatingOutputs);
             if (d.isDependencyToAll()) {
                 return d;
             }
@@ -90,6 +134,10 @@ public DependentsSet getRelevantDependents(Iterable<String> classes, IntSet cons
     }
 
     public DependentsSet getRelevantDependents(String className, IntSet constants) {
+        return getRelevantDependents(className, constants, true);
+    }
+
+    private DependentsSet getRelevantDependents(String className, IntSet constants, boolean includeAggregatingOutputs) {
         String fullRebuildCause = annotationProcessingData.getFullRebuildCause();
         if (fullRebuildCause != null) {
             return DependentsSet.dependencyToAll(fullRebuildCause);
@@ -101,8 +149,8 @@ public DependentsSet getRelevantDependents(String className, IntSet constants) {
         if (!constants.isEmpty()) {
             return DependentsSet.dependencyToAll();
         }
-        Set<String> classesDependingOnAllOthers = annotationProcessingData.getGeneratedTypesDependingOnAllOthers();
-        Set<GeneratedResource> resourcesDependingOnAllOthers = annotationProcessingData.getGeneratedResourcesDependingOnAllOthers();
+        Set<String> classesDependingOnAllOthers = includeAggregatingOutputs ? annotationProcessingData.getGeneratedTypesDependingOnAllOthers() : Collections.emptySet();
+        Set<GeneratedResource> resourcesDependingOnAllOthers = includeAggregatingOutputs ? annotationProcessingData.getGeneratedResourcesDependingOnAllOthers() : Collections.emptySet();
         if (!deps.hasDependentClasses() && classesDependingOnAllOthers.isEmpty() && resourcesDependingOnAllOthers.isEmpty()) {
             return deps;
         }
@@ -16,11 +16,14 @@
 
 package org.gradle.api.internal.tasks.compile.incremental.deps;
 
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import it.unimi.dsi.fastutil.ints.IntSets;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import org.apache.commons.lang.StringUtils;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.internal.serialize.AbstractSerializer;
@@ -28,27 +31,108 @@
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.IntSetSerializer;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
+/**
+ * The dependency information of a set of classes.
+ *
+ * All class names are stored once in a sorted table and referred to by their index in that table. The dependents of
+ * the classes are stored as adjacency arrays indexed by class id, so a large analysis is made of a handful of arrays
+ * instead of a set of objects per class, and can be read without building any per-class objects.
+ */
 public class ClassSetAnalysisData {
     public static final String PACKAGE_INFO = "package-info";
 
-    private final Set<String> classes;
-    private final Map<String, DependentsSet> dependents;
-    private final Map<String, IntSet> classesToConstants;
+    private final String[] classNames;
+    private final int[] classes;
+    private final Dependents privateDependents;
+    private final Dependents accessibleDependents;
+    private final Int2ObjectMap<DependentsSet> dependenciesToAll;
+    private final Int2ObjectMap<IntSet> classesToConstants;
     private final String fullRebuildCause;
 
     public ClassSetAnalysisData(Set<String> classes, Map<String, DependentsSet> dependents, Map<String, IntSet> classesToConstants, String fullRebuildCause) {
+        Set<String> allClassNames = new TreeSet<>(classes);
+        for (Map.Entry<String, DependentsSet> entry : dependents.entrySet()) {
+            allClassNames.add(entry.getKey());
+            if (!entry.getValue().isDependencyToAll()) {
+                allClassNames.addAll(entry.getValue().getPrivateDependentClasses());
+                allClassNames.addAll(entry.getValue().getAccessibleDependentClasses());
+            }
+        }
+        allClassNames.addAll(classesToConstants.keySet());
+
+        this.classNames = allClassNames.toArray(new String[0]);
+        Object2IntMap<String> classIds = new Object2IntOpenHashMap<>(classNames.length);
+        for (int i = 0; i < classNames.length; i++) {
+            classIds.put(classNames[i], i);
+        }
+
+        this.classes = toSortedIds(classes, classIds);
+        this.privateDependents = new Dependents(classNames.length);
+        this.accessibleDependents = new Dependents(classNames.length);
+        Int2ObjectMap<DependentsSet> dependenciesToAll = new Int2ObjectOpenHashMap<>();
+        int[][] privateDependentIds = new int[classNames.length][];
+        int[][] accessibleDependentIds = new int[classNames.length][];
+        for (Map.Entry<String, DependentsSet> entry : dependents.entrySet()) {
+            int classId = classIds.getInt(entry.getKey());
+            DependentsSet dependentsSet = entry.getValue();
+            if (dependentsSet.isDependencyToAll()) {
+                dependenciesToAll.put(classId, dependentsSet);
+            } else {
+                privateDependentIds[classId] = toSortedIds(dependentsSet.getPrivateDependentClasses(), classIds);
+                accessibleDependentIds[classId] = toSortedIds(dependentsSet.getAccessibleDependentClasses(), classIds);
+            }
+        }
+        this.privateDependents.fill(privateDependentIds);
+        this.accessibleDependents.fill(accessibleDependentIds);
+        this.dependenciesToAll = dependenciesToAll.isEmpty() ? Int2ObjectMaps.emptyMap() : dependenciesToAll;
+
+        Int2ObjectMap<IntSet> constants = new Int2ObjectOpenHashMap<>(classesToConstants.size());
+        for (Map.Entry<String, IntSet> entry : classesToConstants.entrySet()) {
+            constants.put(classIds.getInt(entry.getKey()), entry.getValue());
+        }
+        this.classesToConstants = constants;
+        this.fullRebuildCause = fullRebuildCause;
+    }
+
+    private ClassSetAnalysisData(String[] classNames, int[] classes, Dependents privateDependents, Dependents accessibleDependents, Int2ObjectMap<DependentsSet> dependenciesToAll, Int2ObjectMap<IntSet> classesToConstants, String fullRebuildCause) {
+        this.classNames = classNames;
         this.classes = classes;
-        this.dependents = dependents;
+        this.privateDependents = privateDependents;
+        this.accessibleDependents = accessibleDependents;
+        this.dependenciesToAll = dependenciesToAll;
         this.classesToConstants = classesToConstants;
         this.fullRebuildCause = fullRebuildCause;
     }
 
+    private static int[] toSortedIds(Set<String> classNames, Object2IntMap<String> classIds) {
+        int[] ids = new int[classNames.size()];
+        int i = 0;
+        for (String className : classNames) {
+            ids[i++] = classIds.getInt(className);
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Returns the id of the given class in this analysis, or a negative value when the class is not known to this analysis.
+     */
+    public int getClassId(String className) {
+        return Arrays.binarySearch(classNames, className);
+    }
+
+    public String getClassName(int classId) {
+        return classNames[classId];
+    }
+
     public DependentsSet getDependents(String className) {
         if (fullRebuildCause != null) {
             return DependentsSet.dependencyToAll(fullRebuildCause);
@@ -57,29 +141,118 @@ public DependentsSet getDependents(String className) {
             String packageName = className.equals(PACKAGE_INFO) ? null : StringUtils.removeEnd(className, "." + PACKAGE_INFO);
             return getDependentsOfPackage(packageName);
         }
-        DependentsSet dependentsSet = dependents.get(className);
-        return dependentsSet == null ? DependentsSet.empty() : dependentsSet;
+        int classId = getClassId(className);
+        if (classId < 0) {
+            return DependentsSet.empty();
+        }
+        DependentsSet dependencyToAll = dependenciesToAll.get(classId);
+        if (dependencyToAll != null) {
+            return dependencyToAll;
+        }
+        if (privateDependents.isEmpty(classId) && accessibleDependents.isEmpty(classId)) {
+            return DependentsSet.empty();
+        }
+        return DependentsSet.dependentClasses(privateDependents.getClassNames(classId, classNames), accessibleDependents.getClassNames(classId, classNames));
     }
 
-    private DependentsSet getDependentsOfPackage(String packageName) {
-        Set<String> typesInPackage = Sets.newHashSet();
-        for (String type : classes) {
+    private DependentsSet getDependentsOfPackage(@Nullable String packageName) {
+        ImmutableSet.Builder<String> typesInPackage = ImmutableSet.builder();
+        for (int classId : classes) {
+            String type = classNames[classId];
             int i = type.lastIndexOf(".");
             if (i < 0 && packageName == null || i > 0 && type.substring(0, i).equals(packageName)) {
                 typesInPackage.add(type);
             }
         }
-        return DependentsSet.dependentClasses(Collections.emptySet(), typesInPackage);
+        return DependentsSet.dependentClasses(Collections.emptySet(), typesInPackage.build());
     }
 
     public IntSet getConstants(String className) {
-        IntSet integers = classesToConstants.get(className);
+        int classId = getClassId(className);
+        IntSet integers = classId < 0 ? null : classesToConstants.get(classId);
         if (integers == null) {
             return IntSets.EMPTY_SET;
         }
         return integers;
     }
 
+    /**
+     * Dependents of each class, stored as one array of dependent class ids plus the offset of the dependents of each class in that array.
+     */
+    private static class Dependents {
+        private static final int[] NO_DEPENDENTS = new int[0];
+
+        private final int[] offsets;
+        private int[] dependents = NO_DEPENDENTS;
+
+        Dependents(int classCount) {
+            this.offsets = new int[classCount + 1];
+        }
+
+        void fill(int[][] dependentsByClass) {
+            int total = 0;
+            for (int classId = 0; classId < dependentsByClass.length; classId++) {
+                offsets[classId] = total;
+                total += dependentsByClass[classId] == null ? 0 : dependentsByClass[classId].length;
+            }
+            offsets[dependentsByClass.length] = total;
+            dependents = total == 0 ? NO_DEPENDENTS : new int[total];
+            for (int classId = 0; classId < dependentsByClass.length; classId++) {
+                if (dependentsByClass[classId] != null) {
+                    System.arraycopy(dependentsByClass[classId], 0, dependents, offsets[classId], dependentsByClass[classId].length);
+                }
+            }
+        }
+
+        boolean isEmpty(int classId) {
+            return offsets[classId] == offsets[classId + 1];
+        }
+
+        Set<String> getClassNames(int classId, String[] classNames) {
+            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+            for (int i = offsets[classId]; i < offsets[classId + 1]; i++) {
+                builder.add(classNames[dependents[i]]);
+            }
+            return builder.build();
+        }
+
+        static Dependents read(Decoder decoder, int classCount) throws IOException {
+            Dependents result = new Dependents(classCount);
+            int total = 0;
+            for (int classId = 0; classId < classCount; classId++) {
+                result.offsets[classId] = total;
+                total += decoder.readSmallInt();
+            }
+            result.offsets[classCount] = total;
+            if (total > 0) {
+                result.dependents = new int[total];
+                for (int classId = 0; classId < classCount; classId++) {
+                    // The dependents of each class are sorted, and written as the difference to the previous one
+                    int previous = -1;
+                    for (int i = result.offsets[classId]; i < result.offsets[classId + 1]; i++) {
+                        previous += decoder.readSmallInt();
+                        result.dependents[i] = previous;
+                    }
+                }
+            }
+            return result;
+        }
+
+        void write(Encoder encoder) throws IOException {
+            int classCount = offsets.length - 1;
+            for (int classId = 0; classId < classCount; classId++) {
+                encoder.writeSmallInt(offsets[classId + 1] - offsets[classId]);
+            }
+            for (int classId = 0; classId < classCount; classId++) {
+                int previous = -1;
+                for (int i = offsets[classId]; i < offsets[classId + 1]; i++) {
+                    encoder.writeSmallInt(dependents[i] - previous);
+                    previous = dependents[i];
+                }
+            }
+        }
+    }
+
     public static class Serializer extends AbstractSerializer<ClassSetAnalysisData> {
 
         private final StringInterner interner;
@@ -90,117 +263,70 @@ public Serializer(StringInterner interner) {
 
         @Override
         public ClassSetAnalysisData read(Decoder decoder) throws Exception {
-            Map<Integer, String> classNameMap = new HashMap<Integer, String>();
-
             int count = decoder.readSmallInt();
-            ImmutableSet.Builder<String> classes = ImmutableSet.builder();
+            String[] classNames = new String[count];
+            for (int i = 0; i < count; i++) {
+                classNames[i] = interner.intern(decoder.readString());
+            }
+
+            count = decoder.readSmallInt();
+            int[] classes = new int[count];
+            int previous = 0;
             for (int i = 0; i < count; i++) {
-                classes.add(readClassName(decoder, classNameMap));
+                previous += decoder.readSmallInt();
+                classes[i] = previous;
             }
 
+            Dependents privateDependents = Dependents.read(decoder, classNames.length);
+            Dependents accessibleDependents = Dependents.read(decoder, classNames.length);
+
             count = decoder.readSmallInt();
-            ImmutableMap.Builder<String, DependentsSet> dependentsBuilder = ImmutableMap.builder();
+            Int2ObjectMap<DependentsSet> dependenciesToAll = count == 0 ? Int2ObjectMaps.emptyMap() : new Int2ObjectOpenHashMap<>(count);
             for (int i = 0; i < count; i++) {
-                String className = readClassName(decoder, classNameMap);
-                DependentsSet dependents = readDependentsSet(decoder, classNameMap);
-                dependentsBuilder.put(className, dependents);
+                dependenciesToAll.put(decoder.readSmallInt(), DependentsSet.dependencyToAll(decoder.readNullableString()));
             }
 
             count = decoder.readSmallInt();
-            ImmutableMap.Builder<String, IntSet> classesToConstantsBuilder = ImmutableMap.builder();
+            Int2ObjectMap<IntSet> classesToConstants = new Int2ObjectOpenHashMap<>(count);
             for (int i = 0; i < count; i++) {
-                String className = readClassName(decoder, classNameMap);
-                IntSet constants = IntSetSerializer.INSTANCE.read(decoder);
-                classesToConstantsBuilder.put(className, constants);
+                int classId = decoder.readSmallInt();
+                classesToConstants.put(classId, IntSetSerializer.INSTANCE.read(decoder));
             }
 
             String fullRebuildCause = decoder.readNullableString();
 
-            return new ClassSetAnalysisData(classes.build(), dependentsBuilder.build(), classesToConstantsBuilder.build(), fullRebuildCause);
+            return new ClassSetAnalysisData(classNames, classes, privateDependents, accessibleDependents, dependenciesToAll, classesToConstants, fullRebuildCause);
         }
 
         @Override
         public void write(Encoder encoder, ClassSetAnalysisData value) throws Exception {
-            Map<String, Integer> classNameMap = new HashMap<String, Integer>();
-            encoder.writeSmallInt(value.classes.size());
-            for (String clazz : value.classes) {
-                writeClassName(clazz, classNameMap, encoder);
-            }
-
-            encoder.writeSmallInt(value.dependents.size());
-            for (Map.Entry<String, DependentsSet> entry : value.dependents.entrySet()) {
-                writeClassName(entry.getKey(), classNameMap, encoder);
-                writeDependentSet(entry.getValue(), classNameMap, encoder);
-            }
-
-            encoder.writeSmallInt(value.classesToConstants.size());
-            for (Map.Entry<String, IntSet> entry : value.classesToConstants.entrySet()) {
-                writeClassName(entry.getKey(), classNameMap, encoder);
-                IntSetSerializer.INSTANCE.write(encoder, entry.getValue());
-            }
-            encoder.writeNullableString(value.fullRebuildCause);
-        }
-
-        private DependentsSet readDependentsSet(Decoder decoder, Map<Integer, String> classNameMap) throws IOException {
-            byte b = decoder.readByte();
-            if (b == 1) {
-                return DependentsSet.dependencyToAll(decoder.readNullableString());
+            encoder.writeSmallInt(value.classNames.length);
+            for (String className : value.classNames) {
+                encoder.writeString(className);
             }
 
-            ImmutableSet.Builder<String> privateBuilder = ImmutableSet.builder();
-            int count = decoder.readSmallInt();
-            for (int i = 0; i < count; i++) {
-                privateBuilder.add(readClassName(decoder, classNameMap));
+            encoder.writeSmallInt(value.classes.length);
+            int previous = 0;
+            for (int classId : value.classes) {
+                encoder.writeSmallInt(classId - previous);
+                previous = classId;
             }
 
-            ImmutableSet.Builder<String> accessibleBuilder = ImmutableSet.builder();
-            count = decoder.readSmallInt();
-            for (int i = 0; i < count; i++) {
-                accessibleBuilder.add(readClassName(decoder, classNameMap));
-            }
-
-            return DependentsSet.dependentClasses(privateBuilder.build(), accessibleBuilder.build());
-        }
-
-        private void writeDependentSet(DependentsSet dependentsSet, Map<String, Integer> classNameMap, Encoder encoder) throws IOException {
-            if (dependentsSet.isDependencyToAll()) {
-                encoder.writeByte((byte) 1);
-                encoder.writeNullableString(dependentsSet.getDescription());
-            } else {
-                encoder.writeByte((byte) 2);
-                encoder.writeSmallInt(dependentsSet.getPrivateDependentClasses().size());
-                for (String className : dependentsSet.getPrivateDependentClasses()) {
-                    writeClassName(className, classNameMap, encoder);
-                }
-                encoder.writeSmallInt(dependentsSet.getAccessibleDependentClasses().size());
-                for (String className : dependentsSet.getAccessibleDependentClasses()) {
-                    writeClassName(className, classNameMap, encoder);
-                }
-            }
-        }
+            value.privateDependents.write(encoder);
+            value.accessibleDependents.write(encoder);
 
-        private String readClassName(Decoder decoder, Map<Integer, String> classNameMap) throws IOException {
-            int id = decoder.readSmallInt();
-            if (id == 0) {
-                id = decoder.readSmallInt();
-                String className = interner.intern(decoder.readString());
-                classNameMap.put(id, className);
-                return className;
+            encoder.writeSmallInt(value.dependenciesToAll.size());
+            for (Int2ObjectMap.Entry<DependentsSet> entry : value.dependenciesToAll.int2ObjectEntrySet()) {
+                encoder.writeSmallInt(entry.getIntKey());
+                encoder.writeNullableString(entry.getValue().getDescription());
             }
-            return classNameMap.get(id);
-        }
 
-        private void writeClassName(String className, Map<String, Integer> classIdMap, Encoder encoder) throws IOException {
-            Integer id = classIdMap.get(className);
-            if (id == null) {
-                id = classIdMap.size() + 1;
-                classIdMap.put(className, id);
-                encoder.writeSmallInt(0);
-                encoder.writeSmallInt(id);
-                encoder.writeString(className);
-            } else {
-                encoder.writeSmallInt(id);
+            encoder.writeSmallInt(value.classesToConstants.size());
+            for (Int2ObjectMap.Entry<IntSet> entry : value.classesToConstants.int2ObjectEntrySet()) {
+                encoder.writeSmallInt(entry.getIntKey());
+                IntSetSerializer.INSTANCE.write(encoder, entry.getValue());
             }
+            encoder.writeNullableString(value.fullRebuildCause);
         }
     }
 }
@@ -23,8 +23,18 @@
  * Marks compilation as beeing performed incrementally.
  */
 public class DefaultIncrementalCompileResult extends DefaultWorkResult implements IncrementalCompilationResult {
+    private final WorkResult compilerResult;
+
     public DefaultIncrementalCompileResult(WorkResult workResult) {
         super(workResult.getDidWork(), maybeException(workResult));
+        this.compilerResult = workResult;
+    }
+
+    /**
+     * The result of the compiler which performed the incremental compilation.
+     */
+    public WorkResult getCompilerResult() {
+        return compilerResult;
     }
 
     private static Throwable maybeException(WorkResult workResult) {
@@ -75,6 +75,7 @@ public RecompilationSpec provideRecompilationSpec(CurrentCompilation current, Pr
         processClasspathChanges(current, previous, spec);
         processOtherChanges(current, previous, spec);
 
+        // The processing data of the previous compilation is replaced by the one of this compilation, so aggregating processors have to see all types they aggregate again
         spec.getClassesToProcess().addAll(previous.getTypesToReprocess());
         return spec;
     }
@@ -40,8 +40,11 @@ public PreviousCompilation(PreviousCompilationData data, ClasspathEntrySnapshotC
         this.previousCompilationOutputAnalyzer = previousCompilationOutputAnalyzer;
     }
 
+    /**
+     * Returns the dependents of the given classes, which changed on the classpath.
+     */
     public DependentsSet getDependents(Set<String> allClasses, IntSet constants) {
-        return getClassAnalysis().getRelevantDependents(allClasses, constants);
+        return getClassAnalysis().getRelevantDependentsOfClasspathChange(allClasses, constants);
     }
 
     private ClassSetAnalysis getClassAnalysis() {
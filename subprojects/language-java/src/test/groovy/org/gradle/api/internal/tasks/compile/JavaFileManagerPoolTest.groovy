@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile
+
+import org.gradle.initialization.SessionLifecycleListener
+import org.gradle.internal.event.ListenerManager
+import org.gradle.internal.hash.FileHasher
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.vfs.AdditiveCacheLocations
+import org.gradle.process.internal.health.memory.MemoryHolder
+import org.gradle.process.internal.health.memory.MemoryManager
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import javax.tools.JavaCompiler
+import javax.tools.StandardJavaFileManager
+import javax.tools.StandardLocation
+
+class JavaFileManagerPoolTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temp = new TestNameTestDirectoryProvider(getClass())
+
+    SessionLifecycleListener buildSessionListener
+    def listenerManager = Mock(ListenerManager) {
+        addListener(_ as SessionLifecycleListener) >> { SessionLifecycleListener listener -> buildSessionListener = listener }
+    }
+    def hashes = [:]
+    def fileHasher = Mock(FileHasher) {
+        hash(_ as File) >> { File file -> hashes[file] }
+    }
+    def compiler = Mock(JavaCompiler) {
+        getStandardFileManager(_, _, _) >> { Mock(StandardJavaFileManager) }
+    }
+    MemoryHolder memoryHolder
+    def memoryManager = Mock(MemoryManager) {
+        addMemoryHolder(_) >> { MemoryHolder holder -> memoryHolder = holder }
+    }
+    def cacheDir = temp.createDir("cache")
+    def additiveCacheLocations = Stub(AdditiveCacheLocations) {
+        isInsideAdditiveCache(_) >> { String path -> path.startsWith(cacheDir.absolutePath) }
+    }
+    def heapRunningLow = false
+    def pool = new JavaFileManagerPool(fileHasher, listenerManager, memoryManager, additiveCacheLocations) {
+        @Override
+        protected boolean isHeapRunningLow() {
+            heapRunningLow
+        }
+    }
+    def jar = temp.createFile("cache/lib.jar")
+    def dir = temp.createDir("classes")
+
+    def setup() {
+        hashes[jar] = HashCode.fromInt(1)
+    }
+
+    def "reuses released file manager with the same classpath"() {
+        def fileManager = pool.acquire(compiler, null, [jar, dir])
+
+        when:
+        pool.release(fileManager)
+
+        then:
+        1 * fileManager.fileManager.setLocation(StandardLocation.CLASS_PATH, null)
+        0 * fileManager.fileManager.close()
+        pool.acquire(compiler, null, [jar, dir]) == fileManager
+        pool.acquire(compiler, null, [jar, dir]) != fileManager
+    }
+
+    def "does not reuse file manager which has seen a classpath entry with different content"() {
+        def fileManager = pool.acquire(compiler, null, [jar])
+        pool.release(fileManager)
+
+        when:
+        hashes[jar] = HashCode.fromInt(2)
+
+        then:
+        pool.acquire(compiler, null, [jar]) != fileManager
+        pool.acquire(compiler, null, [dir]) == fileManager
+    }
+
+    def "closes file manager with a classpath archive outside of the additive caches"() {
+        def builtJar = temp.createFile("build/libs/built.jar")
+        def fileManager = pool.acquire(compiler, null, [jar, builtJar])
+
+        when:
+        pool.release(fileManager)
+
+        then:
+        1 * fileManager.fileManager.close()
+        pool.acquire(compiler, null, [jar]) != fileManager
+    }
+
+    def "does not share file managers between charsets"() {
+        def fileManager = pool.acquire(compiler, null, [jar])
+        pool.release(fileManager)
+
+        expect:
+        pool.acquire(compiler, java.nio.charset.StandardCharsets.UTF_8, [jar]) != fileManager
+    }
+
+    def "closes idle file managers when the heap is running low"() {
+        def fileManager1 = pool.acquire(compiler, null, [jar])
+        def fileManager2 = pool.acquire(compiler, null, [jar])
+        pool.release(fileManager1)
+
+        when:
+        heapRunningLow = true
+        pool.release(fileManager2)
+
+        then:
+        1 * fileManager1.fileManager.close()
+        1 * fileManager2.fileManager.close()
+    }
+
+    def "closes file manager which cannot be reset"() {
+        def fileManager = pool.acquire(compiler, null, [jar])
+        fileManager.fileManager.setLocation(_, _) >> { throw new IllegalStateException() }
+
+        when:
+        pool.release(fileManager)
+
+        then:
+        1 * fileManager.fileManager.close()
+        pool.acquire(compiler, null, [jar]) != fileManager
+    }
+
+    def "closes file manager which has been idle for several build sessions"() {
+        def fileManager = pool.acquire(compiler, null, [jar])
+        pool.release(fileManager)
+
+        when:
+        3.times { buildSessionListener.beforeComplete() }
+
+        then:
+        0 * fileManager.fileManager.close()
+
+        when:
+        buildSessionListener.beforeComplete()
+
+        then:
+        1 * fileManager.fileManager.close()
+        pool.acquire(compiler, null, [jar]) != fileManager
+    }
+
+    def "closes idle file managers when stopped"() {
+        def fileManager = pool.acquire(compiler, null, [jar])
+        pool.release(fileManager)
+
+        when:
+        pool.stop()
+
+        then:
+        1 * fileManager.fileManager.close()
+        1 * listenerManager.removeListener(buildSessionListener)
+        1 * memoryManager.removeMemoryHolder(memoryHolder)
+    }
+
+    def "closes idle file managers when memory is requested"() {
+        def fileManager1 = pool.acquire(compiler, null, [jar])
+        def fileManager2 = pool.acquire(compiler, null, [jar])
+        pool.release(fileManager1)
+
+        when:
+        memoryHolder.attemptToRelease(1024)
+
+        then:
+        1 * fileManager1.fileManager.close()
+        0 * fileManager2.fileManager.close()
+        pool.acquire(compiler, null, [jar]) != fileManager1
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile.incremental.classpath
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.serialize.InputStreamBackedDecoder
+import org.gradle.internal.serialize.OutputStreamBackedEncoder
+import spock.lang.Specification
+import spock.lang.Subject
+
+import static org.gradle.api.internal.tasks.compile.incremental.deps.DependentsSet.dependentClasses
+
+class ClasspathEntrySnapshotDataSerializerTest extends Specification {
+
+    @Subject serializer = new ClasspathEntrySnapshotDataSerializer(new StringInterner())
+
+    def "serializes hashes of classes with and without analysis"() {
+        def analysis = new ClassSetAnalysisData(["A", "B"] as Set, ["A": dependentClasses(["B"] as Set, [] as Set)], [:], null)
+        def hashes = ["A": HashCode.fromInt(0xaa), "B": HashCode.fromInt(0xbb), "module-info": HashCode.fromInt(0xcc)]
+        def contentHashes = ["A": HashCode.fromInt(0x1a), "B": HashCode.fromInt(0x1b), "module-info": HashCode.fromInt(0x1c)]
+        def data = new ClasspathEntrySnapshotData(HashCode.fromInt(0x1234), hashes, contentHashes, analysis)
+        def os = new ByteArrayOutputStream()
+
+        when:
+        serializer.write(new OutputStreamBackedEncoder(os), data)
+        ClasspathEntrySnapshotData read = serializer.read(new InputStreamBackedDecoder(new ByteArrayInputStream(os.toByteArray())))
+
+        then:
+        read.hash == HashCode.fromInt(0x1234)
+        read.hashes == hashes
+        read.contentHashes == contentHashes
+        read.classAnalysis.getDependents("A").privateDependentClasses == ["B"] as Set
+    }
+}
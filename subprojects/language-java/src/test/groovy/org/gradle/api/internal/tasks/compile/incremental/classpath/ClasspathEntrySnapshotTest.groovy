@@ -24,8 +24,8 @@ class ClasspathEntrySnapshotTest extends Specification {
 
     def analysis = Stub(ClassSetAnalysisData)
 
-    private ClasspathEntrySnapshot snapshot(Map<String, HashCode> hashes, ClassSetAnalysisData a) {
-        new ClasspathEntrySnapshot(new ClasspathEntrySnapshotData(HashCode.fromInt(0x1234), hashes, a))
+    private ClasspathEntrySnapshot snapshot(Map<String, HashCode> hashes, ClassSetAnalysisData a, Map<String, HashCode> contentHashes = hashes) {
+        new ClasspathEntrySnapshot(new ClasspathEntrySnapshotData(HashCode.fromInt(0x1234), hashes, contentHashes, a))
     }
 
     private Set<String> altered(ClasspathEntrySnapshot s1, ClasspathEntrySnapshot s2) {
@@ -68,4 +68,14 @@ class ClasspathEntrySnapshotTest extends Specification {
         s2.getChangedClassesSince(s1).added == [] as Set
         s1.getChangedClassesSince(s3).added == ["A", "B", "C"] as Set
     }
+
+    def "knows classes with changed content whose ABI did not change"() {
+        ClasspathEntrySnapshot s1 = snapshot(["A": HashCode.fromInt(0xaa), "B": HashCode.fromInt(0xbb)], analysis, ["A": HashCode.fromInt(0x1a), "B": HashCode.fromInt(0x1b)])
+        ClasspathEntrySnapshot s2 = snapshot(["A": HashCode.fromInt(0xaa), "B": HashCode.fromInt(0xbb)], analysis, ["A": HashCode.fromInt(0x1a), "B": HashCode.fromInt(0x2b)])
+
+        expect:
+        altered(s1, s2).isEmpty()
+        s1.getClassesWithChangedContentSince(s2).modified == ["B"] as Set
+        s1.getClassesWithChangedContentSince(s2).added.isEmpty()
+    }
 }
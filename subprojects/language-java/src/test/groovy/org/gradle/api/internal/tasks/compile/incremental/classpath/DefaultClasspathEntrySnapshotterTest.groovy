@@ -24,10 +24,13 @@ import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenc
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis
 import org.gradle.internal.hash.FileHasher
 import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.Hashing
 import org.gradle.internal.hash.StreamHasher
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.UsesNativeServices
 import org.junit.Rule
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Opcodes
 import spock.lang.Specification
 import spock.lang.Subject
 
@@ -41,6 +44,7 @@ class DefaultClasspathEntrySnapshotterTest extends Specification {
     def classDependenciesAnalyzer = Mock(ClassDependenciesAnalyzer)
     def fileOperations = Mock(FileOperations)
     @Subject snapshotter = new DefaultClasspathEntrySnapshotter(fileHasher, streamHasher, classDependenciesAnalyzer, fileOperations)
+    int jarCount
 
     def "creates snapshot for an empty entry"() {
         expect:
@@ -50,8 +54,10 @@ class DefaultClasspathEntrySnapshotterTest extends Specification {
     }
 
     def "creates snapshot of an entry with classes"() {
-        def f1 = temp.createFile("foo/Foo.class")
-        def f2 = temp.createFile("foo/com/Foo2.class")
+        def f1 = temp.file("foo/Foo.class")
+        f1.bytes = classFile("Foo")
+        def f2 = temp.file("foo/com/Foo2.class")
+        f2.bytes = classFile("com/Foo2")
         def f3 = temp.createFile("foo/com/app.properties")
         def entry = temp.file("foo")
         def f1Hash = HashCode.fromInt(1)
@@ -72,17 +78,111 @@ class DefaultClasspathEntrySnapshotterTest extends Specification {
             visitor.visitFile(new DefaultFileVisitDetails(f3, null, null))
         }
         1 * fileHasher.hash(_, _, _) >> f1Hash
-        1 * classDependenciesAnalyzer.getClassAnalysis(f1Hash, f1Details) >> Stub(ClassAnalysis) {
+        1 * classDependenciesAnalyzer.getClassAnalysis(f1Hash, f1.bytes) >> Stub(ClassAnalysis) {
             getClassName() >> "Foo"
         }
         1 * fileHasher.hash(_, _, _) >> f2Hash
-        1 * classDependenciesAnalyzer.getClassAnalysis(f2Hash, f2Details) >> Stub(ClassAnalysis) {
+        1 * classDependenciesAnalyzer.getClassAnalysis(f2Hash, f2.bytes) >> Stub(ClassAnalysis) {
             getClassName() >> "com.Foo2"
         }
         0 * _._
 
         and:
-        snapshot.hashes == ["Foo": f1Hash, "com.Foo2": f2Hash]
+        snapshot.hashes.keySet() == ["Foo", "com.Foo2"] as Set
+        snapshot.data.contentHashes == ["Foo": f1Hash, "com.Foo2": f2Hash]
         snapshot.classAnalysis
     }
+
+    def "creates snapshot of a jar with classes without extracting it"() {
+        def contentDir = temp.file("jarContent")
+        contentDir.file("Foo.class").bytes = classFile("Foo")
+        contentDir.file("com/Foo2.class").bytes = classFile("com/Foo2")
+        contentDir.file("com/app.properties").text = "app"
+        def jar = temp.file("foo.jar")
+        contentDir.zipTo(jar)
+        def f1Hash = HashCode.fromInt(1)
+        def f2Hash = HashCode.fromInt(2)
+
+        when:
+        def snapshot = snapshotter.createSnapshot(HashCode.fromInt(123), jar)
+
+        then:
+        2 * streamHasher.hash(_) >> { InputStream input -> input.bytes == classFile("Foo") ? f1Hash : f2Hash }
+        1 * classDependenciesAnalyzer.getClassAnalysis(f1Hash, classFile("Foo")) >> Stub(ClassAnalysis) {
+            getClassName() >> "Foo"
+        }
+        1 * classDependenciesAnalyzer.getClassAnalysis(f2Hash, classFile("com/Foo2")) >> Stub(ClassAnalysis) {
+            getClassName() >> "com.Foo2"
+        }
+        0 * _._
+
+        and:
+        snapshot.hashes.keySet() == ["Foo", "com.Foo2"] as Set
+        snapshot.data.contentHashes == ["Foo": f1Hash, "com.Foo2": f2Hash]
+        snapshot.classAnalysis
+    }
+
+    def "records hashes of classes which only change when their ABI changes"() {
+        streamHasher.hash(_) >> HashCode.fromInt(1)
+        classDependenciesAnalyzer.getClassAnalysis(_, _ as byte[]) >> Stub(ClassAnalysis) {
+            getClassName() >> "Foo"
+        }
+        def original = snapshotOf(classFile("Foo", "publicField", "privateField"))
+        def privateChange = snapshotOf(classFile("Foo", "publicField", "otherPrivateField"))
+        def abiChange = snapshotOf(classFile("Foo", "otherPublicField", "privateField"))
+
+        expect:
+        privateChange.hashes == original.hashes
+        abiChange.hashes != original.hashes
+        abiChange.getChangedClassesSince(original).modified == ["Foo"] as Set
+        privateChange.getChangedClassesSince(original).modified.empty
+    }
+
+    def "records content hashes of classes whose method bodies changed"() {
+        streamHasher.hash(_) >> { InputStream input -> Hashing.hashBytes(input.bytes) }
+        classDependenciesAnalyzer.getClassAnalysis(_, _ as byte[]) >> Stub(ClassAnalysis) {
+            getClassName() >> "Foo"
+        }
+        def original = snapshotOf(classFileWithMethod("Foo", 1))
+        def methodBodyChange = snapshotOf(classFileWithMethod("Foo", 2))
+
+        expect:
+        methodBodyChange.hashes == original.hashes
+        methodBodyChange.getChangedClassesSince(original).modified.empty
+        methodBodyChange.getClassesWithChangedContentSince(original).modified == ["Foo"] as Set
+    }
+
+    private ClasspathEntrySnapshot snapshotOf(byte[] classFileContent) {
+        def contentDir = temp.file("jarContent").deleteDir()
+        contentDir.file("Foo.class").bytes = classFileContent
+        def jar = temp.file("foo${jarCount++}.jar")
+        contentDir.zipTo(jar)
+        snapshotter.createSnapshot(HashCode.fromInt(123), jar)
+    }
+
+    private static byte[] classFile(String name, String publicField = null, String privateField = null) {
+        def writer = new ClassWriter(0)
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null)
+        if (publicField) {
+            writer.visitField(Opcodes.ACC_PUBLIC, publicField, "I", null, null).visitEnd()
+        }
+        if (privateField) {
+            writer.visitField(Opcodes.ACC_PRIVATE, privateField, "I", null, null).visitEnd()
+        }
+        writer.visitEnd()
+        writer.toByteArray()
+    }
+
+    private static byte[] classFileWithMethod(String name, int returnValue) {
+        def writer = new ClassWriter(0)
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null)
+        def method = writer.visitMethod(Opcodes.ACC_PUBLIC, "value", "()I", null, null)
+        method.visitCode()
+        method.visitLdcInsn(returnValue)
+        method.visitInsn(Opcodes.IRETURN)
+        method.visitMaxs(1, 1)
+        method.visitEnd()
+        writer.visitEnd()
+        writer.toByteArray()
+    }
 }
@@ -46,16 +46,60 @@ class ClassSetAnalysisDataSerializerTest extends Specification {
         ClassSetAnalysisData read = serializer.read(new InputStreamBackedDecoder(new ByteArrayInputStream(os.toByteArray())))
 
         then:
-        read.dependents.keySet() == data.dependents.keySet()
-
-        ["A", "B", "C"].each {
-            assert read.dependents[it].privateDependentClasses == data.dependents[it].privateDependentClasses
-            assert read.dependents[it].accessibleDependentClasses == data.dependents[it].accessibleDependentClasses
-            assert read.dependents[it].dependencyToAll == data.dependents[it].dependencyToAll
+        ["A", "B", "C", "D"].each {
+            assert read.getDependents(it).dependencyToAll
+            assert read.getDependents(it).description == "Because"
         }
-
-        read.dependents["D"].dependencyToAll
-        read.classesToConstants == [C: [1,2] as Set, D: [] as Set]
+        read.getConstants("C") == [1, 2] as Set
+        read.getConstants("D") == [] as Set
         read.fullRebuildCause == "Because"
     }
+
+    def "serializes dependents of classes without a full rebuild"() {
+        def data = new ClassSetAnalysisData(["A", "B", "C", "D", "E"] as Set,
+            [
+                "A": dependentClasses(["E", "B"] as Set, ["C"] as Set),
+                "B": dependentClasses([] as Set, ["D", "C", "A"] as Set),
+                "D": dependencyToAll("D is special"),
+                "Outside": dependentClasses(["E"] as Set, [] as Set)
+            ],
+            [A: new IntOpenHashSet([7]) as IntSet],
+            null
+        )
+
+        when:
+        ClassSetAnalysisData read = serializeAndRead(data)
+
+        then:
+        read.getDependents("A").privateDependentClasses == ["B", "E"] as Set
+        read.getDependents("A").accessibleDependentClasses == ["C"] as Set
+        read.getDependents("B").privateDependentClasses.empty
+        read.getDependents("B").accessibleDependentClasses == ["A", "C", "D"] as Set
+        read.getDependents("C").empty
+        read.getDependents("D").dependencyToAll
+        read.getDependents("D").description == "D is special"
+        read.getDependents("Outside").privateDependentClasses == ["E"] as Set
+        read.getDependents("Unknown").empty
+        read.getConstants("A") == [7] as Set
+        read.getConstants("Unknown").empty
+        read.getClassName(read.getClassId("E")) == "E"
+        read.getClassId("Unknown") < 0
+    }
+
+    def "serializes dependents of package-info"() {
+        def data = new ClassSetAnalysisData(["a.A", "a.B", "a.b.C", "D"] as Set, [:], [:], null)
+
+        when:
+        ClassSetAnalysisData read = serializeAndRead(data)
+
+        then:
+        read.getDependents("a.package-info").accessibleDependentClasses == ["a.A", "a.B"] as Set
+        read.getDependents("package-info").accessibleDependentClasses == ["D"] as Set
+    }
+
+    private ClassSetAnalysisData serializeAndRead(ClassSetAnalysisData data) {
+        def os = new ByteArrayOutputStream()
+        serializer.write(new OutputStreamBackedEncoder(os), data)
+        serializer.read(new InputStreamBackedDecoder(new ByteArrayInputStream(os.toByteArray())))
+    }
 }
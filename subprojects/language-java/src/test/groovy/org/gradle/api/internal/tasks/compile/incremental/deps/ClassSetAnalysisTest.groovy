@@ -228,6 +228,29 @@ class ClassSetAnalysisTest extends Specification {
         deps.getAllDependentClasses() == ["DependsOnAny", "B", "C"] as Set
     }
 
+    def "classpath changes only affect outputs of aggregating processors when they affect their inputs"() {
+        def a = analysis([
+            "A": dependentClasses([] as Set, ["B"] as Set), "B": empty(),
+            "C": dependentClasses([] as Set, ["Aggregated"] as Set), "Aggregated": empty(),
+            "DependsOnAny": dependentClasses([] as Set, ["D"] as Set), "D": empty()
+        ], [:], dependentClasses([] as Set, ["Aggregated"] as Set), dependentClasses([] as Set, ["DependsOnAny"] as Set))
+
+        expect:
+        a.getRelevantDependentsOfClasspathChange(["A"], IntSets.EMPTY_SET).getAllDependentClasses() == ["B"] as Set
+        a.getRelevantDependentsOfClasspathChange(["C"], IntSets.EMPTY_SET).getAllDependentClasses() == ["Aggregated", "DependsOnAny", "D"] as Set
+    }
+
+    def "knows when aggregating processing is affected"() {
+        def a = analysis([
+            "A": empty(), "Aggregated": empty(), "DependsOnAny": empty()
+        ], [:], dependentClasses([] as Set, ["Aggregated"] as Set), dependentClasses([] as Set, ["DependsOnAny"] as Set))
+
+        expect:
+        !a.isAggregatingProcessingAffected(["A"], [])
+        a.isAggregatingProcessingAffected(["A", "Aggregated"], [])
+        a.isAggregatingProcessingAffected(["DependsOnAny"], [])
+    }
+
     def "knows when any of the input classes is a dependency to all"() {
         def a = analysis([
             "A": dependentClasses([] as Set, ["B"] as Set), "B": dependentClasses([] as Set, [] as Set),
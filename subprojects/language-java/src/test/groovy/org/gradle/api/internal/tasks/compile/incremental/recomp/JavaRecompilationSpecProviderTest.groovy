@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental.recomp
+
+import org.gradle.api.file.FileTree
+import org.gradle.api.file.FileType
+import org.gradle.api.internal.file.FileOperations
+import org.gradle.api.internal.tasks.compile.incremental.classpath.ClasspathSnapshot
+import org.gradle.api.internal.tasks.compile.incremental.deps.DependentsSet
+import org.gradle.internal.file.Deleter
+import org.gradle.work.ChangeType
+import org.gradle.work.FileChange
+import spock.lang.Specification
+
+class JavaRecompilationSpecProviderTest extends Specification {
+    def sourceFileClassNameConverter = Stub(SourceFileClassNameConverter) {
+        isEmpty() >> false
+        getClassNames("Foo.java") >> ["Foo"]
+        getRelativeSourcePath(_) >> { String className -> Optional.of(className + ".java") }
+    }
+    def current = Stub(CurrentCompilation) {
+        getClasspathSnapshot() >> Stub(ClasspathSnapshot) {
+            getEntries() >> ([] as Set)
+        }
+        getAnnotationProcessorPath() >> []
+    }
+    def previous = Stub(PreviousCompilation) {
+        getClasspath() >> ([] as Set)
+        getDependents(_ as String, _) >> DependentsSet.empty()
+        getTypesToReprocess() >> (["Aggregated"] as Set)
+    }
+
+    def "reprocesses aggregated types when sources changed"() {
+        def provider = provider([sourceChange("Foo.java")])
+
+        when:
+        def spec = provider.provideRecompilationSpec(current, previous)
+
+        then:
+        spec.classesToCompile as List == ["Foo"]
+        spec.classesToProcess as List == ["Aggregated"]
+    }
+
+    def "reprocesses aggregated types when neither sources nor outputs of aggregating processors are affected"() {
+        def provider = provider([])
+
+        when:
+        def spec = provider.provideRecompilationSpec(current, previous)
+
+        then:
+        spec.classesToCompile.empty
+        spec.classesToProcess as List == ["Aggregated"]
+    }
+
+    private JavaRecompilationSpecProvider provider(List<FileChange> sourceChanges) {
+        new JavaRecompilationSpecProvider(Stub(Deleter), Stub(FileOperations), Stub(FileTree), true, sourceChanges, sourceFileClassNameConverter)
+    }
+
+    private FileChange sourceChange(String path) {
+        Stub(FileChange) {
+            getFile() >> new File(path)
+            getNormalizedPath() >> path
+            getFileType() >> FileType.FILE
+            getChangeType() >> ChangeType.MODIFIED
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.impact;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.FileVisitor;
+import org.gradle.api.internal.file.FileOperations;
+import org.gradle.api.internal.tasks.compile.incremental.classpath.ClasspathEntrySnapshot;
+import org.gradle.api.internal.tasks.compile.incremental.classpath.ClasspathEntrySnapshotCache;
+import org.gradle.api.internal.tasks.compile.incremental.classpath.ClasspathSnapshot;
+import org.gradle.api.internal.tasks.compile.incremental.classpath.ClasspathSnapshotFactory;
+import org.gradle.api.internal.tasks.compile.incremental.classpath.ClasspathSnapshotMaker;
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassChanges;
+import org.gradle.api.internal.tasks.compile.incremental.deps.DependentsSet;
+import org.gradle.internal.IoActions;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.StreamHasher;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.FlushableEncoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.internal.vfs.AdditiveCacheLocations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.gradle.internal.FileUtils.hasExtension;
+
+/**
+ * Determines the affected classes using the class dependency analysis of incremental Java compilation. The classes of each
+ * classpath entry are compared with the classes of the entry from the previous test run, which is looked up by its hash in
+ * the classpath entry snapshot cache. All classes which transitively depend on a changed class are affected, whether the
+ * dependency is private or not.
+ *
+ * The analysis falls back to all test classes being affected when it is incomplete: when there is no previous state, when
+ * the classpath entries or the resources have changed, or when the dependents of a changed class are not known.
+ */
+public class ClasspathTestImpactAnalyzer implements TestImpactAnalyzer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClasspathTestImpactAnalyzer.class);
+    private static final int STATE_VERSION = 1;
+
+    private final ClasspathSnapshotFactory classpathSnapshotFactory;
+    private final ClasspathEntrySnapshotCache classpathEntrySnapshotCache;
+    private final AdditiveCacheLocations additiveCacheLocations;
+    private final FileOperations fileOperations;
+    private final FileHasher fileHasher;
+    private final StreamHasher streamHasher;
+
+    public ClasspathTestImpactAnalyzer(ClasspathSnapshotFactory classpathSnapshotFactory, ClasspathEntrySnapshotCache classpathEntrySnapshotCache, AdditiveCacheLocations additiveCacheLocations,
+                                       FileOperations fileOperations, FileHasher fileHasher, StreamHasher streamHasher) {
+        this.classpathSnapshotFactory = classpathSnapshotFactory;
+        this.classpathEntrySnapshotCache = classpathEntrySnapshotCache;
+        this.additiveCacheLocations = additiveCacheLocations;
+        this.fileOperations = fileOperations;
+        this.fileHasher = fileHasher;
+        this.streamHasher = streamHasher;
+    }
+
+    @Override
+    public TestImpact analyze(File stateFile, HashCode configurationHash, Iterable<File> classpath) {
+        State previous = loadState(stateFile);
+        ClasspathSnapshot classpathSnapshot = new ClasspathSnapshotMaker(classpathSnapshotFactory).getClasspathSnapshot(classpath);
+        Map<File, HashCode> entryHashes = classpathSnapshot.getData().getFileHashes();
+        Map<File, HashCode> resourceHashes = new LinkedHashMap<>();
+        for (Map.Entry<File, HashCode> entry : entryHashes.entrySet()) {
+            File file = entry.getKey();
+            // Files in the Gradle caches never change, a changed dependency shows up as a different classpath entry
+            if (additiveCacheLocations.isInsideAdditiveCache(file.getPath())) {
+                continue;
+            }
+            if (previous != null && entry.getValue().equals(previous.entryHashes.get(file)) && previous.resourceHashes.containsKey(file)) {
+                resourceHashes.put(file, previous.resourceHashes.get(file));
+            } else {
+                resourceHashes.put(file, hashResources(file));
+            }
+        }
+        State current = new State(configurationHash, entryHashes, resourceHashes, Collections.emptySet());
+
+        Set<String> affectedClasses = new HashSet<>();
+        String fullRunReason = previous == null
+            ? "no state of a previous test run is available"
+            : collectAffectedClasses(previous, current, classpathSnapshot, affectedClasses);
+        if (fullRunReason == null) {
+            LOGGER.info("{} classes on the test runtime classpath are affected by the changes since the previous test run.", affectedClasses.size());
+        }
+        return new DefaultTestImpact(stateFile, current, fullRunReason, affectedClasses, previous == null ? Collections.emptySet() : previous.testClasses);
+    }
+
+    @Nullable
+    private String collectAffectedClasses(State previous, State current, ClasspathSnapshot classpathSnapshot, Set<String> affectedClasses) {
+        if (!previous.configurationHash.equals(current.configurationHash)) {
+            return "the test configuration has changed";
+        }
+        if (!ImmutableList.copyOf(previous.entryHashes.keySet()).equals(ImmutableList.copyOf(current.entryHashes.keySet()))) {
+            return "the entries of the test runtime classpath have changed";
+        }
+        Set<String> changedClasses = new HashSet<>();
+        for (Map.Entry<File, HashCode> entry : current.entryHashes.entrySet()) {
+            File file = entry.getKey();
+            HashCode previousHash = previous.entryHashes.get(file);
+            if (entry.getValue().equals(previousHash)) {
+                continue;
+            }
+            if (!Objects.equals(previous.resourceHashes.get(file), current.resourceHashes.get(file))) {
+                return "the resources of '" + file + "' have changed";
+            }
+            ClasspathEntrySnapshot previousSnapshot = classpathEntrySnapshotCache.get(file, previousHash);
+            if (previousSnapshot == null) {
+                return "the classpath entry snapshot of '" + file + "' from the previous test run is not available";
+            }
+            // Tests execute the changed code, so any change to a class matters, not only changes to its ABI
+            ClassChanges classChanges = classpathSnapshot.getSnapshot(file).getClassesWithChangedContentSince(previousSnapshot);
+            changedClasses.addAll(classChanges.getModified());
+            changedClasses.addAll(classChanges.getAdded());
+        }
+        return collectDependents(changedClasses, classpathSnapshot, affectedClasses);
+    }
+
+    /**
+     * Collects all classes transitively depending on the given classes. Unlike for compilation, private dependents
+     * are affected by a change as well, as they execute the changed code.
+     */
+    @Nullable
+    private static String collectDependents(Set<String> changedClasses, ClasspathSnapshot classpathSnapshot, Set<String> affectedClasses) {
+        affectedClasses.addAll(changedClasses);
+        Deque<String> queue = new ArrayDeque<>(changedClasses);
+        while (!queue.isEmpty()) {
+            String affectedClass = queue.poll();
+            for (File entry : classpathSnapshot.getEntries()) {
+                DependentsSet dependents = classpathSnapshot.getSnapshot(entry).getData().getClassAnalysis().getDependents(affectedClass);
+                if (dependents.isDependencyToAll()) {
+                    String description = dependents.getDescription();
+                    return description != null ? description : "a change to " + affectedClass + " may affect any class";
+                }
+                for (String dependent : dependents.getAllDependentClasses()) {
+                    if (affectedClasses.add(dependent)) {
+                        queue.add(dependent);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hashes the files of a classpath entry other than class files. Returns null when there are no such files.
+     */
+    @Nullable
+    private HashCode hashResources(File entry) {
+        SortedMap<String, HashCode> resourceHashes = new TreeMap<>();
+        if (entry.isDirectory()) {
+            fileOperations.fileTree(entry).visit(new ResourceVisitor(resourceHashes, false));
+        } else if (hasExtension(entry, ".jar")) {
+            fileOperations.zipTree(entry).visit(new ResourceVisitor(resourceHashes, true));
+        } else {
+            return fileHasher.hash(entry);
+        }
+        if (resourceHashes.isEmpty()) {
+            return null;
+        }
+        Hasher hasher = Hashing.newHasher();
+        for (Map.Entry<String, HashCode> resource : resourceHashes.entrySet()) {
+            hasher.putString(resource.getKey());
+            hasher.putHash(resource.getValue());
+        }
+        return hasher.hash();
+    }
+
+    @Nullable
+    private static State loadState(File stateFile) {
+        if (!stateFile.isFile()) {
+            return null;
+        }
+        State state = null;
+        try {
+            state = readState(stateFile);
+        } catch (Exception e) {
+            LOGGER.debug("Could not read test impact analysis state from {}.", stateFile, e);
+        }
+        // A test run which does not complete must not leave the state of the previous test run behind
+        if (!stateFile.delete()) {
+            LOGGER.debug("Could not delete test impact analysis state file {}.", stateFile);
+        }
+        return state;
+    }
+
+    private static State readState(File stateFile) throws IOException {
+        try (InputStream inputStream = new FileInputStream(stateFile)) {
+            Decoder decoder = new KryoBackedDecoder(inputStream);
+            int version = decoder.readSmallInt();
+            if (version != STATE_VERSION) {
+                throw new IllegalArgumentException(String.format("Unexpected test impact analysis state version %d found in %s.", version, stateFile));
+            }
+            HashCode configurationHash = HashCode.fromBytes(decoder.readBinary());
+            int count = decoder.readSmallInt();
+            Map<File, HashCode> entryHashes = new LinkedHashMap<>();
+            Map<File, HashCode> resourceHashes = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                File file = new File(decoder.readString());
+                entryHashes.put(file, HashCode.fromBytes(decoder.readBinary()));
+                if (decoder.readBoolean()) {
+                    resourceHashes.put(file, decoder.readBoolean() ? HashCode.fromBytes(decoder.readBinary()) : null);
+                }
+            }
+            count = decoder.readSmallInt();
+            Set<String> testClasses = new HashSet<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                testClasses.add(decoder.readString());
+            }
+            return new State(configurationHash, entryHashes, resourceHashes, testClasses);
+        }
+    }
+
+    private static void writeState(File stateFile, State state) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(stateFile)) {
+            FlushableEncoder encoder = new KryoBackedEncoder(outputStream);
+            encoder.writeSmallInt(STATE_VERSION);
+            encoder.writeBinary(state.configurationHash.toByteArray());
+            encoder.writeSmallInt(state.entryHashes.size());
+            for (Map.Entry<File, HashCode> entry : state.entryHashes.entrySet()) {
+                File file = entry.getKey();
+                encoder.writeString(file.getPath());
+                encoder.writeBinary(entry.getValue().toByteArray());
+                encoder.writeBoolean(state.resourceHashes.containsKey(file));
+                if (state.resourceHashes.containsKey(file)) {
+                    writeNullableHash(encoder, state.resourceHashes.get(file));
+                }
+            }
+            encoder.writeSmallInt(state.testClasses.size());
+            for (String testClass : state.testClasses) {
+                encoder.writeString(testClass);
+            }
+            encoder.flush();
+        }
+    }
+
+    private static void writeNullableHash(Encoder encoder, @Nullable HashCode hash) throws IOException {
+        encoder.writeBoolean(hash != null);
+        if (hash != null) {
+            encoder.writeBinary(hash.toByteArray());
+        }
+    }
+
+    private class ResourceVisitor implements FileVisitor {
+        private final Map<String, HashCode> resourceHashes;
+        private final boolean archive;
+
+        ResourceVisitor(Map<String, HashCode> resourceHashes, boolean archive) {
+            this.resourceHashes = resourceHashes;
+            this.archive = archive;
+        }
+
+        @Override
+        public void visitDir(FileVisitDetails dirDetails) {
+        }
+
+        @Override
+        public void visitFile(FileVisitDetails fileDetails) {
+            if (fileDetails.getName().endsWith(".class")) {
+                return;
+            }
+            resourceHashes.put(fileDetails.getRelativePath().getPathString(), archive ? hashArchiveEntry(fileDetails) : fileHasher.hash(fileDetails.getFile()));
+        }
+
+        private HashCode hashArchiveEntry(FileVisitDetails fileDetails) {
+            InputStream inputStream = fileDetails.open();
+            try {
+                return streamHasher.hash(inputStream);
+            } finally {
+                IoActions.closeQuietly(inputStream);
+            }
+        }
+    }
+
+    /**
+     * The state of a test run. Resource hashes are only tracked for the classpath entries which may change.
+     */
+    private static class State {
+        private final HashCode configurationHash;
+        private final Map<File, HashCode> entryHashes;
+        private final Map<File, HashCode> resourceHashes;
+        private final Set<String> testClasses;
+
+        State(HashCode configurationHash, Map<File, HashCode> entryHashes, Map<File, HashCode> resourceHashes, Set<String> testClasses) {
+            this.configurationHash = configurationHash;
+            this.entryHashes = entryHashes;
+            this.resourceHashes = resourceHashes;
+            this.testClasses = testClasses;
+        }
+    }
+
+    private static class DefaultTestImpact implements TestImpact {
+        private final File stateFile;
+        private final State state;
+        private final String fullRunReason;
+        private final Set<String> affectedClasses;
+        private final Set<String> previousTestClasses;
+
+        DefaultTestImpact(File stateFile, State state, @Nullable String fullRunReason, Set<String> affectedClasses, Set<String> previousTestClasses) {
+            this.stateFile = stateFile;
+            this.state = state;
+            this.fullRunReason = fullRunReason;
+            this.affectedClasses = affectedClasses;
+            this.previousTestClasses = previousTestClasses;
+        }
+
+        @Nullable
+        @Override
+        public String getFullRunReason() {
+            return fullRunReason;
+        }
+
+        @Override
+        public boolean isAffected(String testClassName) {
+            return fullRunReason != null || affectedClasses.contains(testClassName) || !previousTestClasses.contains(testClassName);
+        }
+
+        @Override
+        public void store(Set<String> testClassNames) {
+            try {
+                writeState(stateFile, new State(state.configurationHash, state.entryHashes, state.resourceHashes, testClassNames));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.impact
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.DefaultClassDependenciesAnalyzer
+import org.gradle.api.internal.tasks.compile.incremental.classpath.ClasspathEntrySnapshot
+import org.gradle.api.internal.tasks.compile.incremental.classpath.ClasspathEntrySnapshotCache
+import org.gradle.api.internal.tasks.compile.incremental.classpath.ClasspathEntrySnapshotter
+import org.gradle.api.internal.tasks.compile.incremental.classpath.ClasspathSnapshotFactory
+import org.gradle.api.internal.tasks.compile.incremental.classpath.DefaultClasspathEntrySnapshotter
+import org.gradle.internal.Factory
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.vfs.AdditiveCacheLocations
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Opcodes
+import spock.lang.Specification
+
+@UsesNativeServices
+class ClasspathTestImpactAnalyzerTest extends Specification {
+    private static final HashCode CONFIGURATION = HashCode.fromInt(1)
+
+    @Rule
+    TestNameTestDirectoryProvider temp = new TestNameTestDirectoryProvider(getClass())
+
+    def fileOperations = TestFiles.fileOperations(temp.testDirectory)
+    def fileHasher = TestFiles.fileHasher()
+    def streamHasher = TestFiles.streamHasher()
+    def snapshotCache = new InMemoryClasspathEntrySnapshotCache()
+    def entrySnapshotter = new DefaultClasspathEntrySnapshotter(fileHasher, streamHasher, new DefaultClassDependenciesAnalyzer(new StringInterner()), fileOperations)
+    def analyzer = new ClasspathTestImpactAnalyzer(
+        new ClasspathSnapshotFactory(new CachingSnapshotter(), new TestBuildOperationExecutor()),
+        snapshotCache,
+        { String path -> false } as AdditiveCacheLocations,
+        fileOperations,
+        fileHasher,
+        streamHasher
+    )
+
+    def stateFile = temp.file("test-impact.bin")
+    def mainDir = temp.file("main")
+    def testDir = temp.file("test")
+    List<File> classpath = [mainDir, testDir]
+
+    def setup() {
+        writeClass(mainDir, "Base")
+        writeClass(mainDir, "A", "Base")
+        writeClass(mainDir, "B")
+        mainDir.file("app.properties").text = "app"
+        writeClass(testDir, "ATest", "A")
+        writeClass(testDir, "BTest", "B")
+    }
+
+    def "executes all test classes when there is no state of a previous test run"() {
+        when:
+        def impact = analyze()
+
+        then:
+        impact.fullRunReason == "no state of a previous test run is available"
+        impact.isAffected("ATest")
+        impact.isAffected("BTest")
+    }
+
+    def "executes all test classes when the previous test run did not complete"() {
+        testRun()
+        analyze()
+
+        when:
+        def impact = analyze()
+
+        then:
+        impact.fullRunReason == "no state of a previous test run is available"
+    }
+
+    def "executes no test classes when nothing changed"() {
+        testRun()
+
+        when:
+        def impact = analyze()
+
+        then:
+        impact.fullRunReason == null
+        !impact.isAffected("ATest")
+        !impact.isAffected("BTest")
+    }
+
+    def "executes test classes depending on a class whose method body changed"() {
+        testRun()
+        writeClass(mainDir, "A", "Base", 2)
+
+        when:
+        def impact = analyze()
+
+        then:
+        impact.fullRunReason == null
+        impact.isAffected("ATest")
+        !impact.isAffected("BTest")
+    }
+
+    def "executes test classes transitively depending on a changed class"() {
+        testRun()
+        writeClass(mainDir, "Base", null, 2)
+
+        when:
+        def impact = analyze()
+
+        then:
+        impact.fullRunReason == null
+        impact.isAffected("ATest")
+        !impact.isAffected("BTest")
+    }
+
+    def "executes changed test classes"() {
+        testRun()
+        writeClass(testDir, "BTest", "B", 2)
+
+        when:
+        def impact = analyze()
+
+        then:
+        impact.fullRunReason == null
+        !impact.isAffected("ATest")
+        impact.isAffected("BTest")
+    }
+
+    def "executes test classes depending on a removed class"() {
+        testRun()
+        mainDir.file("B.class").delete()
+
+        when:
+        def impact = analyze()
+
+        then:
+        impact.fullRunReason == null
+        !impact.isAffected("ATest")
+        impact.isAffected("BTest")
+    }
+
+    def "executes added test classes and classes depending on added classes"() {
+        testRun()
+        writeClass(mainDir, "C")
+        writeClass(testDir, "CTest", "C")
+
+        when:
+        def impact = analyze()
+
+        then:
+        impact.fullRunReason == null
+        !impact.isAffected("ATest")
+        !impact.isAffected("BTest")
+        impact.isAffected("C")
+        impact.isAffected("CTest")
+    }
+
+    def "executes all test classes when the test configuration changed"() {
+        testRun()
+
+        when:
+        def impact = analyze(HashCode.fromInt(2))
+
+        then:
+        impact.fullRunReason == "the test configuration has changed"
+        impact.isAffected("ATest")
+        impact.isAffected("BTest")
+    }
+
+    def "executes all test classes when the classpath entries changed"() {
+        testRun()
+        def libDir = temp.file("lib")
+        writeClass(libDir, "Lib")
+        classpath = [mainDir, libDir, testDir]
+
+        when:
+        def impact = analyze()
+
+        then:
+        impact.fullRunReason == "the entries of the test runtime classpath have changed"
+    }
+
+    def "executes all test classes when resources changed"() {
+        testRun()
+        mainDir.file("app.properties").text = "changed"
+
+        when:
+        def impact = analyze()
+
+        then:
+        impact.fullRunReason == "the resources of '${mainDir}' have changed".toString()
+        impact.isAffected("ATest")
+    }
+
+    def "executes all test classes when resources were added"() {
+        testRun()
+        testDir.file("test.properties").text = "test"
+
+        when:
+        def impact = analyze()
+
+        then:
+        impact.fullRunReason == "the resources of '${testDir}' have changed".toString()
+    }
+
+    def "executes all test classes when the previous classpath entry snapshot is not available"() {
+        testRun()
+        writeClass(mainDir, "B", null, 2)
+        snapshotCache.snapshots.clear()
+
+        when:
+        def impact = analyze()
+
+        then:
+        impact.fullRunReason == "the classpath entry snapshot of '${mainDir}' from the previous test run is not available".toString()
+    }
+
+    def "executes all test classes when a changed class may affect any class"() {
+        mainDir.file("Ann.class").bytes = sourceRetentionAnnotation("Ann", "value")
+        testRun()
+        mainDir.file("Ann.class").bytes = sourceRetentionAnnotation("Ann", "otherValue")
+
+        when:
+        def impact = analyze()
+
+        then:
+        impact.fullRunReason == "a change to Ann may affect any class"
+        impact.isAffected("ATest")
+        impact.isAffected("BTest")
+    }
+
+    private TestImpact analyze(HashCode configurationHash = CONFIGURATION) {
+        analyzer.analyze(stateFile, configurationHash, classpath)
+    }
+
+    private void testRun() {
+        analyze().store(["ATest", "BTest"] as Set)
+    }
+
+    private static void writeClass(TestFile dir, String name, String dependency = null, int value = 1) {
+        def writer = new ClassWriter(0)
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null)
+        if (dependency) {
+            writer.visitField(Opcodes.ACC_PRIVATE, "dependency", "L" + dependency + ";", null, null).visitEnd()
+        }
+        def method = writer.visitMethod(Opcodes.ACC_PUBLIC, "value", "()I", null, null)
+        method.visitCode()
+        method.visitLdcInsn(value)
+        method.visitInsn(Opcodes.IRETURN)
+        method.visitMaxs(1, 1)
+        method.visitEnd()
+        writer.visitEnd()
+        dir.file(name + ".class").bytes = writer.toByteArray()
+    }
+
+    private static byte[] sourceRetentionAnnotation(String name, String element) {
+        def writer = new ClassWriter(0)
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_ANNOTATION | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, name, null, "java/lang/Object", ["java/lang/annotation/Annotation"] as String[])
+        def retention = writer.visitAnnotation("Ljava/lang/annotation/Retention;", true)
+        retention.visitEnum("value", "Ljava/lang/annotation/RetentionPolicy;", "SOURCE")
+        retention.visitEnd()
+        writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, element, "()I", null, null).visitEnd()
+        writer.visitEnd()
+        writer.toByteArray()
+    }
+
+    private static HashCode hashEntry(File entry) {
+        def files = []
+        entry.eachFileRecurse { File file ->
+            if (file.isFile()) {
+                files << file
+            }
+        }
+        def hasher = Hashing.newHasher()
+        files.sort().each { File file ->
+            hasher.putString(file.absolutePath)
+            hasher.putHash(Hashing.hashBytes(file.bytes))
+        }
+        hasher.hash()
+    }
+
+    /**
+     * Stores the snapshots by the hash of the entry, like the snapshotter used by the build.
+     */
+    private class CachingSnapshotter implements ClasspathEntrySnapshotter {
+        @Override
+        ClasspathEntrySnapshot createSnapshot(File classpathEntry) {
+            def hash = hashEntry(classpathEntry)
+            def snapshot = entrySnapshotter.createSnapshot(hash, classpathEntry)
+            snapshotCache.snapshots[hash] = snapshot
+            snapshot
+        }
+    }
+
+    private static class InMemoryClasspathEntrySnapshotCache implements ClasspathEntrySnapshotCache {
+        final Map<HashCode, ClasspathEntrySnapshot> snapshots = [:]
+
+        @Override
+        ClasspathEntrySnapshot get(File file, HashCode hash) {
+            snapshots[hash]
+        }
+
+        @Override
+        ClasspathEntrySnapshot get(File key, Factory<ClasspathEntrySnapshot> factory) {
+            factory.create()
+        }
+    }
+}
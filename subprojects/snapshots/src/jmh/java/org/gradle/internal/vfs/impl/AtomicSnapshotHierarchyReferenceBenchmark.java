@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl;
+
+import org.gradle.internal.snapshot.AtomicSnapshotHierarchyReference;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.snapshot.MetadataSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures many threads concurrently storing and invalidating locations in the same snapshot hierarchy.
+ */
+@Fork(1)
+@Threads(16)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AtomicSnapshotHierarchyReferenceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedRoot {
+        final AtomicSnapshotHierarchyReference reference = new AtomicSnapshotHierarchyReference(DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE));
+        final AtomicInteger threadCount = new AtomicInteger();
+    }
+
+    @State(Scope.Thread)
+    public static class Updater {
+        String[] locations;
+        int next;
+
+        @Setup
+        public void prepare(SharedRoot sharedRoot) {
+            int thread = sharedRoot.threadCount.getAndIncrement();
+            locations = new String[256];
+            for (int i = 0; i < locations.length; i++) {
+                locations[i] = "/benchmark/thread-" + thread + "/output-" + i;
+            }
+        }
+
+        String nextLocation() {
+            next = (next + 1) % locations.length;
+            return locations[next];
+        }
+    }
+
+    @Benchmark
+    public void store_with_lock(SharedRoot sharedRoot, Updater updater) {
+        String location = updater.nextLocation();
+        sharedRoot.reference.update(root -> root.store(location, MetadataSnapshot.DIRECTORY, SnapshotHierarchy.NodeDiffListener.NOOP));
+    }
+
+    @Benchmark
+    public void store_optimistically(SharedRoot sharedRoot, Updater updater) {
+        String location = updater.nextLocation();
+        sharedRoot.reference.updateOptimistically(root -> AtomicSnapshotHierarchyReference.PreparedUpdate.of(root.store(location, MetadataSnapshot.DIRECTORY, SnapshotHierarchy.NodeDiffListener.NOOP)));
+    }
+
+    @Benchmark
+    public void invalidate_optimistically(SharedRoot sharedRoot, Updater updater) {
+        String location = updater.nextLocation();
+        sharedRoot.reference.updateOptimistically(root -> AtomicSnapshotHierarchyReference.PreparedUpdate.of(root.invalidate(location, SnapshotHierarchy.NodeDiffListener.NOOP)));
+    }
+}
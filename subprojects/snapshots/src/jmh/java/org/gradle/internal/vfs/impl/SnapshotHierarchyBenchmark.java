@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl;
+
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.snapshot.MetadataSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures updates and lookups in a directory with many known children.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class SnapshotHierarchyBenchmark {
+    private static final String WIDE_DIRECTORY = "/benchmark/wide";
+
+    @Param({"10", "1000", "20000"})
+    int numberOfChildren;
+
+    SnapshotHierarchy hierarchy;
+    String[] existingChildren;
+    String[] newChildren;
+    int next;
+
+    @Setup
+    public void prepare() {
+        existingChildren = new String[numberOfChildren];
+        newChildren = new String[numberOfChildren];
+        SnapshotHierarchy hierarchy = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE);
+        for (int i = 0; i < numberOfChildren; i++) {
+            existingChildren[i] = WIDE_DIRECTORY + "/child-" + i;
+            newChildren[i] = WIDE_DIRECTORY + "/child-" + i + "-new";
+            hierarchy = hierarchy.store(existingChildren[i], MetadataSnapshot.DIRECTORY, SnapshotHierarchy.NodeDiffListener.NOOP);
+        }
+        this.hierarchy = hierarchy;
+    }
+
+    private int nextIndex() {
+        next = (next + 7919) % numberOfChildren;
+        return next;
+    }
+
+    @Benchmark
+    public void store_new_child(Blackhole bh) {
+        bh.consume(hierarchy.store(newChildren[nextIndex()], MetadataSnapshot.DIRECTORY, SnapshotHierarchy.NodeDiffListener.NOOP));
+    }
+
+    @Benchmark
+    public void invalidate_child(Blackhole bh) {
+        bh.consume(hierarchy.invalidate(existingChildren[nextIndex()], SnapshotHierarchy.NodeDiffListener.NOOP));
+    }
+
+    @Benchmark
+    public void lookup_child(Blackhole bh) {
+        bh.consume(hierarchy.getMetadata(existingChildren[nextIndex()]));
+    }
+}
@@ -16,9 +16,6 @@
 
 package org.gradle.internal.snapshot;
 
-import com.google.common.collect.ImmutableList;
-
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -48,9 +45,7 @@ public Optional<FileSystemNode> handleChildOfExisting(int childIndex) {
                         if (children.size() == 1) {
                             return withAllChildrenRemoved();
                         }
-                        List<FileSystemNode> merged = new ArrayList<>(children);
-                        merged.remove(childIndex);
-                        return Optional.of(withIncompleteChildren(getPathToParent(), merged));
+                        return Optional.of(withIncompleteChildren(getPathToParent(), ChildList.withRemoved(children, childIndex)));
                     });
             }
         });
@@ -61,11 +56,9 @@ public FileSystemNode store(VfsRelativePath relativePath, CaseSensitivity caseSe
         return SnapshotUtil.handleChildren(children, relativePath, caseSensitivity, new SnapshotUtil.ChildHandler<FileSystemNode>() {
             @Override
             public FileSystemNode handleNewChild(int insertBefore) {
-                List<FileSystemNode> newChildren = new ArrayList<>(children);
                 FileSystemNode newChild = snapshot.asFileSystemNode(relativePath.getAsString());
-                newChildren.add(insertBefore, newChild);
                 diffListener.nodeAdded(newChild);
-                return withIncompleteChildren(getPathToParent(), newChildren);
+                return withIncompleteChildren(getPathToParent(), ChildList.withInserted(children, insertBefore, newChild));
             }
 
             @Override
@@ -112,12 +105,7 @@ private FileSystemNode withReplacedChild(int childIndex, FileSystemNode childToR
         if (newChild == childToReplace) {
             return AbstractIncompleteSnapshotWithChildren.this;
         }
-        if (children.size() == 1) {
-            return withIncompleteChildren(getPathToParent(), ImmutableList.of(newChild));
-        }
-        List<FileSystemNode> merged = new ArrayList<>(children);
-        merged.set(childIndex, newChild);
-        return withIncompleteChildren(getPathToParent(), merged);
+        return withIncompleteChildren(getPathToParent(), ChildList.withReplaced(children, childIndex, newChild));
     }
 
     @Override
@@ -41,7 +41,75 @@ public void update(UpdateFunction updateFunction) {
         }
     }
 
+    /**
+     * Updates the root with a function whose result is computed without holding the update lock.
+     *
+     * Only installing the computed root and running its {@link PreparedUpdate#commit() commit action} happen while holding the lock.
+     * If another update has been installed while the new root was computed, the update is computed again while holding the lock.
+     * So the commit action runs exactly once, for the update which is eventually installed.
+     * Updates which don't change the root don't take the lock at all.
+     */
+    public void updateOptimistically(OptimisticUpdateFunction updateFunction) {
+        SnapshotHierarchy currentRoot = root;
+        PreparedUpdate preparedUpdate = updateFunction.prepare(currentRoot);
+        if (preparedUpdate.newRoot == currentRoot) {
+            return;
+        }
+        updateLock.lock();
+        try {
+            SnapshotHierarchy latestRoot = root;
+            if (latestRoot != currentRoot) {
+                preparedUpdate = updateFunction.prepare(latestRoot);
+            }
+            root = preparedUpdate.commit();
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
     public interface UpdateFunction {
         SnapshotHierarchy updateRoot(SnapshotHierarchy root);
     }
+
+    /**
+     * Computes an update of the root.
+     *
+     * The computation must not have side effects, since it may be called more than once for a single update.
+     * Side effects belong into the commit action of the {@link PreparedUpdate}.
+     */
+    public interface OptimisticUpdateFunction {
+        PreparedUpdate prepare(SnapshotHierarchy root);
+    }
+
+    public static class PreparedUpdate {
+        private final SnapshotHierarchy newRoot;
+        private final UpdateFunction commitAction;
+
+        private PreparedUpdate(SnapshotHierarchy newRoot, UpdateFunction commitAction) {
+            this.newRoot = newRoot;
+            this.commitAction = commitAction;
+        }
+
+        public static PreparedUpdate of(SnapshotHierarchy newRoot) {
+            return new PreparedUpdate(newRoot, root -> root);
+        }
+
+        /**
+         * Creates an update with a commit action, which receives the new root and returns the root to install.
+         */
+        public static PreparedUpdate of(SnapshotHierarchy newRoot, UpdateFunction commitAction) {
+            return new PreparedUpdate(newRoot, commitAction);
+        }
+
+        public SnapshotHierarchy getNewRoot() {
+            return newRoot;
+        }
+
+        /**
+         * Runs the commit action and returns the root to install.
+         */
+        public SnapshotHierarchy commit() {
+            return commitAction.updateRoot(newRoot);
+        }
+    }
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot;
+
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of children used by the snapshot hierarchy.
+ *
+ * Narrow directories keep their children in a plain array-backed list, which is copied on every update.
+ * Once a directory grows beyond {@link #WIDE_THRESHOLD} children, the children are kept in a persistent
+ * tree of small chunks instead, so that replacing, adding or removing a child only copies the chunks
+ * on the path to that child.
+ */
+final class ChildList<T> extends AbstractList<T> implements RandomAccess {
+    static final int WIDE_THRESHOLD = 64;
+    private static final int NARROW_THRESHOLD = WIDE_THRESHOLD / 2;
+    private static final int MAX_NODE_SIZE = 32;
+
+    private final Node root;
+
+    private ChildList(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns a list with the element at the given index replaced.
+     */
+    static <T> List<T> withReplaced(List<? extends T> list, int index, T element) {
+        if (list instanceof ChildList) {
+            return new ChildList<>(((ChildList<?>) list).root.set(index, element));
+        }
+        if (list.size() == 1) {
+            return ImmutableList.of(element);
+        }
+        List<T> result = new ArrayList<>(list);
+        result.set(index, element);
+        return result;
+    }
+
+    /**
+     * Returns a list with the element inserted at the given index.
+     */
+    static <T> List<T> withInserted(List<? extends T> list, int index, T element) {
+        if (list instanceof ChildList) {
+            return new ChildList<>(((ChildList<?>) list).root.insert(index, element));
+        }
+        if (list.size() >= WIDE_THRESHOLD) {
+            return new ChildList<>(build(list).insert(index, element));
+        }
+        List<T> result = new ArrayList<>(list);
+        result.add(index, element);
+        return result;
+    }
+
+    /**
+     * Returns a list with the element at the given index removed.
+     */
+    static <T> List<T> withRemoved(List<? extends T> list, int index) {
+        if (list instanceof ChildList) {
+            Node newRoot = ((ChildList<?>) list).root.remove(index);
+            if (newRoot.size() > NARROW_THRESHOLD) {
+                return new ChildList<>(newRoot);
+            }
+            return ImmutableList.copyOf(new ChildList<T>(newRoot));
+        }
+        List<T> result = new ArrayList<>(list);
+        result.remove(index);
+        return result;
+    }
+
+    private static Node build(List<?> elements) {
+        List<Node> nodes = new ArrayList<>();
+        for (int start = 0; start < elements.size(); start += MAX_NODE_SIZE) {
+            nodes.add(new Leaf(elements.subList(start, Math.min(start + MAX_NODE_SIZE, elements.size())).toArray()));
+        }
+        while (nodes.size() > 1) {
+            List<Node> parents = new ArrayList<>();
+            for (int start = 0; start < nodes.size(); start += MAX_NODE_SIZE) {
+                parents.add(new Branch(nodes.subList(start, Math.min(start + MAX_NODE_SIZE, nodes.size())).toArray(new Node[0])));
+            }
+            nodes = parents;
+        }
+        return nodes.get(0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= root.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + root.size());
+        }
+        return (T) root.get(index);
+    }
+
+    @Override
+    public int size() {
+        return root.size();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        List<Leaf> leaves = new ArrayList<>();
+        root.collectLeaves(leaves);
+        return new Iterator<T>() {
+            private int leafIndex;
+            private int elementIndex;
+
+            @Override
+            public boolean hasNext() {
+                return leafIndex < leaves.size();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Object[] elements = leaves.get(leafIndex).elements;
+                T next = (T) elements[elementIndex++];
+                if (elementIndex == elements.length) {
+                    leafIndex++;
+                    elementIndex = 0;
+                }
+                return next;
+            }
+        };
+    }
+
+    private static abstract class Node {
+        abstract int size();
+
+        abstract Object get(int index);
+
+        abstract Node set(int index, Object element);
+
+        /**
+         * Returns the node with the element inserted, or a node with two children when this node had to be split.
+         */
+        Node insert(int index, Object element) {
+            Node[] inserted = doInsert(index, element);
+            return inserted.length == 1 ? inserted[0] : new Branch(inserted);
+        }
+
+        /**
+         * Returns either the updated node, or the two halves of the updated node if it became too big.
+         */
+        abstract Node[] doInsert(int index, Object element);
+
+        /**
+         * Returns the node with the element removed, or {@code null} if the node became empty.
+         */
+        @Nullable
+        abstract Node remove(int index);
+
+        abstract void collectLeaves(List<Leaf> leaves);
+    }
+
+    private static final class Leaf extends Node {
+        private final Object[] elements;
+
+        Leaf(Object[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        int size() {
+            return elements.length;
+        }
+
+        @Override
+        Object get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        Node set(int index, Object element) {
+            Object[] newElements = elements.clone();
+            newElements[index] = element;
+            return new Leaf(newElements);
+        }
+
+        @Override
+        Node[] doInsert(int index, Object element) {
+            Object[] newElements = new Object[elements.length + 1];
+            System.arraycopy(elements, 0, newElements, 0, index);
+            newElements[index] = element;
+            System.arraycopy(elements, index, newElements, index + 1, elements.length - index);
+            if (newElements.length <= MAX_NODE_SIZE) {
+                return new Node[]{new Leaf(newElements)};
+            }
+            int half = newElements.length / 2;
+            return new Node[]{
+                new Leaf(Arrays.copyOfRange(newElements, 0, half)),
+                new Leaf(Arrays.copyOfRange(newElements, half, newElements.length))
+            };
+        }
+
+        @Nullable
+        @Override
+        Node remove(int index) {
+            if (elements.length == 1) {
+                return null;
+            }
+            Object[] newElements = new Object[elements.length - 1];
+            System.arraycopy(elements, 0, newElements, 0, index);
+            System.arraycopy(elements, index + 1, newElements, index, elements.length - index - 1);
+            return new Leaf(newElements);
+        }
+
+        @Override
+        void collectLeaves(List<Leaf> leaves) {
+            leaves.add(this);
+        }
+    }
+
+    private static final class Branch extends Node {
+        private final Node[] children;
+        // The index of the first element of each child
+        private final int[] offsets;
+        private final int size;
+
+        Branch(Node[] children) {
+            this.children = children;
+            this.offsets = new int[children.length];
+            int offset = 0;
+            for (int i = 0; i < children.length; i++) {
+                offsets[i] = offset;
+                offset += children[i].size();
+            }
+            this.size = offset;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        private int childIndexFor(int index) {
+            int found = Arrays.binarySearch(offsets, index);
+            return found >= 0 ? found : -found - 2;
+        }
+
+        @Override
+        Object get(int index) {
+            int childIndex = childIndexFor(index);
+            return children[childIndex].get(index - offsets[childIndex]);
+        }
+
+        @Override
+        Node set(int index, Object element) {
+            int childIndex = childIndexFor(index);
+            Node[] newChildren = children.clone();
+            newChildren[childIndex] = children[childIndex].set(index - offsets[childIndex], element);
+            return new Branch(newChildren);
+        }
+
+        @Override
+        Node[] doInsert(int index, Object element) {
+            // Appending goes to the last child
+            int childIndex = index == size ? children.length - 1 : childIndexFor(index);
+            Node[] inserted = children[childIndex].doInsert(index - offsets[childIndex], element);
+            Node[] newChildren = new Node[children.length + inserted.length - 1];
+            System.arraycopy(children, 0, newChildren, 0, childIndex);
+            System.arraycopy(inserted, 0, newChildren, childIndex, inserted.length);
+            System.arraycopy(children, childIndex + 1, newChildren, childIndex + inserted.length, children.length - childIndex - 1);
+            if (newChildren.length <= MAX_NODE_SIZE) {
+                return new Node[]{new Branch(newChildren)};
+            }
+            int half = newChildren.length / 2;
+            return new Node[]{
+                new Branch(Arrays.copyOfRange(newChildren, 0, half)),
+                new Branch(Arrays.copyOfRange(newChildren, half, newChildren.length))
+            };
+        }
+
+        @Nullable
+        @Override
+        Node remove(int index) {
+            int childIndex = childIndexFor(index);
+            Node newChild = children[childIndex].remove(index - offsets[childIndex]);
+            if (newChild != null) {
+                Node[] newChildren = children.clone();
+                newChildren[childIndex] = newChild;
+                return new Branch(newChildren);
+            }
+            if (children.length == 1) {
+                return null;
+            }
+            if (children.length == 2) {
+                // Collapse branches with a single child
+                return children[1 - childIndex];
+            }
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(children, 0, newChildren, 0, childIndex);
+            System.arraycopy(children, childIndex + 1, newChildren, childIndex, children.length - childIndex - 1);
+            return new Branch(newChildren);
+        }
+
+        @Override
+        void collectLeaves(List<Leaf> leaves) {
+            for (Node child : children) {
+                child.collectLeaves(leaves);
+            }
+        }
+    }
+}
@@ -122,11 +122,13 @@ interface DiffCapturingUpdateFunction {
     }
 
     /**
-     * Passes an {@link NodeDiffListener} to an {@link DiffCapturingUpdateFunction}, so it becomes an {@link org.gradle.internal.snapshot.AtomicSnapshotHierarchyReference.UpdateFunction}.
+     * Passes an {@link NodeDiffListener} to an {@link DiffCapturingUpdateFunction}, so it becomes an {@link org.gradle.internal.snapshot.AtomicSnapshotHierarchyReference.OptimisticUpdateFunction}.
+     *
+     * The captured diff is only published when the update is committed.
      */
     interface DiffCapturingUpdateFunctionDecorator {
-        DiffCapturingUpdateFunctionDecorator NOOP = updateFunction -> root -> updateFunction.update(root, NodeDiffListener.NOOP);
+        DiffCapturingUpdateFunctionDecorator NOOP = updateFunction -> root -> AtomicSnapshotHierarchyReference.PreparedUpdate.of(updateFunction.update(root, NodeDiffListener.NOOP));
 
-        AtomicSnapshotHierarchyReference.UpdateFunction decorate(DiffCapturingUpdateFunction updateFunction);
+        AtomicSnapshotHierarchyReference.OptimisticUpdateFunction decorate(DiffCapturingUpdateFunction updateFunction);
     }
 }
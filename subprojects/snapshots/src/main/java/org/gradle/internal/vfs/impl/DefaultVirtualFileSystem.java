@@ -152,7 +152,7 @@ private CompleteFileSystemLocationSnapshot snapshot(String location) {
     }
 
     private void updateRoot(SnapshotHierarchy.DiffCapturingUpdateFunction updateFunction) {
-        root.update(updateFunctionDecorator.decorate(updateFunction));
+        root.updateOptimistically(updateFunctionDecorator.decorate(updateFunction));
     }
 
     @Override
@@ -169,10 +169,10 @@ private CompleteFileSystemLocationSnapshot readLocation(String location) {
 
     @Override
     public void update(Iterable<String> locations, Runnable action) {
-        root.update(root -> {
+        updateRoot((root, changeListener) -> {
             SnapshotHierarchy result = root;
             for (String location : locations) {
-                result = updateFunctionDecorator.decorate((currentRoot, changeListener) -> currentRoot.invalidate(location, changeListener)).updateRoot(result);
+                result = result.invalidate(location, changeListener);
             }
             return result;
         });
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot
+
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import static org.gradle.internal.snapshot.AtomicSnapshotHierarchyReference.PreparedUpdate
+
+class AtomicSnapshotHierarchyReferenceTest extends Specification {
+    def reference = new AtomicSnapshotHierarchyReference(DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE))
+
+    def "installs the root returned by the commit action"() {
+        def committedRoot = Stub(SnapshotHierarchy)
+
+        when:
+        reference.updateOptimistically { root ->
+            PreparedUpdate.of(root.store("/some/dir", MetadataSnapshot.DIRECTORY, SnapshotHierarchy.NodeDiffListener.NOOP)) { newRoot -> committedRoot }
+        }
+
+        then:
+        reference.get() == committedRoot
+    }
+
+    def "does not commit updates which do not change the root"() {
+        def commits = 0
+
+        when:
+        reference.updateOptimistically { root ->
+            PreparedUpdate.of(root) { newRoot ->
+                commits++
+                newRoot
+            }
+        }
+
+        then:
+        commits == 0
+    }
+
+    def "prepares update again when root changed concurrently and commits only once"() {
+        def prepared = 0
+        def committed = []
+
+        when:
+        reference.updateOptimistically { root ->
+            prepared++
+            if (prepared == 1) {
+                // Simulate a concurrent update while this one is prepared
+                reference.update { it.store("/other", MetadataSnapshot.DIRECTORY, SnapshotHierarchy.NodeDiffListener.NOOP) }
+            }
+            def newRoot = root.store("/some/dir", MetadataSnapshot.DIRECTORY, SnapshotHierarchy.NodeDiffListener.NOOP)
+            PreparedUpdate.of(newRoot) { committedRoot ->
+                committed << committedRoot
+                committedRoot
+            }
+        }
+
+        then:
+        prepared == 2
+        committed.size() == 1
+        reference.get().getMetadata("/other").present
+        reference.get().getMetadata("/some/dir").present
+    }
+
+    def "does not lose concurrent updates"() {
+        def threads = 8
+        def updatesPerThread = 200
+        def commits = new AtomicInteger()
+        def executor = Executors.newFixedThreadPool(threads)
+        def start = new CountDownLatch(1)
+
+        when:
+        threads.times { thread ->
+            executor.execute {
+                start.await()
+                updatesPerThread.times { update ->
+                    reference.updateOptimistically { root ->
+                        def newRoot = root.store("/root/thread-${thread}/file-${update}", MetadataSnapshot.DIRECTORY, SnapshotHierarchy.NodeDiffListener.NOOP)
+                        PreparedUpdate.of(newRoot) { committedRoot ->
+                            commits.incrementAndGet()
+                            committedRoot
+                        }
+                    }
+                }
+            }
+        }
+        start.countDown()
+        executor.shutdown()
+        executor.awaitTermination(1, TimeUnit.MINUTES)
+
+        then:
+        commits.get() == threads * updatesPerThread
+        (0..<threads).every { thread ->
+            (0..<updatesPerThread).every { update -> reference.get().getMetadata("/root/thread-${thread}/file-${update}").present }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot
+
+import com.google.common.collect.ImmutableList
+import spock.lang.Specification
+
+class ChildListTest extends Specification {
+
+    def "narrow lists are copied on update"() {
+        def list = ["a", "c"]
+
+        expect:
+        ChildList.withInserted(list, 1, "b") == ["a", "b", "c"]
+        ChildList.withReplaced(list, 0, "b") == ["b", "c"]
+        ChildList.withReplaced(["a"], 0, "b") == ImmutableList.of("b")
+        ChildList.withRemoved(list, 0) == ["c"]
+        list == ["a", "c"]
+    }
+
+    def "switches to persistent representation when growing wide"() {
+        def list = (0..<ChildList.WIDE_THRESHOLD).toList()
+
+        when:
+        def wide = ChildList.withInserted(list, 0, -1)
+
+        then:
+        wide instanceof ChildList
+        wide == [-1] + list
+        list.size() == ChildList.WIDE_THRESHOLD
+    }
+
+    def "switches back to array based representation when shrinking"() {
+        List<Integer> list = (0..ChildList.WIDE_THRESHOLD).toList()
+        list = ChildList.withInserted(list, 0, -1)
+
+        when:
+        while (list instanceof ChildList) {
+            list = ChildList.withRemoved(list, 0)
+        }
+
+        then:
+        list instanceof ImmutableList
+        list == (33..64).toList()
+    }
+
+    def "iterates over the elements of a wide list"() {
+        List<Integer> list = ChildList.withInserted((0..<100).toList(), 100, 100)
+
+        when:
+        def iterator = list.iterator()
+        def elements = []
+        while (iterator.hasNext()) {
+            elements << iterator.next()
+        }
+
+        then:
+        elements == (0..100).toList()
+
+        when:
+        iterator.next()
+
+        then:
+        thrown(NoSuchElementException)
+    }
+
+    def "updates of wide lists leave the original list unchanged"() {
+        List<Integer> original = ChildList.withInserted((0..<1000).toList(), 1000, 1000)
+        def expected = (0..1000).toList()
+
+        when:
+        def inserted = ChildList.withInserted(original, 500, -1)
+        def replaced = ChildList.withReplaced(original, 10, -1)
+        def removed = ChildList.withRemoved(original, 999)
+
+        then:
+        original == expected
+        inserted.size() == 1002
+        inserted[500] == -1
+        inserted[501] == 500
+        replaced[10] == -1
+        replaced.size() == 1001
+        removed.size() == 1000
+        removed[999] == 1000
+    }
+
+    def "behaves like an array list for random updates"() {
+        def random = new Random(1234)
+        List<Integer> model = []
+        List<Integer> list = []
+
+        when:
+        5000.times {
+            int operation = model.empty ? 0 : random.nextInt(3)
+            switch (operation) {
+                case 0:
+                    int index = random.nextInt(model.size() + 1)
+                    model.add(index, it)
+                    list = ChildList.withInserted(list, index, it)
+                    break
+                case 1:
+                    int index = random.nextInt(model.size())
+                    model.set(index, it)
+                    list = ChildList.withReplaced(list, index, it)
+                    break
+                default:
+                    if (random.nextInt(3) == 0) {
+                        int index = random.nextInt(model.size())
+                        model.remove(index)
+                        list = ChildList.withRemoved(list, index)
+                    }
+            }
+        }
+
+        then:
+        list instanceof ChildList
+        list == model
+        (0..<model.size()).every { list.get(it) == model.get(it) }
+    }
+}
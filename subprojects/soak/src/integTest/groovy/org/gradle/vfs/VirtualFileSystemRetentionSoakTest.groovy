@@ -20,7 +20,6 @@ import org.gradle.integtests.fixtures.VfsRetentionFixture
 import org.gradle.integtests.fixtures.daemon.DaemonFixture
 import org.gradle.integtests.fixtures.daemon.DaemonIntegrationSpec
 import org.gradle.internal.os.OperatingSystem
-import org.gradle.internal.watch.registry.FileWatcherRegistry
 import org.gradle.soak.categories.SoakTest
 import org.gradle.test.fixtures.file.TestFile
 import org.junit.experimental.categories.Category
@@ -142,7 +141,7 @@ class VirtualFileSystemRetentionSoakTest extends DaemonIntegrationSpec implement
     }
 
     private static boolean detectOverflow(DaemonFixture daemon, long fromLine) {
-        boolean overflowDetected = daemon.logContains(fromLine, FileWatcherRegistry.Type.INVALIDATED.toString())
+        boolean overflowDetected = daemon.logContains(fromLine, "Handling VFS overflow")
         if (overflowDetected) {
             println "Detected overflow in watcher, no files will be retained for the next build"
         }
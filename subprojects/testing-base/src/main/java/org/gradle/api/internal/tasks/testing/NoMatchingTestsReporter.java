@@ -23,9 +23,11 @@
 
 public class NoMatchingTestsReporter implements TestListener {
     private final String message;
+    private final TestExecuter<?> testExecuter;
 
-    public NoMatchingTestsReporter(String message) {
+    public NoMatchingTestsReporter(String message, TestExecuter<?> testExecuter) {
         this.message = message;
+        this.testExecuter = testExecuter;
     }
 
     @Override
@@ -33,11 +35,18 @@ public void beforeSuite(TestDescriptor suite) {}
 
     @Override
     public void afterSuite(TestDescriptor suite, TestResult result) {
-        if (suite.getParent() == null && result.getTestCount() == 0) {
+        if (suite.getParent() == null && result.getTestCount() == 0 && !hasSkippedTestClasses()) {
             throw new TestExecutionException(message);
         }
     }
 
+    /**
+     * Test classes which have been skipped did match the test filter.
+     */
+    private boolean hasSkippedTestClasses() {
+        return testExecuter instanceof TestClassSkippingExecuter && ((TestClassSkippingExecuter) testExecuter).hasSkippedTestClasses();
+    }
+
     @Override
     public void beforeTest(TestDescriptor testDescriptor) {}
 
@@ -24,7 +24,11 @@
 import org.gradle.api.Action;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.Actions;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -36,7 +40,7 @@
 
 public class AggregateTestResultsProvider implements TestResultsProvider {
     private final Iterable<TestResultsProvider> providers;
-    private Multimap<Long, DelegateProvider> classOutputProviders;
+    private volatile Multimap<Long, DelegateProvider> classOutputProviders;
 
     public AggregateTestResultsProvider(Iterable<TestResultsProvider> providers) {
         this.providers = providers;
@@ -45,7 +49,7 @@ public AggregateTestResultsProvider(Iterable<TestResultsProvider> providers) {
     @Override
     public void visitClasses(final Action<? super TestClassResult> visitor) {
         final Map<String, OverlaidIdProxyingTestClassResult> aggregatedTestResults = new LinkedHashMap<String, OverlaidIdProxyingTestClassResult>();
-        classOutputProviders = ArrayListMultimap.create();
+        final Multimap<Long, DelegateProvider> outputProviders = ArrayListMultimap.create();
         final AtomicLong newIdCounter = new AtomicLong(0L);
         for (final TestResultsProvider provider : providers) {
             provider.visitClasses(new Action<TestClassResult>() {
@@ -59,15 +63,27 @@ public void execute(final TestClassResult classResult) {
                         newTestResult = new OverlaidIdProxyingTestClassResult(newId, classResult);
                         aggregatedTestResults.put(classResult.getClassName(), newTestResult);
                     }
-                    classOutputProviders.put(newTestResult.getId(), new DelegateProvider(classResult.getId(), provider));
+                    outputProviders.put(newTestResult.getId(), new DelegateProvider(classResult.getId(), provider));
                 }
             });
         }
+        classOutputProviders = outputProviders;
         for (OverlaidIdProxyingTestClassResult classResult : aggregatedTestResults.values()) {
             visitor.execute(classResult);
         }
     }
 
+    /**
+     * Returns the providers of the output of each aggregated class, visiting the classes first if that hasn't happened yet,
+     * so the output can be queried before the classes are visited.
+     */
+    private Multimap<Long, DelegateProvider> getClassOutputProviders() {
+        if (classOutputProviders == null) {
+            visitClasses(Actions.doNothing());
+        }
+        return classOutputProviders;
+    }
+
     private static class DelegateProvider {
         private final long id;
         private final TestResultsProvider provider;
@@ -101,7 +117,7 @@ void addTestClassResult(TestClassResult delegate) {
     @Override
     public boolean hasOutput(long id, final TestOutputEvent.Destination destination) {
         return Iterables.any(
-                classOutputProviders.get(id),
+                getClassOutputProviders().get(id),
                 new Predicate<DelegateProvider>() {
                     @Override
                     public boolean apply(DelegateProvider delegateProvider) {
@@ -110,9 +126,18 @@ public boolean apply(DelegateProvider delegateProvider) {
                 });
     }
 
+    @Override
+    public HashCode getOutputHash(long classId) {
+        Hasher hasher = Hashing.newHasher();
+        for (DelegateProvider delegateProvider : getClassOutputProviders().get(classId)) {
+            hasher.putHash(delegateProvider.provider.getOutputHash(delegateProvider.id));
+        }
+        return hasher.hash();
+    }
+
     @Override
     public void writeAllOutput(long id, TestOutputEvent.Destination destination, Writer writer) {
-        for (DelegateProvider delegateProvider : classOutputProviders.get(id)) {
+        for (DelegateProvider delegateProvider : getClassOutputProviders().get(id)) {
             delegateProvider.provider.writeAllOutput(delegateProvider.id, destination, writer);
         }
     }
@@ -129,14 +154,14 @@ public boolean isSatisfiedBy(TestResultsProvider element) {
 
     @Override
     public void writeNonTestOutput(long id, TestOutputEvent.Destination destination, Writer writer) {
-        for (DelegateProvider delegateProvider : classOutputProviders.get(id)) {
+        for (DelegateProvider delegateProvider : getClassOutputProviders().get(id)) {
             delegateProvider.provider.writeNonTestOutput(delegateProvider.id, destination, writer);
         }
     }
 
     @Override
     public void writeTestOutput(long classId, long testId, TestOutputEvent.Destination destination, Writer writer) {
-        for (DelegateProvider delegateProvider : classOutputProviders.get(classId)) {
+        for (DelegateProvider delegateProvider : getClassOutputProviders().get(classId)) {
             delegateProvider.provider.writeTestOutput(delegateProvider.id, testId, destination, writer);
         }
     }
@@ -22,6 +22,8 @@
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.FileUtils;
 import org.gradle.internal.IoActions;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -35,10 +37,17 @@
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 
+/**
+ * Generates a JUnit XML file per test class. Files generated from the same results by a previous run are reused.
+ */
 public class Binary2JUnitXmlReportGenerator {
 
+    private static final String STATE_FILE_NAME = ".report-hashes.bin";
+
     private final File testResultsDir;
     private final TestResultsProvider testResultsProvider;
+    private final TestOutputAssociation outputAssociation;
+    private final String hostName;
     private JUnitXmlResultWriter xmlWriter;
     private final BuildOperationExecutor buildOperationExecutor;
     private final static Logger LOG = Logging.getLogger(Binary2JUnitXmlReportGenerator.class);
@@ -46,12 +55,32 @@ public class Binary2JUnitXmlReportGenerator {
     public Binary2JUnitXmlReportGenerator(File testResultsDir, TestResultsProvider testResultsProvider, TestOutputAssociation outputAssociation, BuildOperationExecutor buildOperationExecutor, String hostName) {
         this.testResultsDir = testResultsDir;
         this.testResultsProvider = testResultsProvider;
+        this.outputAssociation = outputAssociation;
+        this.hostName = hostName;
         this.xmlWriter = new JUnitXmlResultWriter(hostName, testResultsProvider, outputAssociation);
         this.buildOperationExecutor = buildOperationExecutor;
     }
 
     public void generate() {
         Timer clock = Time.startTimer();
+        final ReportFileHashes reportFileHashes = ReportFileHashes.load(testResultsDir, STATE_FILE_NAME);
+
+        buildOperationExecutor.runAll(new Action<BuildOperationQueue<JUnitXmlReportFileGenerator>>() {
+            @Override
+            public void execute(final BuildOperationQueue<JUnitXmlReportFileGenerator> queue) {
+                testResultsProvider.visitClasses(new Action<TestClassResult>() {
+                    @Override
+                    public void execute(final TestClassResult result) {
+                        String reportFileName = getReportFileName(result);
+                        HashCode hash = hashResult(result);
+                        reportFileHashes.record(reportFileName, hash);
+                        if (!reportFileHashes.isUpToDate(reportFileName, hash)) {
+                            queue.add(new JUnitXmlReportFileGenerator(result, new File(testResultsDir, reportFileName), xmlWriter));
+                        }
+                    }
+                });
+            }
+        });
 
         buildOperationExecutor.run(new RunnableBuildOperation() {
             @Override
@@ -59,7 +88,7 @@ public void run(BuildOperationContext context) {
                 File[] oldXmlFiles = testResultsDir.listFiles(new FilenameFilter() {
                     @Override
                     public boolean accept(File dir, String name) {
-                        return name.startsWith("TEST") && name.endsWith(".xml");
+                        return name.startsWith("TEST") && name.endsWith(".xml") && !reportFileHashes.isRecorded(name);
                     }
                 });
 
@@ -73,23 +102,18 @@ public BuildOperationDescriptor.Builder description() {
                 return BuildOperationDescriptor.displayName("Delete old JUnit XML results");
             }
         });
-
-        buildOperationExecutor.runAll(new Action<BuildOperationQueue<JUnitXmlReportFileGenerator>>() {
-            @Override
-            public void execute(final BuildOperationQueue<JUnitXmlReportFileGenerator> queue) {
-                testResultsProvider.visitClasses(new Action<TestClassResult>() {
-                    @Override
-                    public void execute(final TestClassResult result) {
-                        final File reportFile = new File(testResultsDir, getReportFileName(result));
-                        queue.add(new JUnitXmlReportFileGenerator(result, reportFile, xmlWriter));
-                    }
-                });
-            }
-        });
+        reportFileHashes.store();
 
         LOG.info("Finished generating test XML results ({}) into: {}", clock.getElapsed(), testResultsDir);
     }
 
+    private HashCode hashResult(TestClassResult result) {
+        Hasher hasher = ReportFileHashes.classResultHasher(result, testResultsProvider);
+        hasher.putString(hostName);
+        hasher.putInt(outputAssociation.ordinal());
+        return hasher.hash();
+    }
+
     private String getReportFileName(TestClassResult result) {
         return "TEST-" + FileUtils.toSafeFileName(result.getClassName()) + ".xml";
     }
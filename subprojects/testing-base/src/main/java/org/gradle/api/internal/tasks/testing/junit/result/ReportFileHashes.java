@@ -0,0 +1,190 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit.result;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.FlushableEncoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.util.GFileUtils;
+import org.gradle.util.GradleVersion;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records the hash of the test results each file of a report has been generated from, so the file can be reused
+ * when a later report is generated from the same results.
+ *
+ * The state of the previous report is discarded as soon as it has been loaded, so that a report which fails to be
+ * generated is regenerated from scratch next time. Files which are not part of the current report have to be removed
+ * by the report generator.
+ */
+public class ReportFileHashes {
+    private static final Logger LOGGER = Logging.getLogger(ReportFileHashes.class);
+    private static final int STATE_VERSION = 1;
+
+    private final File reportDir;
+    private final File stateFile;
+    @Nullable
+    private final Map<String, HashCode> previousHashes;
+    private final ConcurrentMap<String, HashCode> currentHashes = new ConcurrentHashMap<String, HashCode>();
+
+    private ReportFileHashes(File reportDir, File stateFile, @Nullable Map<String, HashCode> previousHashes) {
+        this.reportDir = reportDir;
+        this.stateFile = stateFile;
+        this.previousHashes = previousHashes;
+    }
+
+    /**
+     * Loads the hashes of the files of the previous report generated into the given directory, and removes them from disk.
+     */
+    public static ReportFileHashes load(File reportDir, String stateFileName) {
+        File stateFile = new File(reportDir, stateFileName);
+        Map<String, HashCode> previousHashes = null;
+        if (stateFile.isFile()) {
+            try {
+                previousHashes = read(stateFile);
+            } catch (Exception e) {
+                LOGGER.debug("Could not read test report state from {}.", stateFile, e);
+            }
+            GFileUtils.deleteQuietly(stateFile);
+        }
+        return new ReportFileHashes(reportDir, stateFile, previousHashes);
+    }
+
+    /**
+     * Returns true when the given file of the previous report has been generated from results with the given hash.
+     */
+    public boolean isUpToDate(String relativePath, HashCode hash) {
+        return previousHashes != null
+            && hash.equals(previousHashes.get(relativePath))
+            && new File(reportDir, relativePath).isFile();
+    }
+
+    /**
+     * Records that the given file of the report is generated from results with the given hash. May be called concurrently.
+     */
+    public void record(String relativePath, HashCode hash) {
+        currentHashes.put(relativePath, hash);
+    }
+
+    /**
+     * Returns true when the given file is part of the current report.
+     */
+    public boolean isRecorded(String relativePath) {
+        return currentHashes.containsKey(relativePath);
+    }
+
+    /**
+     * Stores the state of the current report. Should be called once all files of the report have been generated.
+     */
+    public void store() {
+        try {
+            write(stateFile, currentHashes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates a hasher for the content of a report file generated for the given test class.
+     */
+    public static Hasher classResultHasher(TestClassResult result, TestResultsProvider resultsProvider) {
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(GradleVersion.current().getVersion());
+        hasher.putString(result.getClassName());
+        putNullableString(hasher, result.getClassDisplayName());
+        hasher.putLong(result.getStartTime());
+        hasher.putInt(result.getResults().size());
+        for (TestMethodResult methodResult : result.getResults()) {
+            hasher.putLong(methodResult.getId());
+            hasher.putString(methodResult.getName());
+            putNullableString(hasher, methodResult.getDisplayName());
+            hasher.putInt(methodResult.getResultType().ordinal());
+            hasher.putLong(methodResult.getDuration());
+            hasher.putLong(methodResult.getEndTime());
+            hasher.putInt(methodResult.getFailures().size());
+            for (TestFailure failure : methodResult.getFailures()) {
+                putNullableString(hasher, failure.getExceptionType());
+                putNullableString(hasher, failure.getMessage());
+                putNullableString(hasher, failure.getStackTrace());
+            }
+        }
+        hasher.putHash(resultsProvider.getOutputHash(result.getId()));
+        return hasher;
+    }
+
+    private static void putNullableString(Hasher hasher, @Nullable String value) {
+        if (value == null) {
+            hasher.putNull();
+        } else {
+            hasher.putString(value);
+        }
+    }
+
+    private static Map<String, HashCode> read(File stateFile) throws IOException {
+        InputStream inputStream = new FileInputStream(stateFile);
+        try {
+            Decoder decoder = new KryoBackedDecoder(inputStream);
+            int version = decoder.readSmallInt();
+            if (version != STATE_VERSION) {
+                throw new IllegalArgumentException(String.format("Unexpected test report state version %d found in %s.", version, stateFile));
+            }
+            int count = decoder.readSmallInt();
+            Map<String, HashCode> hashes = new HashMap<String, HashCode>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String relativePath = decoder.readString();
+                hashes.put(relativePath, HashCode.fromBytes(decoder.readBinary()));
+            }
+            return hashes;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static void write(File stateFile, Map<String, HashCode> hashes) throws IOException {
+        OutputStream outputStream = new FileOutputStream(stateFile);
+        try {
+            FlushableEncoder encoder = new KryoBackedEncoder(outputStream);
+            encoder.writeSmallInt(STATE_VERSION);
+            encoder.writeSmallInt(hashes.size());
+            for (Map.Entry<String, HashCode> entry : hashes.entrySet()) {
+                encoder.writeString(entry.getKey());
+                encoder.writeBinary(entry.getValue().toByteArray());
+            }
+            encoder.flush();
+        } finally {
+            outputStream.close();
+        }
+    }
+}
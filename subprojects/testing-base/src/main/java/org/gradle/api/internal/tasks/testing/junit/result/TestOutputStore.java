@@ -18,26 +18,78 @@
 
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
-import com.google.common.collect.ImmutableMap;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.tasks.testing.TestOutputEvent;
-import org.gradle.internal.io.RandomAccessFileInputStream;
 import org.gradle.internal.UncheckedException;
-import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
-import java.io.*;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Stores the output of the tests. The messages are stored as UTF-8 bytes in a data file, and an index file records
+ * the byte ranges of the data file containing the output of each test case, separately for stdout and stderr.
+ * Consecutive messages of the same test case and destination are merged into a single range.
+ *
+ * The reader slices the ranges of the requested output out of a memory-mapped window of the data file, so it does not
+ * need to read past the output of other test cases. On Windows, the data file is read through the file channel instead,
+ * since a mapped file cannot be deleted until the mapping has been garbage collected.
+ *
+ * The output of each test case can be capped. Output exceeding the cap is dropped, and a note about the truncation is
+ * added to the output.
+ *
+ * The index also records a hash of the output of each test class, so that reports can tell whether the output of a
+ * class has changed without reading it.
+ */
 public class TestOutputStore {
 
+    /**
+     * Use no limit for the output of a test case.
+     */
+    public static final long UNLIMITED = -1;
+
+    private static final HashCode NO_OUTPUT_HASH = HashCode.fromInt(0);
+
+    private static final int MAX_RANGE_LENGTH = 1024 * 1024;
+    private static final int MAPPED_WINDOW_SIZE = 32 * 1024 * 1024;
+    private static final int READ_WINDOW_SIZE = 64 * 1024;
+    private static final int CHAR_BUFFER_SIZE = 8 * 1024;
+
     private final File resultsDir;
+    private final long maxOutputBytesPerTest;
     private final Charset messageStorageCharset;
 
     public TestOutputStore(File resultsDir) {
+        this(resultsDir, UNLIMITED);
+    }
+
+    /**
+     * @param maxOutputBytesPerTest the maximum number of bytes of output stored per test case, or {@link #UNLIMITED}.
+     */
+    public TestOutputStore(File resultsDir, long maxOutputBytesPerTest) {
         this.resultsDir = resultsDir;
+        this.maxOutputBytesPerTest = maxOutputBytesPerTest;
         this.messageStorageCharset = Charset.forName("UTF-8");
     }
 
@@ -49,30 +101,59 @@ File getIndexFile() {
         return new File(resultsDir, getOutputsFile().getName() + ".idx");
     }
 
-    private static class Region {
-        long start;
-        long stop;
+    /**
+     * The ranges of the data file containing some output, as pairs of start (inclusive) and end (exclusive) offsets.
+     */
+    private static class Ranges {
+        private static final long[] NO_RANGES = new long[0];
+
+        private long[] offsets = NO_RANGES;
+        private int size;
 
-        private Region() {
-            start = -1;
-            stop = -1;
+        void add(long start, long end) {
+            if (size > 0 && offsets[size - 1] == start && end - offsets[size - 2] <= MAX_RANGE_LENGTH) {
+                offsets[size - 1] = end;
+                return;
+            }
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(4, size * 2));
+            }
+            offsets[size++] = start;
+            offsets[size++] = end;
         }
 
-        private Region(long start, long stop) {
-            this.start = start;
-            this.stop = stop;
+        void write(Output output) {
+            output.writeInt(size / 2, true);
+            for (int i = 0; i < size; i++) {
+                output.writeLong(offsets[i], true);
+            }
+        }
+
+        static long[] read(Input input) {
+            int count = input.readInt(true);
+            if (count == 0) {
+                return NO_RANGES;
+            }
+            long[] offsets = new long[count * 2];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = input.readLong(true);
+            }
+            return offsets;
         }
     }
 
-    private static class TestCaseRegion {
-        Region stdOutRegion = new Region();
-        Region stdErrRegion = new Region();
+    private static class TestCaseOutput {
+        final Ranges stdOut = new Ranges();
+        final Ranges stdErr = new Ranges();
+        long bytesWritten;
+        boolean truncated;
     }
 
     public class Writer implements Closeable {
         private final KryoBackedEncoder output;
 
-        private final Map<Long, Map<Long, TestCaseRegion>> index = new LinkedHashMap<Long, Map<Long, TestCaseRegion>>();
+        private final Map<Long, Map<Long, TestCaseOutput>> index = new LinkedHashMap<Long, Map<Long, TestCaseOutput>>();
+        private final Map<Long, Hasher> classOutputHashers = new LinkedHashMap<Long, Hasher>();
 
         public Writer() {
             try {
@@ -93,43 +174,69 @@ public void onOutput(long classId, TestOutputEvent outputEvent) {
         }
 
         public void onOutput(long classId, long testId, TestOutputEvent outputEvent) {
+            TestCaseOutput testCaseOutput = getTestCaseOutput(classId, testId);
+            if (testCaseOutput.truncated) {
+                return;
+            }
             boolean stdout = outputEvent.getDestination() == TestOutputEvent.Destination.StdOut;
-            mark(classId, testId, stdout);
-
-            output.writeBoolean(stdout);
-            output.writeSmallLong(classId);
-            output.writeSmallLong(testId);
+            Ranges ranges = stdout ? testCaseOutput.stdOut : testCaseOutput.stdErr;
 
-            byte[] bytes;
-            try {
-                bytes = outputEvent.getMessage().getBytes(messageStorageCharset.name());
-            } catch (UnsupportedEncodingException e) {
-                throw UncheckedException.throwAsUncheckedException(e);
+            byte[] bytes = encode(outputEvent.getMessage());
+            int length = bytes.length;
+            if (maxOutputBytesPerTest >= 0 && testCaseOutput.bytesWritten + length > maxOutputBytesPerTest) {
+                length = truncatedLength(bytes, (int) (maxOutputBytesPerTest - testCaseOutput.bytesWritten));
+                testCaseOutput.truncated = true;
+            }
+            Hasher hasher = getClassOutputHasher(classId);
+            hasher.putLong(testId);
+            hasher.putBoolean(stdout);
+            write(ranges, hasher, bytes, length);
+            testCaseOutput.bytesWritten += length;
+            if (testCaseOutput.truncated) {
+                byte[] note = encode(String.format("%n[Output truncated after %d bytes]%n", testCaseOutput.bytesWritten));
+                write(ranges, hasher, note, note.length);
             }
-            output.writeSmallInt(bytes.length);
-            output.writeBytes(bytes, 0, bytes.length);
         }
 
-        private void mark(long classId, long testId, boolean isStdout) {
-            if (!index.containsKey(classId)) {
-                index.put(classId, new LinkedHashMap<Long, TestCaseRegion>());
+        private Hasher getClassOutputHasher(long classId) {
+            Hasher hasher = classOutputHashers.get(classId);
+            if (hasher == null) {
+                hasher = Hashing.newHasher();
+                classOutputHashers.put(classId, hasher);
             }
+            return hasher;
+        }
 
-            Map<Long, TestCaseRegion> testCaseRegions = index.get(classId);
-            if (!testCaseRegions.containsKey(testId)) {
-                TestCaseRegion region = new TestCaseRegion();
-                testCaseRegions.put(testId, region);
+        private TestCaseOutput getTestCaseOutput(long classId, long testId) {
+            Map<Long, TestCaseOutput> testCaseOutputs = index.get(classId);
+            if (testCaseOutputs == null) {
+                testCaseOutputs = new LinkedHashMap<Long, TestCaseOutput>();
+                index.put(classId, testCaseOutputs);
             }
+            TestCaseOutput testCaseOutput = testCaseOutputs.get(testId);
+            if (testCaseOutput == null) {
+                testCaseOutput = new TestCaseOutput();
+                testCaseOutputs.put(testId, testCaseOutput);
+            }
+            return testCaseOutput;
+        }
 
-            TestCaseRegion region = testCaseRegions.get(testId);
-
-            Region streamRegion = isStdout ? region.stdOutRegion : region.stdErrRegion;
+        private void write(Ranges ranges, Hasher hasher, byte[] bytes, int length) {
+            if (length == 0) {
+                return;
+            }
+            long start = output.getWritePosition();
+            output.writeBytes(bytes, 0, length);
+            hasher.putBytes(bytes, 0, length);
+            ranges.add(start, start + length);
+        }
 
-            long total = output.getWritePosition();
-            if (streamRegion.start < 0) {
-                streamRegion.start = total;
+        private byte[] encode(String message) {
+            try {
+                return message.getBytes(messageStorageCharset.name());
+            } catch (UnsupportedEncodingException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
             }
-            streamRegion.stop = total;
         }
 
         private void writeIndex() {
@@ -140,25 +247,25 @@ private void writeIndex() {
                 throw new UncheckedIOException(e);
             }
 
-
             try {
                 indexOutput.writeInt(index.size(), true);
 
-                for (Map.Entry<Long, Map<Long, TestCaseRegion>> classEntry : index.entrySet()) {
+                for (Map.Entry<Long, Map<Long, TestCaseOutput>> classEntry : index.entrySet()) {
                     Long classId = classEntry.getKey();
-                    Map<Long, TestCaseRegion> regions = classEntry.getValue();
+                    Map<Long, TestCaseOutput> testCaseOutputs = classEntry.getValue();
 
                     indexOutput.writeLong(classId, true);
-                    indexOutput.writeInt(regions.size(), true);
+                    byte[] outputHash = classOutputHashers.get(classId).hash().toByteArray();
+                    indexOutput.writeInt(outputHash.length, true);
+                    indexOutput.writeBytes(outputHash);
+                    indexOutput.writeInt(testCaseOutputs.size(), true);
 
-                    for (Map.Entry<Long, TestCaseRegion> testCaseEntry : regions.entrySet()) {
+                    for (Map.Entry<Long, TestCaseOutput> testCaseEntry : testCaseOutputs.entrySet()) {
                         long id = testCaseEntry.getKey();
-                        TestCaseRegion region = testCaseEntry.getValue();
+                        TestCaseOutput testCaseOutput = testCaseEntry.getValue();
                         indexOutput.writeLong(id, true);
-                        indexOutput.writeLong(region.stdOutRegion.start);
-                        indexOutput.writeLong(region.stdOutRegion.stop);
-                        indexOutput.writeLong(region.stdErrRegion.start);
-                        indexOutput.writeLong(region.stdErrRegion.stop);
+                        testCaseOutput.stdOut.write(indexOutput);
+                        testCaseOutput.stdErr.write(indexOutput);
                     }
                 }
             } finally {
@@ -167,59 +274,49 @@ private void writeIndex() {
         }
     }
 
+    /**
+     * Returns the number of bytes to keep so that at most {@code maxLength} bytes are kept without splitting a UTF-8 encoded character.
+     */
+    private static int truncatedLength(byte[] bytes, int maxLength) {
+        int length = Math.max(0, Math.min(maxLength, bytes.length));
+        while (length > 0 && length < bytes.length && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        return length;
+    }
+
     public Writer writer() {
         return new Writer();
     }
 
-    private static class Index {
-        final ImmutableMap<Long, Index> children;
-        final Region stdOut;
-        final Region stdErr;
-
-        private Index(Region stdOut, Region stdErr) {
-            this.children = ImmutableMap.of();
-            this.stdOut = stdOut;
-            this.stdErr = stdErr;
-        }
+    private static class TestCaseIndex {
+        final long[] stdOut;
+        final long[] stdErr;
 
-        private Index(ImmutableMap<Long, Index> children, Region stdOut, Region stdErr) {
-            this.children = children;
+        TestCaseIndex(long[] stdOut, long[] stdErr) {
             this.stdOut = stdOut;
             this.stdErr = stdErr;
         }
-    }
-
-    private static class IndexBuilder {
-        final Region stdOut = new Region();
-        final Region stdErr = new Region();
-
-        private final ImmutableMap.Builder<Long, Index> children = ImmutableMap.builder();
-
-        void add(long key, Index index) {
-            if (stdOut.start < 0) {
-                stdOut.start = index.stdOut.start;
-            }
-            if (stdErr.start < 0) {
-                stdErr.start = index.stdErr.start;
-            }
-            if (index.stdOut.stop > stdOut.stop) {
-                stdOut.stop = index.stdOut.stop;
-            }
-            if (index.stdErr.stop > stdErr.stop) {
-                stdErr.stop = index.stdErr.stop;
-            }
-
-            children.put(key, index);
-        }
 
-        Index build() {
-            return new Index(children.build(), stdOut, stdErr);
+        long[] get(TestOutputEvent.Destination destination) {
+            return destination == TestOutputEvent.Destination.StdOut ? stdOut : stdErr;
         }
     }
 
     public class Reader implements Closeable {
-        private final Index index;
+        private final Map<Long, Map<Long, TestCaseIndex>> index;
+        private final Map<Long, HashCode> outputHashes;
         private final RandomAccessFile dataFile;
+        private final FileChannel dataChannel;
+        private final long dataLength;
+        private final boolean mapDataFile = !OperatingSystem.current().isWindows();
+        private final CharsetDecoder decoder = messageStorageCharset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+        private ByteBuffer window;
+        private long windowStart;
+        private long windowEnd;
 
         public Reader() {
             File indexFile = getIndexFile();
@@ -237,34 +334,35 @@ public Reader() {
                     throw new UncheckedIOException(e);
                 }
 
-                IndexBuilder rootBuilder = null;
+                index = new LinkedHashMap<Long, Map<Long, TestCaseIndex>>();
+                outputHashes = new LinkedHashMap<Long, HashCode>();
                 try {
                     int numClasses = input.readInt(true);
-                    rootBuilder = new IndexBuilder();
 
                     for (int classCounter = 0; classCounter < numClasses; ++classCounter) {
                         long classId = input.readLong(true);
-                        IndexBuilder classBuilder = new IndexBuilder();
+                        outputHashes.put(classId, HashCode.fromBytes(input.readBytes(input.readInt(true))));
+                        Map<Long, TestCaseIndex> classIndex = new LinkedHashMap<Long, TestCaseIndex>();
 
                         int numEntries = input.readInt(true);
                         for (int entryCounter = 0; entryCounter < numEntries; ++entryCounter) {
                             long testId = input.readLong(true);
-                            Region stdOut = new Region(input.readLong(), input.readLong());
-                            Region stdErr = new Region(input.readLong(), input.readLong());
-                            classBuilder.add(testId, new Index(stdOut, stdErr));
+                            long[] stdOut = Ranges.read(input);
+                            long[] stdErr = Ranges.read(input);
+                            classIndex.put(testId, new TestCaseIndex(stdOut, stdErr));
                         }
 
-                        rootBuilder.add(classId, classBuilder.build());
+                        index.put(classId, classIndex);
                     }
                 } finally {
                     input.close();
                 }
 
-                index = rootBuilder.build();
-
                 try {
                     dataFile = new RandomAccessFile(getOutputsFile(), "r");
-                } catch (FileNotFoundException e) {
+                    dataChannel = dataFile.getChannel();
+                    dataLength = dataChannel.size();
+                } catch (IOException e) {
                     throw new UncheckedIOException(e);
                 }
             } else { // no outputs file
@@ -273,12 +371,16 @@ public Reader() {
                 }
 
                 index = null;
+                outputHashes = null;
                 dataFile = null;
+                dataChannel = null;
+                dataLength = 0;
             }
         }
 
         @Override
         public void close() throws IOException {
+            window = null;
             if (dataFile != null) {
                 dataFile.close();
             }
@@ -289,98 +391,146 @@ public boolean hasOutput(long classId, TestOutputEvent.Destination destination)
                 return false;
             }
 
-            Index classIndex = index.children.get(classId);
+            Map<Long, TestCaseIndex> classIndex = index.get(classId);
             if (classIndex == null) {
                 return false;
-            } else {
-                Region region = destination == TestOutputEvent.Destination.StdOut ? classIndex.stdOut : classIndex.stdErr;
-                return region.start >= 0;
             }
+            for (TestCaseIndex testCaseIndex : classIndex.values()) {
+                if (testCaseIndex.get(destination).length > 0) {
+                    return true;
+                }
+            }
+            return false;
         }
 
-        public void writeAllOutput(long classId, TestOutputEvent.Destination destination, java.io.Writer writer) {
-            doRead(classId, 0, true, destination, writer);
-        }
-
-        public void writeNonTestOutput(long classId, TestOutputEvent.Destination destination, java.io.Writer writer) {
-            doRead(classId, 0, false, destination, writer);
-        }
+        /**
+         * Returns a hash of all output of the given test class.
+         */
+        public HashCode getOutputHash(long classId) {
+            if (dataFile == null) {
+                return NO_OUTPUT_HASH;
+            }
 
-        public void writeTestOutput(long classId, long testId, TestOutputEvent.Destination destination, java.io.Writer writer) {
-            doRead(classId, testId, false, destination, writer);
+            HashCode outputHash = outputHashes.get(classId);
+            return outputHash == null ? NO_OUTPUT_HASH : outputHash;
         }
 
-        private void doRead(long classId, long testId, boolean allClassOutput, TestOutputEvent.Destination destination, java.io.Writer writer) {
+        public void writeAllOutput(long classId, TestOutputEvent.Destination destination, java.io.Writer writer) {
             if (dataFile == null) {
                 return;
             }
 
-            Index targetIndex = index.children.get(classId);
-            if (targetIndex != null && testId != 0) {
-                targetIndex = targetIndex.children.get(testId);
-            }
-
-            if (targetIndex == null) {
+            Map<Long, TestCaseIndex> classIndex = index.get(classId);
+            if (classIndex == null) {
                 return;
             }
+            // Merge the ranges of all test cases, so the output is written in the order it was produced
+            long[] merged = new long[0];
+            for (TestCaseIndex testCaseIndex : classIndex.values()) {
+                merged = mergeRanges(merged, testCaseIndex.get(destination));
+            }
+            writeRanges(merged, writer);
+        }
 
-            boolean stdout = destination == TestOutputEvent.Destination.StdOut;
-            Region region = stdout ? targetIndex.stdOut : targetIndex.stdErr;
+        public void writeNonTestOutput(long classId, TestOutputEvent.Destination destination, java.io.Writer writer) {
+            writeTestOutput(classId, 0, destination, writer);
+        }
 
-            if (region.start < 0) {
+        public void writeTestOutput(long classId, long testId, TestOutputEvent.Destination destination, java.io.Writer writer) {
+            if (dataFile == null) {
                 return;
             }
 
-            boolean ignoreClassLevel = !allClassOutput && testId != 0;
-            boolean ignoreTestLevel = !allClassOutput && testId == 0;
+            Map<Long, TestCaseIndex> classIndex = index.get(classId);
+            TestCaseIndex testCaseIndex = classIndex == null ? null : classIndex.get(testId);
+            if (testCaseIndex == null) {
+                return;
+            }
+            writeRanges(testCaseIndex.get(destination), writer);
+        }
 
+        private void writeRanges(long[] ranges, java.io.Writer writer) {
             try {
-                dataFile.seek(region.start);
-                long maxPos = region.stop - region.start;
-                KryoBackedDecoder decoder = new KryoBackedDecoder(new RandomAccessFileInputStream(dataFile));
-                while (decoder.getReadPosition() <= maxPos) {
-                    boolean readStdout = decoder.readBoolean();
-                    long readClassId = decoder.readSmallLong();
-                    long readTestId = decoder.readSmallLong();
-                    int readLength = decoder.readSmallInt();
-
-                    boolean isClassLevel = readTestId == 0;
-
-                    if (stdout != readStdout || classId != readClassId) {
-                        decoder.skipBytes(readLength);
-                        continue;
-                    }
+                for (int i = 0; i < ranges.length; i += 2) {
+                    writeRange(ranges[i], ranges[i + 1], writer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
 
-                    if (ignoreClassLevel && isClassLevel) {
-                        decoder.skipBytes(readLength);
-                        continue;
-                    }
+        private void writeRange(long start, long end, java.io.Writer writer) throws IOException {
+            ByteBuffer bytes = slice(start, end);
+            decoder.reset();
+            CoderResult result;
+            do {
+                result = decoder.decode(bytes, chars, true);
+                writeChars(writer);
+            } while (result.isOverflow());
+            do {
+                result = decoder.flush(chars);
+                writeChars(writer);
+            } while (result.isOverflow());
+        }
 
-                    if (ignoreTestLevel && !isClassLevel) {
-                        decoder.skipBytes(readLength);
-                        continue;
-                    }
+        private void writeChars(java.io.Writer writer) throws IOException {
+            chars.flip();
+            writer.write(chars.array(), chars.arrayOffset(), chars.remaining());
+            chars.clear();
+        }
 
-                    if (testId == 0 || testId == readTestId) {
-                        byte[] stringBytes = new byte[readLength];
-                        decoder.readBytes(stringBytes);
-                        String message;
-                        try {
-                            message = new String(stringBytes, messageStorageCharset.name());
-                        } catch (UnsupportedEncodingException e) {
-                            // shouldn't happen
-                            throw UncheckedException.throwAsUncheckedException(e);
-                        }
+        private ByteBuffer slice(long start, long end) throws IOException {
+            if (window == null || start < windowStart || end > windowEnd) {
+                moveWindow(start, end);
+            }
+            ByteBuffer slice = window.duplicate();
+            slice.limit((int) (end - windowStart));
+            slice.position((int) (start - windowStart));
+            return slice;
+        }
 
-                        writer.write(message);
-                    } else {
-                        decoder.skipBytes(readLength);
+        private void moveWindow(long start, long end) throws IOException {
+            long length = Math.max(end - start, Math.min(mapDataFile ? MAPPED_WINDOW_SIZE : READ_WINDOW_SIZE, dataLength - start));
+            if (mapDataFile) {
+                window = dataChannel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            } else {
+                if (window == null || window.capacity() < length) {
+                    window = ByteBuffer.allocate((int) length);
+                }
+                window.clear();
+                window.limit((int) length);
+                while (window.hasRemaining()) {
+                    if (dataChannel.read(window, start + window.position()) < 0) {
+                        throw new EOFException(String.format("Unexpected end of test outputs data file '%s'", getOutputsFile()));
                     }
                 }
-            } catch (IOException e1) {
-                throw new UncheckedIOException(e1);
+            }
+            windowStart = start;
+            windowEnd = start + length;
+        }
+    }
+
+    private static long[] mergeRanges(long[] left, long[] right) {
+        if (left.length == 0) {
+            return right;
+        }
+        if (right.length == 0) {
+            return left;
+        }
+        long[] merged = new long[left.length + right.length];
+        int l = 0;
+        int r = 0;
+        int m = 0;
+        while (l < left.length || r < right.length) {
+            if (r == right.length || (l < left.length && left[l] < right[r])) {
+                merged[m++] = left[l++];
+                merged[m++] = left[l++];
+            } else {
+                merged[m++] = right[r++];
+                merged[m++] = right[r++];
             }
         }
+        return merged;
     }
 
     // IMPORTANT: return must be closed when done with.
@@ -19,6 +19,7 @@
 import com.google.common.collect.Maps;
 import org.gradle.api.Action;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.hash.HashCode;
 
 import java.io.IOException;
 import java.util.concurrent.ConcurrentMap;
@@ -46,6 +47,18 @@ private TestOutputStore.Reader getReader() {
         return reader;
     }
 
+    @Override
+    public HashCode getOutputHash(final long classId) {
+        final HashCode[] outputHash = new HashCode[1];
+        withReader(new Action<TestOutputStore.Reader>() {
+            @Override
+            public void execute(TestOutputStore.Reader reader) {
+                outputHash[0] = reader.getOutputHash(classId);
+            }
+        });
+        return outputHash[0];
+    }
+
     @Override
     public void close() throws IOException {
         CompositeStoppable.stoppable(readers.values()).stop();
@@ -33,22 +33,37 @@
 import java.util.Map;
 
 /**
- * Collects the test results into memory and spools the test output to file during execution (to avoid holding it all in memory).
+ * Collects the test results and spools them to file as soon as a test class completes, and spools the test output to file during execution (to avoid holding it all in memory).
+ *
+ * Only the results of the classes which are currently executing are kept in memory. For the completed classes, only the ids are kept,
+ * so that results received for a completed class are written with the same id.
  */
 public class TestReportDataCollector implements TestListener, TestOutputListener {
 
     public static final String EXECUTION_FAILURE = "failed to execute tests";
-    private final Map<String, TestClassResult> results;
+    private final Map<String, TestClassResult> results = new HashMap<String, TestClassResult>();
+    private final Map<String, Long> completedClassIds = new HashMap<String, Long>();
+    private final TestResultSerializer.Writer resultsWriter;
     private final TestOutputStore.Writer outputWriter;
     private final Map<TestDescriptor, TestMethodResult> currentTestMethods = new HashMap<TestDescriptor, TestMethodResult>();
     private final ListMultimap<Object, TestOutputEvent> pendingOutputEvents = ArrayListMultimap.create();
     private long internalIdCounter = 1;
 
-    public TestReportDataCollector(Map<String, TestClassResult> results, TestOutputStore.Writer outputWriter) {
-        this.results = results;
+    public TestReportDataCollector(TestResultSerializer.Writer resultsWriter, TestOutputStore.Writer outputWriter) {
+        this.resultsWriter = resultsWriter;
         this.outputWriter = outputWriter;
     }
 
+    /**
+     * Writes the results of the classes which have not completed. Should be called once all tests have been executed.
+     */
+    public void writeRemainingResults() {
+        for (TestClassResult classResult : results.values()) {
+            resultsWriter.write(classResult);
+        }
+        results.clear();
+    }
+
     @Override
     public void beforeSuite(TestDescriptor suite) {
     }
@@ -60,7 +75,7 @@ public void afterSuite(TestDescriptor suite, TestResult result) {
             //there are some exceptions attached to the suite. Let's make sure they are reported to the user.
             //this may happen for example when suite initialisation fails and no tests are executed
             TestMethodResult methodResult = new TestMethodResult(internalIdCounter++, EXECUTION_FAILURE);
-            TestClassResult classResult = new TestClassResult(internalIdCounter++, suite.getName(), result.getStartTime());
+            TestClassResult classResult = new TestClassResult(classId(suite.getName()), suite.getName(), result.getStartTime());
             for (Throwable throwable : result.getExceptions()) {
                 methodResult.addFailure(failureMessage(throwable), stackTrace(throwable), exceptionClassName(throwable));
             }
@@ -71,6 +86,19 @@ public void afterSuite(TestDescriptor suite, TestResult result) {
             classResult.add(methodResult);
             results.put(suite.getName(), classResult);
         }
+        String className = suite.getClassName();
+        if (className != null) {
+            TestClassResult classResult = results.remove(className);
+            if (classResult != null) {
+                resultsWriter.write(classResult);
+                completedClassIds.put(className, classResult.getId());
+            }
+        }
+    }
+
+    private long classId(String className) {
+        Long completedClassId = completedClassIds.get(className);
+        return completedClassId != null ? completedClassId : internalIdCounter++;
     }
 
     @Override
@@ -90,7 +118,7 @@ public void afterTest(TestDescriptor testDescriptor, TestResult result) {
         }
         TestClassResult classResult = results.get(className);
         if (classResult == null) {
-            classResult = new TestClassResult(internalIdCounter++, className, classDisplayName, result.getStartTime());
+            classResult = new TestClassResult(classId(className), className, classDisplayName, result.getStartTime());
             results.put(className, classResult);
         } else if (classResult.getStartTime() == 0) {
             //class results may be created earlier, where we don't yet have access to the start time
@@ -141,7 +169,7 @@ public void onOutput(TestDescriptor testDescriptor, TestOutputEvent outputEvent)
             //it's possible that we receive an output for a suite here
             //in this case we will create the test result for a suite that normally would not be created
             //feels like this scenario should modelled more explicitly
-            classResult = new TestClassResult(internalIdCounter++, className, ((TestDescriptorInternal) testDescriptor).getClassDisplayName(), 0);
+            classResult = new TestClassResult(classId(className), className, ((TestDescriptorInternal) testDescriptor).getClassDisplayName(), 0);
             results.put(className, classResult);
         }
 
@@ -25,12 +25,23 @@
 import org.gradle.internal.serialize.FlushableEncoder;
 import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.util.GFileUtils;
 
-import java.io.*;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 public class TestResultSerializer {
-    private static final int RESULT_VERSION = 3;
+    private static final int RESULT_VERSION = 4;
 
     private final File resultsFile;
 
@@ -39,31 +50,118 @@ public TestResultSerializer(File resultsDir) {
     }
 
     public void write(Collection<TestClassResult> results) {
+        Writer writer = writer();
         try {
-            OutputStream outputStream = new FileOutputStream(resultsFile);
+            for (TestClassResult result : results) {
+                writer.write(result);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Creates a writer which replaces the results with the results of the test classes written to it, one class at a time.
+     */
+    public Writer writer() {
+        return new Writer(resultsFile);
+    }
+
+    /**
+     * Writes the results of each test class as soon as the class is complete, so the results of all classes need not be kept in memory.
+     *
+     * The results of a class can be written several times with the same id, for example when a test of the class is executed again by a suite.
+     * Those results are merged into a single class result when the writer is closed.
+     */
+    public class Writer implements Closeable {
+        private final File file;
+        private final Set<Long> writtenClassIds = new HashSet<Long>();
+        private final Set<Long> repeatedClassIds = new HashSet<Long>();
+        private OutputStream outputStream;
+        private FlushableEncoder encoder;
+
+        private Writer(File file) {
+            this.file = file;
+        }
+
+        public void write(TestClassResult result) {
+            if (!writtenClassIds.add(result.getId())) {
+                repeatedClassIds.add(result.getId());
+            }
             try {
-                if (!results.isEmpty()) { // only write if we have results, otherwise truncate
-                    FlushableEncoder encoder = new KryoBackedEncoder(outputStream);
+                if (encoder == null) {
+                    outputStream = new FileOutputStream(file);
+                    encoder = new KryoBackedEncoder(outputStream);
                     encoder.writeSmallInt(RESULT_VERSION);
-                    write(results, encoder);
+                }
+                encoder.writeBoolean(true);
+                TestResultSerializer.write(result, encoder);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (encoder == null) {
+                    // no results, truncate
+                    new FileOutputStream(file).close();
+                    return;
+                }
+                try {
+                    encoder.writeBoolean(false);
                     encoder.flush();
+                } finally {
+                    outputStream.close();
                 }
-            } finally {
-                outputStream.close();
+                if (!repeatedClassIds.isEmpty()) {
+                    mergeRepeatedResults(repeatedClassIds);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
         }
     }
 
-    private void write(Collection<TestClassResult> results, Encoder encoder) throws IOException {
-        encoder.writeSmallInt(results.size());
-        for (TestClassResult result : results) {
-            write(result, encoder);
+    private void mergeRepeatedResults(final Set<Long> repeatedClassIds) throws IOException {
+        File unmergedFile = new File(resultsFile.getParentFile(), resultsFile.getName() + ".unmerged");
+        if (!resultsFile.renameTo(unmergedFile)) {
+            throw new IOException(String.format("Could not rename %s to %s.", resultsFile, unmergedFile));
         }
+        final Map<Long, TestClassResult> mergedResults = new LinkedHashMap<Long, TestClassResult>();
+        final Writer writer = new Writer(resultsFile);
+        try {
+            read(unmergedFile, new Action<TestClassResult>() {
+                @Override
+                public void execute(TestClassResult result) {
+                    if (!repeatedClassIds.contains(result.getId())) {
+                        writer.write(result);
+                        return;
+                    }
+                    TestClassResult mergedResult = mergedResults.get(result.getId());
+                    if (mergedResult == null) {
+                        mergedResults.put(result.getId(), result);
+                        return;
+                    }
+                    for (TestMethodResult methodResult : result.getResults()) {
+                        mergedResult.add(methodResult);
+                    }
+                    if (mergedResult.getStartTime() == 0 || (result.getStartTime() != 0 && result.getStartTime() < mergedResult.getStartTime())) {
+                        mergedResult.setStartTime(result.getStartTime());
+                    }
+                }
+            });
+            for (TestClassResult mergedResult : mergedResults.values()) {
+                writer.write(mergedResult);
+            }
+        } finally {
+            writer.close();
+        }
+        GFileUtils.deleteQuietly(unmergedFile);
     }
 
-    private void write(TestClassResult classResult, Encoder encoder) throws IOException {
+    private static void write(TestClassResult classResult, Encoder encoder) throws IOException {
         encoder.writeSmallLong(classResult.getId());
         encoder.writeString(classResult.getClassName());
         encoder.writeString(classResult.getClassDisplayName());
@@ -74,7 +172,7 @@ private void write(TestClassResult classResult, Encoder encoder) throws IOExcept
         }
     }
 
-    private void write(TestMethodResult methodResult, Encoder encoder) throws IOException {
+    private static void write(TestMethodResult methodResult, Encoder encoder) throws IOException {
         encoder.writeSmallLong(methodResult.getId());
         encoder.writeString(methodResult.getName());
         encoder.writeString(methodResult.getDisplayName());
@@ -93,13 +191,17 @@ public void read(Action<? super TestClassResult> visitor) {
         if (!isHasResults()) {
             return;
         }
+        read(resultsFile, visitor);
+    }
+
+    private static void read(File file, Action<? super TestClassResult> visitor) {
         try {
-            InputStream inputStream = new FileInputStream(resultsFile);
+            InputStream inputStream = new FileInputStream(file);
             try {
                 Decoder decoder = new KryoBackedDecoder(inputStream);
                 int version = decoder.readSmallInt();
                 if (version != RESULT_VERSION) {
-                    throw new IllegalArgumentException(String.format("Unexpected result file version %d found in %s.", version, resultsFile));
+                    throw new IllegalArgumentException(String.format("Unexpected result file version %d found in %s.", version, file));
                 }
                 readResults(decoder, visitor);
             } finally {
@@ -114,15 +216,14 @@ public boolean isHasResults() {
         return resultsFile.exists() && resultsFile.length() > 0;
     }
 
-    private void readResults(Decoder decoder, Action<? super TestClassResult> visitor) throws ClassNotFoundException, IOException {
-        int classCount = decoder.readSmallInt();
-        for (int i = 0; i < classCount; i++) {
+    private static void readResults(Decoder decoder, Action<? super TestClassResult> visitor) throws ClassNotFoundException, IOException {
+        while (decoder.readBoolean()) {
             TestClassResult classResult = readClassResult(decoder);
             visitor.execute(classResult);
         }
     }
 
-    private TestClassResult readClassResult(Decoder decoder) throws IOException, ClassNotFoundException {
+    private static TestClassResult readClassResult(Decoder decoder) throws IOException, ClassNotFoundException {
         long id = decoder.readSmallLong();
         String className = decoder.readString();
         String classDisplayName = decoder.readString();
@@ -136,7 +237,7 @@ private TestClassResult readClassResult(Decoder decoder) throws IOException, Cla
         return result;
     }
 
-    private TestMethodResult readMethodResult(Decoder decoder) throws ClassNotFoundException, IOException {
+    private static TestMethodResult readMethodResult(Decoder decoder) throws ClassNotFoundException, IOException {
         long id = decoder.readSmallLong();
         String name = decoder.readString();
         String displayName = decoder.readString();
@@ -18,6 +18,7 @@
 
 import org.gradle.api.Action;
 import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.hash.HashCode;
 
 import java.io.Closeable;
 import java.io.Writer;
@@ -46,5 +47,10 @@ public interface TestResultsProvider extends Closeable {
 
     boolean hasOutput(long id, TestOutputEvent.Destination destination);
 
+    /**
+     * Returns a hash of all output of the given test class, which changes whenever the output changes.
+     */
+    HashCode getOutputHash(long classId);
+
     boolean isHasResults();
 }
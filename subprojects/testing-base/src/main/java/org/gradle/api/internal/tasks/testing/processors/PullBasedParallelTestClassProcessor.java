@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.Transformer;
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.worker.RemoteTestClassRequester;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.actor.Actor;
+import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.dispatch.DispatchException;
+import org.gradle.internal.dispatch.StreamCompletion;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Manages a set of parallel TestClassProcessors. Test classes are queued in the order they are received, and each
+ * processor is given the next test class when it requests one. This way, processors which finish early pick up the
+ * remaining work, instead of the work being assigned up front.
+ *
+ * Only suitable for processors which execute each test class before requesting the next one.
+ */
+public class PullBasedParallelTestClassProcessor implements TestClassProcessor {
+    private final int maxProcessors;
+    private final Transformer<TestClassProcessor, RemoteTestClassRequester> factory;
+    private final ActorFactory actorFactory;
+    private final Lock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+    private final Deque<TestClassRunInfo> pendingTestClasses = new ArrayDeque<TestClassRunInfo>();
+    private final List<Slot> slots = new ArrayList<Slot>();
+    private final List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
+    private final List<TestClassProcessor> rawProcessors = new ArrayList<TestClassProcessor>();
+    private final List<Actor> actors = new ArrayList<Actor>();
+    private TestResultProcessor resultProcessor;
+    private Actor resultProcessorActor;
+    private volatile boolean stoppedNow;
+
+    public PullBasedParallelTestClassProcessor(int maxProcessors, Transformer<TestClassProcessor, RemoteTestClassRequester> factory, ActorFactory actorFactory) {
+        this.maxProcessors = maxProcessors;
+        this.factory = factory;
+        this.actorFactory = actorFactory;
+    }
+
+    @Override
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        // Create a processor that processes events in its own thread
+        resultProcessorActor = actorFactory.createActor(resultProcessor);
+        this.resultProcessor = resultProcessorActor.getProxy(TestResultProcessor.class);
+    }
+
+    @Override
+    public void processTestClass(TestClassRunInfo testClass) {
+        if (stoppedNow) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            pendingTestClasses.add(testClass);
+            if (slots.size() < maxProcessors) {
+                startSlot();
+            }
+            dispatchToIdleSlots();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void startSlot() {
+        Slot slot = new Slot();
+        TestClassProcessor processor = factory.transform(slot);
+        rawProcessors.add(processor);
+        Actor actor = actorFactory.createActor(new FailureTrackingTestClassProcessor(processor, slot));
+        slot.processor = actor.getProxy(TestClassProcessor.class);
+        actors.add(actor);
+        processors.add(slot.processor);
+        slots.add(slot);
+        slot.processor.startProcessing(resultProcessor);
+    }
+
+    private void dispatchToIdleSlots() {
+        for (Slot slot : slots) {
+            if (pendingTestClasses.isEmpty()) {
+                break;
+            }
+            if (slot.idle && !slot.finished) {
+                slot.idle = false;
+                slot.processor.processTestClass(pendingTestClasses.poll());
+            }
+        }
+        if (pendingTestClasses.isEmpty()) {
+            stateChanged.signalAll();
+        }
+    }
+
+    @Override
+    public void stop() {
+        awaitAllTestClassesDispatched();
+        try {
+            CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
+        } catch (DispatchException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+    }
+
+    private void awaitAllTestClassesDispatched() {
+        lock.lock();
+        try {
+            while (!pendingTestClasses.isEmpty() && !stoppedNow && hasActiveSlot()) {
+                stateChanged.await();
+            }
+            // When all processors have failed, the remaining test classes cannot be run.
+            // The failures are reported when stopping the processors.
+            pendingTestClasses.clear();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean hasActiveSlot() {
+        for (Slot slot : slots) {
+            if (!slot.finished) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void stopNow() {
+        stoppedNow = true;
+        lock.lock();
+        try {
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (TestClassProcessor processor : rawProcessors) {
+            processor.stopNow();
+        }
+    }
+
+    /**
+     * The state of one of the parallel processors. Receives the requests for test classes from the processor,
+     * and is notified when the processor has gone away, e.g. when its worker process exited unexpectedly.
+     */
+    private class Slot implements RemoteTestClassRequester, StreamCompletion {
+        private TestClassProcessor processor;
+        private boolean idle = true;
+        private boolean finished;
+
+        @Override
+        public void requestTestClass() {
+            lock.lock();
+            try {
+                idle = true;
+                dispatchToIdleSlots();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void endStream() {
+            markFinished();
+        }
+
+        void markFinished() {
+            lock.lock();
+            try {
+                finished = true;
+                stateChanged.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class FailureTrackingTestClassProcessor implements TestClassProcessor {
+        private final TestClassProcessor delegate;
+        private final Slot slot;
+
+        FailureTrackingTestClassProcessor(TestClassProcessor delegate, Slot slot) {
+            this.delegate = delegate;
+            this.slot = slot;
+        }
+
+        @Override
+        public void startProcessing(TestResultProcessor resultProcessor) {
+            delegate.startProcessing(resultProcessor);
+        }
+
+        @Override
+        public void processTestClass(TestClassRunInfo testClass) {
+            try {
+                delegate.processTestClass(testClass);
+            } catch (RuntimeException e) {
+                // The processor won't request any more test classes
+                slot.markFinished();
+                throw e;
+            }
+        }
+
+        @Override
+        public void stop() {
+            delegate.stop();
+        }
+
+        @Override
+        public void stopNow() {
+            delegate.stopNow();
+        }
+    }
+}
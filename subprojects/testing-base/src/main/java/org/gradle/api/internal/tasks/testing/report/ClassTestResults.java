@@ -91,6 +91,13 @@ public Collection<TestResult> getTestResults() {
         return results;
     }
 
+    /**
+     * Discards the results of the individual tests, keeping the counts and the failed and ignored tests.
+     */
+    public void discardTestResults() {
+        results.clear();
+    }
+
     public TestResult addTest(String testName, String testDisplayName, long duration) {
         TestResult test = new TestResult(testName, testDisplayName, duration, this);
         results.add(test);
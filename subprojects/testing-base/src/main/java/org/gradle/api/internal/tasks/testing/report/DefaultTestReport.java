@@ -17,12 +17,16 @@
 
 import org.gradle.api.Action;
 import org.gradle.api.GradleException;
+import org.gradle.api.internal.tasks.testing.junit.result.ReportFileHashes;
 import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
 import org.gradle.api.internal.tasks.testing.junit.result.TestFailure;
 import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult;
 import org.gradle.api.internal.tasks.testing.junit.result.TestResultsProvider;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.BuildOperationQueue;
@@ -37,11 +41,26 @@
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.gradle.api.tasks.testing.TestResult.ResultType.SKIPPED;
 
+/**
+ * Generates the HTML test report. The page of a test class generated from the same results by a previous run is reused,
+ * while the overview and package pages are always regenerated.
+ *
+ * The results are visited twice, one class at a time. The first pass collects the summary for the overview and package pages,
+ * keeping only the failed and ignored tests. The second pass renders the pages of the classes, so the details of all tests are never held in memory at once.
+ */
 public class DefaultTestReport implements TestReporter {
+    private static final String STATE_FILE_NAME = ".report-hashes.bin";
+
+    /**
+     * The summary pages only link to failed tests, so the details of the failures are not kept for them.
+     */
+    private static final TestFailure SUMMARY_FAILURE = new TestFailure(null, null, null);
+
     private final BuildOperationExecutor buildOperationExecutor;
     private final static Logger LOG = Logging.getLogger(DefaultTestReport.class);
 
@@ -54,43 +73,77 @@ public void generateReport(TestResultsProvider resultsProvider, File reportDir)
         LOG.info("Generating HTML test report...");
 
         Timer clock = Time.startTimer();
-        AllTestResults model = loadModelFromProvider(resultsProvider);
-        generateFiles(model, resultsProvider, reportDir);
+        ReportFileHashes reportFileHashes = ReportFileHashes.load(reportDir, STATE_FILE_NAME);
+        Map<String, HashCode> classPageHashes = new HashMap<String, HashCode>();
+        Map<String, Integer> classPageResultCounts = new HashMap<String, Integer>();
+        AllTestResults summary = loadSummaryFromProvider(resultsProvider, classPageHashes, classPageResultCounts);
+        generateFiles(summary, resultsProvider, reportDir, reportFileHashes, classPageHashes, classPageResultCounts);
+        reportFileHashes.store();
         LOG.info("Finished generating test html results ({}) into: {}", clock.getElapsed(), reportDir);
     }
 
-    private AllTestResults loadModelFromProvider(TestResultsProvider resultsProvider) {
-        final AllTestResults model = new AllTestResults();
+    private AllTestResults loadSummaryFromProvider(final TestResultsProvider resultsProvider, final Map<String, HashCode> classPageHashes, final Map<String, Integer> classPageResultCounts) {
+        final AllTestResults summary = new AllTestResults();
         resultsProvider.visitClasses(new Action<TestClassResult>() {
             @Override
             public void execute(TestClassResult classResult) {
-                model.addTestClass(classResult.getId(), classResult.getClassName(), classResult.getClassDisplayName());
-                List<TestMethodResult> collectedResults = classResult.getResults();
-                for (TestMethodResult collectedResult : collectedResults) {
-                    final TestResult testResult = model.addTest(classResult.getId(), classResult.getClassName(), classResult.getClassDisplayName(), collectedResult.getName(), collectedResult.getDisplayName(), collectedResult.getDuration());
-                    if (collectedResult.getResultType() == SKIPPED) {
-                        testResult.setIgnored();
-                    } else {
-                        List<TestFailure> failures = collectedResult.getFailures();
-                        for (TestFailure failure : failures) {
-                            testResult.addFailure(failure);
-                        }
-                    }
+                ClassTestResults classTestResults = addClassResult(summary, classResult, false);
+                classTestResults.discardTestResults();
+                String pageUrl = classTestResults.getBaseUrl();
+                HashCode hash = ReportFileHashes.classResultHasher(classResult, resultsProvider).hash();
+                HashCode previousHash = classPageHashes.get(pageUrl);
+                if (previousHash != null) {
+                    // Several results are rendered into the same page
+                    Hasher hasher = Hashing.newHasher();
+                    hasher.putHash(previousHash);
+                    hasher.putHash(hash);
+                    hash = hasher.hash();
+                    classPageResultCounts.put(pageUrl, classPageResultCounts.get(pageUrl) + 1);
+                } else {
+                    classPageResultCounts.put(pageUrl, 1);
                 }
+                classPageHashes.put(pageUrl, hash);
             }
         });
-        return model;
+        return summary;
     }
 
-    private void generateFiles(AllTestResults model, final TestResultsProvider resultsProvider, final File reportDir) {
+    private static ClassTestResults addClassResult(AllTestResults model, TestClassResult classResult, boolean withFailureDetails) {
+        ClassTestResults classTestResults = model.addTestClass(classResult.getId(), classResult.getClassName(), classResult.getClassDisplayName());
+        for (TestMethodResult collectedResult : classResult.getResults()) {
+            final TestResult testResult = model.addTest(classResult.getId(), classResult.getClassName(), classResult.getClassDisplayName(), collectedResult.getName(), collectedResult.getDisplayName(), collectedResult.getDuration());
+            if (collectedResult.getResultType() == SKIPPED) {
+                testResult.setIgnored();
+            } else if (withFailureDetails) {
+                for (TestFailure failure : collectedResult.getFailures()) {
+                    testResult.addFailure(failure);
+                }
+            } else if (!collectedResult.getFailures().isEmpty()) {
+                testResult.addFailure(SUMMARY_FAILURE);
+            }
+        }
+        return classTestResults;
+    }
+
+    private void generateFiles(AllTestResults summary, final TestResultsProvider resultsProvider, final File reportDir, final ReportFileHashes reportFileHashes, final Map<String, HashCode> classPageHashes, final Map<String, Integer> classPageResultCounts) {
         try {
             HtmlReportRenderer htmlRenderer = new HtmlReportRenderer();
             buildOperationExecutor.run(new RunnableBuildOperation() {
                 @Override
                 public void run(BuildOperationContext context) {
-                    // Clean-up old HTML report directories
+                    // Clean-up old HTML report directories, keeping the pages of classes which are still part of the report
                     GFileUtils.deleteQuietly(new File(reportDir, "packages"));
-                    GFileUtils.deleteQuietly(new File(reportDir, "classes"));
+                    for (Map.Entry<String, HashCode> entry : classPageHashes.entrySet()) {
+                        reportFileHashes.record(entry.getKey(), entry.getValue());
+                    }
+                    File[] classPages = new File(reportDir, "classes").listFiles();
+                    if (classPages != null) {
+                        for (File classPage : classPages) {
+                            if (!reportFileHashes.isRecorded("classes/" + classPage.getName())) {
+                                GFileUtils.deleteQuietly(classPage);
+                            }
+                        }
+                    }
                 }
 
                 @Override
@@ -99,19 +152,17 @@ public BuildOperationDescriptor.Builder description() {
                 }
             });
 
-            htmlRenderer.render(model, new ReportRenderer<AllTestResults, HtmlReportBuilder>() {
+            htmlRenderer.render(summary, new ReportRenderer<AllTestResults, HtmlReportBuilder>() {
                 @Override
-                public void render(final AllTestResults model, final HtmlReportBuilder output) throws IOException {
+                public void render(final AllTestResults summary, final HtmlReportBuilder output) throws IOException {
                     buildOperationExecutor.runAll(new Action<BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>>>() {
                         @Override
-                        public void execute(BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>> queue) {
-                            queue.add(generator("index.html", model, new OverviewPageRenderer(), output));
-                            for (PackageTestResults packageResults : model.getPackages()) {
+                        public void execute(final BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>> queue) {
+                            queue.add(generator("index.html", summary, new OverviewPageRenderer(), output));
+                            for (PackageTestResults packageResults : summary.getPackages()) {
                                 queue.add(generator(packageResults.getBaseUrl(), packageResults, new PackagePageRenderer(), output));
-                                for (ClassTestResults classResults : packageResults.getClasses()) {
-                                    queue.add(generator(classResults.getBaseUrl(), classResults, new ClassPageRenderer(resultsProvider), output));
-                                }
                             }
+                            queueClassPages(queue, resultsProvider, output, reportFileHashes, classPageHashes, classPageResultCounts);
                         }
                     });
                 }
@@ -121,6 +172,39 @@ public void execute(BuildOperationQueue<HtmlReportFileGenerator<? extends Compos
         }
     }
 
+    /**
+     * Visits the results again and queues the pages of the classes which changed, each rendered from a model holding only the results of its class.
+     */
+    private static void queueClassPages(final BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>> queue, final TestResultsProvider resultsProvider, final HtmlReportBuilder output, final ReportFileHashes reportFileHashes, final Map<String, HashCode> classPageHashes, final Map<String, Integer> classPageResultCounts) {
+        final Map<String, AllTestResults> incompletePages = new HashMap<String, AllTestResults>();
+        resultsProvider.visitClasses(new Action<TestClassResult>() {
+            @Override
+            public void execute(TestClassResult classResult) {
+                AllTestResults pageModel = new AllTestResults();
+                String pageUrl = pageModel.addTestClass(classResult.getId(), classResult.getClassName(), classResult.getClassDisplayName()).getBaseUrl();
+                if (reportFileHashes.isUpToDate(pageUrl, classPageHashes.get(pageUrl))) {
+                    return;
+                }
+                int remainingResults = classPageResultCounts.get(pageUrl) - 1;
+                if (remainingResults > 0 || incompletePages.containsKey(pageUrl)) {
+                    // Several results are rendered into the same page, so wait until all of them have been visited
+                    AllTestResults incompletePage = incompletePages.get(pageUrl);
+                    if (incompletePage != null) {
+                        pageModel = incompletePage;
+                    } else {
+                        incompletePages.put(pageUrl, pageModel);
+                    }
+                    classPageResultCounts.put(pageUrl, remainingResults);
+                }
+                ClassTestResults classTestResults = addClassResult(pageModel, classResult, true);
+                if (remainingResults == 0) {
+                    incompletePages.remove(pageUrl);
+                    queue.add(generator(pageUrl, classTestResults, new ClassPageRenderer(resultsProvider), output));
+                }
+            }
+        });
+    }
+
     public static <T extends CompositeTestResults> HtmlReportFileGenerator<T> generator(String fileUrl, T results, PageRenderer<T> renderer, HtmlReportBuilder output) {
         return new HtmlReportFileGenerator<T>(fileUrl, results, renderer, output);
     }
@@ -23,19 +23,27 @@
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.remote.ObjectConnection;
 import org.gradle.internal.work.WorkerLeaseRegistry;
 import org.gradle.process.JavaForkOptions;
 import org.gradle.process.internal.ExecException;
+import org.gradle.process.internal.JavaExecHandleBuilder;
 import org.gradle.process.internal.worker.WorkerProcess;
 import org.gradle.process.internal.worker.WorkerProcessBuilder;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 import org.gradle.util.CollectionUtils;
+import org.gradle.util.GUtil;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -49,9 +57,13 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private final List<String> testWorkerImplementationModules;
     private final Action<WorkerProcessBuilder> buildConfigAction;
     private final ModuleRegistry moduleRegistry;
+    private final RemoteTestClassRequester testClassRequester;
+    private final TestWorkerPool workerPool;
+    private final HashCode classpathHash;
     private final Lock lock = new ReentrantLock();
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
+    private ReusableTestWorker reusableWorker;
     private TestResultProcessor resultProcessor;
     private WorkerLeaseRegistry.WorkerLeaseCompletion completion;
     private DocumentationRegistry documentationRegistry;
@@ -59,7 +71,20 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
 
     public ForkingTestClassProcessor(WorkerLeaseRegistry.WorkerLease parentWorkerLease, WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options,
                                      Iterable<File> classPath, Iterable<File> modulePath, List<String> testWorkerImplementationModules,
-                                     Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry, DocumentationRegistry documentationRegistry) {
+                                     Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry, DocumentationRegistry documentationRegistry,
+                                     RemoteTestClassRequester testClassRequester) {
+        this(parentWorkerLease, workerFactory, processorFactory, options, classPath, modulePath, testWorkerImplementationModules, buildConfigAction, moduleRegistry,
+            documentationRegistry, testClassRequester, null, null);
+    }
+
+    /**
+     * @param workerPool the pool to take the worker from and return it to when done, or null to use a worker for this processor only.
+     * @param classpathHash the hash of the content of the classpath and module path, required when a worker pool is used.
+     */
+    public ForkingTestClassProcessor(WorkerLeaseRegistry.WorkerLease parentWorkerLease, WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options,
+                                     Iterable<File> classPath, Iterable<File> modulePath, List<String> testWorkerImplementationModules,
+                                     Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry, DocumentationRegistry documentationRegistry,
+                                     RemoteTestClassRequester testClassRequester, @Nullable TestWorkerPool workerPool, @Nullable HashCode classpathHash) {
         this.currentWorkerLease = parentWorkerLease;
         this.workerFactory = workerFactory;
         this.processorFactory = processorFactory;
@@ -70,6 +95,9 @@ public ForkingTestClassProcessor(WorkerLeaseRegistry.WorkerLease parentWorkerLea
         this.buildConfigAction = buildConfigAction;
         this.moduleRegistry = moduleRegistry;
         this.documentationRegistry = documentationRegistry;
+        this.testClassRequester = testClassRequester;
+        this.workerPool = workerPool;
+        this.classpathHash = classpathHash;
     }
 
     @Override
@@ -88,7 +116,7 @@ public void processTestClass(TestClassRunInfo testClass) {
             if (remoteProcessor == null) {
                 completion = currentWorkerLease.startChild();
                 try {
-                    remoteProcessor = forkProcess();
+                    remoteProcessor = workerPool != null ? startReusableWorker() : forkProcess();
                 } catch (RuntimeException e) {
                     completion.leaseFinish();
                     completion = null;
@@ -103,16 +131,7 @@ public void processTestClass(TestClassRunInfo testClass) {
     }
 
     RemoteTestClassProcessor forkProcess() {
-        WorkerProcessBuilder builder = workerFactory.create(new TestWorker(processorFactory));
-        builder.setBaseName("Gradle Test Executor");
-        builder.setImplementationClasspath(getTestWorkerImplementationClasspath());
-        builder.setImplementationModulePath(getTestWorkerImplementationModulePath());
-        builder.applicationClasspath(classPath);
-        builder.applicationModulePath(modulePath);
-        options.copyTo(builder.getJavaCommand());
-        builder.getJavaCommand().getModularity().getInferModulePath().set(modulePath.iterator().hasNext());
-        builder.getJavaCommand().jvmArgs("-Dorg.gradle.native=false");
-        buildConfigAction.execute(builder);
+        WorkerProcessBuilder builder = createWorkerProcessBuilder(new TestWorker(processorFactory));
 
         workerProcess = builder.build();
         workerProcess.start();
@@ -120,12 +139,94 @@ RemoteTestClassProcessor forkProcess() {
         ObjectConnection connection = workerProcess.getConnection();
         connection.useParameterSerializers(TestEventSerializer.create());
         connection.addIncoming(TestResultProcessor.class, resultProcessor);
+        connection.addIncoming(RemoteTestClassRequester.class, testClassRequester);
         RemoteTestClassProcessor remoteProcessor = connection.addOutgoing(RemoteTestClassProcessor.class);
         connection.connect();
         remoteProcessor.startProcessing();
         return remoteProcessor;
     }
 
+    private RemoteTestClassProcessor startReusableWorker() {
+        WorkerProcessBuilder builder = createWorkerProcessBuilder(new TestWorker(processorFactory, true));
+        if (!isReusable(builder.getJavaCommand())) {
+            return forkProcess();
+        }
+        builder.enableJvmMemoryInfoPublishing(true);
+
+        HashCode key = workerKey(builder);
+        ReusableTestWorker worker = workerPool.reserveIdleWorker(key);
+        if (worker == null) {
+            worker = workerPool.startWorker(key, builder);
+        }
+        reusableWorker = worker;
+        workerProcess = worker.getWorkerProcess();
+        return worker.startSession(resultProcessor, testClassRequester);
+    }
+
+    /**
+     * Java agents, such as code coverage agents, may write their results when the JVM exits. Debugged workers are not reused either.
+     */
+    private static boolean isReusable(JavaExecHandleBuilder javaCommand) {
+        for (String jvmArg : javaCommand.getAllJvmArgs()) {
+            if (jvmArg.startsWith("-javaagent:") || jvmArg.startsWith("-agentlib:") || jvmArg.startsWith("-agentpath:") || jvmArg.startsWith("-Xrunjdwp")) {
+                return false;
+            }
+        }
+        return !javaCommand.getDebug();
+    }
+
+    /**
+     * A worker can be reused by test tasks with the same worker configuration, classpath content and test framework options.
+     */
+    private HashCode workerKey(WorkerProcessBuilder builder) {
+        JavaExecHandleBuilder javaCommand = builder.getJavaCommand();
+        Hasher hasher = Hashing.newHasher();
+        hasher.putHash(classpathHash);
+        hasher.putString(builder.getBaseName());
+        hasher.putString(builder.getLogLevel().name());
+        hasher.putString(javaCommand.getExecutable());
+        hasher.putString(javaCommand.getWorkingDir().getAbsolutePath());
+        for (String jvmArg : javaCommand.getAllJvmArgs()) {
+            hasher.putString(jvmArg);
+        }
+        for (Map.Entry<String, Object> entry : new TreeMap<String, Object>(javaCommand.getEnvironment()).entrySet()) {
+            hasher.putString(entry.getKey());
+            hasher.putString(String.valueOf(entry.getValue()));
+        }
+        putFiles(hasher, builder.getApplicationClasspath());
+        putFiles(hasher, builder.getApplicationModulePath());
+        for (String sharedPackage : builder.getSharedPackages()) {
+            hasher.putString(sharedPackage);
+        }
+        for (String module : testWorkerImplementationModules) {
+            hasher.putString(module);
+        }
+        hasher.putBytes(GUtil.serialize(processorFactory));
+        return hasher.hash();
+    }
+
+    private static void putFiles(Hasher hasher, Iterable<File> files) {
+        hasher.putString("files");
+        for (File file : files) {
+            hasher.putString(file.getAbsolutePath());
+        }
+    }
+
+
+    private WorkerProcessBuilder createWorkerProcessBuilder(TestWorker testWorker) {
+        WorkerProcessBuilder builder = workerFactory.create(testWorker);
+        builder.setBaseName("Gradle Test Executor");
+        builder.setImplementationClasspath(getTestWorkerImplementationClasspath());
+        builder.setImplementationModulePath(getTestWorkerImplementationModulePath());
+        builder.applicationClasspath(classPath);
+        builder.applicationModulePath(modulePath);
+        options.copyTo(builder.getJavaCommand());
+        builder.getJavaCommand().getModularity().getInferModulePath().set(modulePath.iterator().hasNext());
+        builder.getJavaCommand().jvmArgs("-Dorg.gradle.native=false");
+        buildConfigAction.execute(builder);
+        return builder;
+    }
+
     List<URL> getTestWorkerImplementationClasspath() {
         return CollectionUtils.flattenCollections(URL.class,
             moduleRegistry.getModule("gradle-core-api").getImplementationClasspath().getAsURLs(),
@@ -171,7 +272,11 @@ public void stop() {
                 } finally {
                     lock.unlock();
                 }
-                workerProcess.waitForStop();
+                if (reusableWorker != null) {
+                    completeSession();
+                } else {
+                    workerProcess.waitForStop();
+                }
             }
         } catch (ExecException e) {
             if (!stoppedNow) {
@@ -187,12 +292,23 @@ public void stop() {
         }
     }
 
+    private void completeSession() {
+        if (!stoppedNow && reusableWorker.awaitSessionCompleted()) {
+            workerPool.release(reusableWorker);
+        } else {
+            // Fails when the worker has crashed
+            workerPool.discard(reusableWorker);
+        }
+    }
+
     @Override
     public void stopNow() {
         lock.lock();
         try {
             stoppedNow = true;
-            if (remoteProcessor != null) {
+            if (reusableWorker != null) {
+                reusableWorker.stopNow();
+            } else if (remoteProcessor != null) {
                 workerProcess.stopNow();
             }
         } finally {
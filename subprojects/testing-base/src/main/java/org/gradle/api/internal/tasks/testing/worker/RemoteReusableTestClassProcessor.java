@@ -0,0 +1,30 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+/**
+ * The processor of a test worker which can run several sessions. Each session starts with {@link #startProcessing()}
+ * and ends with {@link #stop()}, after which the worker waits for the next session.
+ *
+ * @see RemoteReusableTestResultProcessor
+ */
+public interface RemoteReusableTestClassProcessor extends RemoteTestClassProcessor {
+    /**
+     * Stops the worker process once the current session has completed. Does not block.
+     */
+    void shutdown();
+}
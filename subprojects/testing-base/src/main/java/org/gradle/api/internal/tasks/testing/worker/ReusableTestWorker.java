@@ -0,0 +1,231 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.dispatch.StreamCompletion;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.remote.ObjectConnection;
+import org.gradle.process.internal.health.memory.JvmMemoryStatus;
+import org.gradle.process.internal.worker.WorkerProcess;
+import org.gradle.process.internal.worker.WorkerProcessBuilder;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A test worker process which runs the tests of several test tasks, one session at a time. The results and the
+ * requests for test classes the worker sends are forwarded to the test task of the current session.
+ *
+ * @see TestWorkerPool
+ */
+public class ReusableTestWorker {
+    private final HashCode key;
+    private final WorkerProcess workerProcess;
+    private final SessionResultProcessor resultProcessor = new SessionResultProcessor();
+    private final SessionTestClassRequester testClassRequester = new SessionTestClassRequester();
+    private RemoteReusableTestClassProcessor remoteProcessor;
+    private volatile Session session;
+    private volatile boolean failed;
+    private volatile boolean exiting;
+    private int uses;
+    private int idleBuildSessions;
+
+    ReusableTestWorker(HashCode key, WorkerProcess workerProcess) {
+        this.key = key;
+        this.workerProcess = workerProcess;
+    }
+
+    /**
+     * Starts a worker process which can be reused by test tasks with the same key.
+     */
+    public static ReusableTestWorker start(HashCode key, WorkerProcessBuilder builder) {
+        ReusableTestWorker worker = new ReusableTestWorker(key, builder.build());
+        worker.start();
+        return worker;
+    }
+
+    void start() {
+        workerProcess.start();
+
+        ObjectConnection connection = workerProcess.getConnection();
+        connection.useParameterSerializers(TestEventSerializer.create());
+        connection.addIncoming(RemoteReusableTestResultProcessor.class, resultProcessor);
+        connection.addIncoming(RemoteTestClassRequester.class, testClassRequester);
+        remoteProcessor = connection.addOutgoing(RemoteReusableTestClassProcessor.class);
+        connection.connect();
+    }
+
+    public HashCode getKey() {
+        return key;
+    }
+
+    public WorkerProcess getWorkerProcess() {
+        return workerProcess;
+    }
+
+    /**
+     * Starts a session of the worker, which sends its results and requests to the given receivers.
+     */
+    public RemoteTestClassProcessor startSession(TestResultProcessor sessionResultProcessor, RemoteTestClassRequester sessionTestClassRequester) {
+        session = new Session(sessionResultProcessor, sessionTestClassRequester);
+        if (failed) {
+            // Process has gone away while waiting for the session
+            session.completed.countDown();
+        }
+        remoteProcessor.startProcessing();
+        return remoteProcessor;
+    }
+
+    /**
+     * Waits until the worker has sent all results of the current session, which must have been stopped.
+     *
+     * @return true when the worker can run another session.
+     */
+    public boolean awaitSessionCompleted() {
+        Session currentSession = session;
+        try {
+            currentSession.completed.await();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        session = null;
+        return currentSession.reusable && !failed;
+    }
+
+    boolean isFailed() {
+        return failed;
+    }
+
+    int getUses() {
+        return uses;
+    }
+
+    int incrementUses() {
+        idleBuildSessions = 0;
+        return ++uses;
+    }
+
+    int incrementIdleBuildSessions() {
+        return ++idleBuildSessions;
+    }
+
+    long getMemoryUsage() {
+        try {
+            JvmMemoryStatus memoryStatus = workerProcess.getJvmMemoryStatus();
+            return memoryStatus.getCommittedMemory();
+        } catch (IllegalStateException e) {
+            // The worker has not reported its memory usage yet
+            return 0;
+        }
+    }
+
+    /**
+     * Shuts down the worker process, which must not be running a session. Fails when the worker process does not exit cleanly.
+     */
+    public void stop() {
+        if (!failed && !exiting) {
+            remoteProcessor.shutdown();
+        }
+        workerProcess.waitForStop();
+    }
+
+    /**
+     * Kills the worker process, which cannot be reused afterwards.
+     */
+    public void stopNow() {
+        exiting = true;
+        workerProcess.stopNow();
+    }
+
+    private static class Session {
+        private final TestResultProcessor resultProcessor;
+        private final RemoteTestClassRequester testClassRequester;
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile boolean reusable;
+
+        Session(TestResultProcessor resultProcessor, RemoteTestClassRequester testClassRequester) {
+            this.resultProcessor = resultProcessor;
+            this.testClassRequester = testClassRequester;
+        }
+    }
+
+    private class SessionResultProcessor implements RemoteReusableTestResultProcessor, StreamCompletion {
+        @Override
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            session.resultProcessor.started(test, event);
+        }
+
+        @Override
+        public void completed(Object testId, TestCompleteEvent event) {
+            session.resultProcessor.completed(testId, event);
+        }
+
+        @Override
+        public void output(Object testId, TestOutputEvent event) {
+            session.resultProcessor.output(testId, event);
+        }
+
+        @Override
+        public void failure(Object testId, Throwable result) {
+            session.resultProcessor.failure(testId, result);
+        }
+
+        @Override
+        public void sessionCompleted(boolean reusable) {
+            Session currentSession = session;
+            currentSession.reusable = reusable;
+            if (!reusable) {
+                // The worker exits by itself when it could not reset its state
+                exiting = true;
+            }
+            currentSession.completed.countDown();
+        }
+
+        @Override
+        public void endStream() {
+            failed = true;
+            Session currentSession = session;
+            if (currentSession != null) {
+                currentSession.completed.countDown();
+            }
+        }
+    }
+
+    private class SessionTestClassRequester implements RemoteTestClassRequester, StreamCompletion {
+        @Override
+        public void requestTestClass() {
+            // Requests are not ordered with the completion of the session, so a request may arrive after the session has completed
+            Session currentSession = session;
+            if (currentSession != null) {
+                currentSession.testClassRequester.requestTestClass();
+            }
+        }
+
+        @Override
+        public void endStream() {
+            Session currentSession = session;
+            if (currentSession != null && currentSession.testClassRequester instanceof StreamCompletion) {
+                ((StreamCompletion) currentSession.testClassRequester).endStream();
+            }
+        }
+    }
+}
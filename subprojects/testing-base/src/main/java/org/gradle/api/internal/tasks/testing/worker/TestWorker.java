@@ -44,16 +44,31 @@
 import java.security.AccessControlException;
 import java.util.concurrent.CountDownLatch;
 
-public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClassProcessor, Serializable, Stoppable {
+/**
+ * Runs the tests in a worker process. A reusable worker does not exit when the tests have been run, but resets the
+ * state of the JVM and waits for the next session until it is shut down.
+ */
+public class TestWorker implements Action<WorkerProcessContext>, RemoteReusableTestClassProcessor, Serializable, Stoppable {
     private static final Logger LOGGER = LoggerFactory.getLogger(TestWorker.class);
     public static final String WORKER_ID_SYS_PROPERTY = "org.gradle.test.worker";
     private final WorkerTestClassProcessorFactory factory;
+    private final boolean reusable;
     private CountDownLatch completed;
     private TestClassProcessor processor;
     private TestResultProcessor resultProcessor;
+    private RemoteReusableTestResultProcessor sessionResultProcessor;
+    private RemoteTestClassRequester testClassRequester;
+    private WorkerProcessContext workerProcessContext;
+    private ServiceRegistry testServices;
+    private TestWorkerState initialState;
 
     public TestWorker(WorkerTestClassProcessorFactory factory) {
+        this(factory, false);
+    }
+
+    public TestWorker(WorkerTestClassProcessorFactory factory, boolean reusable) {
         this.factory = factory;
+        this.reusable = reusable;
     }
 
     @Override
@@ -64,6 +79,9 @@ public void execute(final WorkerProcessContext workerProcessContext) {
         completed = new CountDownLatch(1);
 
         System.setProperty(WORKER_ID_SYS_PROPERTY, workerProcessContext.getWorkerId().toString());
+        if (reusable) {
+            initialState = TestWorkerState.capture();
+        }
 
         DefaultServiceRegistry testServices = new TestFrameworkServiceRegistry(workerProcessContext);
         startReceivingTests(workerProcessContext, testServices);
@@ -90,6 +108,28 @@ public void execute(final WorkerProcessContext workerProcessContext) {
     }
 
     private void startReceivingTests(WorkerProcessContext workerProcessContext, ServiceRegistry testServices) {
+        this.workerProcessContext = workerProcessContext;
+        this.testServices = testServices;
+        processor = createProcessor();
+
+        ObjectConnection serverConnection = workerProcessContext.getServerConnection();
+        serverConnection.useParameterSerializers(TestEventSerializer.create());
+        if (reusable) {
+            this.sessionResultProcessor = serverConnection.addOutgoing(RemoteReusableTestResultProcessor.class);
+            this.resultProcessor = sessionResultProcessor;
+        } else {
+            this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
+        }
+        this.testClassRequester = serverConnection.addOutgoing(RemoteTestClassRequester.class);
+        if (reusable) {
+            serverConnection.addIncoming(RemoteReusableTestClassProcessor.class, this);
+        } else {
+            serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
+        }
+        serverConnection.connect();
+    }
+
+    private TestClassProcessor createProcessor() {
         TestClassProcessor targetProcessor = factory.create(testServices);
         IdGenerator<Object> idGenerator = Cast.uncheckedNonnullCast(testServices.get(IdGenerator.class));
 
@@ -97,18 +137,19 @@ private void startReceivingTests(WorkerProcessContext workerProcessContext, Serv
                 workerProcessContext.getDisplayName(), testServices.get(Clock.class));
         ContextClassLoaderProxy<TestClassProcessor> proxy = new ContextClassLoaderProxy<TestClassProcessor>(
                 TestClassProcessor.class, targetProcessor, workerProcessContext.getApplicationClassLoader());
-        processor = proxy.getSource();
-
-        ObjectConnection serverConnection = workerProcessContext.getServerConnection();
-        serverConnection.useParameterSerializers(TestEventSerializer.create());
-        this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
-        serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
-        serverConnection.connect();
+        return proxy.getSource();
     }
 
     @Override
     public void startProcessing() {
         Thread.currentThread().setName("Test worker");
+        if (processor == null) {
+            // A new session of a reusable worker
+            processor = createProcessor();
+        }
+        if (reusable) {
+            initialState.sessionStarted();
+        }
         processor.startProcessing(resultProcessor);
     }
 
@@ -123,6 +164,7 @@ public void processTestClass(final TestClassRunInfo testClass) {
         } finally {
             // Clean the interrupted status
             Thread.interrupted();
+            testClassRequester.requestTestClass();
         }
     }
 
@@ -132,13 +174,33 @@ public void stop() {
         try {
             processor.stop();
         } finally {
-            completed.countDown();
             // Clean the interrupted status
             // because some test class processors do work here, e.g. JUnitPlatform
             Thread.interrupted();
+            if (reusable) {
+                completeSession();
+            } else {
+                completed.countDown();
+            }
         }
     }
 
+    private void completeSession() {
+        processor = null;
+        boolean restored = initialState.restore();
+        LOGGER.info("{} finished a session, {}.", workerProcessContext.getDisplayName(), restored ? "waiting for the next session" : "cannot be reused");
+        // Results are sent in order, so the session is completed after all of its results have been received
+        sessionResultProcessor.sessionCompleted(restored);
+        if (!restored) {
+            completed.countDown();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        completed.countDown();
+    }
+
     private static class TestFrameworkServiceRegistry extends DefaultServiceRegistry {
         private final WorkerProcessContext workerProcessContext;
 
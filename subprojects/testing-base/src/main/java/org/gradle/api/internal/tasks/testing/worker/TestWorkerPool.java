@@ -0,0 +1,232 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.initialization.SessionLifecycleListener;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.event.ListenerManager;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.process.internal.ExecException;
+import org.gradle.process.internal.health.memory.MemoryHolder;
+import org.gradle.process.internal.health.memory.MemoryManager;
+import org.gradle.process.internal.worker.WorkerProcessBuilder;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Keeps test worker processes alive between test tasks and builds, so that a later test task with the same test
+ * worker configuration can run its tests without starting a new JVM. Enabled with the {@value #REUSE_PROPERTY}
+ * system property.
+ *
+ * A worker is only reused for the same classpath, JVM configuration and test framework options. It is stopped after
+ * it has run {@value #MAX_USES_PROPERTY} sessions, when the tests have left state behind which cannot be reset,
+ * when it has been idle for {@value #MAX_IDLE_BUILD_SESSIONS} builds, or when the memory it uses is needed.
+ *
+ * Only the global JVM state captured by {@link TestWorkerState} is reset between sessions. The classes of the test
+ * runtime classpath are loaded once by the application class loader of the worker, so their static state, like
+ * singletons and caches, is carried over to the following sessions. This is why reuse is opt-in: it is only safe for
+ * tests which do not depend on static state being initialized by the test run itself.
+ */
+public class TestWorkerPool implements Stoppable {
+    public static final String REUSE_PROPERTY = "org.gradle.internal.testing.worker.reuse";
+    public static final String MAX_USES_PROPERTY = "org.gradle.internal.testing.worker.reuse.max.uses";
+    public static final int DEFAULT_MAX_USES = 20;
+    private static final int MAX_IDLE_BUILD_SESSIONS = 3;
+
+    private static final Logger LOGGER = Logging.getLogger(TestWorkerPool.class);
+
+    private final Object lock = new Object();
+    private final List<ReusableTestWorker> idleWorkers = new ArrayList<ReusableTestWorker>();
+    private final ListenerManager listenerManager;
+    private final MemoryManager memoryManager;
+    private final SessionLifecycleListener buildSessionListener = new BuildSessionListener();
+    private final MemoryHolder idleWorkerExpiration = new IdleWorkerExpiration();
+    private int startedCount;
+    private int reusedCount;
+    private int expiredCount;
+    private int notReusableCount;
+
+    public TestWorkerPool(ListenerManager listenerManager, MemoryManager memoryManager) {
+        this.listenerManager = listenerManager;
+        this.memoryManager = memoryManager;
+        listenerManager.addListener(buildSessionListener);
+        memoryManager.addMemoryHolder(idleWorkerExpiration);
+    }
+
+    public static boolean isReuseEnabled() {
+        return Boolean.getBoolean(REUSE_PROPERTY);
+    }
+
+    /**
+     * Reserves an idle worker with the given key, if there is one.
+     */
+    @Nullable
+    public ReusableTestWorker reserveIdleWorker(HashCode key) {
+        synchronized (lock) {
+            Iterator<ReusableTestWorker> iterator = idleWorkers.iterator();
+            while (iterator.hasNext()) {
+                ReusableTestWorker worker = iterator.next();
+                if (worker.getKey().equals(key)) {
+                    iterator.remove();
+                    if (worker.isFailed()) {
+                        notReusableCount++;
+                        continue;
+                    }
+                    reusedCount++;
+                    return worker;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Starts a new worker with the given key. The worker has to be released or discarded when its session has completed.
+     */
+    public ReusableTestWorker startWorker(HashCode key, WorkerProcessBuilder builder) {
+        ReusableTestWorker worker = ReusableTestWorker.start(key, builder);
+        synchronized (lock) {
+            startedCount++;
+        }
+        return worker;
+    }
+
+    /**
+     * Returns a worker which has completed its session, and can run another session.
+     */
+    public void release(ReusableTestWorker worker) {
+        int maxUses = Integer.getInteger(MAX_USES_PROPERTY, DEFAULT_MAX_USES);
+        synchronized (lock) {
+            if (worker.incrementUses() < maxUses && !worker.isFailed()) {
+                idleWorkers.add(worker);
+                return;
+            }
+            expiredCount++;
+        }
+        LOGGER.debug("Stopping test worker which has run {} sessions.", worker.getUses());
+        stopWorker(worker);
+    }
+
+    /**
+     * Stops a worker which could not be reset after its session, or has failed. Fails when the worker process has crashed.
+     */
+    public void discard(ReusableTestWorker worker) {
+        synchronized (lock) {
+            notReusableCount++;
+        }
+        worker.stop();
+    }
+
+    @Override
+    public void stop() {
+        List<ReusableTestWorker> workers;
+        synchronized (lock) {
+            workers = new ArrayList<ReusableTestWorker>(idleWorkers);
+            idleWorkers.clear();
+        }
+        try {
+            stopWorkers(workers);
+        } finally {
+            listenerManager.removeListener(buildSessionListener);
+            memoryManager.removeMemoryHolder(idleWorkerExpiration);
+        }
+    }
+
+    private static void stopWorkers(List<ReusableTestWorker> workers) {
+        if (workers.isEmpty()) {
+            return;
+        }
+        List<Stoppable> stoppables = new ArrayList<Stoppable>(workers.size());
+        for (final ReusableTestWorker worker : workers) {
+            stoppables.add(new Stoppable() {
+                @Override
+                public void stop() {
+                    stopWorker(worker);
+                }
+            });
+        }
+        CompositeStoppable.stoppable(stoppables).stop();
+        LOGGER.debug("Stopped {} idle test worker(s).", workers.size());
+    }
+
+    private static void stopWorker(ReusableTestWorker worker) {
+        try {
+            worker.stop();
+        } catch (ExecException e) {
+            LOGGER.debug("Reusable test worker did not stop cleanly.", e);
+        }
+    }
+
+    private class BuildSessionListener implements SessionLifecycleListener {
+        @Override
+        public void afterStart() {
+        }
+
+        @Override
+        public void beforeComplete() {
+            List<ReusableTestWorker> unusedWorkers = new ArrayList<ReusableTestWorker>();
+            synchronized (lock) {
+                Iterator<ReusableTestWorker> iterator = idleWorkers.iterator();
+                while (iterator.hasNext()) {
+                    ReusableTestWorker worker = iterator.next();
+                    if (worker.incrementIdleBuildSessions() > MAX_IDLE_BUILD_SESSIONS) {
+                        iterator.remove();
+                        unusedWorkers.add(worker);
+                    }
+                }
+                if (startedCount + reusedCount > 0) {
+                    LOGGER.info("Test worker reuse: {} worker(s) started, {} reused, {} stopped after {} uses, {} could not be reused, {} idle.",
+                        startedCount, reusedCount, expiredCount, Integer.getInteger(MAX_USES_PROPERTY, DEFAULT_MAX_USES), notReusableCount, idleWorkers.size());
+                }
+                startedCount = 0;
+                reusedCount = 0;
+                expiredCount = 0;
+                notReusableCount = 0;
+            }
+            stopWorkers(unusedWorkers);
+        }
+    }
+
+    private class IdleWorkerExpiration implements MemoryHolder {
+        @Override
+        public long attemptToRelease(long memoryAmountBytes) throws IllegalArgumentException {
+            if (memoryAmountBytes < 0) {
+                throw new IllegalArgumentException("Negative memory amount");
+            }
+            List<ReusableTestWorker> workersToStop = new ArrayList<ReusableTestWorker>();
+            long releasedBytes = 0;
+            synchronized (lock) {
+                // Stop the least recently used workers first
+                Iterator<ReusableTestWorker> iterator = idleWorkers.iterator();
+                while (iterator.hasNext() && releasedBytes < memoryAmountBytes) {
+                    ReusableTestWorker worker = iterator.next();
+                    iterator.remove();
+                    workersToStop.add(worker);
+                    releasedBytes += worker.getMemoryUsage();
+                }
+            }
+            stopWorkers(workersToStop);
+            return releasedBytes;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * The global state of the test worker JVM which tests commonly change. A reusable test worker captures the state
+ * when it starts and restores it after each session, so that the tests of the next session start from the same state.
+ * Static state of the classes loaded from the test runtime classpath is not reset.
+ */
+class TestWorkerState {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestWorkerState.class);
+
+    private final Properties systemProperties;
+    private final Locale locale;
+    private final TimeZone timeZone;
+    private final SecurityManager securityManager;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final InputStream in;
+    private final Thread.UncaughtExceptionHandler uncaughtExceptionHandler;
+    private Set<Thread> threads;
+
+    private TestWorkerState() {
+        systemProperties = new Properties();
+        systemProperties.putAll(System.getProperties());
+        locale = Locale.getDefault();
+        timeZone = TimeZone.getDefault();
+        securityManager = System.getSecurityManager();
+        out = System.out;
+        err = System.err;
+        in = System.in;
+        uncaughtExceptionHandler = Thread.getDefaultUncaughtExceptionHandler();
+        threads = liveThreads();
+    }
+
+    static TestWorkerState capture() {
+        return new TestWorkerState();
+    }
+
+    /**
+     * Records the threads running before a session starts.
+     */
+    void sessionStarted() {
+        threads = liveThreads();
+    }
+
+    /**
+     * Restores the captured state. Returns false when the state could not be restored completely, in which case the
+     * worker must not be reused.
+     */
+    boolean restore() {
+        boolean restored = true;
+        if (System.getSecurityManager() != securityManager) {
+            try {
+                System.setSecurityManager(securityManager);
+            } catch (SecurityException e) {
+                LOGGER.info("Unable to reset SecurityManager, the test worker will not be reused.", e);
+                restored = false;
+            }
+        }
+        Properties properties = new Properties();
+        properties.putAll(systemProperties);
+        System.setProperties(properties);
+        Locale.setDefault(locale);
+        TimeZone.setDefault(timeZone);
+        System.setOut(out);
+        System.setErr(err);
+        System.setIn(in);
+        Thread.setDefaultUncaughtExceptionHandler(uncaughtExceptionHandler);
+
+        for (Thread thread : liveThreads()) {
+            if (!thread.isDaemon() && !threads.contains(thread)) {
+                LOGGER.info("Thread '{}' started by the tests is still running, the test worker will not be reused.", thread.getName());
+                restored = false;
+            }
+        }
+        return restored;
+    }
+
+    private static Set<Thread> liveThreads() {
+        return new HashSet<Thread>(Thread.getAllStackTraces().keySet());
+    }
+}
@@ -34,8 +34,7 @@
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.filter.DefaultTestFilter;
 import org.gradle.api.internal.tasks.testing.junit.result.Binary2JUnitXmlReportGenerator;
-import org.gradle.api.internal.tasks.testing.junit.result.InMemoryTestResultsProvider;
-import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
+import org.gradle.api.internal.tasks.testing.junit.result.BinaryResultBackedTestResultsProvider;
 import org.gradle.api.internal.tasks.testing.junit.result.TestOutputAssociation;
 import org.gradle.api.internal.tasks.testing.junit.result.TestOutputStore;
 import org.gradle.api.internal.tasks.testing.junit.result.TestReportDataCollector;
@@ -82,9 +81,7 @@
 
 import javax.inject.Inject;
 import java.io.File;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Abstract class for all test task.
@@ -100,6 +97,8 @@
  * @since 4.4
  */
 public abstract class AbstractTestTask extends ConventionTask implements VerificationTask, Reporting<TestTaskReports> {
+    private static final String MAX_OUTPUT_BYTES_PER_TEST_PROPERTY = "org.gradle.internal.testing.output.max.bytes.per.test";
+
     private final DefaultTestFilter filter;
     private final TestTaskReports reports;
     private final ListenerBroadcast<TestListener> testListenerBroadcaster;
@@ -427,10 +426,11 @@ public void testLogging(Action<? super TestLoggingContainer> action) {
 
     @TaskAction
     public void executeTests() {
+        TestExecuter<TestExecutionSpec> testExecuter = Cast.uncheckedNonnullCast(createTestExecuter());
         if (getFilter().isFailOnNoMatchingTests() && (!getFilter().getIncludePatterns().isEmpty()
             || !filter.getCommandLineIncludePatterns().isEmpty()
             || !filter.getExcludePatterns().isEmpty())) {
-            addTestListener(new NoMatchingTestsReporter(createNoMatchingTestErrorMessage()));
+            addTestListener(new NoMatchingTestsReporter(createNoMatchingTestErrorMessage(), testExecuter));
         }
 
         LogLevel currentLevel = determineCurrentLogLevel();
@@ -452,11 +452,11 @@ public void execute(DeleteSpec spec) {
         });
         binaryResultsDir.mkdirs();
 
-        Map<String, TestClassResult> results = new HashMap<String, TestClassResult>();
-        TestOutputStore testOutputStore = new TestOutputStore(binaryResultsDir);
+        TestResultSerializer.Writer resultsWriter = new TestResultSerializer(binaryResultsDir).writer();
+        TestOutputStore testOutputStore = new TestOutputStore(binaryResultsDir, Long.getLong(MAX_OUTPUT_BYTES_PER_TEST_PROPERTY, TestOutputStore.UNLIMITED));
 
         TestOutputStore.Writer outputWriter = testOutputStore.writer();
-        TestReportDataCollector testReportDataCollector = new TestReportDataCollector(results, outputWriter);
+        TestReportDataCollector testReportDataCollector = new TestReportDataCollector(resultsWriter, outputWriter);
 
         addTestListener(testReportDataCollector);
         addTestOutputListener(testReportDataCollector);
@@ -472,7 +472,6 @@ public void execute(DeleteSpec spec) {
         TestWorkerProgressListener testWorkerProgressListener = new TestWorkerProgressListener(getProgressLoggerFactory(), parentProgressLogger);
         getTestListenerInternalBroadcaster().add(testWorkerProgressListener);
 
-        TestExecuter<TestExecutionSpec> testExecuter = Cast.uncheckedNonnullCast(createTestExecuter());
         TestListenerInternal resultProcessorDelegate = getTestListenerInternalBroadcaster().getSource();
         if (failFast) {
             resultProcessorDelegate = new FailFastTestListenerInternal(testExecuter, resultProcessorDelegate);
@@ -489,11 +488,11 @@ public void execute(DeleteSpec spec) {
             getTestOutputListenerBroadcaster().removeAll();
             getTestListenerInternalBroadcaster().removeAll();
             outputWriter.close();
+            testReportDataCollector.writeRemainingResults();
+            resultsWriter.close();
         }
 
-        new TestResultSerializer(binaryResultsDir).write(results.values());
-
-        createReporting(results, testOutputStore);
+        createReporting(binaryResultsDir);
 
         if (testCountLogger.hadFailures()) {
             handleTestFailures();
@@ -522,8 +521,8 @@ protected List<String> getNoMatchingTestErrorReasons() {
         return reasons;
     }
 
-    private void createReporting(Map<String, TestClassResult> results, TestOutputStore testOutputStore) {
-        TestResultsProvider testResultsProvider = new InMemoryTestResultsProvider(results.values(), testOutputStore);
+    private void createReporting(File binaryResultsDir) {
+        TestResultsProvider testResultsProvider = new BinaryResultBackedTestResultsProvider(binaryResultsDir);
 
         try {
             if (testReporter == null) {
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing
+
+import org.gradle.api.tasks.testing.TestDescriptor
+import org.gradle.api.tasks.testing.TestExecutionException
+import org.gradle.api.tasks.testing.TestResult
+import spock.lang.Specification
+
+class NoMatchingTestsReporterTest extends Specification {
+    def rootSuite = Stub(TestDescriptor)
+    def noTests = Stub(TestResult) {
+        getTestCount() >> 0
+    }
+
+    def "fails when no tests were executed"() {
+        def reporter = new NoMatchingTestsReporter("No tests found", Stub(TestExecuter))
+
+        when:
+        reporter.afterSuite(rootSuite, noTests)
+
+        then:
+        def e = thrown(TestExecutionException)
+        e.message == "No tests found"
+    }
+
+    def "does not fail when tests were executed"() {
+        def reporter = new NoMatchingTestsReporter("No tests found", Stub(TestExecuter))
+
+        when:
+        reporter.afterSuite(rootSuite, Stub(TestResult) {
+            getTestCount() >> 1
+        })
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "does not fail when matching test classes were skipped"() {
+        def testExecuter = Stub(SkippingTestExecuter) {
+            hasSkippedTestClasses() >> true
+        }
+        def reporter = new NoMatchingTestsReporter("No tests found", testExecuter)
+
+        when:
+        reporter.afterSuite(rootSuite, noTests)
+
+        then:
+        noExceptionThrown()
+    }
+
+    interface SkippingTestExecuter extends TestExecuter<TestExecutionSpec>, TestClassSkippingExecuter {
+    }
+}
@@ -19,6 +19,7 @@ package org.gradle.api.internal.tasks.testing.junit.result
 import org.gradle.api.Action
 import org.gradle.api.tasks.testing.TestOutputEvent
 import org.gradle.api.tasks.testing.TestResult
+import org.gradle.internal.hash.Hashing
 import spock.lang.Specification
 
 class AggregateTestResultsProviderTest extends Specification {
@@ -92,6 +93,23 @@ class AggregateTestResultsProviderTest extends Specification {
         1 * provider2.writeAllOutput(12, TestOutputEvent.Destination.StdOut, writer)
     }
 
+    def "visits classes when fetching test output before the classes have been visited"() {
+        def class1 = Stub(TestClassResult) {
+            getId() >> 12
+            getClassName() >> 'class-1'
+        }
+
+        when:
+        provider.getOutputHash(1)
+        provider.hasOutput(1, TestOutputEvent.Destination.StdOut)
+
+        then:
+        1 * provider1.visitClasses(_) >> { Action a -> a.execute(class1) }
+        1 * provider2.visitClasses(_)
+        1 * provider1.getOutputHash(12) >> Hashing.signature("output")
+        1 * provider1.hasOutput(12, TestOutputEvent.Destination.StdOut)
+    }
+
     def "processes duplicate classes"() {
         def action = Mock(Action)
         def class1 = Stub(TestClassResult) {
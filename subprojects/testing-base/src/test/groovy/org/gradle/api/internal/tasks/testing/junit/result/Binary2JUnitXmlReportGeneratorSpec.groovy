@@ -19,6 +19,7 @@ package org.gradle.api.internal.tasks.testing.junit.result
 import org.gradle.api.Action
 import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.hash.HashCode
 import org.gradle.internal.operations.BuildOperationExecutor
 import org.gradle.internal.operations.BuildOperationListener
 import org.gradle.internal.operations.DefaultBuildOperationExecutor
@@ -37,7 +38,9 @@ import spock.lang.Unroll
 class Binary2JUnitXmlReportGeneratorSpec extends Specification {
 
     @Rule private TestNameTestDirectoryProvider temp = new TestNameTestDirectoryProvider(getClass())
-    private resultsProvider = Mock(TestResultsProvider)
+    private resultsProvider = Mock(TestResultsProvider) {
+        getOutputHash(_) >> HashCode.fromInt(0)
+    }
     BuildOperationExecutor buildOperationExecutor
     Binary2JUnitXmlReportGenerator generator
     final WorkerLeaseService workerLeaseService = new TestWorkerLeaseService()
@@ -80,6 +83,70 @@ class Binary2JUnitXmlReportGeneratorSpec extends Specification {
         numThreads << [ 1, 4 ]
     }
 
+    def "regenerates only the files of changed results"() {
+        generator = generatorWithMaxThreads(1)
+
+        def fooTest = new TestClassResult(1, 'FooTest', 100)
+            .add(new TestMethodResult(1, "foo"))
+        def barTest = new TestClassResult(2, 'BarTest', 100)
+            .add(new TestMethodResult(2, "bar"))
+        def changedBarTest = new TestClassResult(2, 'BarTest', 200)
+            .add(new TestMethodResult(2, "bar"))
+
+        resultsProvider.visitClasses(_) >> { Action action ->
+            action.execute(fooTest)
+            action.execute(barTest)
+        } >> { Action action ->
+            action.execute(fooTest)
+            action.execute(changedBarTest)
+        } >> { Action action ->
+            action.execute(changedBarTest)
+        }
+
+        when:
+        generator.generate()
+
+        then:
+        1 * generator.xmlWriter.write(fooTest, _)
+        1 * generator.xmlWriter.write(barTest, _)
+
+        when:
+        generator.generate()
+
+        then:
+        1 * generator.xmlWriter.write(changedBarTest, _)
+        0 * generator.xmlWriter._
+
+        when:
+        generator.generate()
+
+        then:
+        0 * generator.xmlWriter._
+        !temp.testDirectory.file("TEST-FooTest.xml").exists()
+        temp.testDirectory.file("TEST-BarTest.xml").exists()
+    }
+
+    def "regenerates all files when the previous report state is missing"() {
+        generator = generatorWithMaxThreads(1)
+
+        def fooTest = new TestClassResult(1, 'FooTest', 100)
+            .add(new TestMethodResult(1, "foo"))
+        def staleFile = temp.testDirectory.createFile("TEST-BarTest.xml")
+
+        resultsProvider.visitClasses(_) >> { Action action ->
+            action.execute(fooTest)
+        }
+
+        when:
+        generator.generate()
+        temp.testDirectory.listFiles().findAll { it.name.startsWith(".") }*.delete()
+        generator.generate()
+
+        then:
+        2 * generator.xmlWriter.write(fooTest, _)
+        !staleFile.exists()
+    }
+
     def "adds context information to the failure if something goes wrong"() {
         generator = generatorWithMaxThreads(1)
 
@@ -55,6 +55,29 @@ class TestOutputStoreSpec extends WorkspaceTest {
         reader.close()
     }
 
+    def "output hash of class changes only when its output changes"() {
+        when:
+        def hashes = [["[out-1]", "[out-2]"], ["[out-1]", "[out-2]"], ["[out-1]", "[changed]"]].collect { messages ->
+            def writer = output.writer()
+            writer.onOutput(1, 1, output(StdOut, messages[0]))
+            writer.onOutput(2, 1, output(StdOut, messages[1]))
+            writer.close()
+            def reader = output.reader()
+            try {
+                [reader.getOutputHash(1), reader.getOutputHash(2), reader.getOutputHash(3)]
+            } finally {
+                reader.close()
+            }
+        }
+
+        then:
+        hashes[0] == hashes[1]
+        hashes[2][0] == hashes[0][0]
+        hashes[2][1] != hashes[0][1]
+        hashes[0][0] != hashes[0][1]
+        hashes[0][2] == hashes[2][2]
+    }
+
     def "output for test includes all events with the given class and method ids"() {
         when:
         def writer = output.writer()
@@ -98,6 +121,49 @@ class TestOutputStoreSpec extends WorkspaceTest {
         reader.close()
     }
 
+    def "truncates output of a test case exceeding the cap"() {
+        given:
+        def cappedOutput = new TestOutputStore(testDirectory, 10)
+
+        when:
+        def writer = cappedOutput.writer()
+        writer.onOutput(1, 1, output(StdOut, "[out-1]"))
+        writer.onOutput(1, 1, output(StdErr, "[err-1]"))
+        writer.onOutput(1, 1, output(StdOut, "[out-2]"))
+        writer.onOutput(1, 2, output(StdOut, "[out-3]"))
+        writer.close()
+        def reader = cappedOutput.reader()
+
+        then:
+        collectOutput(reader, 1, 1, StdOut) == "[out-1]"
+        collectOutput(reader, 1, 1, StdErr) == "[er" + String.format("%n[Output truncated after 10 bytes]%n")
+        collectOutput(reader, 1, 2, StdOut) == "[out-3]"
+
+        cleanup:
+        reader.close()
+    }
+
+    def "reads large interleaved output"() {
+        def chunk = (1..10000).collect { "line $it\n" }.join()
+
+        when:
+        def writer = output.writer()
+        10.times {
+            writer.onOutput(1, 1, output(StdOut, chunk))
+            writer.onOutput(1, 2, output(StdOut, "[out-$it]"))
+        }
+        writer.close()
+        def reader = output.reader()
+
+        then:
+        collectOutput(reader, 1, 1, StdOut) == chunk * 10
+        collectOutput(reader, 1, 2, StdOut) == (0..9).collect { "[out-$it]" }.join()
+        collectAllOutput(reader, 1, StdOut) == (0..9).collect { chunk + "[out-$it]" }.join()
+
+        cleanup:
+        reader.close()
+    }
+
     def DefaultTestOutputEvent output(TestOutputEvent.Destination destination, String msg) {
         new DefaultTestOutputEvent(destination, msg)
     }
@@ -29,9 +29,12 @@ import static org.gradle.api.tasks.testing.TestResult.ResultType.FAILURE
 import static org.gradle.api.tasks.testing.TestResult.ResultType.SUCCESS
 
 class TestReportDataCollectorSpec extends Specification {
-    def Map<String, TestClassResult> results = [:]
+    def List<TestClassResult> writtenResults = []
+    def TestResultSerializer.Writer resultsWriter = Stub() {
+        write(_) >> { TestClassResult result -> writtenResults << result }
+    }
     def TestOutputStore.Writer writer = Mock()
-    def collector = new TestReportDataCollector(results, writer)
+    def collector = new TestReportDataCollector(resultsWriter, writer)
 
     def "keeps track of test results"() {
         def root = new DefaultTestSuiteDescriptor("1", "Suite")
@@ -234,4 +237,51 @@ class TestReportDataCollectorSpec extends Specification {
         then:
         results.get("FooTest").startTime == 100
     }
+
+    def "writes results of a class as soon as the class completes"() {
+        def root = new DefaultTestSuiteDescriptor("1", "Suite")
+        def clazz = new DecoratingTestDescriptor(new DefaultTestClassDescriptor("1.1", "FooTest"), root)
+        def test = new DecoratingTestDescriptor(new DefaultTestDescriptor("1.1.1", "FooTest", "testMethod"), clazz)
+
+        when:
+        collector.beforeSuite(root)
+        collector.beforeSuite(clazz)
+        collector.beforeTest(test)
+        collector.afterTest(test, new DefaultTestResult(SUCCESS, 100, 200, 1, 1, 0, []))
+
+        then:
+        writtenResults.isEmpty()
+
+        when:
+        collector.afterSuite(clazz, new DefaultTestResult(SUCCESS, 100, 200, 1, 1, 0, []))
+
+        then:
+        writtenResults*.className == ["FooTest"]
+        writtenResults[0].results*.name == ["testMethod"]
+    }
+
+    def "writes results received for a completed class with the id of the class"() {
+        def root = new DefaultTestSuiteDescriptor("1", "Suite")
+        def clazz = new DecoratingTestDescriptor(new DefaultTestClassDescriptor("1.1", "FooTest"), root)
+        def test = new DecoratingTestDescriptor(new DefaultTestDescriptor("1.1.1", "FooTest", "testMethod"), clazz)
+        def otherSuite = new DecoratingTestDescriptor(new DefaultTestClassDescriptor("1.2", "AllTests"), root)
+        def repeatedTest = new DecoratingTestDescriptor(new DefaultTestDescriptor("1.2.1", "FooTest", "testMethod"), otherSuite)
+
+        when:
+        collector.beforeTest(test)
+        collector.afterTest(test, new DefaultTestResult(SUCCESS, 100, 200, 1, 1, 0, []))
+        collector.afterSuite(clazz, new DefaultTestResult(SUCCESS, 100, 200, 1, 1, 0, []))
+        collector.beforeTest(repeatedTest)
+        collector.afterTest(repeatedTest, new DefaultTestResult(SUCCESS, 300, 400, 1, 1, 0, []))
+        collector.writeRemainingResults()
+
+        then:
+        writtenResults*.className == ["FooTest", "FooTest"]
+        writtenResults[0].id == writtenResults[1].id
+    }
+
+    private Map<String, TestClassResult> getResults() {
+        collector.writeRemainingResults()
+        writtenResults.collectEntries { [it.className, it] }
+    }
 }
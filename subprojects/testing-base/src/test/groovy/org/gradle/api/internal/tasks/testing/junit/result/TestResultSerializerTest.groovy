@@ -67,6 +67,37 @@ class TestResultSerializerTest extends Specification {
         readClass2.results.empty
     }
 
+    def "merges results written several times for the same class"() {
+        def dir = tmp.createDir("results")
+        def serializer = new TestResultSerializer(dir)
+        def writer = serializer.writer()
+
+        when:
+        writer.write(new TestClassResult(1, 'Class1', 2000).add(new TestMethodResult(1, "method1", TestResult.ResultType.SUCCESS, 100, 2300)))
+        writer.write(new TestClassResult(2, 'Class2', 5678))
+        writer.write(new TestClassResult(1, 'Class1', 1234).add(new TestMethodResult(3, "method2", TestResult.ResultType.FAILURE, 200, 2700)))
+        writer.close()
+        def read = []
+        serializer.read({ read << it } as Action)
+
+        then:
+        read*.className == ['Class2', 'Class1']
+        read[1].id == 1
+        read[1].startTime == 1234
+        read[1].results*.name == ["method1", "method2"]
+        dir.list() as List == ["results.bin"]
+    }
+
+    def "writes no results when nothing has been written"() {
+        def serializer = new TestResultSerializer(tmp.createDir("results"))
+
+        when:
+        serializer.writer().close()
+
+        then:
+        !serializer.isHasResults()
+    }
+
     List<TestClassResult> serialize(Collection<TestClassResult> results) {
         def serializer = new TestResultSerializer(tmp.createDir("results"))
         serializer.write(results)
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.Transformer
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.worker.RemoteTestClassRequester
+import org.gradle.internal.actor.Actor
+import org.gradle.internal.actor.ActorFactory
+import org.gradle.internal.dispatch.StreamCompletion
+import spock.lang.Specification
+
+class PullBasedParallelTestClassProcessorTest extends Specification {
+    private final Transformer<TestClassProcessor, RemoteTestClassRequester> factory = Mock()
+    private final TestResultProcessor resultProcessor = Mock()
+    private final TestResultProcessor asyncResultProcessor = Mock()
+    private final Actor resultProcessorActor = Mock()
+    private final ActorFactory actorFactory = Mock()
+    private final PullBasedParallelTestClassProcessor processor = new PullBasedParallelTestClassProcessor(2, factory, actorFactory)
+    private final List<RemoteTestClassRequester> requesters = []
+
+    def doesNothingWhenNoTestsProcessed() {
+        startProcessor()
+
+        when:
+        processor.stop()
+
+        then:
+        0 * factory.transform(_)
+        1 * resultProcessorActor.stop()
+    }
+
+    def startsProcessorsOnDemandAndStopsAtEnd() {
+        TestClassRunInfo test = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        Actor actor1 = Mock()
+
+        startProcessor()
+
+        when:
+        processor.processTestClass(test)
+
+        then:
+        1 * factory.transform(_) >> { RemoteTestClassRequester requester -> requesters << requester; Mock(TestClassProcessor) }
+        1 * actorFactory.createActor(_) >> actor1
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * asyncProcessor1.startProcessing(asyncResultProcessor)
+        1 * asyncProcessor1.processTestClass(test)
+
+        when:
+        requesters[0].requestTestClass()
+        processor.stop()
+
+        then:
+        1 * asyncProcessor1.stop()
+        1 * actor1.stop()
+        1 * resultProcessorActor.stop()
+    }
+
+    def givesQueuedTestClassesToProcessorsRequestingThem() {
+        TestClassRunInfo test1 = Mock()
+        TestClassRunInfo test2 = Mock()
+        TestClassRunInfo test3 = Mock()
+        TestClassRunInfo test4 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+
+        startProcessor()
+
+        when:
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
+
+        then:
+        2 * factory.transform(_) >> { RemoteTestClassRequester requester -> requesters << requester; Mock(TestClassProcessor) }
+        2 * actorFactory.createActor(_) >>> [actor(asyncProcessor1), actor(asyncProcessor2)]
+        1 * asyncProcessor1.processTestClass(test1)
+        1 * asyncProcessor2.processTestClass(test2)
+
+        when:
+        processor.processTestClass(test3)
+        processor.processTestClass(test4)
+
+        then:
+        0 * asyncProcessor1.processTestClass(_)
+        0 * asyncProcessor2.processTestClass(_)
+
+        when:
+        requesters[1].requestTestClass()
+
+        then:
+        1 * asyncProcessor2.processTestClass(test3)
+        0 * asyncProcessor1.processTestClass(_)
+
+        when:
+        requesters[1].requestTestClass()
+
+        then:
+        1 * asyncProcessor2.processTestClass(test4)
+        0 * asyncProcessor1.processTestClass(_)
+    }
+
+    def stopsWaitingForProcessorsWhichHaveGoneAway() {
+        TestClassRunInfo test1 = Mock()
+        TestClassRunInfo test2 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+
+        startProcessor()
+
+        when:
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
+
+        then:
+        1 * factory.transform(_) >> { RemoteTestClassRequester requester -> requesters << requester; Mock(TestClassProcessor) }
+        1 * factory.transform(_) >> { RemoteTestClassRequester requester -> requesters << requester; Mock(TestClassProcessor) }
+        2 * actorFactory.createActor(_) >>> [actor(asyncProcessor1), actor(Mock(TestClassProcessor))]
+
+        when:
+        processor.processTestClass(Mock(TestClassRunInfo))
+        requesters.each { (it as StreamCompletion).endStream() }
+        processor.stop()
+
+        then:
+        0 * asyncProcessor1.processTestClass(_)
+        1 * asyncProcessor1.stop()
+        1 * resultProcessorActor.stop()
+    }
+
+    def "stopNow propagates to factory created processors"() {
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor processor2 = Mock()
+
+        startProcessor()
+
+        when:
+        processor.processTestClass(Mock(TestClassRunInfo))
+        processor.processTestClass(Mock(TestClassRunInfo))
+
+        then:
+        2 * factory.transform(_) >>> [processor1, processor2]
+        2 * actorFactory.createActor(_) >>> [actor(Mock(TestClassProcessor)), actor(Mock(TestClassProcessor))]
+
+        when:
+        processor.stopNow()
+
+        then:
+        1 * processor1.stopNow()
+        1 * processor2.stopNow()
+    }
+
+    def startProcessor() {
+        1 * actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        1 * resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        processor.startProcessing(resultProcessor)
+    }
+
+    private Actor actor(TestClassProcessor asyncProcessor) {
+        Stub(Actor) {
+            getProxy(TestClassProcessor) >> asyncProcessor
+        }
+    }
+}
@@ -15,11 +15,15 @@
  */
 package org.gradle.api.internal.tasks.testing.report
 
+import org.gradle.api.Action
 import org.gradle.api.internal.tasks.testing.BuildableTestResultsProvider
 import org.gradle.api.internal.tasks.testing.junit.result.AggregateTestResultsProvider
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult
+import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult
 import org.gradle.api.internal.tasks.testing.junit.result.TestResultsProvider
 import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.hash.Hashing
 import org.gradle.internal.operations.BuildOperationExecutor
 import org.gradle.internal.operations.BuildOperationListener
 import org.gradle.internal.operations.DefaultBuildOperationExecutor
@@ -36,6 +40,9 @@ import org.junit.Rule
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import static org.gradle.api.tasks.testing.TestResult.ResultType.FAILURE
+import static org.gradle.api.tasks.testing.TestResult.ResultType.SUCCESS
+
 class DefaultTestReportTest extends Specification {
     @Rule
     public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
@@ -533,6 +540,76 @@ class DefaultTestReportTest extends Specification {
         testClassFile.assertHasStandardError('err:\u0102')
     }
 
+    def "reuses class pages generated from unchanged results"() {
+        given:
+        report = reportWithMaxThreads(1)
+        def passedClassFile = reportDir.file('classes/org.gradle.passing.Passed.html')
+        def alsoPassedClassFile = reportDir.file('classes/org.gradle.passing.subpackage.AlsoPassed.html')
+
+        when:
+        report.generateReport(passingBuildResults(), reportDir)
+        passedClassFile.text = "unchanged"
+        alsoPassedClassFile.text = "unchanged"
+        report.generateReport(buildResults {
+            testClassResult("org.gradle.passing.Passed") {
+                testcase("passed") {
+                    duration = 1000;
+                }
+            }
+            testClassResult("org.gradle.passing.subpackage.AlsoPassed") {
+                testcase("passedToo") {
+                    duration = 1000;
+                    stdout "this is\nchanged standard output"
+                }
+            }
+        }, reportDir)
+
+        then:
+        passedClassFile.text == "unchanged"
+        results(alsoPassedClassFile).assertHasStandardOutput("this is\nchanged standard output")
+        results(indexFile).assertHasTests(2)
+
+        when:
+        report.generateReport(buildResults {
+            testClassResult("org.gradle.passing.subpackage.AlsoPassed") {
+                testcase("passedToo") {
+                    duration = 1000;
+                }
+            }
+        }, reportDir)
+
+        then:
+        !passedClassFile.exists()
+        results(alsoPassedClassFile).assertHasTests(1)
+        results(indexFile).assertHasTests(1)
+    }
+
+    def "renders all results of a class into its page when the class is visited several times"() {
+        given:
+        report = reportWithMaxThreads(4)
+        def first = new TestClassResult(1, "org.gradle.Repeated", 0).add(new TestMethodResult(1, "first", SUCCESS, 1000, 1000))
+        def other = new TestClassResult(2, "org.gradle.Other", 0).add(new TestMethodResult(2, "other", SUCCESS, 1000, 1000))
+        def second = new TestClassResult(1, "org.gradle.Repeated", 0).add(new TestMethodResult(3, "second", FAILURE, 1000, 2000).addFailure("failed", "stack trace", "Exception"))
+        def provider = Stub(TestResultsProvider) {
+            visitClasses(_) >> { Action action -> [first, other, second].each { action.execute(it) } }
+            getOutputHash(_) >> Hashing.signature("output")
+        }
+
+        when:
+        report.generateReport(provider, reportDir)
+
+        then:
+        def repeatedClassFile = results(reportDir.file('classes/org.gradle.Repeated.html'))
+        repeatedClassFile.assertHasTests(2)
+        repeatedClassFile.assertHasFailures(1)
+        repeatedClassFile.assertHasFailure('second', 'stack trace')
+        results(reportDir.file('classes/org.gradle.Other.html')).assertHasTests(1)
+        def index = results(indexFile)
+        index.assertHasTests(3)
+        index.assertHasFailures(1)
+        index.assertHasFailedTest('classes/org.gradle.Repeated', 'second')
+    }
+
     TestResultsProvider buildResults(Closure closure) {
         ConfigureUtil.configure(closure, new BuildableTestResultsProvider())
     }
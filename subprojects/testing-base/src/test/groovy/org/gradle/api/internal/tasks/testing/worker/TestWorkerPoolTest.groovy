@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.initialization.SessionLifecycleListener
+import org.gradle.internal.event.ListenerManager
+import org.gradle.internal.hash.HashCode
+import org.gradle.process.internal.health.memory.MemoryHolder
+import org.gradle.process.internal.health.memory.MemoryManager
+import spock.lang.Specification
+
+class TestWorkerPoolTest extends Specification {
+    def key = HashCode.fromInt(1)
+    def otherKey = HashCode.fromInt(2)
+    SessionLifecycleListener buildSessionListener
+    MemoryHolder memoryHolder
+    def listenerManager = Mock(ListenerManager) {
+        addListener(_ as SessionLifecycleListener) >> { SessionLifecycleListener listener -> buildSessionListener = listener }
+    }
+    def memoryManager = Mock(MemoryManager) {
+        addMemoryHolder(_) >> { MemoryHolder holder -> memoryHolder = holder }
+    }
+    def pool = new TestWorkerPool(listenerManager, memoryManager)
+
+    def "reserves released worker with the same key only once"() {
+        def worker = worker(key)
+
+        when:
+        pool.release(worker)
+
+        then:
+        0 * worker.stop()
+        pool.reserveIdleWorker(otherKey) == null
+        pool.reserveIdleWorker(key) == worker
+        pool.reserveIdleWorker(key) == null
+    }
+
+    def "stops worker which has reached the maximum number of uses"() {
+        def worker = worker(key, TestWorkerPool.DEFAULT_MAX_USES - 1)
+
+        when:
+        pool.release(worker)
+
+        then:
+        1 * worker.stop()
+        pool.reserveIdleWorker(key) == null
+    }
+
+    def "does not reuse failed worker"() {
+        def worker = worker(key)
+        worker.isFailed() >> true
+
+        when:
+        pool.release(worker)
+
+        then:
+        1 * worker.stop()
+        pool.reserveIdleWorker(key) == null
+    }
+
+    def "stops discarded worker"() {
+        def worker = worker(key)
+
+        when:
+        pool.discard(worker)
+
+        then:
+        1 * worker.stop()
+        pool.reserveIdleWorker(key) == null
+    }
+
+    def "stops worker which has been idle for several build sessions"() {
+        def worker = worker(key)
+        pool.release(worker)
+
+        when:
+        3.times { buildSessionListener.beforeComplete() }
+
+        then:
+        0 * worker.stop()
+
+        when:
+        buildSessionListener.beforeComplete()
+
+        then:
+        1 * worker.stop()
+        pool.reserveIdleWorker(key) == null
+    }
+
+    def "stops least recently used idle workers to release memory"() {
+        def worker1 = worker(key)
+        def worker2 = worker(otherKey)
+        pool.release(worker1)
+        pool.release(worker2)
+
+        when:
+        def released = memoryHolder.attemptToRelease(10)
+
+        then:
+        released == 100
+        1 * worker1.stop()
+        0 * worker2.stop()
+        pool.reserveIdleWorker(otherKey) == worker2
+    }
+
+    def "stops idle workers when stopped"() {
+        def worker = worker(key)
+        pool.release(worker)
+
+        when:
+        pool.stop()
+
+        then:
+        1 * worker.stop()
+        1 * listenerManager.removeListener(buildSessionListener)
+        1 * memoryManager.removeMemoryHolder(memoryHolder)
+    }
+
+    private ReusableTestWorker worker(HashCode key, int uses = 0) {
+        int currentUses = uses
+        int idleBuildSessions = 0
+        Mock(ReusableTestWorker) {
+            getKey() >> key
+            getUses() >> { currentUses }
+            incrementUses() >> { idleBuildSessions = 0; ++currentUses }
+            incrementIdleBuildSessions() >> { ++idleBuildSessions }
+            getMemoryUsage() >> 100
+        }
+    }
+}
@@ -23,6 +23,8 @@ import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult
 import org.gradle.api.internal.tasks.testing.junit.result.TestResultsProvider
 import org.gradle.api.tasks.testing.TestOutputEvent
 import org.gradle.api.tasks.testing.TestResult
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.Hashing
 import org.gradle.util.ConfigureUtil
 
 import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdErr
@@ -75,6 +77,16 @@ class BuildableTestResultsProvider implements TestResultsProvider {
         testClasses[classId]?.outputEvents?.find { it.testOutputEvent.destination == destination }
     }
 
+    HashCode getOutputHash(long classId) {
+        def hasher = Hashing.newHasher()
+        testClasses[classId]?.outputEvents?.each { BuildableOutputEvent event ->
+            hasher.putLong(event.testId)
+            hasher.putString(event.testOutputEvent.destination.name())
+            hasher.putString(event.testOutputEvent.message)
+        }
+        hasher.hash()
+    }
+
     static class BuildableOutputEvent {
         long testId
         TestOutputEvent testOutputEvent
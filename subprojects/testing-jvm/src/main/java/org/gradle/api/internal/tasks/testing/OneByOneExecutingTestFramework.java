@@ -0,0 +1,29 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing;
+
+/**
+ * A {@link TestFramework} which may execute each test class as it receives it.
+ */
+public interface OneByOneExecutingTestFramework {
+    /**
+     * Returns whether the test class processor created by {@link TestFramework#getProcessorFactory()} executes each test class
+     * as it receives it, as opposed to collecting the test classes and executing them when it is stopped.
+     * When this is the case, test classes can be handed out to the test workers as they become idle.
+     */
+    boolean isExecutingTestClassesOneByOne();
+}
@@ -21,74 +21,74 @@
 import org.gradle.api.internal.file.RelativeFile;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
 import org.gradle.internal.IoActions;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.gradle.internal.FileUtils.hasExtension;
 
+/**
+ * Base class for the test framework detectors. Detection can run concurrently for different class files.
+ */
 public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor> implements TestFrameworkDetector {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractTestFrameworkDetector.class);
     private static final String JAVA_LANG_OBJECT = "java/lang/Object";
 
     private List<File> testClassDirectories;
     private final ClassFileExtractionManager classFileExtractionManager;
-    private final Map<File, Boolean> superClasses;
+    private final ConcurrentMap<File, Boolean> superClasses;
     private TestClassProcessor testClassProcessor;
 
     private Set<File> testClassesDirectories;
     private Set<File> testClasspath;
+    private FileHasher fileHasher;
+    private TestClassDetectionCache detectionCache;
 
     protected AbstractTestFrameworkDetector(ClassFileExtractionManager classFileExtractionManager) {
         assert classFileExtractionManager != null;
         this.classFileExtractionManager = classFileExtractionManager;
-        this.superClasses = new HashMap<File, Boolean>();
+        this.superClasses = new ConcurrentHashMap<File, Boolean>();
     }
 
     protected abstract T createClassVisitor();
 
-    private File getSuperTestClassFile(String superClassName) {
-        prepareClasspath();
+    @Nullable
+    private File getSuperTestClassFileInTestClassDirectories(String superClassName) {
         if (StringUtils.isEmpty(superClassName)) {
             throw new IllegalArgumentException("superClassName is empty!");
         }
 
         File superTestClassFile = null;
-        for (File testClassDirectory : testClassDirectories) {
+        for (File testClassDirectory : prepareClasspath()) {
             File candidate = new File(testClassDirectory, superClassName + ".class");
             if (candidate.exists()) {
                 superTestClassFile = candidate;
             }
         }
-
-        if (superTestClassFile != null) {
-            return superTestClassFile;
-        } else if (JAVA_LANG_OBJECT.equals(superClassName)) {
-            // java.lang.Object found, which is not a test class
-            return null;
-        } else {
-            // super test class file not in test class directories
-            return classFileExtractionManager.getLibraryClassFile(superClassName);
-        }
+        return superTestClassFile;
     }
 
-    private void prepareClasspath() {
+    private synchronized List<File> prepareClasspath() {
         if (testClassDirectories != null) {
-            return;
+            return testClassDirectories;
         }
 
         testClassDirectories = new ArrayList<File>();
@@ -105,6 +105,7 @@ private void prepareClasspath() {
                 }
             }
         }
+        return testClassDirectories;
     }
 
     @Override
@@ -117,7 +118,47 @@ public void setTestClasspath(Set<File> testClasspath) {
         this.testClasspath = testClasspath;
     }
 
-    private TestClass readClassFile(File testClassFile, Factory<String> fallbackClassNameProvider) {
+    @Override
+    public void setDetectionCache(FileHasher fileHasher, TestClassDetectionCache detectionCache) {
+        this.fileHasher = fileHasher;
+        this.detectionCache = detectionCache;
+    }
+
+    /**
+     * Reads the class file, reusing the result of a previous read of the same content when possible.
+     * Class files extracted from library jars are not looked up in the cache, since they are temporary files.
+     */
+    private TestClass readClassFile(File testClassFile, boolean cacheable, Factory<String> fallbackClassNameProvider) {
+        TestClass testClass;
+        if (cacheable && detectionCache != null) {
+            testClass = readCachedClassFile(testClassFile);
+        } else {
+            testClass = parseClassFile(testClassFile);
+        }
+        return testClass != null ? testClass : TestClass.forUnparseableFile(fallbackClassNameProvider.create());
+    }
+
+    @Nullable
+    private TestClass readCachedClassFile(File testClassFile) {
+        HashCode classFileHash;
+        try {
+            classFileHash = fileHasher.hash(testClassFile);
+        } catch (Exception e) {
+            LOGGER.debug("Failed to hash class file " + testClassFile.getAbsolutePath(), e);
+            return parseClassFile(testClassFile);
+        }
+        TestClass testClass = detectionCache.get(getClass(), classFileHash);
+        if (testClass == null) {
+            testClass = parseClassFile(testClassFile);
+            if (testClass != null) {
+                detectionCache.put(getClass(), classFileHash, testClass);
+            }
+        }
+        return testClass;
+    }
+
+    @Nullable
+    private TestClass parseClassFile(File testClassFile) {
         final TestClassVisitor classVisitor = createClassVisitor();
 
         InputStream classStream = null;
@@ -128,7 +169,7 @@ private TestClass readClassFile(File testClassFile, Factory<String> fallbackClas
             return TestClass.forParseableFile(classVisitor);
         } catch (Throwable e) {
             LOGGER.debug("Failed to read class file " + testClassFile.getAbsolutePath() + "; assuming it's a test class and continuing", e);
-            return TestClass.forUnparseableFile(fallbackClassNameProvider.create());
+            return null;
         } finally {
             IoActions.closeQuietly(classStream);
         }
@@ -136,12 +177,39 @@ private TestClass readClassFile(File testClassFile, Factory<String> fallbackClas
 
     @Override
     public boolean processTestClass(final RelativeFile testClassFile) {
-        return processTestClass(testClassFile.getFile(), false, new Factory<String>() {
+        TestClass testClass = readClassFile(testClassFile.getFile(), true, fallbackClassNameProvider(testClassFile));
+        boolean isTest = isTest(testClass);
+        if (isTest && !testClass.isAbstract()) {
+            testClassProcessor.processTestClass(toRunInfo(testClass));
+        }
+        return isTest;
+    }
+
+    /**
+     * In contrast to {@link #processTestClass(RelativeFile)}, a detected test class is returned instead of being published,
+     * so the caller can decide in which order the test classes detected concurrently are passed on.
+     */
+    @Nullable
+    @Override
+    public TestClassRunInfo detectTestClass(RelativeFile testClassFile) {
+        TestClass testClass = readClassFile(testClassFile.getFile(), true, fallbackClassNameProvider(testClassFile));
+        if (isTest(testClass) && !testClass.isAbstract()) {
+            return toRunInfo(testClass);
+        }
+        return null;
+    }
+
+    private static Factory<String> fallbackClassNameProvider(final RelativeFile testClassFile) {
+        return new Factory<String>() {
             @Override
             public String create() {
                 return testClassFile.getRelativePath().getPathString().replace(".class", "");
             }
-        });
+        };
+    }
+
+    private static TestClassRunInfo toRunInfo(TestClass testClass) {
+        return new DefaultTestClassRunInfo(Type.getObjectType(testClass.getClassName()).getClassName());
     }
 
     /**
@@ -149,60 +217,49 @@ public String create() {
      * class is a test class. First the package of the parent class is checked, if it is a java.lang or groovy.lang the class can't be a test class, otherwise the parent class is scanned. <p/> When a
      * parent class is a test class all the extending classes are marked as test classes.
      */
-    private boolean processTestClass(File testClassFile, boolean superClass, Factory<String> fallbackClassNameProvider) {
-        TestClass testClass = readClassFile(testClassFile, fallbackClassNameProvider);
-
-        boolean isTest = testClass.isTest();
-
-        if (!isTest) { // scan parent class
-            String superClassName = testClass.getSuperClassName();
-
-            if (isKnownTestCaseClassName(superClassName)) {
-                isTest = true;
-            } else {
-                File superClassFile = getSuperTestClassFile(superClassName);
-
-                if (superClassFile != null) {
-                    isTest = processSuperClass(superClassFile, superClassName);
-                } else {
-                    LOGGER.debug("test-class-scan : failed to scan parent class {}, could not find the class file",
-                        superClassName);
-                }
-            }
+    private boolean isTest(TestClass testClass) {
+        if (testClass.isTest()) {
+            return true;
         }
 
-        publishTestClass(isTest, testClass, superClass);
+        // scan parent class
+        String superClassName = testClass.getSuperClassName();
+        if (isKnownTestCaseClassName(superClassName)) {
+            return true;
+        }
 
-        return isTest;
+        File superClassFile = getSuperTestClassFileInTestClassDirectories(superClassName);
+        if (superClassFile != null) {
+            return processSuperClass(superClassFile, true, superClassName);
+        }
+        if (JAVA_LANG_OBJECT.equals(superClassName)) {
+            // java.lang.Object found, which is not a test class
+            return false;
+        }
+        // super test class file not in test class directories
+        superClassFile = classFileExtractionManager.getLibraryClassFile(superClassName);
+        if (superClassFile != null) {
+            return processSuperClass(superClassFile, false, superClassName);
+        }
+        LOGGER.debug("test-class-scan : failed to scan parent class {}, could not find the class file",
+            superClassName);
+        return false;
     }
 
     protected abstract boolean isKnownTestCaseClassName(String testCaseClassName);
 
-    private boolean processSuperClass(File testClassFile, String superClassName) {
-        boolean isTest;
-
+    /**
+     * Super classes are never published, otherwise they would get published multiple times (for each extending class).
+     */
+    private boolean processSuperClass(File testClassFile, boolean cacheable, String superClassName) {
         Boolean isSuperTest = superClasses.get(testClassFile);
 
         if (isSuperTest == null) {
-            isTest = processTestClass(testClassFile, true, Factories.constant(superClassName));
-
-            superClasses.put(testClassFile, isTest);
-        } else {
-            isTest = isSuperTest;
+            isSuperTest = isTest(readClassFile(testClassFile, cacheable, Factories.constant(superClassName)));
+            superClasses.put(testClassFile, isSuperTest);
         }
 
-        return isTest;
-    }
-
-    /**
-     * In none super class mode a test class is published when the class is a test and it is not abstract. In super class mode it must not publish the class otherwise it will get published multiple
-     * times (for each extending class).
-     */
-    private void publishTestClass(boolean isTest, TestClass testClass, boolean superClass) {
-        if (isTest && !testClass.isAbstract() && !superClass) {
-            String className = Type.getObjectType(testClass.getClassName()).getClassName();
-            testClassProcessor.processTestClass(new DefaultTestClassRunInfo(className));
-        }
+        return isSuperTest;
     }
 
     @Override
@@ -210,7 +267,7 @@ public void startDetection(TestClassProcessor testClassProcessor) {
         this.testClassProcessor = testClassProcessor;
     }
 
-    private static class TestClass {
+    static class TestClass {
         private final boolean test;
         private final boolean isAbstract;
         private final String className;
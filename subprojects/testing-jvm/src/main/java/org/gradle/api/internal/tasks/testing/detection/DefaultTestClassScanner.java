@@ -23,32 +23,52 @@
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.internal.UncheckedException;
 
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 /**
  * The default test class scanner. Depending on the availability of a test framework detector,
  * a detection or filename scan is performed to find test classes.
+ *
+ * When an executor is given, the detection runs concurrently. The detected test classes are still passed on
+ * as soon as possible and in the order the class files are visited.
  */
 public class DefaultTestClassScanner implements Runnable {
     private static final Pattern ANONYMOUS_CLASS_NAME = Pattern.compile(".*\\$\\d+");
     private final FileTree candidateClassFiles;
     private final TestFrameworkDetector testFrameworkDetector;
     private final TestClassProcessor testClassProcessor;
+    private final ExecutorService detectionExecutor;
 
     public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
                                    TestClassProcessor testClassProcessor) {
+        this(candidateClassFiles, testFrameworkDetector, testClassProcessor, null);
+    }
+
+    public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
+                                   TestClassProcessor testClassProcessor, @Nullable ExecutorService detectionExecutor) {
         this.candidateClassFiles = candidateClassFiles;
         this.testFrameworkDetector = testFrameworkDetector;
         this.testClassProcessor = testClassProcessor;
+        this.detectionExecutor = detectionExecutor;
     }
 
     @Override
     public void run() {
         if (testFrameworkDetector == null) {
             filenameScan();
-        } else {
+        } else if (detectionExecutor == null) {
             detectionScan();
+        } else {
+            concurrentDetectionScan();
         }
     }
 
@@ -62,6 +82,50 @@ public void visitClassFile(FileVisitDetails fileDetails) {
         });
     }
 
+    private void concurrentDetectionScan() {
+        testFrameworkDetector.startDetection(testClassProcessor);
+        final Deque<Future<TestClassRunInfo>> detections = new ArrayDeque<Future<TestClassRunInfo>>();
+        candidateClassFiles.visit(new ClassFileVisitor() {
+            @Override
+            public void visitClassFile(FileVisitDetails fileDetails) {
+                final RelativeFile testClassFile = new RelativeFile(fileDetails.getFile(), fileDetails.getRelativePath());
+                detections.add(detectionExecutor.submit(new Callable<TestClassRunInfo>() {
+                    @Override
+                    public TestClassRunInfo call() {
+                        return testFrameworkDetector.detectTestClass(testClassFile);
+                    }
+                }));
+                publishDetectedTestClasses(detections, false);
+            }
+        });
+        publishDetectedTestClasses(detections, true);
+    }
+
+    private void publishDetectedTestClasses(Deque<Future<TestClassRunInfo>> detections, boolean waitForAll) {
+        while (!detections.isEmpty() && (waitForAll || detections.peek().isDone())) {
+            TestClassRunInfo testClass;
+            try {
+                testClass = detections.poll().get();
+            } catch (InterruptedException e) {
+                cancel(detections);
+                throw UncheckedException.throwAsUncheckedException(e);
+            } catch (ExecutionException e) {
+                cancel(detections);
+                throw UncheckedException.throwAsUncheckedException(e.getCause());
+            }
+            if (testClass != null) {
+                testClassProcessor.processTestClass(testClass);
+            }
+        }
+    }
+
+    private static void cancel(Deque<Future<TestClassRunInfo>> detections) {
+        for (Future<TestClassRunInfo> detection : detections) {
+            detection.cancel(false);
+        }
+        detections.clear();
+    }
+
     private void filenameScan() {
         candidateClassFiles.visit(new ClassFileVisitor() {
             @Override
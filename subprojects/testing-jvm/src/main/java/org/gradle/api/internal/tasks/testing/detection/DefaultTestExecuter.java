@@ -17,39 +17,59 @@
 package org.gradle.api.internal.tasks.testing.detection;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import org.gradle.api.Transformer;
 import org.gradle.api.file.FileTree;
 import org.gradle.api.internal.DocumentationRegistry;
 import org.gradle.api.internal.classpath.ModuleRegistry;
 import org.gradle.api.internal.tasks.testing.JvmTestExecutionSpec;
+import org.gradle.api.internal.tasks.testing.OneByOneExecutingTestFramework;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassSkippingExecuter;
 import org.gradle.api.internal.tasks.testing.TestExecuter;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.api.internal.tasks.testing.filter.DefaultTestFilter;
+import org.gradle.api.internal.tasks.testing.impact.AffectedTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.impact.TestImpactAnalyzer;
 import org.gradle.api.internal.tasks.testing.processors.MaxNParallelTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.PatternMatchTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.processors.PullBasedParallelTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.RestartEveryNTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.RunPreviousFailedFirstTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.TestMainAction;
 import org.gradle.api.internal.tasks.testing.worker.ForkingTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.worker.RemoteTestClassRequester;
+import org.gradle.api.internal.tasks.testing.worker.TestWorkerPool;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.Factory;
 import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.time.Clock;
 import org.gradle.internal.work.WorkerLeaseRegistry;
+import org.gradle.process.JavaForkOptions;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
+import org.gradle.util.GUtil;
+import org.gradle.util.GradleVersion;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * The default test class scanner factory.
  */
-public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
+public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec>, TestClassSkippingExecuter {
 
     private static final Logger LOGGER = Logging.getLogger(DefaultTestExecuter.class);
 
@@ -62,11 +82,23 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
     private final Clock clock;
     private final DocumentationRegistry documentationRegistry;
     private final DefaultTestFilter testFilter;
+    private final TestClassDetectionExecutor detectionExecutor;
+    private final FileHasher fileHasher;
+    private final TestClassDetectionCache detectionCache;
+    private final TestWorkerPool workerPool;
+    private final HashCode classpathFingerprint;
+    private final TestImpactAnalyzer testImpactAnalyzer;
+    private final File testImpactStateFile;
+    private final HashCode taskInputsHash;
     private TestClassProcessor processor;
+    private AffectedTestClassProcessor affectedTestClassProcessor;
 
     public DefaultTestExecuter(WorkerProcessFactory workerFactory, ActorFactory actorFactory, ModuleRegistry moduleRegistry,
                                WorkerLeaseRegistry workerLeaseRegistry, BuildOperationExecutor buildOperationExecutor, int maxWorkerCount,
-                               Clock clock, DocumentationRegistry documentationRegistry, DefaultTestFilter testFilter) {
+                               Clock clock, DocumentationRegistry documentationRegistry, DefaultTestFilter testFilter,
+                               TestClassDetectionExecutor detectionExecutor, FileHasher fileHasher, TestClassDetectionCache detectionCache,
+                               @Nullable TestWorkerPool workerPool, @Nullable HashCode classpathFingerprint, @Nullable TestImpactAnalyzer testImpactAnalyzer, @Nullable File testImpactStateFile,
+                               @Nullable HashCode taskInputsHash) {
         this.workerFactory = workerFactory;
         this.actorFactory = actorFactory;
         this.moduleRegistry = moduleRegistry;
@@ -76,6 +108,14 @@ public DefaultTestExecuter(WorkerProcessFactory workerFactory, ActorFactory acto
         this.clock = clock;
         this.documentationRegistry = documentationRegistry;
         this.testFilter = testFilter;
+        this.detectionExecutor = detectionExecutor;
+        this.fileHasher = fileHasher;
+        this.detectionCache = detectionCache;
+        this.workerPool = workerPool;
+        this.classpathFingerprint = classpathFingerprint;
+        this.testImpactAnalyzer = testImpactAnalyzer;
+        this.testImpactStateFile = testImpactStateFile;
+        this.taskInputsHash = taskInputsHash;
     }
 
     @Override
@@ -86,23 +126,46 @@ public void execute(final JvmTestExecutionSpec testExecutionSpec, TestResultProc
         final Set<File> classpath = ImmutableSet.copyOf(testExecutionSpec.getClasspath());
         final Set<File> modulePath = ImmutableSet.copyOf(testExecutionSpec.getModulePath());
         final List<String> testWorkerImplementationModules = testFramework.getTestWorkerImplementationModules();
-        final Factory<TestClassProcessor> forkingProcessorFactory = new Factory<TestClassProcessor>() {
+        // A worker may have loaded any class of the classpath, so workers are only reused for the same classpath content
+        final TestWorkerPool workerPool = testExecutionSpec.getForkEvery() == 0 && classpathFingerprint != null ? this.workerPool : null;
+        final Transformer<TestClassProcessor, RemoteTestClassRequester> forkingProcessorFactory = new Transformer<TestClassProcessor, RemoteTestClassRequester>() {
             @Override
-            public TestClassProcessor create() {
+            public TestClassProcessor transform(RemoteTestClassRequester testClassRequester) {
                 return new ForkingTestClassProcessor(currentWorkerLease, workerFactory, testInstanceFactory, testExecutionSpec.getJavaForkOptions(),
-                    classpath, modulePath, testWorkerImplementationModules, testFramework.getWorkerConfigurationAction(), moduleRegistry, documentationRegistry);
+                    classpath, modulePath, testWorkerImplementationModules, testFramework.getWorkerConfigurationAction(), moduleRegistry, documentationRegistry,
+                    testClassRequester, workerPool, classpathFingerprint);
             }
         };
         final Factory<TestClassProcessor> reforkingProcessorFactory = new Factory<TestClassProcessor>() {
             @Override
             public TestClassProcessor create() {
-                return new RestartEveryNTestClassProcessor(forkingProcessorFactory, testExecutionSpec.getForkEvery());
+                return new RestartEveryNTestClassProcessor(new Factory<TestClassProcessor>() {
+                    @Override
+                    public TestClassProcessor create() {
+                        return forkingProcessorFactory.transform(RemoteTestClassRequester.NONE);
+                    }
+                }, testExecutionSpec.getForkEvery());
             }
         };
-        processor =
-            new PatternMatchTestClassProcessor(testFilter,
+        int maxParallelForks = getMaxParallelForks(testExecutionSpec);
+        TestClassProcessor selectedTestClassProcessor;
+        if (isPullBasedDistribution(testFramework, testExecutionSpec, maxParallelForks)) {
+            selectedTestClassProcessor =
+                new RunPreviousFailedFirstTestClassProcessor(testExecutionSpec.getPreviousFailedTestClasses(), testExecutionSpec.getPreviousTestClassDurations(),
+                    new PullBasedParallelTestClassProcessor(maxParallelForks, forkingProcessorFactory, actorFactory));
+        } else {
+            selectedTestClassProcessor =
                 new RunPreviousFailedFirstTestClassProcessor(testExecutionSpec.getPreviousFailedTestClasses(),
-                    new MaxNParallelTestClassProcessor(getMaxParallelForks(testExecutionSpec), reforkingProcessorFactory, actorFactory)));
+                    new MaxNParallelTestClassProcessor(maxParallelForks, reforkingProcessorFactory, actorFactory));
+        }
+        if (testImpactAnalyzer != null) {
+            affectedTestClassProcessor = new AffectedTestClassProcessor(
+                testImpactAnalyzer.analyze(testImpactStateFile, hashConfiguration(testExecutionSpec), Iterables.concat(classpath, modulePath)),
+                testExecutionSpec.getPreviousFailedTestClasses(),
+                selectedTestClassProcessor);
+            selectedTestClassProcessor = affectedTestClassProcessor;
+        }
+        processor = new PatternMatchTestClassProcessor(testFilter, selectedTestClassProcessor);
 
         final FileTree testClassFiles = testExecutionSpec.getCandidateClassFiles();
 
@@ -111,7 +174,8 @@ public TestClassProcessor create() {
             TestFrameworkDetector testFrameworkDetector = testFramework.getDetector();
             testFrameworkDetector.setTestClasses(testExecutionSpec.getTestClassesDirs().getFiles());
             testFrameworkDetector.setTestClasspath(classpath);
-            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor);
+            testFrameworkDetector.setDetectionCache(fileHasher, detectionCache);
+            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor, detectionExecutor.getExecutor());
         } else {
             detector = new DefaultTestClassScanner(testClassFiles, null, processor);
         }
@@ -121,6 +185,14 @@ public TestClassProcessor create() {
         new TestMainAction(detector, processor, testResultProcessor, clock, testTaskOperationId, testExecutionSpec.getPath(), "Gradle Test Run " + testExecutionSpec.getIdentityPath()).run();
     }
 
+    /**
+     * Test classes skipped by the test impact analysis did match the test filter, so the test filter must not be reported as matching no tests.
+     */
+    @Override
+    public boolean hasSkippedTestClasses() {
+        return affectedTestClassProcessor != null && affectedTestClassProcessor.hasSkippedTestClasses();
+    }
+
     @Override
     public void stopNow() {
         if (processor != null) {
@@ -128,6 +200,55 @@ public void stopNow() {
         }
     }
 
+    /**
+     * Hashes the configuration of the test run other than the classpath, which may affect any test class.
+     * The test filter is part of it, as a test class may have only been partially executed by the previous test run.
+     * So are the other inputs of the task, like resources or system properties, which the test classes may read.
+     */
+    private HashCode hashConfiguration(JvmTestExecutionSpec testExecutionSpec) {
+        JavaForkOptions javaForkOptions = testExecutionSpec.getJavaForkOptions();
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(GradleVersion.current().getVersion());
+        if (taskInputsHash != null) {
+            hasher.putHash(taskInputsHash);
+        } else {
+            hasher.putNull();
+        }
+        hasher.putString(javaForkOptions.getExecutable());
+        hasher.putString(javaForkOptions.getWorkingDir().getAbsolutePath());
+        for (String jvmArg : javaForkOptions.getAllJvmArgs()) {
+            hasher.putString(jvmArg);
+        }
+        for (Map.Entry<String, Object> entry : new TreeMap<String, Object>(javaForkOptions.getEnvironment()).entrySet()) {
+            hasher.putString(entry.getKey());
+            hasher.putString(String.valueOf(entry.getValue()));
+        }
+        putStrings(hasher, testFilter.getIncludePatterns());
+        putStrings(hasher, testFilter.getExcludePatterns());
+        putStrings(hasher, testFilter.getCommandLineIncludePatterns());
+        hasher.putBytes(GUtil.serialize(testExecutionSpec.getTestFramework().getProcessorFactory()));
+        return hasher.hash();
+    }
+
+    private static void putStrings(Hasher hasher, Set<String> values) {
+        hasher.putInt(values.size());
+        for (String value : new TreeSet<String>(values)) {
+            hasher.putString(value);
+        }
+    }
+
+    /**
+     * Test classes are handed out to the test workers as they become idle when the test framework executes
+     * the test classes one by one. Restarting the workers every N test classes relies on the test classes
+     * being assigned up front.
+     */
+    private static boolean isPullBasedDistribution(TestFramework testFramework, JvmTestExecutionSpec testExecutionSpec, int maxParallelForks) {
+        return maxParallelForks > 1
+            && testExecutionSpec.getForkEvery() == 0
+            && testFramework instanceof OneByOneExecutingTestFramework
+            && ((OneByOneExecutingTestFramework) testFramework).isExecutingTestClassesOneByOne();
+    }
+
     private int getMaxParallelForks(JvmTestExecutionSpec testExecutionSpec) {
         int maxParallelForks = testExecutionSpec.getMaxParallelForks();
         if (maxParallelForks > maxWorkerCount) {
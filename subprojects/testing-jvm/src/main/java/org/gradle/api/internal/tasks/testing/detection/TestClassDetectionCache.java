@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection;
+
+import org.gradle.cache.internal.CrossBuildInMemoryCache;
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+
+import javax.annotation.Nullable;
+
+/**
+ * Caches the information the test framework detectors read from class files across builds,
+ * keyed by the type of the detector and the hash of the class file content.
+ */
+public class TestClassDetectionCache {
+    private final CrossBuildInMemoryCache<HashCode, AbstractTestFrameworkDetector.TestClass> cache;
+
+    public TestClassDetectionCache(CrossBuildInMemoryCacheFactory cacheFactory) {
+        this.cache = cacheFactory.newCache();
+    }
+
+    @Nullable
+    AbstractTestFrameworkDetector.TestClass get(Class<?> detectorType, HashCode classFileHash) {
+        return cache.get(key(detectorType, classFileHash));
+    }
+
+    void put(Class<?> detectorType, HashCode classFileHash, AbstractTestFrameworkDetector.TestClass testClass) {
+        cache.put(key(detectorType, classFileHash), testClass);
+    }
+
+    private static HashCode key(Class<?> detectorType, HashCode classFileHash) {
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(detectorType.getName());
+        hasher.putHash(classFileHash);
+        return hasher.hash();
+    }
+}
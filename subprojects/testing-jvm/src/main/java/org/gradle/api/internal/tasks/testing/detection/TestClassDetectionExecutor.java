@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection;
+
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The threads detecting test classes, shared by all test tasks of a build session.
+ * No more than the max worker count of class files are parsed at the same time, however many test tasks run in parallel.
+ */
+public class TestClassDetectionExecutor implements Stoppable {
+    private final ManagedExecutor executor;
+
+    public TestClassDetectionExecutor(ExecutorFactory executorFactory, int maxWorkerCount) {
+        this.executor = executorFactory.create("Test class detection", maxWorkerCount);
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public void stop() {
+        executor.stop();
+    }
+}
@@ -17,7 +17,10 @@
 
 import org.gradle.api.internal.file.RelativeFile;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.internal.hash.FileHasher;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Set;
 
@@ -26,7 +29,18 @@ public interface TestFrameworkDetector {
 
     boolean processTestClass(RelativeFile testClassFile);
 
+    /**
+     * Detects whether the given class file contains a test class to execute, without passing it on to the test class processor.
+     * Can be called concurrently.
+     *
+     * @return the test class to execute, or {@code null} when the class file does not contain one.
+     */
+    @Nullable
+    TestClassRunInfo detectTestClass(RelativeFile testClassFile);
+
     void setTestClasses(Set<File> testClasses);
 
     void setTestClasspath(Set<File> classpath);
+
+    void setDetectionCache(FileHasher fileHasher, TestClassDetectionCache detectionCache);
 }
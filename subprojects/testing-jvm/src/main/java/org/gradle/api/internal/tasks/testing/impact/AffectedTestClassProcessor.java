@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.impact;
+
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Only passes on the test classes which are affected by the changes made since the previous test run,
+ * and the test classes which failed in the previous test run.
+ */
+public class AffectedTestClassProcessor implements TestClassProcessor {
+    private static final Logger LOGGER = Logging.getLogger(AffectedTestClassProcessor.class);
+
+    private final TestImpact testImpact;
+    private final Set<String> previousFailedTestClasses;
+    private final TestClassProcessor delegate;
+    private final Set<String> testClasses = new HashSet<String>();
+    private volatile int skippedCount;
+    private volatile boolean stoppedNow;
+
+    public AffectedTestClassProcessor(TestImpact testImpact, Set<String> previousFailedTestClasses, TestClassProcessor delegate) {
+        this.testImpact = testImpact;
+        this.previousFailedTestClasses = previousFailedTestClasses;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        String fullRunReason = testImpact.getFullRunReason();
+        if (fullRunReason != null) {
+            LOGGER.info("Executing all test classes: {}.", fullRunReason);
+        }
+        delegate.startProcessing(resultProcessor);
+    }
+
+    @Override
+    public void processTestClass(TestClassRunInfo testClass) {
+        String testClassName = testClass.getTestClassName();
+        testClasses.add(testClassName);
+        if (testImpact.getFullRunReason() != null || testImpact.isAffected(testClassName) || previousFailedTestClasses.contains(testClassName)) {
+            delegate.processTestClass(testClass);
+        } else {
+            skippedCount++;
+        }
+    }
+
+    /**
+     * Returns true when test classes have been skipped since they were not affected.
+     */
+    public boolean hasSkippedTestClasses() {
+        return skippedCount > 0;
+    }
+
+    @Override
+    public void stop() {
+        delegate.stop();
+        if (skippedCount > 0) {
+            LOGGER.lifecycle("Skipped {} test classes not affected by the changes since the previous test run.", skippedCount);
+        }
+        // When stopped early, not all test classes have been executed, so all of them need to be executed by the next test run
+        if (!stoppedNow) {
+            testImpact.store(testClasses);
+        }
+    }
+
+    @Override
+    public void stopNow() {
+        stoppedNow = true;
+        delegate.stopNow();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.impact;
+
+import org.gradle.internal.execution.history.BeforeExecutionState;
+import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.ValueSnapshot;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hashes the inputs of a test task other than the given file properties, like input properties, system properties and resource directories
+ * registered as inputs. The test impact analysis only tracks the changes to the classes on the test runtime classpath, so a change to any other
+ * input may affect any test class. The hash is built from the fingerprints taken for the current execution of the task, so it covers the content
+ * of input directories normalized the same way as for the up-to-date check.
+ */
+public class TaskInputsHasher {
+    private TaskInputsHasher() {
+    }
+
+    public static HashCode hashInputs(BeforeExecutionState beforeExecutionState, Set<String> ignoredFileProperties) {
+        Hasher hasher = Hashing.newHasher();
+        for (Map.Entry<String, ValueSnapshot> entry : beforeExecutionState.getInputProperties().entrySet()) {
+            hasher.putString(entry.getKey());
+            entry.getValue().appendToHasher(hasher);
+        }
+        for (Map.Entry<String, CurrentFileCollectionFingerprint> entry : beforeExecutionState.getInputFileProperties().entrySet()) {
+            if (!ignoredFileProperties.contains(entry.getKey())) {
+                hasher.putString(entry.getKey());
+                hasher.putHash(entry.getValue().getHash());
+            }
+        }
+        return hasher.hash();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.impact;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+
+/**
+ * The classes affected by the changes made since the previous test run.
+ */
+public interface TestImpact {
+    /**
+     * Returns the reason why all test classes are affected, or null when only some of them are.
+     */
+    @Nullable
+    String getFullRunReason();
+
+    /**
+     * Returns true when the given test class is affected by a change, or has not been part of the previous test run.
+     */
+    boolean isAffected(String testClassName);
+
+    /**
+     * Stores the state of this test run. Should only be called when all the given test classes have either been executed, or skipped as they were not affected.
+     */
+    void store(Set<String> testClassNames);
+}
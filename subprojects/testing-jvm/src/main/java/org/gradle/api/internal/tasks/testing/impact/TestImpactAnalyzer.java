@@ -0,0 +1,39 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.impact;
+
+import org.gradle.internal.hash.HashCode;
+
+import java.io.File;
+
+/**
+ * Determines which classes on a test runtime classpath are affected by the changes made since the previous test run.
+ */
+public interface TestImpactAnalyzer {
+    /**
+     * Test tasks only execute the affected test classes when this system property is set to true.
+     */
+    String ENABLED_PROPERTY = "org.gradle.internal.testing.impact";
+
+    /**
+     * Compares the given classpath with the state of the previous test run, which is removed from the given file.
+     *
+     * @param stateFile the file the state of the previous test run has been stored in.
+     * @param configurationHash the hash of the test configuration other than the classpath. All test classes are affected when it has changed.
+     */
+    TestImpact analyze(File stateFile, HashCode configurationHash, Iterable<File> classpath);
+}
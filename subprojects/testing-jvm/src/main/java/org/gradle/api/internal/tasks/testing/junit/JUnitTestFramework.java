@@ -21,6 +21,7 @@
 import java.util.List;
 
 import org.gradle.api.Action;
+import org.gradle.api.internal.tasks.testing.OneByOneExecutingTestFramework;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
@@ -34,7 +35,7 @@
 import org.gradle.internal.time.Clock;
 import org.gradle.process.internal.worker.WorkerProcessBuilder;
 
-public class JUnitTestFramework implements TestFramework {
+public class JUnitTestFramework implements TestFramework, OneByOneExecutingTestFramework {
     private JUnitOptions options;
     private final JUnitDetector detector;
     private final DefaultTestFilter filter;
@@ -70,6 +71,11 @@ public List<String> getTestWorkerImplementationModules() {
         return Collections.emptyList();
     }
 
+    @Override
+    public boolean isExecutingTestClassesOneByOne() {
+        return true;
+    }
+
     @Override
     public JUnitOptions getOptions() {
         return options;
@@ -16,6 +16,7 @@
 
 package org.gradle.api.tasks.testing;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import groovy.lang.Closure;
 import org.gradle.StartParameter;
@@ -33,12 +34,17 @@
 import org.gradle.api.internal.tasks.testing.TestExecuter;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.detection.DefaultTestExecuter;
+import org.gradle.api.internal.tasks.testing.detection.TestClassDetectionCache;
+import org.gradle.api.internal.tasks.testing.detection.TestClassDetectionExecutor;
 import org.gradle.api.internal.tasks.testing.filter.DefaultTestFilter;
+import org.gradle.api.internal.tasks.testing.impact.TaskInputsHasher;
+import org.gradle.api.internal.tasks.testing.impact.TestImpactAnalyzer;
 import org.gradle.api.internal.tasks.testing.junit.JUnitTestFramework;
 import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
 import org.gradle.api.internal.tasks.testing.junit.result.TestResultSerializer;
 import org.gradle.api.internal.tasks.testing.junitplatform.JUnitPlatformTestFramework;
 import org.gradle.api.internal.tasks.testing.testng.TestNGTestFramework;
+import org.gradle.api.internal.tasks.testing.worker.TestWorkerPool;
 import org.gradle.api.jvm.ModularitySpec;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.specs.Spec;
@@ -62,6 +68,10 @@
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factory;
 import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.execution.history.BeforeExecutionState;
+import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.jvm.DefaultModularitySpec;
 import org.gradle.internal.jvm.JavaModuleDetector;
 import org.gradle.internal.jvm.UnsupportedJavaRuntimeException;
@@ -77,11 +87,12 @@
 import org.gradle.process.internal.JavaForkOptionsFactory;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 import org.gradle.util.ConfigureUtil;
+import org.gradle.util.GFileUtils;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.File;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -145,6 +156,8 @@
 @CacheableTask
 public class Test extends AbstractTestTask implements JavaForkOptions, PatternFilterable {
 
+    private static final String TEST_IMPACT_STATE_FILE_NAME = "test-impact.bin";
+
     private final JavaForkOptions forkOptions;
     private final ModularitySpec modularity;
 
@@ -609,24 +622,24 @@ protected JvmTestExecutionSpec createTestExecutionSpec() {
         boolean testIsModule = javaModuleDetector.isModule(modularity.getInferModulePath().get(), getTestClassesDirs());
         FileCollection classpath = javaModuleDetector.inferClasspath(testIsModule, getClasspath());
         FileCollection modulePath = javaModuleDetector.inferModulePath(testIsModule, getClasspath());
-        return new JvmTestExecutionSpec(getTestFramework(), classpath, modulePath, getCandidateClassFiles(), isScanForTestClasses(), getTestClassesDirs(), getPath(), getIdentityPath(), getForkEvery(), javaForkOptions, getMaxParallelForks(), getPreviousFailedTestClasses());
+        Set<String> previousFailedTestClasses = new HashSet<String>();
+        Map<String, Long> previousTestClassDurations = new HashMap<String, Long>();
+        readPreviousTestResults(previousFailedTestClasses, previousTestClassDurations);
+        return new JvmTestExecutionSpec(getTestFramework(), classpath, modulePath, getCandidateClassFiles(), isScanForTestClasses(), getTestClassesDirs(), getPath(), getIdentityPath(), getForkEvery(), javaForkOptions, getMaxParallelForks(), previousFailedTestClasses, previousTestClassDurations);
     }
 
-    private Set<String> getPreviousFailedTestClasses() {
+    private void readPreviousTestResults(final Set<String> previousFailedTestClasses, final Map<String, Long> previousTestClassDurations) {
         TestResultSerializer serializer = new TestResultSerializer(getBinResultsDir());
         if (serializer.isHasResults()) {
-            final Set<String> previousFailedTestClasses = new HashSet<String>();
             serializer.read(new Action<TestClassResult>() {
                 @Override
                 public void execute(TestClassResult testClassResult) {
                     if (testClassResult.getFailuresCount() > 0) {
                         previousFailedTestClasses.add(testClassResult.getClassName());
                     }
+                    previousTestClassDurations.put(testClassResult.getClassName(), testClassResult.getDuration());
                 }
             });
-            return previousFailedTestClasses;
-        } else {
-            return Collections.emptySet();
         }
     }
 
@@ -642,28 +655,80 @@ public void executeTests() {
             getLogger().info("Running tests for remote debugging.");
         }
 
+        // The state of the test impact analysis is kept with the binary results, so it is removed together with them
+        boolean testImpactAnalysis = isTestImpactAnalysisEnabled();
+        File testImpactStateFile = new File(getBinResultsDir(), TEST_IMPACT_STATE_FILE_NAME);
+        if (testImpactAnalysis) {
+            moveTestImpactState(testImpactStateFile, getWorkingTestImpactStateFile());
+        }
         try {
             super.executeTests();
         } finally {
             testFramework = null;
+            if (testImpactAnalysis) {
+                moveTestImpactState(getWorkingTestImpactStateFile(), testImpactStateFile);
+            }
+        }
+    }
+
+    private static boolean isTestImpactAnalysisEnabled() {
+        return Boolean.getBoolean(TestImpactAnalyzer.ENABLED_PROPERTY);
+    }
+
+    /**
+     * The binary results are deleted before the tests are executed, so the state of the previous test run is moved out of them while the tests are executed.
+     */
+    private File getWorkingTestImpactStateFile() {
+        return new File(getTemporaryDir(), TEST_IMPACT_STATE_FILE_NAME);
+    }
+
+    private static void moveTestImpactState(File from, File to) {
+        GFileUtils.deleteQuietly(to);
+        if (from.isFile() && to.getParentFile().isDirectory()) {
+            GFileUtils.moveExistingFile(from, to);
+        } else {
+            GFileUtils.deleteQuietly(from);
         }
     }
 
     @Override
     protected TestExecuter<JvmTestExecutionSpec> createTestExecuter() {
         if (testExecuter == null) {
+            BeforeExecutionState beforeExecutionState = getInputs().getBeforeExecutionState();
+            // The other inputs of the task are only known to be unchanged when they have been fingerprinted
+            TestImpactAnalyzer testImpactAnalyzer = isTestImpactAnalysisEnabled() && beforeExecutionState != null ? (TestImpactAnalyzer) getServices().find(TestImpactAnalyzer.class) : null;
             return new DefaultTestExecuter(getProcessBuilderFactory(), getActorFactory(), getModuleRegistry(),
                 getServices().get(WorkerLeaseRegistry.class),
                 getServices().get(BuildOperationExecutor.class),
                 getServices().get(StartParameter.class).getMaxWorkerCount(),
                 getServices().get(Clock.class),
                 getServices().get(DocumentationRegistry.class),
-                (DefaultTestFilter) getFilter());
+                (DefaultTestFilter) getFilter(),
+                getServices().get(TestClassDetectionExecutor.class),
+                getServices().get(FileHasher.class),
+                getServices().get(TestClassDetectionCache.class),
+                TestWorkerPool.isReuseEnabled() ? getServices().get(TestWorkerPool.class) : null,
+                TestWorkerPool.isReuseEnabled() ? getClasspathFingerprint(beforeExecutionState) : null,
+                testImpactAnalyzer,
+                testImpactAnalyzer != null ? getWorkingTestImpactStateFile() : null,
+                testImpactAnalyzer != null ? TaskInputsHasher.hashInputs(beforeExecutionState, ImmutableSet.of("classpath", "candidateClassFiles")) : null);
         } else {
             return testExecuter;
         }
     }
 
+    /**
+     * Returns the hash of the test runtime classpath as fingerprinted for the current execution of this task.
+     */
+    @Nullable
+    private static HashCode getClasspathFingerprint(@Nullable BeforeExecutionState beforeExecutionState) {
+        if (beforeExecutionState == null) {
+            return null;
+        }
+        CurrentFileCollectionFingerprint classpathFingerprint = beforeExecutionState.getInputFileProperties().get("classpath");
+        return classpathFingerprint != null ? classpathFingerprint.getHash() : null;
+    }
+
     @Override
     protected List<String> getNoMatchingTestErrorReasons() {
         List<String> reasons = Lists.newArrayList();
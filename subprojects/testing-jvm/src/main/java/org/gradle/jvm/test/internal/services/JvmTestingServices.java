@@ -16,6 +16,10 @@
 
 package org.gradle.jvm.test.internal.services;
 
+import org.gradle.StartParameter;
+import org.gradle.api.internal.tasks.testing.detection.TestClassDetectionCache;
+import org.gradle.api.internal.tasks.testing.detection.TestClassDetectionExecutor;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.service.scopes.AbstractPluginServiceRegistry;
 import org.gradle.jvm.test.internal.JUnitTestSuiteBinaryRenderer;
@@ -24,5 +28,17 @@ public class JvmTestingServices extends AbstractPluginServiceRegistry {
     @Override
     public void registerGlobalServices(ServiceRegistration registration) {
         registration.add(JUnitTestSuiteBinaryRenderer.class);
+        registration.add(TestClassDetectionCache.class);
+    }
+
+    @Override
+    public void registerBuildSessionServices(ServiceRegistration registration) {
+        registration.addProvider(new BuildSessionScopeServices());
+    }
+
+    private static final class BuildSessionScopeServices {
+        TestClassDetectionExecutor createTestClassDetectionExecutor(ExecutorFactory executorFactory, StartParameter startParameter) {
+            return new TestClassDetectionExecutor(executorFactory, startParameter.getMaxWorkerCount());
+        }
     }
 }
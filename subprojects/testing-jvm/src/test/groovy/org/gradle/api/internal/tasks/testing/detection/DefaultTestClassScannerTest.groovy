@@ -21,11 +21,15 @@ import org.gradle.api.file.FileVisitDetails
 import org.gradle.api.file.FileVisitor
 import org.gradle.api.file.RelativePath
 import org.gradle.api.internal.file.DefaultFileVisitDetails
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
 import org.junit.Test
 import spock.lang.Specification
 import spock.lang.Subject
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+
 class DefaultTestClassScannerTest extends Specification {
     def files = Mock(FileTree)
     def detector = Mock(TestFrameworkDetector)
@@ -78,6 +82,45 @@ class DefaultTestClassScannerTest extends Specification {
         0 * _._
     }
 
+    def "passes test classes detected concurrently to processor in visiting order"() {
+        def executor = Executors.newFixedThreadPool(2)
+        def testClassProcessor = Mock(TestClassProcessor)
+        def concurrentScanner = new DefaultTestClassScanner(files, detector, testClassProcessor, executor)
+        def class1Detecting = new CountDownLatch(1)
+        def class2Detected = new CountDownLatch(1)
+
+        when:
+        concurrentScanner.run()
+
+        then:
+        1 * detector.startDetection(testClassProcessor)
+        1 * files.visit(_) >> { FileVisitor visitor ->
+            ['class1', 'class2', 'class3'].each { visitor.visitFile(stubFileVisitDetails(it)) }
+        }
+        1 * detector.detectTestClass({ it.file.name == 'class1.class' }) >> {
+            class1Detecting.countDown()
+            class2Detected.await()
+            new DefaultTestClassRunInfo('class1')
+        }
+        1 * detector.detectTestClass({ it.file.name == 'class2.class' }) >> {
+            class1Detecting.await()
+            class2Detected.countDown()
+            new DefaultTestClassRunInfo('class2')
+        }
+        1 * detector.detectTestClass({ it.file.name == 'class3.class' }) >> null
+        0 * detector.processTestClass(_)
+
+        then:
+        1 * testClassProcessor.processTestClass(new DefaultTestClassRunInfo('class1'))
+
+        then:
+        1 * testClassProcessor.processTestClass(new DefaultTestClassRunInfo('class2'))
+        0 * testClassProcessor._
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
     FileVisitDetails stubFileVisitDetails(String className) {
         return new DefaultFileVisitDetails(new File("${className}.class"), new RelativePath(false, "${className}.class"), null, null, null)
     }
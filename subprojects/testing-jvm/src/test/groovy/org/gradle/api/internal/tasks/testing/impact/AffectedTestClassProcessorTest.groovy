@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.impact
+
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import spock.lang.Specification
+
+class AffectedTestClassProcessorTest extends Specification {
+    def delegate = Mock(TestClassProcessor)
+    def testImpact = Mock(TestImpact)
+
+    def "passes on affected and previously failed test classes only"() {
+        def processor = new AffectedTestClassProcessor(testImpact, ["Failed"] as Set, delegate)
+        def affected = testClass("Affected")
+        def failed = testClass("Failed")
+        def unaffected = testClass("Unaffected")
+        testImpact.isAffected("Affected") >> true
+
+        when:
+        processor.startProcessing(Mock(TestResultProcessor))
+        [affected, failed, unaffected].each { processor.processTestClass(it) }
+        processor.stop()
+
+        then:
+        1 * delegate.processTestClass(affected)
+        1 * delegate.processTestClass(failed)
+        0 * delegate.processTestClass(unaffected)
+        1 * testImpact.store(["Affected", "Failed", "Unaffected"] as Set)
+
+        and:
+        processor.hasSkippedTestClasses()
+    }
+
+    def "passes on all test classes when all are affected"() {
+        def processor = new AffectedTestClassProcessor(testImpact, [] as Set, delegate)
+        def test = testClass("Test")
+        testImpact.getFullRunReason() >> "the test configuration has changed"
+
+        when:
+        processor.processTestClass(test)
+
+        then:
+        1 * delegate.processTestClass(test)
+
+        and:
+        !processor.hasSkippedTestClasses()
+    }
+
+    def "does not store state when stopped early"() {
+        def processor = new AffectedTestClassProcessor(testImpact, [] as Set, delegate)
+
+        when:
+        processor.processTestClass(testClass("Test"))
+        processor.stopNow()
+        processor.stop()
+
+        then:
+        1 * delegate.stopNow()
+        0 * testImpact.store(_)
+    }
+
+    private TestClassRunInfo testClass(String name) {
+        Stub(TestClassRunInfo) {
+            getTestClassName() >> name
+        }
+    }
+}
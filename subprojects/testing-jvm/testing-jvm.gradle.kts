@@ -32,6 +32,7 @@ dependencies {
     implementation(project(":coreApi"))
     implementation(project(":modelCore"))
     implementation(project(":core"))
+    implementation(project(":persistentCache"))
     implementation(project(":dependencyManagement"))
     implementation(project(":reporting"))
     implementation(project(":diagnostics"))
@@ -39,6 +40,8 @@ dependencies {
     implementation(project(":platformJvm"))
     implementation(project(":languageJava"))
     implementation(project(":testingBase"))
+    implementation(project(":snapshots"))
+    implementation(project(":execution"))
 
     implementation(library("slf4j_api"))
     implementation(library("groovy"))